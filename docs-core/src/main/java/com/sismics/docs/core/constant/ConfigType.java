@@ -10,6 +10,17 @@ public enum ConfigType {
      * Lucene directory storage type.
      */
     LUCENE_DIRECTORY_STORAGE,
+
+    /**
+     * Maximum delay in seconds before indexed changes are committed to the Lucene directory.
+     */
+    LUCENE_COMMIT_INTERVAL,
+
+    /**
+     * Maximum number of indexing operations before the Lucene index is committed.
+     */
+    LUCENE_COMMIT_MAX_OPERATIONS,
+
     /**
      * Theme configuration.
      */
@@ -83,6 +83,26 @@ public class Constants {
      */
     public static final String BCRYPT_WORK_ENV = "DOCS_BCRYPT_WORK";
 
+    /**
+     * Keep the persistence context during a transaction environment variable.
+     */
+    public static final String KEEP_PERSISTENCE_CONTEXT_ENV = "DOCS_KEEP_PERSISTENCE_CONTEXT";
+
+    /**
+     * Maximum number of concurrent OCR processes environment variable.
+     */
+    public static final String OCR_THREAD_COUNT_ENV = "DOCS_OCR_THREAD_COUNT";
+
+    /**
+     * JPEG quality of the web renditions environment variable.
+     */
+    public static final String WEB_JPEG_QUALITY_ENV = "DOCS_WEB_JPEG_QUALITY";
+
+    /**
+     * JPEG quality of the thumbnails environment variable.
+     */
+    public static final String THUMB_JPEG_QUALITY_ENV = "DOCS_THUMB_JPEG_QUALITY";
+
     /**
      * Expiration time of the password recovery in hours.
      */
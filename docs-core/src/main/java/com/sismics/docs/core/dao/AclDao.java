@@ -8,13 +8,19 @@ import com.sismics.docs.core.dao.dto.AclDto;
 import com.sismics.docs.core.model.jpa.Acl;
 import com.sismics.docs.core.util.AuditLogUtil;
 import com.sismics.docs.core.util.SecurityUtil;
+import com.sismics.docs.core.util.jpa.QueryUtil;
 import com.sismics.util.context.ThreadLocalContext;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.Query;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -116,6 +122,61 @@ public class AclDao {
         return aclDtoList;
     }
 
+    /**
+     * Returns the targets allowed to read documents, directly or through their tags.
+     *
+     * @param documentIdList Document IDs
+     * @return Target IDs indexed by document ID
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Set<String>> getReadTargetIdsByDocumentIds(Collection<String> documentIdList) {
+        Map<String, Set<String>> targetIdMap = new HashMap<>();
+        if (documentIdList.isEmpty()) {
+            return targetIdMap;
+        }
+
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        StringBuilder sb = new StringBuilder("select a.ACL_SOURCEID_C, a.ACL_TARGETID_C from T_ACL a ")
+                .append(" where a.ACL_SOURCEID_C in (:documentIdList) and a.ACL_PERM_C = 'READ' and a.ACL_DELETEDATE_D is null ")
+                .append(" union ")
+                .append(" select dt.DOT_IDDOCUMENT_C, a.ACL_TARGETID_C from T_DOCUMENT_TAG dt ")
+                .append(" join T_ACL a on a.ACL_SOURCEID_C = dt.DOT_IDTAG_C and a.ACL_PERM_C = 'READ' and a.ACL_DELETEDATE_D is null ")
+                .append(" where dt.DOT_IDDOCUMENT_C in (:documentIdList) and dt.DOT_DELETEDATE_D is null ");
+        Query q = em.createNativeQuery(sb.toString());
+        q.setParameter("documentIdList", documentIdList);
+        List<Object[]> l = q.getResultList();
+        for (Object[] o : l) {
+            targetIdMap.computeIfAbsent((String) o[0], k -> new HashSet<>()).add((String) o[1]);
+        }
+        return targetIdMap;
+    }
+
+    /**
+     * Returns the number of active shares of documents.
+     *
+     * @param documentIdList Document IDs
+     * @return Number of shares indexed by document ID, unshared documents are absent
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Long> getShareCountsByDocumentIds(Collection<String> documentIdList) {
+        Map<String, Long> shareCountMap = new HashMap<>();
+        if (documentIdList.isEmpty()) {
+            return shareCountMap;
+        }
+
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createNativeQuery("select a.ACL_SOURCEID_C, count(s.SHA_ID_C) from T_ACL a " +
+                " join T_SHARE s on s.SHA_ID_C = a.ACL_TARGETID_C and s.SHA_DELETEDATE_D is null " +
+                " where a.ACL_SOURCEID_C in (:documentIdList) and a.ACL_DELETEDATE_D is null " +
+                " group by a.ACL_SOURCEID_C ");
+        q.setParameter("documentIdList", documentIdList);
+        List<Object[]> l = q.getResultList();
+        for (Object[] o : l) {
+            shareCountMap.put((String) o[0], ((Number) o[1]).longValue());
+        }
+        return shareCountMap;
+    }
+
     /**
      * Check if a source is accessible to a target.
      *
@@ -180,6 +241,6 @@ public class AclDao {
         q.setParameter("targetId", targetId);
         q.setParameter("type", type);
         q.setParameter("dateNow", new Date());
-        q.executeUpdate();
+        QueryUtil.executeUpdate(q);
     }
 }
\ No newline at end of file
@@ -1,11 +1,14 @@
 package com.sismics.docs.core.dao;
 
 import com.sismics.docs.core.model.jpa.AuthenticationToken;
+import com.sismics.docs.core.util.PrincipalCacheUtil;
+import com.sismics.docs.core.util.jpa.QueryUtil;
 import com.sismics.util.context.ThreadLocalContext;
 import org.joda.time.DateTime;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.Query;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
@@ -54,6 +57,7 @@ public class AuthenticationTokenDao {
         AuthenticationToken authenticationToken = em.find(AuthenticationToken.class, authenticationTokenId);
         if (authenticationToken != null) {
             em.remove(authenticationToken);
+            ThreadLocalContext.get().addAfterCommit(() -> PrincipalCacheUtil.invalidateToken(authenticationTokenId));
         } else {
             throw new Exception("Token not found: " + authenticationTokenId);
         }
@@ -71,29 +75,30 @@ public class AuthenticationTokenDao {
         sb.append(" and ato.AUT_LASTCONNECTIONDATE_D < :minDate ");
 
         EntityManager em = ThreadLocalContext.get().getEntityManager();
-        Query q = em.createNativeQuery(sb.toString());
+        Query q = QueryUtil.synchronizeTables(em.createNativeQuery(sb.toString()), "T_AUTHENTICATION_TOKEN");
         q.setParameter("userId", userId);
         q.setParameter("longLasted", false);
         q.setParameter("minDate", DateTime.now().minusDays(1).toDate());
-        q.executeUpdate();
+        QueryUtil.executeUpdate(q);
+        ThreadLocalContext.get().addAfterCommit(() -> PrincipalCacheUtil.invalidateUser(userId));
     }
 
     /**
-     * Deletes old short lived tokens.
+     * Updates the last connection date of authentication tokens.
      *
-     * @param id Token id
-     * @throws Exception
+     * @param idList Token IDs
+     * @param lastConnectionDate Last connection date
      */
-    public void updateLastConnectionDate(String id) {
+    public void updateLastConnectionDate(Collection<String> idList, Date lastConnectionDate) {
         StringBuilder sb = new StringBuilder("update T_AUTHENTICATION_TOKEN ato ");
-        sb.append(" set AUT_LASTCONNECTIONDATE_D = :currentDate ");
-        sb.append(" where ato.AUT_ID_C = :id");
+        sb.append(" set AUT_LASTCONNECTIONDATE_D = :lastConnectionDate ");
+        sb.append(" where ato.AUT_ID_C in (:idList)");
 
         EntityManager em = ThreadLocalContext.get().getEntityManager();
-        Query q = em.createNativeQuery(sb.toString());
-        q.setParameter("currentDate", new Date());
-        q.setParameter("id", id);
-        q.executeUpdate();
+        Query q = QueryUtil.synchronizeTables(em.createNativeQuery(sb.toString()), "T_AUTHENTICATION_TOKEN");
+        q.setParameter("lastConnectionDate", lastConnectionDate);
+        q.setParameter("idList", idList);
+        QueryUtil.executeUpdate(q);
     }
     
     /**
@@ -120,6 +125,7 @@ public class AuthenticationTokenDao {
         Query q = em.createQuery("delete AuthenticationToken a where a.userId = :userId and a.id != :id");
         q.setParameter("userId", userId);
         q.setParameter("id", id);
-        q.executeUpdate();
+        QueryUtil.executeUpdate(q);
+        ThreadLocalContext.get().addAfterCommit(() -> PrincipalCacheUtil.invalidateUser(userId));
     }
 }
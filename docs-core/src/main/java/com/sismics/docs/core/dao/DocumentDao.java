@@ -5,6 +5,7 @@ import com.sismics.docs.core.constant.PermType;
 import com.sismics.docs.core.dao.dto.DocumentDto;
 import com.sismics.docs.core.model.jpa.Document;
 import com.sismics.docs.core.util.AuditLogUtil;
+import com.sismics.docs.core.util.jpa.QueryUtil;
 import com.sismics.util.context.ThreadLocalContext;
 
 import jakarta.persistence.EntityManager;
@@ -45,20 +46,49 @@ public class DocumentDao {
     }
     
     /**
-     * Returns the list of all active documents.
+     * Returns a page of all active documents.
      *
-     * @param offset Offset
+     * @param lastId Only return documents after this ID, null to start from the beginning
      * @param limit Limit
-     * @return List of documents
+     * @return List of documents, ordered by ID
      */
-    public List<Document> findAll(int offset, int limit) {
+    public List<Document> findAll(String lastId, int limit) {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
-        TypedQuery<Document> q = em.createQuery("select d from Document d where d.deleteDate is null", Document.class);
-        q.setFirstResult(offset);
+        TypedQuery<Document> q = em.createQuery("select d from Document d where d.deleteDate is null"
+                + (lastId == null ? "" : " and d.id > :lastId") + " order by d.id asc", Document.class);
+        if (lastId != null) {
+            q.setParameter("lastId", lastId);
+        }
         q.setMaxResults(limit);
         return q.getResultList();
     }
 
+    /**
+     * Returns the active documents created or updated since a date.
+     *
+     * @param date Date
+     * @return List of documents
+     */
+    public List<Document> findUpdatedSince(Date date) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        TypedQuery<Document> q = em.createQuery("select d from Document d where d.deleteDate is null and (d.createDate >= :date or d.updateDate >= :date)", Document.class);
+        q.setParameter("date", date);
+        return q.getResultList();
+    }
+
+    /**
+     * Returns the IDs of the documents deleted since a date.
+     *
+     * @param date Date
+     * @return List of document IDs
+     */
+    public List<String> findIdsDeletedSince(Date date) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        TypedQuery<String> q = em.createQuery("select d.id from Document d where d.deleteDate >= :date", String.class);
+        q.setParameter("date", date);
+        return q.getResultList();
+    }
+
     /**
      * Returns the list of all active documents from a user.
      * 
@@ -150,22 +180,22 @@ public class DocumentDao {
         Query q = em.createQuery("update File f set f.deleteDate = :dateNow where f.documentId = :documentId and f.deleteDate is null");
         q.setParameter("documentId", id);
         q.setParameter("dateNow", dateNow);
-        q.executeUpdate();
+        QueryUtil.executeUpdate(q);
         
         q = em.createQuery("update Acl a set a.deleteDate = :dateNow where a.sourceId = :documentId and a.deleteDate is null");
         q.setParameter("documentId", id);
         q.setParameter("dateNow", dateNow);
-        q.executeUpdate();
+        QueryUtil.executeUpdate(q);
         
         q = em.createQuery("update DocumentTag dt set dt.deleteDate = :dateNow where dt.documentId = :documentId and dt.deleteDate is not null");
         q.setParameter("documentId", id);
         q.setParameter("dateNow", dateNow);
-        q.executeUpdate();
+        QueryUtil.executeUpdate(q);
         
         q = em.createQuery("update Relation r set r.deleteDate = :dateNow where (r.fromDocumentId = :documentId or r.toDocumentId = :documentId) and r.deleteDate is not null");
         q.setParameter("documentId", id);
         q.setParameter("dateNow", dateNow);
-        q.executeUpdate();
+        QueryUtil.executeUpdate(q);
         
         // Create audit log
         AuditLogUtil.create(documentDb, AuditLogType.DELETE, userId);
@@ -188,6 +218,19 @@ public class DocumentDao {
         }
     }
     
+    /**
+     * Gets active documents having a tag.
+     *
+     * @param tagId Tag ID
+     * @return List of documents
+     */
+    public List<Document> findByTagId(String tagId) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        TypedQuery<Document> q = em.createQuery("select d from Document d, DocumentTag dt where dt.documentId = d.id and dt.tagId = :tagId and dt.deleteDate is null and d.deleteDate is null", Document.class);
+        q.setParameter("tagId", tagId);
+        return q.getResultList();
+    }
+
     /**
      * Update a document and log the action.
      * 
@@ -232,11 +275,11 @@ public class DocumentDao {
      */
     public void updateFileId(Document document) {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
-        Query query = em.createNativeQuery("update T_DOCUMENT d set DOC_IDFILE_C = :fileId, DOC_UPDATEDATE_D = :updateDate where d.DOC_ID_C = :id");
+        Query query = QueryUtil.synchronizeTables(em.createNativeQuery("update T_DOCUMENT d set DOC_IDFILE_C = :fileId, DOC_UPDATEDATE_D = :updateDate where d.DOC_ID_C = :id"), "T_DOCUMENT");
         query.setParameter("updateDate", new Date());
         query.setParameter("fileId", document.getFileId());
         query.setParameter("id", document.getId());
-        query.executeUpdate();
+        QueryUtil.executeUpdate(query);
     }
 
     /**
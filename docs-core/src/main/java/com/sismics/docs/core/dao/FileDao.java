@@ -2,18 +2,23 @@ package com.sismics.docs.core.dao;
 
 import com.sismics.docs.core.constant.AuditLogType;
 import com.sismics.docs.core.model.jpa.File;
+import com.sismics.docs.core.model.jpa.FileContent;
 import com.sismics.docs.core.util.AuditLogUtil;
+import com.sismics.docs.core.util.jpa.QueryUtil;
 import com.sismics.util.context.ThreadLocalContext;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.Query;
 import jakarta.persistence.TypedQuery;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -59,6 +64,61 @@ public class FileDao {
         return q.getResultList();
     }
     
+    /**
+     * Returns a page of all active files.
+     *
+     * @param lastId Only return files after this ID, null to start from the beginning
+     * @param limit Limit
+     * @return List of files, ordered by ID
+     */
+    public List<File> findAll(String lastId, int limit) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        TypedQuery<File> q = em.createQuery("select f from File f where f.deleteDate is null"
+                + (lastId == null ? "" : " and f.id > :lastId") + " order by f.id asc", File.class);
+        if (lastId != null) {
+            q.setParameter("lastId", lastId);
+        }
+        q.setMaxResults(limit);
+        return q.getResultList();
+    }
+
+    /**
+     * Returns the number of active files.
+     *
+     * @return Number of files
+     */
+    public long getFileCount() {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        TypedQuery<Long> q = em.createQuery("select count(f.id) from File f where f.deleteDate is null", Long.class);
+        return q.getSingleResult();
+    }
+
+    /**
+     * Returns the active files created since a date.
+     *
+     * @param date Date
+     * @return List of files
+     */
+    public List<File> findCreatedSince(Date date) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        TypedQuery<File> q = em.createQuery("select f from File f where f.deleteDate is null and f.createDate >= :date", File.class);
+        q.setParameter("date", date);
+        return q.getResultList();
+    }
+
+    /**
+     * Returns the IDs of the files deleted since a date.
+     *
+     * @param date Date
+     * @return List of file IDs
+     */
+    public List<String> findIdsDeletedSince(Date date) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        TypedQuery<String> q = em.createQuery("select f.id from File f where f.deleteDate >= :date", String.class);
+        q.setParameter("date", date);
+        return q.getResultList();
+    }
+
     /**
      * Returns the list of all files from a user.
      * 
@@ -158,16 +218,67 @@ public class FileDao {
         // Update the file
         fileDb.setDocumentId(file.getDocumentId());
         fileDb.setName(file.getName());
-        fileDb.setContent(file.getContent());
         fileDb.setOrder(file.getOrder());
         fileDb.setMimeType(file.getMimeType());
         fileDb.setVersionId(file.getVersionId());
         fileDb.setLatestVersion(file.isLatestVersion());
         fileDb.setSize(file.getSize());
+        fileDb.setLinked(file.isLinked());
 
         return file;
     }
 
+    /**
+     * Update the text content of a file.
+     *
+     * @param fileId File ID
+     * @param content Text content
+     */
+    public void updateContent(String fileId, String content) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        FileContent fileContent = em.find(FileContent.class, fileId);
+        if (fileContent == null) {
+            em.persist(new FileContent().setFileId(fileId).setContent(content));
+        } else {
+            fileContent.setContent(content);
+        }
+    }
+
+    /**
+     * Get the text content of a file.
+     *
+     * @param fileId File ID
+     * @return Text content, null if none has been extracted
+     */
+    public String getContent(String fileId) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        FileContent fileContent = em.find(FileContent.class, fileId);
+        return fileContent == null ? null : fileContent.getContent();
+    }
+
+    /**
+     * Load the text content of a list of files in a single query.
+     *
+     * @param fileList Files
+     */
+    @SuppressWarnings("unchecked")
+    public void loadContent(Collection<File> fileList) {
+        if (fileList.isEmpty()) {
+            return;
+        }
+
+        Map<String, File> fileMap = new HashMap<>();
+        for (File file : fileList) {
+            fileMap.put(file.getId(), file);
+        }
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createQuery("select fc.fileId, fc.content from FileContent fc where fc.fileId in :fileIds");
+        q.setParameter("fileIds", fileMap.keySet());
+        for (Object[] o : (List<Object[]>) q.getResultList()) {
+            fileMap.get((String) o[0]).setContent((String) o[1]);
+        }
+    }
+
     /**
      * Gets a file by its ID.
      * 
@@ -185,6 +296,43 @@ public class FileDao {
         }
     }
     
+    /**
+     * Gets an active file of a user with the same content.
+     *
+     * @param userId User ID
+     * @param contentHash SHA-256 of the content
+     * @return File, null if none
+     */
+    public File getActiveByContentHash(String userId, String contentHash) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        TypedQuery<File> q = em.createQuery("select f from File f where f.userId = :userId and f.contentHash = :contentHash and f.deleteDate is null order by f.createDate asc", File.class);
+        q.setParameter("userId", userId);
+        q.setParameter("contentHash", contentHash);
+        q.setMaxResults(1);
+        List<File> fileList = q.getResultList();
+        return fileList.isEmpty() ? null : fileList.get(0);
+    }
+
+    /**
+     * Returns the storage saved by storing once the identical files of a user.
+     * Only the files really linked to an identical content are counted, not those copied when the link failed.
+     *
+     * @param userId User ID
+     * @return Saved storage in bytes
+     */
+    public long getStorageSaved(String userId) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createNativeQuery("select sum(c.FIL_SIZE_N * least(c.LINKEDCOUNT, c.FILECOUNT - 1)) from " +
+                " (select max(f.FIL_SIZE_N) FIL_SIZE_N, count(f.FIL_ID_C) FILECOUNT, " +
+                " sum(case when f.FIL_LINKED_B = :linked then 1 else 0 end) LINKEDCOUNT from T_FILE f " +
+                " where f.FIL_IDUSER_C = :userId and f.FIL_CONTENTHASH_C is not null and f.FIL_DELETEDATE_D is null " +
+                " group by f.FIL_CONTENTHASH_C) c");
+        q.setParameter("userId", userId);
+        q.setParameter("linked", true);
+        Number storageSaved = (Number) q.getSingleResult();
+        return storageSaved == null ? 0 : storageSaved.longValue();
+    }
+
     /**
      * Get files by document ID or all orphan files of a user.
      * 
@@ -234,6 +382,30 @@ public class FileDao {
         return result;
     }
 
+    /**
+     * Get the MIME types of the files of documents, all versions included.
+     *
+     * @param documentIds Documents IDs
+     * @return MIME types indexed by document ID
+     */
+    public Map<String, Set<String>> getMimeTypesByDocumentsIds(Collection<String> documentIds) {
+        Map<String, Set<String>> result = new HashMap<>();
+        if (documentIds.isEmpty()) {
+            return result;
+        }
+
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createQuery("select distinct f.documentId, f.mimeType from File f where f.documentId in :documentIds and f.deleteDate is null");
+        q.setParameter("documentIds", documentIds);
+        q.getResultList().forEach(o -> {
+            Object[] resultLine = (Object[]) o;
+            if (resultLine[1] != null) {
+                result.computeIfAbsent((String) resultLine[0], k -> new HashSet<>()).add((String) resultLine[1]);
+            }
+        });
+        return result;
+    }
+
     /**
      * Get all files from a version.
      *
@@ -247,11 +419,60 @@ public class FileDao {
         return q.getResultList();
     }
 
-    public List<File> getFilesWithUnknownSize(int limit) {
+    /**
+     * Returns the IDs of files with an unknown size.
+     *
+     * @param lastId Only return IDs after this one, null to start from the beginning
+     * @param limit Limit
+     * @return List of file IDs, ordered by ID
+     */
+    public List<String> getIdsWithUnknownSize(String lastId, int limit) {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
-        TypedQuery<File> q = em.createQuery("select f from File f where f.size = :size and f.deleteDate is null order by f.order asc", File.class);
+        TypedQuery<String> q = em.createQuery("select f.id from File f where f.size = :size and f.deleteDate is null"
+                + (lastId == null ? "" : " and f.id > :lastId") + " order by f.id asc", String.class);
         q.setParameter("size", File.UNKNOWN_SIZE);
+        if (lastId != null) {
+            q.setParameter("lastId", lastId);
+        }
         q.setMaxResults(limit);
         return q.getResultList();
     }
+
+    /**
+     * Returns the number of files with an unknown size.
+     *
+     * @return Number of files
+     */
+    public long countWithUnknownSize() {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        TypedQuery<Long> q = em.createQuery("select count(f.id) from File f where f.size = :size and f.deleteDate is null", Long.class);
+        q.setParameter("size", File.UNKNOWN_SIZE);
+        return q.getSingleResult();
+    }
+
+    /**
+     * Updates the size of files in a single query.
+     *
+     * @param sizeMap File sizes, indexed by file ID
+     */
+    public void updateSizes(Map<String, Long> sizeMap) {
+        if (sizeMap.isEmpty()) {
+            return;
+        }
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        StringBuilder sb = new StringBuilder("update File f set f.size = case f.id");
+        for (int i = 0; i < sizeMap.size(); i++) {
+            sb.append(" when :id").append(i).append(" then :size").append(i);
+        }
+        sb.append(" else f.size end where f.id in :idList");
+        Query q = em.createQuery(sb.toString());
+        int i = 0;
+        for (Map.Entry<String, Long> entry : sizeMap.entrySet()) {
+            q.setParameter("id" + i, entry.getKey());
+            q.setParameter("size" + i, entry.getValue());
+            i++;
+        }
+        q.setParameter("idList", sizeMap.keySet());
+        QueryUtil.executeUpdate(q);
+    }
 }
@@ -0,0 +1,151 @@
+package com.sismics.docs.core.dao;
+
+import com.sismics.docs.core.model.jpa.FileProcessing;
+import com.sismics.docs.core.util.jpa.QueryUtil;
+import com.sismics.util.context.ThreadLocalContext;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * File processing job DAO.
+ *
+ * @author agent
+ */
+public class FileProcessingDao {
+    /**
+     * Requests the processing of a file.
+     * If a processing is already pending, it is requested again.
+     *
+     * @param fileId File ID
+     * @param language Language of the file
+     * @param fileCreated True if the file has been created, false if it has been updated
+     */
+    public void enqueue(String fileId, String language, boolean fileCreated) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        FileProcessing fileProcessing = em.find(FileProcessing.class, fileId);
+        if (fileProcessing == null) {
+            em.persist(new FileProcessing()
+                    .setFileId(fileId)
+                    .setLanguage(language)
+                    .setFileCreated(fileCreated)
+                    .setCreateDate(new Date()));
+        } else {
+            // A created file not processed yet must still be added to the index
+            fileProcessing.setLanguage(language)
+                    .setFileCreated(fileProcessing.isFileCreated() || fileCreated)
+                    .setVersion(fileProcessing.getVersion() + 1);
+        }
+    }
+
+    /**
+     * Claims a file processing job, if it is not claimed or if its lease has expired.
+     *
+     * @param fileId File ID
+     * @param leaseOwner ID of the node claiming the job
+     * @param leaseExpirationDate Lease expiration date
+     * @return Claimed job, null if not found or claimed by another node
+     */
+    public FileProcessing claim(String fileId, String leaseOwner, Date leaseExpirationDate) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createQuery("update FileProcessing fp set fp.leaseOwner = :leaseOwner, fp.leaseExpirationDate = :leaseExpirationDate, fp.attemptCount = fp.attemptCount + 1" +
+                " where fp.fileId = :fileId and (fp.leaseExpirationDate is null or fp.leaseExpirationDate < :now)");
+        q.setParameter("leaseOwner", leaseOwner);
+        q.setParameter("leaseExpirationDate", leaseExpirationDate);
+        q.setParameter("fileId", fileId);
+        q.setParameter("now", new Date());
+        if (QueryUtil.executeUpdate(q) == 0) {
+            return null;
+        }
+        return ThreadLocalContext.get().getEntityManager().find(FileProcessing.class, fileId);
+    }
+
+    /**
+     * Extends the leases of file processing jobs.
+     *
+     * @param fileIdList File IDs
+     * @param leaseOwner ID of the node owning the leases
+     * @param leaseExpirationDate New lease expiration date
+     */
+    public void renew(Collection<String> fileIdList, String leaseOwner, Date leaseExpirationDate) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createQuery("update FileProcessing fp set fp.leaseExpirationDate = :leaseExpirationDate" +
+                " where fp.fileId in (:fileIdList) and fp.leaseOwner = :leaseOwner");
+        q.setParameter("leaseExpirationDate", leaseExpirationDate);
+        q.setParameter("fileIdList", fileIdList);
+        q.setParameter("leaseOwner", leaseOwner);
+        QueryUtil.executeUpdate(q);
+    }
+
+    /**
+     * Completes a claimed file processing job.
+     * If the processing has been requested again in the meantime, the job is released instead.
+     *
+     * @param fileProcessing Claimed job
+     * @param leaseOwner ID of the node owning the lease
+     */
+    public void complete(FileProcessing fileProcessing, String leaseOwner) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createQuery("delete FileProcessing fp where fp.fileId = :fileId and fp.version = :version and fp.leaseOwner = :leaseOwner");
+        q.setParameter("fileId", fileProcessing.getFileId());
+        q.setParameter("version", fileProcessing.getVersion());
+        q.setParameter("leaseOwner", leaseOwner);
+        if (QueryUtil.executeUpdate(q) == 0) {
+            q = em.createQuery("update FileProcessing fp set fp.leaseOwner = null, fp.leaseExpirationDate = null, fp.attemptCount = 0" +
+                    " where fp.fileId = :fileId and fp.leaseOwner = :leaseOwner");
+            q.setParameter("fileId", fileProcessing.getFileId());
+            q.setParameter("leaseOwner", leaseOwner);
+            QueryUtil.executeUpdate(q);
+        }
+    }
+
+    /**
+     * Returns the jobs which can be claimed, oldest first.
+     *
+     * @param createdBefore Only the jobs created before this date, unless their lease has expired
+     * @param limit Maximum number of jobs
+     * @return Jobs
+     */
+    public List<FileProcessing> findClaimable(Date createdBefore, int limit) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        TypedQuery<FileProcessing> q = em.createQuery("select fp from FileProcessing fp" +
+                " where (fp.leaseExpirationDate is null and fp.createDate < :createdBefore) or fp.leaseExpirationDate < :now" +
+                " order by fp.createDate", FileProcessing.class);
+        q.setParameter("createdBefore", createdBefore);
+        q.setParameter("now", new Date());
+        q.setMaxResults(limit);
+        return q.getResultList();
+    }
+
+    /**
+     * Returns the files having a pending processing.
+     *
+     * @param fileIdList File IDs
+     * @return IDs of the files having a pending processing
+     */
+    public Set<String> findPendingFileIds(Collection<String> fileIdList) {
+        if (fileIdList.isEmpty()) {
+            return new HashSet<>();
+        }
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        TypedQuery<String> q = em.createQuery("select fp.fileId from FileProcessing fp where fp.fileId in (:fileIdList)", String.class);
+        q.setParameter("fileIdList", fileIdList);
+        return new HashSet<>(q.getResultList());
+    }
+
+    /**
+     * Returns the number of pending jobs.
+     *
+     * @return Number of pending jobs
+     */
+    public long count() {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        return em.createQuery("select count(fp.fileId) from FileProcessing fp", Long.class).getSingleResult();
+    }
+}
@@ -7,6 +7,7 @@ import com.sismics.docs.core.dao.dto.GroupDto;
 import com.sismics.docs.core.model.jpa.Group;
 import com.sismics.docs.core.model.jpa.UserGroup;
 import com.sismics.docs.core.util.AuditLogUtil;
+import com.sismics.docs.core.util.PrincipalCacheUtil;
 import com.sismics.docs.core.util.jpa.QueryParam;
 import com.sismics.docs.core.util.jpa.QueryUtil;
 import com.sismics.docs.core.util.jpa.SortCriteria;
@@ -15,6 +16,8 @@ import com.sismics.util.context.ThreadLocalContext;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.Query;
+import org.hibernate.jpa.HibernateHints;
+
 import java.util.*;
 
 /**
@@ -33,6 +36,7 @@ public class GroupDao {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
         Query q = em.createQuery("select g from Group g where g.name = :name and g.deleteDate is null");
         q.setParameter("name", name);
+        q.setHint(HibernateHints.HINT_CACHEABLE, true);
         try {
             return (Group) q.getSingleResult();
         } catch (NoResultException e) {
@@ -50,6 +54,7 @@ public class GroupDao {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
         Query q = em.createQuery("select g from Group g where g.id = :id and g.deleteDate is null");
         q.setParameter("id", id);
+        q.setHint(HibernateHints.HINT_CACHEABLE, true);
         try {
             return (Group) q.getSingleResult();
         } catch (NoResultException e) {
@@ -100,16 +105,17 @@ public class GroupDao {
         q = em.createQuery("update UserGroup ug set ug.deleteDate = :dateNow where ug.groupId = :groupId and ug.deleteDate is not null");
         q.setParameter("dateNow", dateNow);
         q.setParameter("groupId", groupId);
-        q.executeUpdate();
+        QueryUtil.executeUpdate(q);
         
         q = em.createQuery("update Acl a set a.deleteDate = :dateNow where a.targetId = :groupId and a.deleteDate is null");
         q.setParameter("groupId", groupDb.getId());
         q.setParameter("dateNow", dateNow);
-        q.executeUpdate();
+        QueryUtil.executeUpdate(q);
 
         q = em.createQuery("update Group g set g.parentId = null where g.parentId = :groupId and g.deleteDate is null");
         q.setParameter("groupId", groupDb.getId());
-        q.executeUpdate();
+        QueryUtil.executeUpdate(q);
+        ThreadLocalContext.get().addAfterCommit(PrincipalCacheUtil::invalidateAll);
 
         // Create audit log
         AuditLogUtil.create(groupDb, AuditLogType.DELETE, userId);
@@ -128,6 +134,7 @@ public class GroupDao {
         // Create the user group
         EntityManager em = ThreadLocalContext.get().getEntityManager();
         em.persist(userGroup);
+        ThreadLocalContext.get().addAfterCommit(() -> PrincipalCacheUtil.invalidateUser(userGroup.getUserId()));
         
         return userGroup.getId();
     }
@@ -150,6 +157,7 @@ public class GroupDao {
         // Delete the user group
         Date dateNow = new Date();
         userGroupDb.setDeleteDate(dateNow);
+        ThreadLocalContext.get().addAfterCommit(() -> PrincipalCacheUtil.invalidateUser(userId));
     }
     
     /**
@@ -261,6 +269,7 @@ public class GroupDao {
         // Update the group
         groupDb.setName(group.getName());
         groupDb.setParentId(group.getParentId());
+        ThreadLocalContext.get().addAfterCommit(PrincipalCacheUtil::invalidateAll);
         
         // Create audit log
         AuditLogUtil.create(groupDb, AuditLogType.UPDATE, userId);
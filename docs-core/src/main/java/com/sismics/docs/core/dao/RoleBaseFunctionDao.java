@@ -4,7 +4,9 @@ import com.google.common.collect.Sets;
 import com.sismics.util.context.ThreadLocalContext;
 
 import jakarta.persistence.EntityManager;
-import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+
 import java.util.Set;
 
 /**
@@ -19,14 +21,14 @@ public class RoleBaseFunctionDao {
      * @param roleIdSet Set of role ID
      * @return Set of base functions
      */
-    @SuppressWarnings("unchecked")
     public Set<String> findByRoleId(Set<String> roleIdSet) {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
-        StringBuilder sb = new StringBuilder("select rbf.RBF_IDBASEFUNCTION_C from T_ROLE_BASE_FUNCTION rbf, T_ROLE r");
-        sb.append(" where rbf.RBF_IDROLE_C in (:roleIdSet) and rbf.RBF_DELETEDATE_D is null");
-        sb.append(" and r.ROL_ID_C = rbf.RBF_IDROLE_C and r.ROL_DELETEDATE_D is null");
-        Query q = em.createNativeQuery(sb.toString());
+        StringBuilder sb = new StringBuilder("select rbf.baseFunctionId from RoleBaseFunction rbf, Role r");
+        sb.append(" where rbf.roleId in (:roleIdSet) and rbf.deleteDate is null");
+        sb.append(" and r.id = rbf.roleId and r.deleteDate is null");
+        TypedQuery<String> q = em.createQuery(sb.toString(), String.class);
         q.setParameter("roleIdSet", roleIdSet);
+        q.setHint(HibernateHints.HINT_CACHEABLE, true);
         return Sets.newHashSet(q.getResultList());
     }
 }
@@ -98,14 +98,12 @@ public class RouteDao {
         Route route = em.find(Route.class, routeId);
         AuditLogUtil.create(route, AuditLogType.DELETE, userId);
 
-        em.createNativeQuery("update T_ROUTE_STEP rs set RTP_DELETEDATE_D = :dateNow where rs.RTP_IDROUTE_C = :routeId and rs.RTP_DELETEDATE_D is null")
+        QueryUtil.executeUpdate(QueryUtil.synchronizeTables(em.createNativeQuery("update T_ROUTE_STEP rs set RTP_DELETEDATE_D = :dateNow where rs.RTP_IDROUTE_C = :routeId and rs.RTP_DELETEDATE_D is null"), "T_ROUTE_STEP")
                 .setParameter("routeId", routeId)
-                .setParameter("dateNow", new Date())
-                .executeUpdate();
+                .setParameter("dateNow", new Date()));
 
-        em.createNativeQuery("update T_ROUTE r set RTE_DELETEDATE_D = :dateNow where r.RTE_ID_C = :routeId and r.RTE_DELETEDATE_D is null")
+        QueryUtil.executeUpdate(QueryUtil.synchronizeTables(em.createNativeQuery("update T_ROUTE r set RTE_DELETEDATE_D = :dateNow where r.RTE_ID_C = :routeId and r.RTE_DELETEDATE_D is null"), "T_ROUTE")
                 .setParameter("routeId", routeId)
-                .setParameter("dateNow", new Date())
-                .executeUpdate();
+                .setParameter("dateNow", new Date()));
     }
 }
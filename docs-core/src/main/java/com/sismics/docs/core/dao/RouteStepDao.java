@@ -143,12 +143,12 @@ public class RouteStepDao {
         sb.append(" where r.RTP_ID_C = :id");
 
         EntityManager em = ThreadLocalContext.get().getEntityManager();
-        Query q = em.createNativeQuery(sb.toString());
+        Query q = QueryUtil.synchronizeTables(em.createNativeQuery(sb.toString()), "T_ROUTE_STEP");
         q.setParameter("endDate", new Date());
         q.setParameter("transition", transition.name());
         q.setParameter("comment", comment);
         q.setParameter("validatorUserId", validatorUserId);
         q.setParameter("id", id);
-        q.executeUpdate();
+        QueryUtil.executeUpdate(q);
     }
 }
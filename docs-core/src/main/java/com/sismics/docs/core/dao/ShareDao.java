@@ -1,6 +1,7 @@
 package com.sismics.docs.core.dao;
 
 import com.sismics.docs.core.model.jpa.Share;
+import com.sismics.docs.core.util.jpa.QueryUtil;
 import com.sismics.util.context.ThreadLocalContext;
 
 import jakarta.persistence.EntityManager;
@@ -53,6 +54,6 @@ public class ShareDao {
         q = em.createQuery("update Acl a set a.deleteDate = :dateNow where a.targetId = :targetId");
         q.setParameter("targetId", id);
         q.setParameter("dateNow", dateNow);
-        q.executeUpdate();
+        QueryUtil.executeUpdate(q);
     }
 }
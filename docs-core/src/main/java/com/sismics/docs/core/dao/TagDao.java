@@ -81,6 +81,71 @@ public class TagDao {
         }
     }
     
+    /**
+     * Returns the tags linked to documents.
+     *
+     * @param documentIdList Document IDs
+     * @return Tag IDs indexed by document ID
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Set<String>> getTagIdsByDocumentIds(Collection<String> documentIdList) {
+        Map<String, Set<String>> tagIdMap = new HashMap<>();
+        if (documentIdList.isEmpty()) {
+            return tagIdMap;
+        }
+
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createQuery("select dt.documentId, dt.tagId from DocumentTag dt where dt.documentId in :documentIdList and dt.deleteDate is null");
+        q.setParameter("documentIdList", documentIdList);
+        List<Object[]> l = q.getResultList();
+        for (Object[] o : l) {
+            tagIdMap.computeIfAbsent((String) o[0], k -> new HashSet<>()).add((String) o[1]);
+        }
+        return tagIdMap;
+    }
+
+    /**
+     * Returns the tags readable by the targets on a list of documents, in a single query.
+     *
+     * @param documentIdList Document IDs
+     * @param targetIdList Target IDs used to check the tags permissions
+     * @return Tags sorted by name, indexed by document ID
+     */
+    public Map<String, List<TagDto>> findByDocumentIds(Collection<String> documentIdList, List<String> targetIdList) {
+        Map<String, List<TagDto>> tagDtoMap = new HashMap<>();
+        if (documentIdList.isEmpty()) {
+            return tagDtoMap;
+        }
+
+        Map<String, Object> parameterMap = new HashMap<>();
+        StringBuilder sb = new StringBuilder("select distinct dt.DOT_IDDOCUMENT_C as c0, t.TAG_ID_C as c1, t.TAG_NAME_C as c2, t.TAG_COLOR_C as c3, t.TAG_IDPARENT_C as c4, u.USE_USERNAME_C as c5 ");
+        sb.append(" from T_DOCUMENT_TAG dt ");
+        sb.append(" join T_TAG t on dt.DOT_IDTAG_C = t.TAG_ID_C and t.TAG_DELETEDATE_D is null ");
+        sb.append(" join T_USER u on t.TAG_IDUSER_C = u.USE_ID_C ");
+        if (targetIdList != null && !SecurityUtil.skipAclCheck(targetIdList)) {
+            sb.append(" join T_ACL a on a.ACL_TARGETID_C in (:targetIdList) and a.ACL_SOURCEID_C = t.TAG_ID_C and a.ACL_PERM_C = 'READ' and a.ACL_DELETEDATE_D is null ");
+            parameterMap.put("targetIdList", targetIdList);
+        }
+        sb.append(" where dt.DOT_IDDOCUMENT_C in (:documentIdList) and dt.DOT_DELETEDATE_D is null ");
+        sb.append(" order by c2 asc ");
+        parameterMap.put("documentIdList", documentIdList);
+
+        @SuppressWarnings("unchecked")
+        List<Object[]> l = QueryUtil.getNativeQuery(new QueryParam(sb.toString(), parameterMap)).getResultList();
+        for (Object[] o : l) {
+            int i = 0;
+            String documentId = (String) o[i++];
+            TagDto tagDto = new TagDto()
+                    .setId((String) o[i++])
+                    .setName((String) o[i++])
+                    .setColor((String) o[i++])
+                    .setParentId((String) o[i++])
+                    .setCreator((String) o[i]);
+            tagDtoMap.computeIfAbsent(documentId, k -> new ArrayList<>()).add(tagDto);
+        }
+        return tagDtoMap;
+    }
+
     /**
      * Creates a new tag.
      * 
@@ -125,16 +190,16 @@ public class TagDao {
         q = em.createQuery("update DocumentTag dt set dt.deleteDate = :dateNow where dt.tagId = :tagId and dt.deleteDate is not null");
         q.setParameter("dateNow", dateNow);
         q.setParameter("tagId", tagId);
-        q.executeUpdate();
+        QueryUtil.executeUpdate(q);
 
         q = em.createQuery("update Acl a set a.deleteDate = :dateNow where a.sourceId = :tagId and a.deleteDate is null");
         q.setParameter("tagId", tagId);
         q.setParameter("dateNow", dateNow);
-        q.executeUpdate();
+        QueryUtil.executeUpdate(q);
 
         q = em.createQuery("update Tag t set t.parentId = null where t.parentId = :tagId and t.deleteDate is null");
         q.setParameter("tagId", tagId);
-        q.executeUpdate();
+        QueryUtil.executeUpdate(q);
         
         // Create audit log
         AuditLogUtil.create(tagDb, AuditLogType.DELETE, userId);
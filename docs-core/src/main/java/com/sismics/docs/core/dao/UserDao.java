@@ -15,6 +15,7 @@ import com.sismics.docs.core.dao.dto.UserDto;
 import com.sismics.docs.core.model.jpa.User;
 import com.sismics.docs.core.util.AuditLogUtil;
 import com.sismics.docs.core.util.EncryptionUtil;
+import com.sismics.docs.core.util.PrincipalCacheUtil;
 import com.sismics.docs.core.util.jpa.QueryParam;
 import com.sismics.docs.core.util.jpa.QueryUtil;
 import com.sismics.docs.core.util.jpa.SortCriteria;
@@ -115,6 +116,7 @@ public class UserDao {
         userDb.setStorageCurrent(user.getStorageCurrent());
         userDb.setTotpKey(user.getTotpKey());
         userDb.setDisableDate(user.getDisableDate());
+        ThreadLocalContext.get().addAfterCommit(() -> PrincipalCacheUtil.invalidateUser(userDb.getId()));
 
         // Create audit log
         AuditLogUtil.create(userDb, AuditLogType.UPDATE, userId);
@@ -218,6 +220,27 @@ public class UserDao {
         }
     }
     
+    /**
+     * Gets the private keys of users.
+     *
+     * @param idList User IDs
+     * @return Private keys, indexed by user ID
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, String> getPrivateKeys(Collection<String> idList) {
+        Map<String, String> privateKeyMap = new HashMap<>();
+        if (idList.isEmpty()) {
+            return privateKeyMap;
+        }
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createQuery("select u.id, u.privateKey from User u where u.id in :idList");
+        q.setParameter("idList", idList);
+        for (Object[] o : (List<Object[]>) q.getResultList()) {
+            privateKeyMap.put((String) o[0], (String) o[1]);
+        }
+        return privateKeyMap;
+    }
+
     /**
      * Gets an active user by its username.
      * 
@@ -252,31 +275,33 @@ public class UserDao {
         // Delete the user
         Date dateNow = new Date();
         userDb.setDeleteDate(dateNow);
+        EncryptionUtil.invalidateSecretKey(userDb.getPrivateKey());
+        ThreadLocalContext.get().addAfterCommit(() -> PrincipalCacheUtil.invalidateUser(userDb.getId()));
 
         // Delete linked data
         q = em.createQuery("delete from AuthenticationToken at where at.userId = :userId");
         q.setParameter("userId", userDb.getId());
-        q.executeUpdate();
+        QueryUtil.executeUpdate(q);
         
         q = em.createQuery("update Document d set d.deleteDate = :dateNow where d.userId = :userId and d.deleteDate is null");
         q.setParameter("userId", userDb.getId());
         q.setParameter("dateNow", dateNow);
-        q.executeUpdate();
+        QueryUtil.executeUpdate(q);
         
         q = em.createQuery("update File f set f.deleteDate = :dateNow where f.userId = :userId and f.deleteDate is null");
         q.setParameter("userId", userDb.getId());
         q.setParameter("dateNow", dateNow);
-        q.executeUpdate();
+        QueryUtil.executeUpdate(q);
         
         q = em.createQuery("update Acl a set a.deleteDate = :dateNow where a.targetId = :userId and a.deleteDate is null");
         q.setParameter("userId", userDb.getId());
         q.setParameter("dateNow", dateNow);
-        q.executeUpdate();
+        QueryUtil.executeUpdate(q);
         
         q = em.createQuery("update Comment c set c.deleteDate = :dateNow where c.userId = :userId and c.deleteDate is null");
         q.setParameter("userId", userDb.getId());
         q.setParameter("dateNow", dateNow);
-        q.executeUpdate();
+        QueryUtil.executeUpdate(q);
         
         // Create audit log
         AuditLogUtil.create(userDb, AuditLogType.DELETE, userId);
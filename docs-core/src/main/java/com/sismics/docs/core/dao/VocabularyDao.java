@@ -6,6 +6,8 @@ import com.sismics.util.context.ThreadLocalContext;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.Query;
+import org.hibernate.jpa.HibernateHints;
+
 import java.util.List;
 import java.util.UUID;
 
@@ -45,6 +47,7 @@ public class VocabularyDao {
         // Get the entries
         Query q = em.createQuery("select v from Vocabulary v where v.name = :name order by v.order");
         q.setParameter("name", name);
+        q.setHint(HibernateHints.HINT_CACHEABLE, true);
         return q.getResultList();
     }
 
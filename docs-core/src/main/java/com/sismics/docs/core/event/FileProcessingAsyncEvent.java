@@ -0,0 +1,9 @@
+package com.sismics.docs.core.event;
+
+/**
+ * Pending file processing resumed from the database event.
+ *
+ * @author agent
+ */
+public class FileProcessingAsyncEvent extends FileEvent {
+}
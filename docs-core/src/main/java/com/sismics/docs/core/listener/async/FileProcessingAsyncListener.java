@@ -6,25 +6,25 @@ import com.sismics.docs.core.dao.FileDao;
 import com.sismics.docs.core.dao.UserDao;
 import com.sismics.docs.core.event.FileCreatedAsyncEvent;
 import com.sismics.docs.core.event.FileEvent;
+import com.sismics.docs.core.event.FileProcessingAsyncEvent;
 import com.sismics.docs.core.event.FileUpdatedAsyncEvent;
 import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.File;
+import com.sismics.docs.core.model.jpa.FileProcessing;
 import com.sismics.docs.core.model.jpa.User;
+import com.sismics.docs.core.service.FileProcessingService;
 import com.sismics.docs.core.util.DirectoryUtil;
 import com.sismics.docs.core.util.EncryptionUtil;
 import com.sismics.docs.core.util.FileUtil;
+import com.sismics.docs.core.util.RenditionUtil;
 import com.sismics.docs.core.util.TransactionUtil;
 import com.sismics.docs.core.util.format.FormatHandler;
 import com.sismics.docs.core.util.format.FormatHandlerUtil;
-import com.sismics.util.ImageUtil;
-import com.sismics.util.Scalr;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.crypto.Cipher;
-import javax.crypto.CipherOutputStream;
 import java.awt.image.BufferedImage;
-import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.MessageFormat;
@@ -41,6 +41,11 @@ public class FileProcessingAsyncListener {
      */
     private static final Logger log = LoggerFactory.getLogger(FileProcessingAsyncListener.class);
 
+    /**
+     * Maximum number of attempts to process a file, a processing crashing the server is not retried forever.
+     */
+    private static final int MAX_ATTEMPT_COUNT = 3;
+
     /**
      * File created.
      *
@@ -53,7 +58,7 @@ public class FileProcessingAsyncListener {
             log.info("File created event: " + event.toString());
         }
 
-        processFile(event, true);
+        processFile(event);
     }
 
     /**
@@ -66,7 +71,20 @@ public class FileProcessingAsyncListener {
     public void on(final FileUpdatedAsyncEvent event) {
         log.info("File updated event: " + event.toString());
 
-        processFile(event, false);
+        processFile(event);
+    }
+
+    /**
+     * Pending file processing resumed.
+     *
+     * @param event File processing event
+     */
+    @Subscribe
+    @AllowConcurrentEvents
+    public void on(final FileProcessingAsyncEvent event) {
+        log.info("File processing resumed event: " + event.toString());
+
+        processFile(event);
     }
 
     /**
@@ -75,15 +93,21 @@ public class FileProcessingAsyncListener {
      * Extract and save text content
      *
      * @param event File event
-     * @param isFileCreated True if the file was just created
      */
-    private void processFile(FileEvent event, boolean isFileCreated) {
+    private void processFile(FileEvent event) {
+        AtomicReference<FileProcessing> fileProcessing = new AtomicReference<>();
         AtomicReference<File> file = new AtomicReference<>();
         AtomicReference<User> user = new AtomicReference<>();
+        FileProcessingService fileProcessingService = AppContext.getInstance().getFileProcessingService();
 
-        // Open a first transaction to get what we need to start the processing
+        // Open a first transaction to claim the processing and get what we need to start it
         TransactionUtil.handle(() -> {
-            // Generate thumbnail, extract content
+            fileProcessing.set(fileProcessingService.claim(event.getFileId()));
+            if (fileProcessing.get() == null) {
+                // Already processed, or being processed by another node
+                return;
+            }
+
             file.set(new FileDao().getActiveById(event.getFileId()));
             if (file.get() == null) {
                 // The file has been deleted since
@@ -95,48 +119,89 @@ public class FileProcessingAsyncListener {
             user.set(userDao.getById(file.get().getUserId()));
         });
 
-        // Process the file outside of a transaction
-        if (user.get() == null || file.get() == null) {
-            // The user or file has been deleted
+        if (fileProcessing.get() == null) {
+            log.info("Processing already claimed for file: " + event.getFileId());
             FileUtil.endProcessingFile(event.getFileId());
             return;
         }
-        String content = extractContent(event, user.get(), file.get());
 
-        // Open a new transaction to save the file content
-        TransactionUtil.handle(() -> {
-            // Save the file to database
-            FileDao fileDao = new FileDao();
-            File freshFile = fileDao.getActiveById(event.getFileId());
-            if (freshFile == null) {
-                // The file has been deleted since the text extraction started, ignore the result
+        try {
+            // Process the file outside of a transaction
+            if (user.get() == null || file.get() == null) {
+                // The user or file has been deleted
                 return;
             }
+            if (fileProcessing.get().getAttemptCount() > MAX_ATTEMPT_COUNT) {
+                log.error("Giving up processing file after " + MAX_ATTEMPT_COUNT + " attempts: " + fileProcessing.get());
+                return;
+            }
+            Path unencryptedFile = getUnencryptedFile(event, user.get(), file.get());
+            if (unencryptedFile == null) {
+                return;
+            }
+            String content = extractContent(fileProcessing.get().getLanguage(), unencryptedFile, user.get(), file.get());
+
+            // Open a new transaction to save the file content
+            TransactionUtil.handle(() -> {
+                // Save the file to database
+                FileDao fileDao = new FileDao();
+                File freshFile = fileDao.getActiveById(event.getFileId());
+                if (freshFile == null) {
+                    // The file has been deleted since the text extraction started, ignore the result
+                    return;
+                }
 
-            freshFile.setContent(content);
-            fileDao.update(freshFile);
+                fileDao.updateContent(freshFile.getId(), content);
+                freshFile.setContent(content);
 
-            // Update index with the updated file
-            if (isFileCreated) {
-                AppContext.getInstance().getIndexingHandler().createFile(freshFile);
-            } else {
-                AppContext.getInstance().getIndexingHandler().updateFile(freshFile);
-            }
-        });
+                // Update index with the updated file
+                if (fileProcessing.get().isFileCreated()) {
+                    AppContext.getInstance().getIndexingHandler().createFile(freshFile);
+                } else {
+                    AppContext.getInstance().getIndexingHandler().updateFile(freshFile);
+                }
+            });
+        } finally {
+            // Remove the job, or release it if the processing has been requested again in the meantime
+            TransactionUtil.handle(() -> fileProcessingService.complete(fileProcessing.get()));
+            FileUtil.endProcessingFile(event.getFileId());
+        }
+    }
 
-        FileUtil.endProcessingFile(event.getFileId());
+    /**
+     * Returns the unencrypted file to process.
+     * A resumed processing doesn't have it anymore, the stored file is decrypted again.
+     *
+     * @param event File event
+     * @param user User whom created the file
+     * @param file Fresh file
+     * @return Unencrypted file, null if it cannot be decrypted
+     */
+    private Path getUnencryptedFile(FileEvent event, User user, File file) {
+        if (event.getUnencryptedFile() != null && Files.exists(event.getUnencryptedFile())) {
+            return event.getUnencryptedFile();
+        }
+
+        try {
+            Path storedFile = DirectoryUtil.getStorageDirectory().resolve(file.getId());
+            return EncryptionUtil.decryptFile(storedFile, user.getPrivateKey());
+        } catch (Exception e) {
+            log.error("Unable to decrypt file: " + file, e);
+            return null;
+        }
     }
 
     /**
      * Extract text content from a file.
      * This is executed outside of a transaction.
      *
-     * @param event File event
+     * @param language Language of the file
+     * @param unencryptedFile Unencrypted file
      * @param user User whom created the file
      * @param file Fresh file
      * @return Text content
      */
-    private String extractContent(FileEvent event, User user, File file) {
+    private String extractContent(String language, Path unencryptedFile, User user, File file) {
         // Find a format handler
         FormatHandler formatHandler = FormatHandlerUtil.find(file.getMimeType());
         if (formatHandler == null) {
@@ -147,24 +212,10 @@ public class FileProcessingAsyncListener {
         // Generate file variations
         try {
             Cipher cipher = EncryptionUtil.getEncryptionCipher(user.getPrivateKey());
-            BufferedImage image = formatHandler.generateThumbnail(event.getUnencryptedFile());
+            BufferedImage image = formatHandler.generateThumbnail(unencryptedFile, RenditionUtil.getLargestSize());
             if (image != null) {
-                // Generate thumbnails from image
-                BufferedImage web = Scalr.resize(image, Scalr.Method.ULTRA_QUALITY, Scalr.Mode.AUTOMATIC, 1280);
-                BufferedImage thumbnail = Scalr.resize(image, Scalr.Method.ULTRA_QUALITY, Scalr.Mode.AUTOMATIC, 256);
-                image.flush();
-
-                // Write "web" encrypted image
-                Path outputFile = DirectoryUtil.getStorageDirectory().resolve(file.getId() + "_web");
-                try (OutputStream outputStream = new CipherOutputStream(Files.newOutputStream(outputFile), cipher)) {
-                    ImageUtil.writeJpeg(web, outputStream);
-                }
-
-                // Write "thumb" encrypted image
-                outputFile = DirectoryUtil.getStorageDirectory().resolve(file.getId() + "_thumb");
-                try (OutputStream outputStream = new CipherOutputStream(Files.newOutputStream(outputFile), cipher)) {
-                    ImageUtil.writeJpeg(thumbnail, outputStream);
-                }
+                // Generate the encrypted renditions from image
+                RenditionUtil.writeRenditions(image, file.getId(), cipher);
             }
         } catch (Throwable e) {
             log.error("Unable to generate thumbnails for: " + file, e);
@@ -175,7 +226,7 @@ public class FileProcessingAsyncListener {
         String content = null;
         log.info("Start extracting content from: " + file);
         try {
-            content = formatHandler.extractContent(event.getLanguage(), event.getUnencryptedFile());
+            content = formatHandler.extractContent(language, unencryptedFile);
         } catch (Throwable e) {
             log.error("Error extracting content from: " + file, e);
         }
@@ -2,16 +2,18 @@ package com.sismics.docs.core.model.context;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
-import com.google.common.eventbus.AsyncEventBus;
-import com.google.common.eventbus.EventBus;
 import com.sismics.docs.core.constant.Constants;
 import com.sismics.docs.core.dao.UserDao;
 import com.sismics.docs.core.listener.async.*;
 import com.sismics.docs.core.model.jpa.User;
+import com.sismics.docs.core.service.FileProcessingService;
 import com.sismics.docs.core.service.FileService;
 import com.sismics.docs.core.service.FileSizeService;
 import com.sismics.docs.core.service.InboxService;
+import com.sismics.docs.core.service.LastConnectionService;
+import com.sismics.docs.core.util.OcrExecutor;
 import com.sismics.docs.core.util.PdfUtil;
+import com.sismics.docs.core.util.ZipExporter;
 import com.sismics.docs.core.util.indexing.IndexingHandler;
 import com.sismics.util.ClasspathScanner;
 import com.sismics.util.EnvironmentUtil;
@@ -20,9 +22,6 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -42,14 +41,9 @@ public class AppContext {
     private static AppContext instance;
 
     /**
-     * Generic asynchronous event bus.
+     * Asynchronous event queues.
      */
-    private EventBus asyncEventBus;
-
-    /**
-     * Asynchronous bus for email sending.
-     */
-    private EventBus mailEventBus;
+    private List<EventQueue> eventQueueList;
 
     /**
      * Indexing handler.
@@ -72,15 +66,36 @@ public class AppContext {
     private FileSizeService fileSizeService;
 
     /**
-     * Asynchronous executors.
+     * Last connection service.
+     */
+    private LastConnectionService lastConnectionService;
+
+    /**
+     * File processing service.
+     */
+    private FileProcessingService fileProcessingService;
+
+    /**
+     * OCR executor.
      */
-    private List<ThreadPoolExecutor> asyncExecutorList;
+    private OcrExecutor ocrExecutor;
+
+    /**
+     * ZIP exporter.
+     */
+    private ZipExporter zipExporter;
 
     /**
      * Start the application context.
      */
     private void startUp() {
-        resetEventBus();
+        resetEventQueues();
+
+        // OCR executor, shared by all the file processing threads
+        ocrExecutor = new OcrExecutor(getOcrThreadCount());
+
+        // ZIP exporter, decrypting ahead the files of all the exports
+        zipExporter = new ZipExporter(Math.min(4, Runtime.getRuntime().availableProcessors()));
 
         // Start indexing handler
         try {
@@ -108,10 +123,19 @@ public class AppContext {
         inboxService.startAsync();
         inboxService.awaitRunning();
 
-        // Start file size service
+        // Start file size service, not awaited: it stops itself as soon as the backfill is done
         fileSizeService = new FileSizeService();
         fileSizeService.startAsync();
-        fileSizeService.awaitRunning();
+
+        // Start last connection service
+        lastConnectionService = new LastConnectionService();
+        lastConnectionService.startAsync();
+        lastConnectionService.awaitRunning();
+
+        // Start file processing service, resumes the pending file processing
+        fileProcessingService = new FileProcessingService();
+        fileProcessingService.startAsync();
+        fileProcessingService.awaitRunning();
 
         // Register fonts
         PdfUtil.registerFonts();
@@ -140,25 +164,59 @@ public class AppContext {
     }
 
     /**
-     * (Re)-initializes the event buses.
+     * Returns the maximum number of concurrent OCR processes, one per processor by default.
+     *
+     * @return OCR thread count
+     */
+    private int getOcrThreadCount() {
+        String envOcrThreadCount = System.getenv(Constants.OCR_THREAD_COUNT_ENV);
+        if (!Strings.isNullOrEmpty(envOcrThreadCount)) {
+            try {
+                int ocrThreadCount = Integer.parseInt(envOcrThreadCount);
+                if (ocrThreadCount > 0) {
+                    return ocrThreadCount;
+                }
+            } catch (NumberFormatException e) {
+                // NOP
+            }
+            log.warn(Constants.OCR_THREAD_COUNT_ENV + " needs to be a positive number, falling back to the number of processors");
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * (Re)-initializes the event queues.
+     * Light events (indexing, webhooks, emails) never wait behind file processing and index rebuilds.
      */
-    private void resetEventBus() {
-        asyncExecutorList = new ArrayList<>();
-
-        asyncEventBus = newAsyncEventBus();
-        asyncEventBus.register(new FileProcessingAsyncListener());
-        asyncEventBus.register(new FileDeletedAsyncListener());
-        asyncEventBus.register(new DocumentCreatedAsyncListener());
-        asyncEventBus.register(new DocumentUpdatedAsyncListener());
-        asyncEventBus.register(new DocumentDeletedAsyncListener());
-        asyncEventBus.register(new RebuildIndexAsyncListener());
-        asyncEventBus.register(new AclCreatedAsyncListener());
-        asyncEventBus.register(new AclDeletedAsyncListener());
-        asyncEventBus.register(new WebhookAsyncListener());
-
-        mailEventBus = newAsyncEventBus();
-        mailEventBus.register(new PasswordLostAsyncListener());
-        mailEventBus.register(new RouteStepValidateAsyncListener());
+    private void resetEventQueues() {
+        eventQueueList = new ArrayList<>();
+
+        // File processing (thumbnails, OCR), heavy: bounded, blocks the uploaders when full
+        int fileThreadCount = Math.max(Runtime.getRuntime().availableProcessors() / 2, 2);
+        EventQueue fileQueue = newEventQueue("file", fileThreadCount, 1000, EventQueue.RejectionPolicy.BLOCK);
+        fileQueue.register(new FileProcessingAsyncListener());
+
+        // Index updates, light
+        EventQueue indexQueue = newEventQueue("index", 2, 10000, EventQueue.RejectionPolicy.BLOCK);
+        indexQueue.register(new FileDeletedAsyncListener());
+        indexQueue.register(new DocumentCreatedAsyncListener());
+        indexQueue.register(new DocumentUpdatedAsyncListener());
+        indexQueue.register(new DocumentDeletedAsyncListener());
+        indexQueue.register(new AclCreatedAsyncListener());
+        indexQueue.register(new AclDeletedAsyncListener());
+
+        // Full index rebuild, heavy and rare
+        EventQueue rebuildQueue = newEventQueue("rebuild", 1, 10, EventQueue.RejectionPolicy.BLOCK);
+        rebuildQueue.register(new RebuildIndexAsyncListener());
+
+        // Webhooks, depending on remote servers: discarded rather than slowing down the application
+        EventQueue webhookQueue = newEventQueue("webhook", 2, 1000, EventQueue.RejectionPolicy.DISCARD);
+        webhookQueue.register(new WebhookAsyncListener());
+
+        // Emails
+        EventQueue mailQueue = newEventQueue("mail", 1, 1000, EventQueue.RejectionPolicy.BLOCK);
+        mailQueue.register(new PasswordLostAsyncListener());
+        mailQueue.register(new RouteStepValidateAsyncListener());
     }
 
     /**
@@ -175,20 +233,33 @@ public class AppContext {
     }
 
     /**
-     * Creates a new asynchronous event bus.
+     * Creates a new event queue.
      *
-     * @return Async event bus
+     * @param name Queue name
+     * @param threadCount Number of threads
+     * @param capacity Maximum number of events waiting to be processed
+     * @param rejectionPolicy What to do with an event when the queue is full
+     * @return Event queue
      */
-    private EventBus newAsyncEventBus() {
+    private EventQueue newEventQueue(String name, int threadCount, int capacity, EventQueue.RejectionPolicy rejectionPolicy) {
+        EventQueue eventQueue;
         if (EnvironmentUtil.isUnitTest()) {
-            return new EventBus();
+            eventQueue = new EventQueue(name);
         } else {
-            int threadCount = Math.max(Runtime.getRuntime().availableProcessors() / 2, 2);
-            ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount,
-                    1L, TimeUnit.MINUTES,
-                    new LinkedBlockingQueue<>());
-            asyncExecutorList.add(executor);
-            return new AsyncEventBus(executor);
+            eventQueue = new EventQueue(name, threadCount, capacity, rejectionPolicy);
+        }
+        eventQueueList.add(eventQueue);
+        return eventQueue;
+    }
+
+    /**
+     * Posts an asynchronous event to the listeners of all the event queues.
+     *
+     * @param event Event
+     */
+    public void postAsyncEvent(Object event) {
+        for (EventQueue eventQueue : eventQueueList) {
+            eventQueue.post(event);
         }
     }
 
@@ -199,18 +270,29 @@ public class AppContext {
      */
     public int getQueuedTaskCount() {
         int queueSize = 0;
-        for (ThreadPoolExecutor executor : asyncExecutorList) {
-            queueSize += executor.getTaskCount() - executor.getCompletedTaskCount();
+        for (EventQueue eventQueue : eventQueueList) {
+            queueSize += eventQueue.getDepth() + eventQueue.getActiveCount();
         }
         return queueSize;
     }
 
-    public EventBus getAsyncEventBus() {
-        return asyncEventBus;
+    public List<EventQueue> getEventQueueList() {
+        return eventQueueList;
     }
 
-    public EventBus getMailEventBus() {
-        return mailEventBus;
+    /**
+     * Returns an event queue by its name.
+     *
+     * @param name Queue name
+     * @return Event queue
+     */
+    public EventQueue getEventQueue(String name) {
+        for (EventQueue eventQueue : eventQueueList) {
+            if (eventQueue.getName().equals(name)) {
+                return eventQueue;
+            }
+        }
+        throw new IllegalArgumentException("Unknown event queue: " + name);
     }
 
     public IndexingHandler getIndexingHandler() {
@@ -225,17 +307,49 @@ public class AppContext {
         return fileService;
     }
 
+    public FileSizeService getFileSizeService() {
+        return fileSizeService;
+    }
+
+    public LastConnectionService getLastConnectionService() {
+        return lastConnectionService;
+    }
+
+    public FileProcessingService getFileProcessingService() {
+        return fileProcessingService;
+    }
+
+    public OcrExecutor getOcrExecutor() {
+        return ocrExecutor;
+    }
+
+    public ZipExporter getZipExporter() {
+        return zipExporter;
+    }
+
     public void shutDown() {
-        for (ExecutorService executor : asyncExecutorList) {
+        if (fileProcessingService != null) {
+            fileProcessingService.stopAsync();
+            fileProcessingService.awaitTerminated();
+        }
+
+        for (EventQueue eventQueue : eventQueueList) {
             // Shutdown executor, don't accept any more tasks (can cause error with nested events)
             try {
-                executor.shutdown();
-                executor.awaitTermination(1, TimeUnit.MINUTES);
+                eventQueue.shutDown(1, TimeUnit.MINUTES);
             } catch (InterruptedException e) {
                 // NOP
             }
         }
 
+        if (ocrExecutor != null) {
+            ocrExecutor.shutDown();
+        }
+
+        if (zipExporter != null) {
+            zipExporter.shutDown();
+        }
+
         if (indexingHandler != null) {
             indexingHandler.shutDown();
         }
@@ -253,6 +367,11 @@ public class AppContext {
             fileSizeService.stopAsync();
         }
 
+        if (lastConnectionService != null) {
+            lastConnectionService.stopAsync();
+            lastConnectionService.awaitTerminated();
+        }
+
         instance = null;
     }
 }
@@ -0,0 +1,285 @@
+package com.sismics.docs.core.model.context;
+
+import com.google.common.eventbus.AsyncEventBus;
+import com.google.common.eventbus.EventBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Asynchronous event queue.
+ * The events of the listeners registered on a queue are processed by its own bounded executor,
+ * so that slow listeners don't delay the others. Queues are isolated by their workers, not prioritized.
+ *
+ * @author agent
+ */
+public class EventQueue {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(EventQueue.class);
+
+    /**
+     * True in the threads of all event queues.
+     */
+    private static final ThreadLocal<Boolean> workerThread = ThreadLocal.withInitial(() -> false);
+
+    /**
+     * What to do with an event when the queue is full.
+     */
+    public enum RejectionPolicy {
+        /**
+         * Block the posting thread until there is room in the queue.
+         * Events posted from an event queue thread are processed in this thread instead, to avoid deadlocks.
+         */
+        BLOCK,
+
+        /**
+         * Discard the event.
+         */
+        DISCARD
+    }
+
+    /**
+     * Queue name.
+     */
+    private final String name;
+
+    /**
+     * Event bus.
+     */
+    private final EventBus eventBus;
+
+    /**
+     * Executor, null if the events are processed synchronously.
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Queue capacity.
+     */
+    private final int capacity;
+
+    /**
+     * Number of rejected events.
+     */
+    private final LongAdder rejectedCount = new LongAdder();
+
+    /**
+     * Number of processed events.
+     */
+    private final LongAdder processedCount = new LongAdder();
+
+    /**
+     * Total time spent by the events in the queue.
+     */
+    private final LongAdder totalWaitMs = new LongAdder();
+
+    /**
+     * Maximum time spent by an event in the queue.
+     */
+    private final AtomicLong maxWaitMs = new AtomicLong();
+
+    /**
+     * Total processing time of the events.
+     */
+    private final LongAdder totalProcessingMs = new LongAdder();
+
+    /**
+     * Creates a synchronous event queue, used in unit tests.
+     *
+     * @param name Queue name
+     */
+    public EventQueue(String name) {
+        this.name = name;
+        this.capacity = 0;
+        this.executor = null;
+        this.eventBus = new EventBus(name);
+    }
+
+    /**
+     * Creates an asynchronous event queue.
+     *
+     * @param name Queue name
+     * @param threadCount Number of threads
+     * @param capacity Maximum number of events waiting to be processed
+     * @param rejectionPolicy What to do with an event when the queue is full
+     */
+    public EventQueue(String name, int threadCount, int capacity, RejectionPolicy rejectionPolicy) {
+        this.name = name;
+        this.capacity = capacity;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threadCount, threadCount,
+                1L, TimeUnit.MINUTES,
+                new ArrayBlockingQueue<>(capacity),
+                runnable -> {
+                    Thread thread = new Thread(() -> {
+                        workerThread.set(true);
+                        runnable.run();
+                    }, "event-" + name + "-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, executor) -> reject(runnable, executor, rejectionPolicy));
+        this.eventBus = new AsyncEventBus(name, command -> executor.execute(new TimedRunnable(command)));
+    }
+
+    /**
+     * Handles an event rejected by the executor.
+     *
+     * @param runnable Event processing
+     * @param executor Executor
+     * @param rejectionPolicy Rejection policy
+     */
+    private void reject(Runnable runnable, ThreadPoolExecutor executor, RejectionPolicy rejectionPolicy) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Event queue " + name + " is shut down");
+        }
+
+        if (rejectionPolicy == RejectionPolicy.BLOCK) {
+            if (workerThread.get()) {
+                runnable.run();
+                return;
+            }
+            try {
+                executor.getQueue().put(runnable);
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        rejectedCount.increment();
+        log.warn("Event queue " + name + " is full, discarding an event");
+    }
+
+    /**
+     * Registers a listener.
+     *
+     * @param listener Listener
+     */
+    public void register(Object listener) {
+        eventBus.register(listener);
+    }
+
+    /**
+     * Posts an event to the listeners of this queue.
+     *
+     * @param event Event
+     */
+    public void post(Object event) {
+        eventBus.post(event);
+    }
+
+    /**
+     * Stops accepting events and waits for the queued events to be processed.
+     *
+     * @param timeout Maximum time to wait
+     * @param unit Time unit
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void shutDown(long timeout, TimeUnit unit) throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(timeout, unit);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of events waiting to be processed.
+     *
+     * @return Queue depth
+     */
+    public int getDepth() {
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    /**
+     * Returns the number of events being processed.
+     *
+     * @return Active count
+     */
+    public int getActiveCount() {
+        return executor == null ? 0 : executor.getActiveCount();
+    }
+
+    public long getProcessedCount() {
+        return processedCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * Returns the average time spent by the events in the queue before being processed.
+     *
+     * @return Average wait time in milliseconds
+     */
+    public long getAverageWaitMs() {
+        long count = processedCount.sum();
+        return count == 0 ? 0 : totalWaitMs.sum() / count;
+    }
+
+    public long getMaxWaitMs() {
+        return maxWaitMs.get();
+    }
+
+    /**
+     * Returns the average processing time of the events.
+     *
+     * @return Average processing time in milliseconds
+     */
+    public long getAverageProcessingMs() {
+        long count = processedCount.sum();
+        return count == 0 ? 0 : totalProcessingMs.sum() / count;
+    }
+
+    /**
+     * Event processing, recording its wait and processing times.
+     */
+    private class TimedRunnable implements Runnable {
+        /**
+         * Event processing.
+         */
+        private final Runnable runnable;
+
+        /**
+         * Posting timestamp.
+         */
+        private final long postTimestamp = System.currentTimeMillis();
+
+        private TimedRunnable(Runnable runnable) {
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            long startTimestamp = System.currentTimeMillis();
+            long waitMs = startTimestamp - postTimestamp;
+            totalWaitMs.add(waitMs);
+            maxWaitMs.accumulateAndGet(waitMs, Math::max);
+            try {
+                runnable.run();
+            } finally {
+                totalProcessingMs.add(System.currentTimeMillis() - startTimestamp);
+                processedCount.increment();
+            }
+        }
+    }
+}
@@ -48,8 +48,9 @@ public class File implements Loggable {
 
     /**
      * OCR-ized content.
+     * Stored in {@link FileContent}, only loaded by {@link com.sismics.docs.core.dao.FileDao#loadContent}.
      */
-    @Column(name = "FIL_CONTENT_C")
+    @Transient
     private String content;
     
     /**
@@ -96,6 +97,18 @@ public class File implements Loggable {
     @Column(name = "FIL_SIZE_N", nullable = false)
     private Long size;
 
+    /**
+     * SHA-256 of the plaintext content, null for the files uploaded before it was computed.
+     */
+    @Column(name = "FIL_CONTENTHASH_C", length = 64)
+    private String contentHash;
+
+    /**
+     * True if the content is stored once with a hard link to an identical file.
+     */
+    @Column(name = "FIL_LINKED_B", nullable = false)
+    private boolean linked;
+
     /**
      * Private key to decrypt the file.
      * Not saved to database, of course.
@@ -224,6 +237,24 @@ public class File implements Loggable {
         return this;
     }
 
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public File setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+        return this;
+    }
+
+    public boolean isLinked() {
+        return linked;
+    }
+
+    public File setLinked(boolean linked) {
+        this.linked = linked;
+        return this;
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
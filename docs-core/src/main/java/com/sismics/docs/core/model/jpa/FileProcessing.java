@@ -0,0 +1,150 @@
+package com.sismics.docs.core.model.jpa;
+
+import com.google.common.base.MoreObjects;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.util.Date;
+
+/**
+ * Pending file processing job (thumbnails and content extraction).
+ * A node processes a job after claiming it with a lease, an expired lease can be claimed by another node.
+ *
+ * @author agent
+ */
+@Entity
+@Table(name = "T_FILE_PROCESSING")
+public class FileProcessing {
+    /**
+     * File ID.
+     */
+    @Id
+    @Column(name = "FPR_IDFILE_C", length = 36)
+    private String fileId;
+
+    /**
+     * Language of the file.
+     */
+    @Column(name = "FPR_LANGUAGE_C", length = 7)
+    private String language;
+
+    /**
+     * True if the file has been created, false if it has been updated.
+     */
+    @Column(name = "FPR_FILECREATED_B", nullable = false)
+    private boolean fileCreated;
+
+    /**
+     * Incremented each time the processing is requested again.
+     */
+    @Column(name = "FPR_VERSION_N", nullable = false)
+    private int version;
+
+    /**
+     * Number of claims.
+     */
+    @Column(name = "FPR_ATTEMPT_N", nullable = false)
+    private int attemptCount;
+
+    /**
+     * ID of the node processing the file.
+     */
+    @Column(name = "FPR_LEASEOWNER_C", length = 36)
+    private String leaseOwner;
+
+    /**
+     * Lease expiration date.
+     */
+    @Column(name = "FPR_LEASEEXPIRATION_D")
+    private Date leaseExpirationDate;
+
+    /**
+     * Creation date.
+     */
+    @Column(name = "FPR_CREATEDATE_D", nullable = false)
+    private Date createDate;
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    public FileProcessing setFileId(String fileId) {
+        this.fileId = fileId;
+        return this;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public FileProcessing setLanguage(String language) {
+        this.language = language;
+        return this;
+    }
+
+    public boolean isFileCreated() {
+        return fileCreated;
+    }
+
+    public FileProcessing setFileCreated(boolean fileCreated) {
+        this.fileCreated = fileCreated;
+        return this;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public FileProcessing setVersion(int version) {
+        this.version = version;
+        return this;
+    }
+
+    public int getAttemptCount() {
+        return attemptCount;
+    }
+
+    public FileProcessing setAttemptCount(int attemptCount) {
+        this.attemptCount = attemptCount;
+        return this;
+    }
+
+    public String getLeaseOwner() {
+        return leaseOwner;
+    }
+
+    public FileProcessing setLeaseOwner(String leaseOwner) {
+        this.leaseOwner = leaseOwner;
+        return this;
+    }
+
+    public Date getLeaseExpirationDate() {
+        return leaseExpirationDate;
+    }
+
+    public FileProcessing setLeaseExpirationDate(Date leaseExpirationDate) {
+        this.leaseExpirationDate = leaseExpirationDate;
+        return this;
+    }
+
+    public Date getCreateDate() {
+        return createDate;
+    }
+
+    public FileProcessing setCreateDate(Date createDate) {
+        this.createDate = createDate;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("fileId", fileId)
+                .add("version", version)
+                .add("attemptCount", attemptCount)
+                .add("leaseOwner", leaseOwner)
+                .toString();
+    }
+}
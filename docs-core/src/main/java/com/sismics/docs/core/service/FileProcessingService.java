@@ -0,0 +1,170 @@
+package com.sismics.docs.core.service;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.sismics.docs.core.dao.FileProcessingDao;
+import com.sismics.docs.core.event.FileProcessingAsyncEvent;
+import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.model.context.EventQueue;
+import com.sismics.docs.core.model.jpa.FileProcessing;
+import com.sismics.docs.core.util.FileUtil;
+import com.sismics.docs.core.util.TransactionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable file processing queue.
+ * Pending file processing jobs are stored in the database, a node claims a job with a lease before processing it.
+ * This service renews the leases of the jobs processed by this node, and resumes the jobs left pending by a restart
+ * or by a crashed node once their lease has expired.
+ *
+ * @author agent
+ */
+public class FileProcessingService extends AbstractScheduledService {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(FileProcessingService.class);
+
+    /**
+     * ID of this node.
+     */
+    public static final String NODE_ID = UUID.randomUUID().toString();
+
+    /**
+     * Lease duration in milliseconds.
+     */
+    public static final long LEASE_DURATION_MS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * Delay before a job not claimed yet is resumed, leaving time to the node which requested it.
+     */
+    private static final long RESUME_DELAY_MS = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Maximum number of jobs resumed by iteration when the file event queue is synchronous.
+     */
+    private static final int RESUME_BATCH_SIZE = 10;
+
+    /**
+     * IDs of the files processed by this node.
+     */
+    private final Set<String> claimedFileIdSet = ConcurrentHashMap.newKeySet();
+
+    public FileProcessingService() {
+    }
+
+    @Override
+    protected void startUp() {
+        log.info("File processing service starting up");
+    }
+
+    @Override
+    protected void shutDown() {
+        log.info("File processing service shutting down");
+    }
+
+    @Override
+    protected void runOneIteration() {
+        try {
+            renewLeases();
+            resumePendingJobs();
+        } catch (Throwable e) {
+            log.error("Exception during file processing service iteration", e);
+        }
+    }
+
+    @Override
+    protected Scheduler scheduler() {
+        return Scheduler.newFixedDelaySchedule(10, 30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns a new lease expiration date.
+     *
+     * @return Lease expiration date
+     */
+    public static Date newLeaseExpirationDate() {
+        return new Date(System.currentTimeMillis() + LEASE_DURATION_MS);
+    }
+
+    /**
+     * Claims a file processing job for this node.
+     *
+     * @param fileId File ID
+     * @return Claimed job, null if there is nothing to process or if it is claimed by another node
+     */
+    public FileProcessing claim(String fileId) {
+        FileProcessing fileProcessing = new FileProcessingDao().claim(fileId, NODE_ID, newLeaseExpirationDate());
+        if (fileProcessing != null) {
+            claimedFileIdSet.add(fileId);
+        }
+        return fileProcessing;
+    }
+
+    /**
+     * Completes a file processing job claimed by this node.
+     *
+     * @param fileProcessing Claimed job
+     */
+    public void complete(FileProcessing fileProcessing) {
+        new FileProcessingDao().complete(fileProcessing, NODE_ID);
+        claimedFileIdSet.remove(fileProcessing.getFileId());
+    }
+
+    /**
+     * Renews the leases of the jobs being processed by this node.
+     */
+    private void renewLeases() {
+        List<String> fileIdList = new ArrayList<>(claimedFileIdSet);
+        if (fileIdList.isEmpty()) {
+            return;
+        }
+        TransactionUtil.handle(() -> new FileProcessingDao().renew(fileIdList, NODE_ID, newLeaseExpirationDate()));
+    }
+
+    /**
+     * Resumes the pending jobs not claimed by any node, as much as the file event queue can accept.
+     */
+    public void resumePendingJobs() {
+        EventQueue fileQueue = AppContext.getInstance().getEventQueue("file");
+        int limit = fileQueue.getCapacity() == 0 ? RESUME_BATCH_SIZE : fileQueue.getCapacity() - fileQueue.getDepth();
+        if (limit <= 0) {
+            return;
+        }
+
+        List<FileProcessing> fileProcessingList = new ArrayList<>();
+        TransactionUtil.handle(() -> fileProcessingList.addAll(new FileProcessingDao()
+                .findClaimable(new Date(System.currentTimeMillis() - RESUME_DELAY_MS), limit)));
+
+        for (FileProcessing fileProcessing : fileProcessingList) {
+            if (FileUtil.isProcessingFileLocally(fileProcessing.getFileId())) {
+                // Already queued on this node
+                continue;
+            }
+
+            log.info("Resuming the processing of file: " + fileProcessing.getFileId());
+            FileUtil.markProcessingFileLocally(fileProcessing.getFileId());
+            FileProcessingAsyncEvent event = new FileProcessingAsyncEvent();
+            event.setFileId(fileProcessing.getFileId());
+            event.setLanguage(fileProcessing.getLanguage());
+            fileQueue.post(event);
+        }
+    }
+
+    /**
+     * Returns the number of jobs being processed by this node.
+     *
+     * @return Number of claimed jobs
+     */
+    public int getClaimedCount() {
+        return claimedFileIdSet.size();
+    }
+}
@@ -2,19 +2,21 @@ package com.sismics.docs.core.service;
 
 import com.google.common.util.concurrent.AbstractScheduledService;
 import com.sismics.docs.core.dao.FileDao;
-import com.sismics.docs.core.dao.UserDao;
 import com.sismics.docs.core.model.jpa.File;
-import com.sismics.docs.core.model.jpa.User;
 import com.sismics.docs.core.util.FileUtil;
 import com.sismics.docs.core.util.TransactionUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Service that retrieve files sizes when they are not in the database.
+ * The sizes are read from the stored files lengths, so the whole backlog is processed in one pass.
  */
 public class FileSizeService extends AbstractScheduledService {
     /**
@@ -22,6 +24,21 @@ public class FileSizeService extends AbstractScheduledService {
      */
     private static final Logger log = LoggerFactory.getLogger(FileSizeService.class);
 
+    /**
+     * Number of files processed in a transaction.
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Number of files processed.
+     */
+    private final AtomicLong processedCount = new AtomicLong();
+
+    /**
+     * Number of files with an unknown size when the service started.
+     */
+    private final AtomicLong totalCount = new AtomicLong();
+
     public FileSizeService() {
     }
 
@@ -35,40 +52,70 @@ public class FileSizeService extends AbstractScheduledService {
         log.info("File size service shutting down");
     }
 
-    private static final int BATCH_SIZE = 30;
-    
     @Override
     protected void runOneIteration() {
         try {
-            TransactionUtil.handle(() -> {
-                FileDao fileDao = new FileDao();
-                List<File> files = fileDao.getFilesWithUnknownSize(BATCH_SIZE);
-                for(File file : files) {
-                    processFile(file);
-                }
-                if(files.size() < BATCH_SIZE) {
-                    log.info("No more file to process, stopping the service");
-                    stopAsync();
-                }
-            });
+            TransactionUtil.handle(() -> totalCount.set(new FileDao().countWithUnknownSize()));
+            if (totalCount.get() > 0) {
+                log.info("Backfilling the size of " + totalCount.get() + " files");
+            }
+
+            // Keyset pagination, so files whose size cannot be read are not processed again
+            String[] lastId = { null };
+            int[] batchCount = { BATCH_SIZE };
+            while (batchCount[0] == BATCH_SIZE && isRunning()) {
+                TransactionUtil.handle(() -> {
+                    batchCount[0] = 0;
+                    List<String> fileIds = new FileDao().getIdsWithUnknownSize(lastId[0], BATCH_SIZE);
+                    processFiles(fileIds);
+                    if (!fileIds.isEmpty()) {
+                        lastId[0] = fileIds.get(fileIds.size() - 1);
+                    }
+                    batchCount[0] = fileIds.size();
+                });
+                log.info("File size backfill progress: " + processedCount.get() + "/" + totalCount.get());
+            }
+
+            log.info("No more file to process, stopping the service");
+            stopAsync();
         } catch (Throwable e) {
             log.error("Exception during file service iteration", e);
         }
     }
 
-    void processFile(File file) {
-        UserDao userDao = new UserDao();
-        User user = userDao.getById(file.getUserId());
-        if(user == null) {
-            return;
+    /**
+     * Reads the size of files from their stored length and updates them in a single query.
+     *
+     * @param fileIds File IDs
+     */
+    void processFiles(List<String> fileIds) {
+        Map<String, Long> sizeMap = new HashMap<>();
+        for (String fileId : fileIds) {
+            long fileSize = FileUtil.getFileSize(fileId);
+            if (fileSize != File.UNKNOWN_SIZE) {
+                sizeMap.put(fileId, fileSize);
+            }
         }
+        new FileDao().updateSizes(sizeMap);
+        processedCount.addAndGet(fileIds.size());
+    }
 
-        long fileSize = FileUtil.getFileSize(file.getId(), user);
-        if(fileSize != File.UNKNOWN_SIZE){
-            FileDao fileDao = new FileDao();
-            file.setSize(fileSize);
-            fileDao.update(file);
-        }
+    /**
+     * Returns the number of files processed.
+     *
+     * @return Number of files processed
+     */
+    public long getProcessedCount() {
+        return processedCount.get();
+    }
+
+    /**
+     * Returns the number of files to process.
+     *
+     * @return Number of files to process
+     */
+    public long getTotalCount() {
+        return totalCount.get();
     }
 
     @Override
@@ -259,7 +259,7 @@ public class InboxService extends AbstractScheduledService {
 
         // Add files to the document
         for (EmailUtil.FileContent fileContent : mailContent.getFileContentList()) {
-            FileUtil.createFile(fileContent.getName(), null, fileContent.getFile(), fileContent.getSize(),
+            FileUtil.createFile(fileContent.getName(), null, fileContent.getFile(),
                     document.getLanguage(), "admin", document.getId());
         }
 
@@ -0,0 +1,136 @@
+package com.sismics.docs.core.service;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.sismics.docs.core.dao.AuthenticationTokenDao;
+import com.sismics.docs.core.util.TransactionUtil;
+import com.sismics.util.context.ThreadLocalContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer of the authentication tokens last connection dates.
+ * The dates are kept in memory and flushed every {@link #FLUSH_INTERVAL_SECONDS} in a single statement
+ * per {@link #FLUSH_BATCH_SIZE} tokens.
+ *
+ * A flushed date is the most recent connection date of its batch, so it can be later than the real
+ * last connection of a token by at most {@link #FLUSH_INTERVAL_SECONDS}. Connections not flushed when
+ * the server stops abruptly are lost, a session token can then expire up to {@link #FLUSH_INTERVAL_SECONDS}
+ * early. Both are negligible against the 24h session lifetime. The dates of a failed flush stay pending.
+ *
+ * @author agent
+ */
+public class LastConnectionService extends AbstractScheduledService {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(LastConnectionService.class);
+
+    /**
+     * Interval between two flushes in seconds.
+     */
+    public static final int FLUSH_INTERVAL_SECONDS = 60;
+
+    /**
+     * Maximum number of tokens updated by a statement.
+     */
+    private static final int FLUSH_BATCH_SIZE = 1000;
+
+    /**
+     * Last connection dates not flushed yet, indexed by authentication token ID.
+     */
+    private final Map<String, Date> pendingMap = new ConcurrentHashMap<>();
+
+    public LastConnectionService() {
+    }
+
+    @Override
+    protected void startUp() {
+        log.info("Last connection service starting up");
+    }
+
+    @Override
+    protected void shutDown() {
+        flush();
+        log.info("Last connection service shutting down");
+    }
+
+    @Override
+    protected void runOneIteration() {
+        try {
+            flush();
+        } catch (Throwable e) {
+            log.error("Exception during last connection service iteration", e);
+        }
+    }
+
+    @Override
+    protected Scheduler scheduler() {
+        return Scheduler.newFixedDelaySchedule(FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Record a connection with an authentication token.
+     *
+     * @param authTokenId Authentication token ID
+     */
+    public void touch(String authTokenId) {
+        pendingMap.put(authTokenId, new Date());
+    }
+
+    /**
+     * Returns the last connection date of an authentication token not flushed yet.
+     *
+     * @param authTokenId Authentication token ID
+     * @return Last connection date, null if none is pending
+     */
+    public Date getPendingLastConnectionDate(String authTokenId) {
+        return pendingMap.get(authTokenId);
+    }
+
+    /**
+     * Flush the pending last connection dates to the database.
+     */
+    public void flush() {
+        // Snapshot the pending dates, they are removed only once written
+        Map<String, Date> flushedMap = new HashMap<>(pendingMap);
+        if (flushedMap.isEmpty()) {
+            return;
+        }
+        Date lastConnectionDate = Collections.max(flushedMap.values());
+        List<String> authTokenIdList = new ArrayList<>(flushedMap.keySet());
+
+        TransactionUtil.handle(() -> {
+            AuthenticationTokenDao authenticationTokenDao = new AuthenticationTokenDao();
+            for (List<String> batch : Lists.partition(authTokenIdList, FLUSH_BATCH_SIZE)) {
+                authenticationTokenDao.updateLastConnectionDate(batch, lastConnectionDate);
+            }
+
+            // Entries touched again during the flush stay pending, all of them if the transaction is rolled back
+            ThreadLocalContext.get().addAfterCommit(() -> {
+                for (Map.Entry<String, Date> entry : flushedMap.entrySet()) {
+                    pendingMap.remove(entry.getKey(), entry.getValue());
+                }
+                log.debug("Flushed " + flushedMap.size() + " last connection dates");
+            });
+        });
+    }
+
+    /**
+     * Returns the number of last connection dates not flushed yet.
+     *
+     * @return Number of pending dates
+     */
+    public int getPendingCount() {
+        return pendingMap.size();
+    }
+}
@@ -67,6 +67,24 @@ public class DirectoryUtil {
     public static Path getLuceneDirectory() {
         return getDataSubDirectory("lucene");
     }
+
+    /**
+     * Returns the lucene suggestions index directory.
+     *
+     * @return Lucene suggestions index directory.
+     */
+    public static Path getLuceneSuggestDirectory() {
+        return getDataSubDirectory("lucene-suggest");
+    }
+
+    /**
+     * Returns the lucene rebuild index directory.
+     *
+     * @return Lucene rebuild index directory.
+     */
+    public static Path getLuceneRebuildDirectory() {
+        return getDataSubDirectory("lucene-rebuild");
+    }
     
     /**
      * Returns the storage directory.
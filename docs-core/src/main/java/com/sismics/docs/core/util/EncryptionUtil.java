@@ -1,6 +1,9 @@
 package com.sismics.docs.core.util;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.ByteStreams;
 import com.sismics.docs.core.model.context.AppContext;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
@@ -8,6 +11,7 @@ import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.PBEKeySpec;
 import java.io.InputStream;
 import java.math.BigInteger;
@@ -17,6 +21,7 @@ import java.nio.file.StandardCopyOption;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.Security;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Encryption utilities.
@@ -28,6 +33,19 @@ public class EncryptionUtil {
      * Salt.
      */
     private static final String SALT = "LEpxZmm2SMu2PeKzPNrar2rhVAS6LrrgvXKeL9uyXC4vgKHg";
+
+    /**
+     * AES block size.
+     */
+    private static final int BLOCK_SIZE = 16;
+
+    /**
+     * Derived secret keys, indexed by private key.
+     * A user's private key change results in a new entry, the old one is evicted eventually.
+     */
+    private static final Cache<String, SecretKey> secretKeyCache = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .build();
     
     static {
         // Initialize Bouncy Castle provider
@@ -61,6 +79,40 @@ public class EncryptionUtil {
         return new CipherInputStream(is, getCipher(privateKey, Cipher.DECRYPT_MODE));
     }
 
+    /**
+     * Decrypt an InputStream starting at a plaintext offset, using the specified private key.
+     * The CTR counter is moved to the block containing the offset, so the bytes
+     * before this block are skipped in the underlying stream and never decrypted.
+     *
+     * @param is InputStream to decrypt, positioned at the start of the encrypted data
+     * @param privateKey Private key
+     * @param offset Offset in the plaintext
+     * @return Decrypted stream starting at the offset
+     * @throws Exception e
+     */
+    public static InputStream decryptInputStream(InputStream is, String privateKey, long offset) throws Exception {
+        if (offset == 0) {
+            return decryptInputStream(is, privateKey);
+        }
+
+        long blockIndex = offset / BLOCK_SIZE;
+        ByteStreams.skipFully(is, blockIndex * BLOCK_SIZE);
+
+        // Compute the counter of the first block to decrypt
+        Cipher cipher = getCipher(privateKey, Cipher.DECRYPT_MODE);
+        BigInteger counter = new BigInteger(1, cipher.getIV()).add(BigInteger.valueOf(blockIndex));
+        byte[] counterBytes = counter.toByteArray();
+        byte[] iv = new byte[BLOCK_SIZE];
+        int length = Math.min(counterBytes.length, BLOCK_SIZE);
+        System.arraycopy(counterBytes, counterBytes.length - length, iv, BLOCK_SIZE - length, length); // The counter wraps around
+        cipher.init(Cipher.DECRYPT_MODE, getSecretKey(privateKey), new IvParameterSpec(iv));
+
+        // Skip the remaining bytes inside the first block
+        InputStream decryptedStream = new CipherInputStream(is, cipher);
+        ByteStreams.skipFully(decryptedStream, offset % BLOCK_SIZE);
+        return decryptedStream;
+    }
+
     /**
      * Decrypt a file to a temporary file using the specified private key.
      *
@@ -105,11 +157,48 @@ public class EncryptionUtil {
      * @throws Exception e
      */
     private static Cipher getCipher(String privateKey, int mode) throws Exception {
-        PBEKeySpec keySpec = new PBEKeySpec(privateKey.toCharArray(), SALT.getBytes(), 2000, 256);
-        SecretKeyFactory skf = SecretKeyFactory.getInstance("PBEWITHSHA256AND256BITAES-CBC-BC");
-        SecretKey desKey = skf.generateSecret(keySpec);
         Cipher cipher = Cipher.getInstance("AES/CTR/NOPADDING");
-        cipher.init(mode, desKey);
+        cipher.init(mode, getSecretKey(privateKey));
         return cipher;
     }
+
+    /**
+     * Return the secret key derived from a private key.
+     * The key derivation is expensive, so derived keys are cached.
+     *
+     * @param privateKey Private key
+     * @return Secret key
+     * @throws Exception e
+     */
+    static SecretKey getSecretKey(String privateKey) throws Exception {
+        try {
+            return secretKeyCache.get(privateKey, () -> deriveSecretKey(privateKey));
+        } catch (ExecutionException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    /**
+     * Derive a secret key from a private key.
+     *
+     * @param privateKey Private key
+     * @return Secret key
+     * @throws Exception e
+     */
+    static SecretKey deriveSecretKey(String privateKey) throws Exception {
+        PBEKeySpec keySpec = new PBEKeySpec(privateKey.toCharArray(), SALT.getBytes(), 2000, 256);
+        SecretKeyFactory skf = SecretKeyFactory.getInstance("PBEWITHSHA256AND256BITAES-CBC-BC");
+        return skf.generateSecret(keySpec);
+    }
+
+    /**
+     * Remove a derived secret key from the cache.
+     *
+     * @param privateKey Private key
+     */
+    public static void invalidateSecretKey(String privateKey) {
+        if (privateKey != null) {
+            secretKeyCache.invalidate(privateKey);
+        }
+    }
 }
@@ -0,0 +1,240 @@
+package com.sismics.docs.core.util;
+
+import com.google.common.base.Strings;
+import com.google.common.io.BaseEncoding;
+import com.sismics.docs.core.constant.Constants;
+import com.sismics.docs.core.dao.UserDao;
+import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.model.jpa.User;
+import com.sismics.util.mime.MimeTypeUtil;
+
+import javax.crypto.CipherOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+
+/**
+ * File received in a single pass.
+ * The content is read once and written at the same time to the encrypted storage
+ * and to a temporary unencrypted file for the processing, while it is counted, hashed and its header kept to guess its MIME type.
+ * The quotas are checked while receiving, an oversized file is aborted as soon as it exceeds them.
+ *
+ * @author agent
+ */
+public class FileUpload implements Closeable {
+    /**
+     * Suffix of the encrypted files being received in the storage directory.
+     */
+    public static final String UPLOAD_SUFFIX = ".upload";
+
+    /**
+     * Size of the copy buffer.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * File name.
+     */
+    private final String name;
+
+    /**
+     * Unencrypted file.
+     */
+    private Path unencryptedFile;
+
+    /**
+     * Encrypted file in the storage directory, not moved to its final place yet.
+     */
+    private Path encryptedFile;
+
+    /**
+     * Size in bytes.
+     */
+    private long size;
+
+    /**
+     * Hexadecimal SHA-256 of the content.
+     */
+    private String contentHash;
+
+    /**
+     * First bytes of the content.
+     */
+    private final byte[] header = new byte[MimeTypeUtil.HEADER_SIZE];
+
+    /**
+     * Number of bytes in the header.
+     */
+    private int headerLength;
+
+    private FileUpload(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Receives a file from a stream.
+     *
+     * @param inputStream Content
+     * @param name File name, can be null
+     * @param userId User ID uploading the file
+     * @return Received file
+     * @throws IOException QuotaReached if the file exceeds the quotas
+     * @throws Exception e
+     */
+    public static FileUpload receive(InputStream inputStream, String name, String userId) throws Exception {
+        FileUpload fileUpload = new FileUpload(name);
+        fileUpload.unencryptedFile = AppContext.getInstance().getFileService().createTemporaryFile(name);
+        try (OutputStream unencryptedOutputStream = Files.newOutputStream(fileUpload.unencryptedFile)) {
+            fileUpload.write(inputStream, unencryptedOutputStream, userId);
+        } catch (Exception e) {
+            Files.deleteIfExists(fileUpload.unencryptedFile);
+            throw e;
+        }
+        return fileUpload;
+    }
+
+    /**
+     * Receives a file already on disk.
+     *
+     * @param unencryptedFile Unencrypted file, left untouched
+     * @param name File name, can be null
+     * @param userId User ID uploading the file
+     * @return Received file
+     * @throws IOException QuotaReached if the file exceeds the quotas
+     * @throws Exception e
+     */
+    public static FileUpload fromFile(Path unencryptedFile, String name, String userId) throws Exception {
+        FileUpload fileUpload = new FileUpload(name);
+        fileUpload.unencryptedFile = unencryptedFile;
+        try (InputStream inputStream = Files.newInputStream(unencryptedFile)) {
+            fileUpload.write(inputStream, null, userId);
+        }
+        return fileUpload;
+    }
+
+    /**
+     * Reads the content once and writes it to every destination.
+     *
+     * @param inputStream Content
+     * @param unencryptedOutputStream Unencrypted destination, can be null
+     * @param userId User ID uploading the file
+     * @throws Exception e
+     */
+    private void write(InputStream inputStream, OutputStream unencryptedOutputStream, String userId) throws Exception {
+        User user = new UserDao().getById(userId);
+        long maxSize = getRemainingQuota(user);
+        MessageDigest digest = newDigest();
+        encryptedFile = DirectoryUtil.getStorageDirectory().resolve(UUID.randomUUID() + UPLOAD_SUFFIX);
+
+        try (OutputStream encryptedOutputStream = new CipherOutputStream(
+                Files.newOutputStream(encryptedFile, StandardOpenOption.CREATE_NEW),
+                EncryptionUtil.getEncryptionCipher(user.getPrivateKey()))) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int length;
+            while ((length = inputStream.read(buffer)) != -1) {
+                size += length;
+                if (size > maxSize) {
+                    throw new IOException("QuotaReached");
+                }
+                if (headerLength < header.length) {
+                    int headerCopy = Math.min(length, header.length - headerLength);
+                    System.arraycopy(buffer, 0, header, headerLength, headerCopy);
+                    headerLength += headerCopy;
+                }
+                digest.update(buffer, 0, length);
+                encryptedOutputStream.write(buffer, 0, length);
+                if (unencryptedOutputStream != null) {
+                    unencryptedOutputStream.write(buffer, 0, length);
+                }
+            }
+        } catch (Exception e) {
+            close();
+            throw e;
+        }
+
+        contentHash = BaseEncoding.base16().lowerCase().encode(digest.digest());
+    }
+
+    /**
+     * Returns the space left to a user by its quota and the global quota.
+     *
+     * @param user User
+     * @return Remaining space in bytes
+     */
+    private static long getRemainingQuota(User user) {
+        long remainingQuota = user.getStorageQuota() - user.getStorageCurrent();
+        String globalStorageQuotaStr = System.getenv(Constants.GLOBAL_QUOTA_ENV);
+        if (!Strings.isNullOrEmpty(globalStorageQuotaStr)) {
+            long globalStorageQuota = Long.parseLong(globalStorageQuotaStr);
+            remainingQuota = Math.min(remainingQuota, globalStorageQuota - new UserDao().getGlobalStorageCurrent());
+        }
+        return remainingQuota;
+    }
+
+    /**
+     * Creates a SHA-256 digest.
+     *
+     * @return Digest
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Guess the MIME type from the header of the content.
+     *
+     * @return MIME type
+     * @throws IOException e
+     */
+    public String getMimeType() throws IOException {
+        return MimeTypeUtil.guessMimeType(header, headerLength, unencryptedFile, name);
+    }
+
+    /**
+     * Moves the encrypted content to its final place.
+     *
+     * @param path Destination
+     * @throws IOException e
+     */
+    public void moveTo(Path path) throws IOException {
+        Files.move(encryptedFile, path, StandardCopyOption.ATOMIC_MOVE);
+        encryptedFile = null;
+    }
+
+    public Path getUnencryptedFile() {
+        return unencryptedFile;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * Deletes the encrypted content if it has not been moved to its final place.
+     *
+     * @throws IOException e
+     */
+    @Override
+    public void close() throws IOException {
+        if (encryptedFile != null) {
+            Files.deleteIfExists(encryptedFile);
+            encryptedFile = null;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.google.common.collect.Lists;
 import com.google.common.io.CharStreams;
 import com.sismics.docs.core.constant.Constants;
 import com.sismics.docs.core.dao.FileDao;
+import com.sismics.docs.core.dao.FileProcessingDao;
 import com.sismics.docs.core.dao.UserDao;
 import com.sismics.docs.core.event.DocumentUpdatedAsyncEvent;
 import com.sismics.docs.core.event.FileCreatedAsyncEvent;
@@ -12,19 +13,14 @@ import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.File;
 import com.sismics.docs.core.model.jpa.User;
 import com.sismics.util.ImageDeskew;
+import com.sismics.util.ImageUtil;
 import com.sismics.util.Scalr;
 import com.sismics.util.context.ThreadLocalContext;
 import com.sismics.util.io.InputStreamReaderThread;
-import com.sismics.util.mime.MimeTypeUtil;
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.input.CountingInputStream;
-import org.apache.commons.io.output.NullOutputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.crypto.Cipher;
-import javax.crypto.CipherInputStream;
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
@@ -47,7 +43,7 @@ public class FileUtil {
     private static final Logger log = LoggerFactory.getLogger(FileUtil.class);
 
     /**
-     * File ID of files currently being processed.
+     * File ID of files currently queued or being processed on this node.
      */
     private static final Set<String> processingFileSet = Collections.synchronizedSet(new HashSet<>());
     
@@ -61,11 +57,14 @@ public class FileUtil {
      */
     public static String ocrFile(String language, BufferedImage image) throws Exception {
         // Upscale, grayscale and deskew the image
-        BufferedImage resizedImage = Scalr.resize(image, Scalr.Method.AUTOMATIC, Scalr.Mode.AUTOMATIC, 3500, Scalr.OP_ANTIALIAS, Scalr.OP_GRAYSCALE);
+        BufferedImage resizedImage = Scalr.resize(image, Scalr.Method.AUTOMATIC, Scalr.Mode.AUTOMATIC, 3500, Scalr.OP_ANTIALIAS);
         image.flush();
-        ImageDeskew imageDeskew = new ImageDeskew(resizedImage);
-        BufferedImage deskewedImage = Scalr.rotate(resizedImage, - imageDeskew.getSkewAngle(), Scalr.OP_ANTIALIAS, Scalr.OP_GRAYSCALE);
+        // Scalr produces RGB images, the skew angle is detected faster on the raw pixels of a grayscale one
+        BufferedImage grayImage = ImageUtil.toGrayscale(resizedImage);
         resizedImage.flush();
+        ImageDeskew imageDeskew = new ImageDeskew(grayImage);
+        BufferedImage deskewedImage = Scalr.rotate(grayImage, - imageDeskew.getSkewAngle(), Scalr.OP_ANTIALIAS, Scalr.OP_GRAYSCALE);
+        grayImage.flush();
         Path tmpFile = AppContext.getInstance().getFileService().createTemporaryFile();
         ImageIO.write(deskewedImage, "tiff", tmpFile.toFile());
 
@@ -85,6 +84,7 @@ public class FileUtil {
 
     /**
      * Remove a file from the storage filesystem.
+     * The content shared with identical files is only freed when its last file is removed.
      * 
      * @param fileId ID of file to delete
      */
@@ -110,21 +110,40 @@ public class FileUtil {
      * @param name File name, can be null
      * @param previousFileId ID of the previous version of the file, if the new file is a new version
      * @param unencryptedFile Path to the unencrypted file
-     * @param fileSize File size
      * @param language File language, can be null if associated to no document
      * @param userId User ID creating the file
      * @param documentId Associated document ID or null if no document
      * @return File ID
      * @throws Exception e
      */
-    public static String createFile(String name, String previousFileId, Path unencryptedFile, long fileSize, String language, String userId, String documentId) throws Exception {
+    public static String createFile(String name, String previousFileId, Path unencryptedFile, String language, String userId, String documentId) throws Exception {
+        try (FileUpload fileUpload = FileUpload.fromFile(unencryptedFile, name, userId)) {
+            return createFile(name, previousFileId, fileUpload, language, userId, documentId);
+        }
+    }
+
+    /**
+     * Create a new file from a received file.
+     *
+     * @param name File name, can be null
+     * @param previousFileId ID of the previous version of the file, if the new file is a new version
+     * @param fileUpload Received file, its encrypted content is moved to the storage
+     * @param language File language, can be null if associated to no document
+     * @param userId User ID creating the file
+     * @param documentId Associated document ID or null if no document
+     * @return File ID
+     * @throws Exception e
+     */
+    public static String createFile(String name, String previousFileId, FileUpload fileUpload, String language, String userId, String documentId) throws Exception {
         // Validate mime type
         String mimeType;
         try {
-            mimeType = MimeTypeUtil.guessMimeType(unencryptedFile, name);
+            mimeType = fileUpload.getMimeType();
         } catch (IOException e) {
             throw new IOException("ErrorGuessMime", e);
         }
+        long fileSize = fileUpload.getSize();
+        Path unencryptedFile = fileUpload.getUnencryptedFile();
 
         // Validate user quota
         UserDao userDao = new UserDao();
@@ -153,6 +172,7 @@ public class FileUtil {
         file.setMimeType(mimeType);
         file.setUserId(userId);
         file.setSize(fileSize);
+        file.setContentHash(fileUpload.getContentHash());
 
         // Get files of this document
         FileDao fileDao = new FileDao();
@@ -183,13 +203,13 @@ public class FileUtil {
         }
 
         // Create the file
+        File sameFile = fileDao.getActiveByContentHash(userId, fileUpload.getContentHash());
         String fileId = fileDao.create(file, userId);
 
-        // Save the file
-        Cipher cipher = EncryptionUtil.getEncryptionCipher(user.getPrivateKey());
-        Path path = DirectoryUtil.getStorageDirectory().resolve(file.getId());
-        try (InputStream inputStream = Files.newInputStream(unencryptedFile)) {
-            Files.copy(new CipherInputStream(inputStream, cipher), path);
+        // Save the file, already encrypted while receiving it
+        if (storeContent(fileUpload, fileId, sameFile)) {
+            file.setLinked(true);
+            fileDao.update(file);
         }
 
         // Update the user quota
@@ -197,7 +217,7 @@ public class FileUtil {
         userDao.updateQuota(user);
 
         // Raise a new file created event and document updated event if we have a document
-        startProcessingFile(fileId);
+        startProcessingFile(fileId, language, true);
         FileCreatedAsyncEvent fileCreatedAsyncEvent = new FileCreatedAsyncEvent();
         fileCreatedAsyncEvent.setUserId(userId);
         fileCreatedAsyncEvent.setLanguage(language);
@@ -215,12 +235,52 @@ public class FileUtil {
         return fileId;
     }
 
+    /**
+     * Store the content of a new file.
+     * The content of an identical file of the same user, encrypted with the same key, is shared with a hard link:
+     * the filesystem counts the references to the content.
+     *
+     * @param fileUpload Received file
+     * @param fileId New file ID
+     * @param sameFile Existing file with the same content, can be null
+     * @return True if the content is shared with a hard link
+     * @throws IOException e
+     */
+    private static boolean storeContent(FileUpload fileUpload, String fileId, File sameFile) throws IOException {
+        Path storedFile = DirectoryUtil.getStorageDirectory().resolve(fileId);
+        if (sameFile != null) {
+            try {
+                // The unused encrypted content is deleted when the received file is closed
+                Files.createLink(storedFile, DirectoryUtil.getStorageDirectory().resolve(sameFile.getId()));
+                return true;
+            } catch (IOException | UnsupportedOperationException e) {
+                // The identical file has just been deleted, or the storage doesn't support links
+                log.warn("Cannot share the content of the file " + sameFile.getId() + ", storing it again", e);
+            }
+        }
+        fileUpload.moveTo(storedFile);
+        return false;
+    }
+
     /**
      * Start processing a file.
+     * The processing is persisted in the current transaction, so that it is resumed if the server stops.
+     *
+     * @param fileId File ID
+     * @param language Language of the file
+     * @param fileCreated True if the file has been created, false if it has been updated
+     */
+    public static void startProcessingFile(String fileId, String language, boolean fileCreated) {
+        new FileProcessingDao().enqueue(fileId, language, fileCreated);
+        markProcessingFileLocally(fileId);
+    }
+
+    /**
+     * Mark a file as queued for processing on this node.
      *
      * @param fileId File ID
      */
-    public static void startProcessingFile(String fileId) {
+    public static void markProcessingFileLocally(String fileId) {
         processingFileSet.add(fileId);
         log.info("Processing started for file: " + fileId);
     }
@@ -236,37 +296,48 @@ public class FileUtil {
     }
 
     /**
-     * Return true if a file is currently processing.
+     * Return true if a file is queued for processing on this node.
+     *
+     * @param fileId File ID
+     * @return True if the file is processing on this node
+     */
+    public static boolean isProcessingFileLocally(String fileId) {
+        return processingFileSet.contains(fileId);
+    }
+
+    /**
+     * Return true if a file is currently processing on any node.
      *
      * @param fileId File ID
      * @return True if the file is processing
      */
     public static boolean isProcessingFile(String fileId) {
-        return processingFileSet.contains(fileId);
+        return !getProcessingFileIdSet(Collections.singleton(fileId)).isEmpty();
     }
 
     /**
-     * Get the size of a file on disk.
+     * Return the files currently processing on any node.
+     *
+     * @param fileIdList File IDs
+     * @return IDs of the files processing
+     */
+    public static Set<String> getProcessingFileIdSet(Collection<String> fileIdList) {
+        return new FileProcessingDao().findPendingFileIds(fileIdList);
+    }
+
+    /**
+     * Get the size of a file.
+     * Files are encrypted with a stream cipher (AES/CTR), so the plaintext
+     * has the same length as the stored file and no decryption is needed.
      *
      * @param fileId the file id
-     * @param user   the file owner
      * @return the size or -1 if something went wrong
      */
-    public static long getFileSize(String fileId, User user) {
-        // To get the size we copy the decrypted content into a null output stream
-        // and count the copied byte size.
+    public static long getFileSize(String fileId) {
         Path storedFile = DirectoryUtil.getStorageDirectory().resolve(fileId);
-        if (! Files.exists(storedFile)) {
-            log.debug("File does not exist " + fileId);
-            return File.UNKNOWN_SIZE;
-        }
-        try (InputStream fileInputStream = Files.newInputStream(storedFile);
-             InputStream inputStream = EncryptionUtil.decryptInputStream(fileInputStream, user.getPrivateKey());
-             CountingInputStream countingInputStream = new CountingInputStream(inputStream);
-        ) {
-            IOUtils.copy(countingInputStream, NullOutputStream.NULL_OUTPUT_STREAM);
-            return countingInputStream.getByteCount();
-        } catch (Exception e) {
+        try {
+            return Files.size(storedFile);
+        } catch (IOException e) {
             log.debug("Can't find size of file " + fileId, e);
             return File.UNKNOWN_SIZE;
         }
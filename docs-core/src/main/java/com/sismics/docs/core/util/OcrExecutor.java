@@ -0,0 +1,238 @@
+package com.sismics.docs.core.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded executor of optical character recognition.
+ * The pages of a document are rendered in the calling thread and recognized concurrently,
+ * the number of concurrent recognitions is capped for the whole application.
+ *
+ * @author agent
+ */
+public class OcrExecutor {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(OcrExecutor.class);
+
+    /**
+     * Renders a page of a document.
+     */
+    @FunctionalInterface
+    public interface PageRenderer {
+        /**
+         * Renders a page.
+         *
+         * @param pageIndex Page index, starting at 0
+         * @return Page image
+         * @throws Exception e
+         */
+        BufferedImage render(int pageIndex) throws Exception;
+    }
+
+    /**
+     * Recognizes the text of an image.
+     */
+    @FunctionalInterface
+    public interface Recognizer {
+        /**
+         * Recognizes the text of an image.
+         *
+         * @param language Language to OCR
+         * @param image Image
+         * @return Text content
+         * @throws Exception e
+         */
+        String recognize(String language, BufferedImage image) throws Exception;
+    }
+
+    /**
+     * Text and timings of a recognized page.
+     */
+    public static class PageResult {
+        private final int pageIndex;
+        private final String content;
+        private final long renderMs;
+        private final long ocrMs;
+
+        PageResult(int pageIndex, String content, long renderMs, long ocrMs) {
+            this.pageIndex = pageIndex;
+            this.content = content;
+            this.renderMs = renderMs;
+            this.ocrMs = ocrMs;
+        }
+
+        public int getPageIndex() {
+            return pageIndex;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public long getRenderMs() {
+            return renderMs;
+        }
+
+        public long getOcrMs() {
+            return ocrMs;
+        }
+    }
+
+    /**
+     * Executor running the recognitions.
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Maximum number of concurrent recognitions.
+     */
+    private final int threadCount;
+
+    /**
+     * Text recognition.
+     */
+    private final Recognizer recognizer;
+
+    /**
+     * Creates an OCR executor running tesseract.
+     *
+     * @param threadCount Maximum number of concurrent tesseract processes
+     */
+    public OcrExecutor(int threadCount) {
+        this(threadCount, FileUtil::ocrFile);
+    }
+
+    /**
+     * Creates an OCR executor.
+     *
+     * @param threadCount Maximum number of concurrent recognitions
+     * @param recognizer Text recognition
+     */
+    public OcrExecutor(int threadCount, Recognizer recognizer) {
+        this.threadCount = threadCount;
+        this.recognizer = recognizer;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threadCount, threadCount,
+                1L, TimeUnit.MINUTES,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "ocr-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Recognizes the text of an image.
+     *
+     * @param language Language to OCR
+     * @param image Image
+     * @return Text content
+     * @throws Exception e
+     */
+    public String ocr(String language, BufferedImage image) throws Exception {
+        return ocrPages(language, 1, pageIndex -> image).get(0).getContent();
+    }
+
+    /**
+     * Recognizes the text of the pages of a document.
+     * At most twice as many pages as recognition threads are rendered ahead, to bound the memory used by the images.
+     *
+     * @param language Language to OCR
+     * @param pageCount Number of pages
+     * @param pageRenderer Page renderer, called in the current thread in the page order
+     * @return Recognized pages, in the page order
+     * @throws Exception e
+     */
+    public List<PageResult> ocrPages(String language, int pageCount, PageRenderer pageRenderer) throws Exception {
+        Semaphore renderedPages = new Semaphore(threadCount * 2);
+        List<Future<PageResult>> futureList = new ArrayList<>(pageCount);
+        try {
+            for (int pageIndex = 0; pageIndex < pageCount; pageIndex++) {
+                renderedPages.acquire();
+                long startTime = System.currentTimeMillis();
+                BufferedImage image;
+                try {
+                    image = pageRenderer.render(pageIndex);
+                } catch (Exception e) {
+                    renderedPages.release();
+                    throw e;
+                }
+                long renderMs = System.currentTimeMillis() - startTime;
+
+                int currentPageIndex = pageIndex;
+                futureList.add(executor.submit(() -> {
+                    try {
+                        long ocrStartTime = System.currentTimeMillis();
+                        String content = recognizer.recognize(language, image);
+                        long ocrMs = System.currentTimeMillis() - ocrStartTime;
+                        log.info(MessageFormat.format("OCR page {0}/{1} rendered in {2}ms, recognized in {3}ms",
+                                currentPageIndex + 1, pageCount, renderMs, ocrMs));
+                        return new PageResult(currentPageIndex, content, renderMs, ocrMs);
+                    } finally {
+                        renderedPages.release();
+                    }
+                }));
+            }
+
+            List<PageResult> pageResultList = new ArrayList<>(pageCount);
+            for (Future<PageResult> future : futureList) {
+                try {
+                    pageResultList.add(future.get());
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+            return pageResultList;
+        } finally {
+            // Don't leave useless recognitions behind on error
+            for (Future<PageResult> future : futureList) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Stops the executor.
+     */
+    public void shutDown() {
+        executor.shutdownNow();
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Returns the number of pages being recognized.
+     *
+     * @return Active count
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Returns the number of pages waiting to be recognized.
+     *
+     * @return Queue depth
+     */
+    public int getDepth() {
+        return executor.getQueue().size();
+    }
+}
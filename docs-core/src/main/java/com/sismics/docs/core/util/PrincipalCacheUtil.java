@@ -0,0 +1,181 @@
+package com.sismics.docs.core.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Short lived cache of the authenticated principals, indexed by authentication token.
+ * Entries are invalidated after the commit of a change to the token, the user or its groups on this node,
+ * other nodes see the changes after at most {@link #TTL_SECONDS}.
+ *
+ * @author agent
+ */
+public class PrincipalCacheUtil {
+    /**
+     * Time to live of a cached principal in seconds.
+     */
+    public static final int TTL_SECONDS = 30;
+
+    /**
+     * Cached principals, indexed by authentication token ID.
+     */
+    private static final Cache<String, CachedPrincipal> principalCache = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(TTL_SECONDS, TimeUnit.SECONDS)
+            .recordStats()
+            .build();
+
+    /**
+     * Incremented on each invalidation, principals loaded before an invalidation are not cached.
+     */
+    private static final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Returns a cached principal.
+     *
+     * @param authTokenId Authentication token ID
+     * @return Cached principal, null if not cached or if the token has expired
+     */
+    public static CachedPrincipal get(String authTokenId) {
+        CachedPrincipal cachedPrincipal = principalCache.getIfPresent(authTokenId);
+        if (cachedPrincipal != null && System.currentTimeMillis() >= cachedPrincipal.getExpirationTimestamp()) {
+            principalCache.invalidate(authTokenId);
+            return null;
+        }
+        return cachedPrincipal;
+    }
+
+    /**
+     * Returns the current generation, to read before loading a principal from the database.
+     *
+     * @return Generation
+     */
+    public static long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Cache a principal, unless an invalidation happened since it has been loaded.
+     *
+     * @param authTokenId Authentication token ID
+     * @param cachedPrincipal Principal to cache
+     * @param loadGeneration Generation read before loading the principal
+     */
+    public static void put(String authTokenId, CachedPrincipal cachedPrincipal, long loadGeneration) {
+        principalCache.put(authTokenId, cachedPrincipal);
+        if (generation.get() != loadGeneration) {
+            principalCache.invalidate(authTokenId);
+        }
+    }
+
+    /**
+     * Invalidate the principal of an authentication token.
+     *
+     * @param authTokenId Authentication token ID
+     */
+    public static void invalidateToken(String authTokenId) {
+        generation.incrementAndGet();
+        principalCache.invalidate(authTokenId);
+    }
+
+    /**
+     * Invalidate all the principals of a user.
+     *
+     * @param userId User ID
+     */
+    public static void invalidateUser(String userId) {
+        generation.incrementAndGet();
+        principalCache.asMap().values().removeIf(cachedPrincipal -> cachedPrincipal.getUserId().equals(userId));
+    }
+
+    /**
+     * Invalidate all the principals.
+     * Used when a group changes, as it can be inherited by many users.
+     */
+    public static void invalidateAll() {
+        generation.incrementAndGet();
+        principalCache.invalidateAll();
+    }
+
+    /**
+     * Returns the cache statistics.
+     *
+     * @return Cache statistics
+     */
+    public static CacheStats getStats() {
+        return principalCache.stats();
+    }
+
+    /**
+     * Principal data loaded from the database.
+     */
+    public static class CachedPrincipal {
+        /**
+         * User ID.
+         */
+        private final String userId;
+
+        /**
+         * Username.
+         */
+        private final String username;
+
+        /**
+         * Email.
+         */
+        private final String email;
+
+        /**
+         * Group IDs, including inherited groups.
+         */
+        private final Set<String> groupIdSet;
+
+        /**
+         * Base functions.
+         */
+        private final Set<String> baseFunctionSet;
+
+        /**
+         * Expiration timestamp of the authentication token.
+         */
+        private final long expirationTimestamp;
+
+        public CachedPrincipal(String userId, String username, String email, Set<String> groupIdSet, Set<String> baseFunctionSet, long expirationTimestamp) {
+            this.userId = userId;
+            this.username = username;
+            this.email = email;
+            this.groupIdSet = Set.copyOf(groupIdSet);
+            this.baseFunctionSet = Set.copyOf(baseFunctionSet);
+            this.expirationTimestamp = expirationTimestamp;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public Set<String> getGroupIdSet() {
+            return groupIdSet;
+        }
+
+        public Set<String> getBaseFunctionSet() {
+            return baseFunctionSet;
+        }
+
+        public long getExpirationTimestamp() {
+            return expirationTimestamp;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.sismics.docs.core.util;
+
+import com.google.common.base.Strings;
+import com.sismics.docs.core.constant.Constants;
+import com.sismics.util.ImageUtil;
+import com.sismics.util.Scalr;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Image renditions of the files (web view and thumbnail).
+ *
+ * @author agent
+ */
+public class RenditionUtil {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(RenditionUtil.class);
+
+    /**
+     * Renditions, from the largest to the smallest. Each rendition is downsampled from the previous one.
+     */
+    public enum Rendition {
+        WEB("_web", 1280, Constants.WEB_JPEG_QUALITY_ENV, 0.85f),
+        THUMB("_thumb", 256, Constants.THUMB_JPEG_QUALITY_ENV, 0.8f);
+
+        /**
+         * Suffix of the stored file.
+         */
+        private final String suffix;
+
+        /**
+         * Size of the longest side.
+         */
+        private final int size;
+
+        /**
+         * JPEG quality.
+         */
+        private final float quality;
+
+        Rendition(String suffix, int size, String qualityEnv, float defaultQuality) {
+            this.suffix = suffix;
+            this.size = size;
+            this.quality = RenditionUtil.getQuality(qualityEnv, defaultQuality);
+        }
+
+        public String getSuffix() {
+            return suffix;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public float getQuality() {
+            return quality;
+        }
+    }
+
+    /**
+     * Returns the size of the longest side of the largest rendition.
+     *
+     * @return Size
+     */
+    public static int getLargestSize() {
+        return Rendition.values()[0].getSize();
+    }
+
+    /**
+     * Write the encrypted renditions of an image.
+     *
+     * @param image Image, flushed after use
+     * @param fileId File ID
+     * @param cipher Encryption cipher
+     * @throws Exception e
+     */
+    public static void writeRenditions(BufferedImage image, String fileId, Cipher cipher) throws Exception {
+        BufferedImage source = image;
+        for (Rendition rendition : Rendition.values()) {
+            BufferedImage resized = Scalr.resize(source, Scalr.Method.ULTRA_QUALITY, Scalr.Mode.AUTOMATIC, rendition.getSize());
+            source.flush();
+            source = resized;
+
+            Path outputFile = DirectoryUtil.getStorageDirectory().resolve(fileId + rendition.getSuffix());
+            try (OutputStream outputStream = new CipherOutputStream(Files.newOutputStream(outputFile), cipher)) {
+                writeRendition(source, rendition, outputStream);
+            }
+        }
+        source.flush();
+    }
+
+    /**
+     * Write a rendition as a JPEG.
+     *
+     * @param image Resized image
+     * @param rendition Rendition
+     * @param outputStream Output stream
+     * @throws IOException e
+     */
+    public static void writeRendition(BufferedImage image, Rendition rendition, OutputStream outputStream) throws IOException {
+        ImageUtil.writeJpeg(image, outputStream, rendition.getQuality());
+    }
+
+    /**
+     * Returns the JPEG quality configured in an environment variable.
+     *
+     * @param qualityEnv Environment variable
+     * @param defaultQuality Default quality
+     * @return Quality
+     */
+    private static float getQuality(String qualityEnv, float defaultQuality) {
+        String envQuality = System.getenv(qualityEnv);
+        if (Strings.isNullOrEmpty(envQuality)) {
+            return defaultQuality;
+        }
+        try {
+            float quality = Float.parseFloat(envQuality);
+            if (quality > 0 && quality <= 1) {
+                return quality;
+            }
+        } catch (NumberFormatException e) {
+            // NOP
+        }
+        log.warn(qualityEnv + " needs to be a number in range 0...1. Falling back to " + defaultQuality + ".");
+        return defaultQuality;
+    }
+}
@@ -69,6 +69,7 @@ public class TransactionUtil {
         if (em.isOpen()) {
             if (em.getTransaction() != null && em.getTransaction().isActive()) {
                 em.getTransaction().commit();
+                context.fireAllAfterCommit();
                 
                 try {
                     em.close();
@@ -89,8 +90,32 @@ public class TransactionUtil {
      * Commits the current transaction, and flushes the changes to the database.
      */
     public static void commit() {
-        EntityTransaction tx = ThreadLocalContext.get().getEntityManager().getTransaction();
+        ThreadLocalContext context = ThreadLocalContext.get();
+        EntityTransaction tx = context.getEntityManager().getTransaction();
         tx.commit();
+        context.fireAllAfterCommit();
         tx.begin();
     }
+
+    /**
+     * Commits the current transaction and closes the entity manager, releasing its database connection.
+     * Used before streaming a response to a client, the database must not be used afterwards.
+     */
+    public static void commitAndClose() {
+        ThreadLocalContext context = ThreadLocalContext.get();
+        EntityManager em = context.getEntityManager();
+        if (em == null || !em.isOpen()) {
+            return;
+        }
+
+        if (em.getTransaction() != null && em.getTransaction().isActive()) {
+            em.getTransaction().commit();
+            context.fireAllAfterCommit();
+        }
+        try {
+            em.close();
+        } catch (Exception e) {
+            log.error("Error closing entity manager", e);
+        }
+    }
 }
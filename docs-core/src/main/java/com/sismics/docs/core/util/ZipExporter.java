@@ -0,0 +1,346 @@
+package com.sismics.docs.core.util;
+
+import com.google.common.io.ByteStreams;
+import com.sismics.docs.core.model.jpa.File;
+import com.sismics.util.mime.MimeTypeUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Export of files in a ZIP archive.
+ * The formats already compressed are not compressed again, the others are deflated.
+ * The next entries are prepared by a small pool of workers while the current entry is streamed:
+ * small files are decrypted in memory ahead, large files are decrypted ahead in a bounded queue of chunks.
+ * The workers are shared by the exports, when they are all busy an export decrypts its entries itself.
+ *
+ * @author agent
+ */
+public class ZipExporter {
+    /**
+     * Number of entries prepared ahead of the current entry.
+     */
+    private static final int READ_AHEAD = 4;
+
+    /**
+     * Maximum size of a file decrypted in memory ahead.
+     */
+    private static final long MAX_BUFFERED_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Size of the chunks of a large file decrypted ahead.
+     */
+    private static final int CHUNK_SIZE = 256 * 1024;
+
+    /**
+     * Number of chunks of a large file decrypted ahead, for the same memory as a small file.
+     */
+    private static final int CHUNK_COUNT = (int) (MAX_BUFFERED_SIZE / CHUNK_SIZE);
+
+    /**
+     * Chunk marking the end of a large file.
+     */
+    private static final byte[] END_OF_ENTRY = new byte[0];
+
+    /**
+     * Entry ready to be written.
+     */
+    private static class PreparedEntry {
+        private final File file;
+        private final ZipEntry zipEntry;
+        private final int level;
+        private final byte[] content;
+        private final BlockingQueue<byte[]> chunkQueue;
+        private final Future<Void> decryption;
+
+        PreparedEntry(File file, ZipEntry zipEntry, int level, byte[] content,
+                      BlockingQueue<byte[]> chunkQueue, Future<Void> decryption) {
+            this.file = file;
+            this.zipEntry = zipEntry;
+            this.level = level;
+            this.content = content;
+            this.chunkQueue = chunkQueue;
+            this.decryption = decryption;
+        }
+    }
+
+    /**
+     * Executor preparing the entries.
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Directory of the stored files.
+     */
+    private final Path storageDirectory;
+
+    /**
+     * Creates a ZIP exporter of the stored files.
+     *
+     * @param threadCount Number of workers preparing the entries
+     */
+    public ZipExporter(int threadCount) {
+        this(threadCount, DirectoryUtil.getStorageDirectory());
+    }
+
+    /**
+     * Creates a ZIP exporter.
+     *
+     * @param threadCount Number of workers preparing the entries
+     * @param storageDirectory Directory of the stored files
+     */
+    public ZipExporter(int threadCount, Path storageDirectory) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.storageDirectory = storageDirectory;
+        this.executor = new ThreadPoolExecutor(threadCount, threadCount,
+                1L, TimeUnit.MINUTES,
+                new ArrayBlockingQueue<>(threadCount),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "zip-export-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Writes files in a ZIP archive.
+     * The private key of each file must be set.
+     *
+     * @param fileList Files to export
+     * @param outputStream Output stream, closed at the end
+     * @throws IOException e
+     */
+    public void export(List<File> fileList, OutputStream outputStream) throws IOException {
+        Deque<Future<PreparedEntry>> futureQueue = new ArrayDeque<>();
+        List<Future<?>> taskList = new ArrayList<>();
+        int nextIndex = 0;
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
+            for (int index = 0; index < fileList.size(); index++) {
+                // Keep preparing the next entries
+                while (nextIndex < fileList.size() && nextIndex <= index + READ_AHEAD) {
+                    futureQueue.add(submit(fileList.get(nextIndex), nextIndex, taskList));
+                    nextIndex++;
+                }
+
+                PreparedEntry preparedEntry = get(futureQueue.poll());
+                zipOutputStream.setLevel(preparedEntry.level);
+                zipOutputStream.putNextEntry(preparedEntry.zipEntry);
+                if (preparedEntry.content != null) {
+                    zipOutputStream.write(preparedEntry.content);
+                } else if (preparedEntry.chunkQueue != null) {
+                    byte[] chunk;
+                    while ((chunk = take(preparedEntry.chunkQueue)) != END_OF_ENTRY) {
+                        zipOutputStream.write(chunk);
+                    }
+                    get(preparedEntry.decryption);
+                } else {
+                    try (InputStream decryptedStream = decrypt(preparedEntry.file)) {
+                        ByteStreams.copy(decryptedStream, zipOutputStream);
+                    }
+                }
+                zipOutputStream.closeEntry();
+            }
+        } finally {
+            // Don't prepare the entries of an aborted export
+            for (Future<?> task : taskList) {
+                task.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Starts preparing the ZIP entry of a file.
+     *
+     * @param file File
+     * @param index Index of the file in the archive
+     * @param taskList Tasks of the export, to cancel
+     * @return Prepared entry
+     * @throws IOException e
+     */
+    private Future<PreparedEntry> submit(File file, int index, List<Future<?>> taskList) throws IOException {
+        // The encrypted content has the same size as the decrypted one
+        if (Files.size(getStoredFile(file)) <= MAX_BUFFERED_SIZE) {
+            try {
+                Future<PreparedEntry> future = executor.submit(() -> prepare(file, index));
+                taskList.add(future);
+                return future;
+            } catch (RejectedExecutionException e) {
+                checkRunning(e);
+                return CompletableFuture.completedFuture(prepare(file, index));
+            }
+        }
+
+        // A stored entry needs its CRC before its content, a large compressed file is deflated without compression instead
+        ZipEntry zipEntry = new ZipEntry(index + "-" + file.getFullName(Integer.toString(index)));
+        int level = MimeTypeUtil.isCompressed(file.getMimeType()) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION;
+        BlockingQueue<byte[]> chunkQueue = new ArrayBlockingQueue<>(CHUNK_COUNT);
+        try {
+            Future<Void> decryption = executor.submit(() -> decryptAhead(file, chunkQueue));
+            taskList.add(decryption);
+            return CompletableFuture.completedFuture(new PreparedEntry(file, zipEntry, level, null, chunkQueue, decryption));
+        } catch (RejectedExecutionException e) {
+            // All the workers are busy, the file is decrypted while it is written
+            checkRunning(e);
+            return CompletableFuture.completedFuture(new PreparedEntry(file, zipEntry, level, null, null, null));
+        }
+    }
+
+    /**
+     * Rethrows the rejection of a task by the stopped exporter.
+     * When all the workers are busy, the exporting thread prepares the entry itself.
+     *
+     * @param e Rejection
+     */
+    private void checkRunning(RejectedExecutionException e) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("ZIP exporter stopped", e);
+        }
+    }
+
+    /**
+     * Prepares the ZIP entry of a small file, decrypted in memory.
+     *
+     * @param file File
+     * @param index Index of the file in the archive
+     * @return Prepared entry
+     * @throws IOException e
+     */
+    private PreparedEntry prepare(File file, int index) throws IOException {
+        ZipEntry zipEntry = new ZipEntry(index + "-" + file.getFullName(Integer.toString(index)));
+        byte[] content;
+        try (InputStream decryptedStream = decrypt(file)) {
+            content = ByteStreams.toByteArray(decryptedStream);
+        }
+        if (MimeTypeUtil.isCompressed(file.getMimeType())) {
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            zipEntry.setMethod(ZipEntry.STORED);
+            zipEntry.setSize(content.length);
+            zipEntry.setCompressedSize(content.length);
+            zipEntry.setCrc(crc.getValue());
+        }
+        return new PreparedEntry(file, zipEntry, Deflater.DEFAULT_COMPRESSION, content, null, null);
+    }
+
+    /**
+     * Decrypts a large file ahead in chunks.
+     * The queue of chunks is bounded, the decryption waits for the entry to be written.
+     *
+     * @param file File
+     * @param chunkQueue Decrypted chunks, ended by the end of entry chunk
+     * @return Nothing
+     * @throws IOException e
+     * @throws InterruptedException e
+     */
+    private Void decryptAhead(File file, BlockingQueue<byte[]> chunkQueue) throws IOException, InterruptedException {
+        try (InputStream decryptedStream = decrypt(file)) {
+            while (true) {
+                byte[] chunk = new byte[CHUNK_SIZE];
+                int length = ByteStreams.read(decryptedStream, chunk, 0, chunk.length);
+                if (length == 0) {
+                    break;
+                }
+                chunkQueue.put(length == chunk.length ? chunk : Arrays.copyOf(chunk, length));
+            }
+        } finally {
+            // The exporting thread gets the error from the task
+            chunkQueue.put(END_OF_ENTRY);
+        }
+        return null;
+    }
+
+    /**
+     * Waits for the next chunk of a large file.
+     *
+     * @param chunkQueue Decrypted chunks
+     * @return Chunk
+     * @throws IOException e
+     */
+    private static byte[] take(BlockingQueue<byte[]> chunkQueue) throws IOException {
+        try {
+            return chunkQueue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * Waits for a task preparing an entry.
+     *
+     * @param future Task
+     * @param <T> Result type
+     * @return Result of the task
+     * @throws IOException e
+     */
+    private static <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Opens the decrypted content of a file.
+     *
+     * @param file File
+     * @return Decrypted content
+     * @throws IOException e
+     */
+    private InputStream decrypt(File file) throws IOException {
+        InputStream inputStream = Files.newInputStream(getStoredFile(file));
+        try {
+            return EncryptionUtil.decryptInputStream(inputStream, file.getPrivateKey());
+        } catch (Exception e) {
+            inputStream.close();
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Returns the stored content of a file.
+     *
+     * @param file File
+     * @return Stored file
+     */
+    private Path getStoredFile(File file) {
+        return storageDirectory.resolve(file.getId());
+    }
+
+    /**
+     * Stops the workers.
+     */
+    public void shutDown() {
+        executor.shutdownNow();
+    }
+}
@@ -44,7 +44,7 @@ public class ProcessFilesAction implements Action {
                 Path unencryptedFile = EncryptionUtil.decryptFile(storedFile, user.getPrivateKey());
 
                 // Start the asynchronous processing
-                FileUtil.startProcessingFile(file.getId());
+                FileUtil.startProcessingFile(file.getId(), documentDto.getLanguage(), false);
                 FileUpdatedAsyncEvent event = new FileUpdatedAsyncEvent();
                 event.setUserId("admin");
                 event.setLanguage(documentDto.getLanguage());
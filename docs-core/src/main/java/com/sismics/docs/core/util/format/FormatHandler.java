@@ -30,6 +30,18 @@ public interface FormatHandler {
      */
     BufferedImage generateThumbnail(Path file) throws Exception;
 
+    /**
+     * Generate a thumbnail, which can be smaller than the original if it is much larger than needed.
+     *
+     * @param file File
+     * @param targetSize Size of the longest side of the largest rendition
+     * @return Thumbnail
+     * @throws Exception e
+     */
+    default BufferedImage generateThumbnail(Path file, int targetSize) throws Exception {
+        return generateThumbnail(file);
+    }
+
     /**
      * Extract text content.
      *
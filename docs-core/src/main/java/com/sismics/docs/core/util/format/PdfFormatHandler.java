@@ -1,9 +1,10 @@
 package com.sismics.docs.core.util.format;
 
 import com.google.common.io.Closer;
-import com.sismics.docs.core.util.FileUtil;
-import com.sismics.docs.core.util.ConfigUtil;
 import com.sismics.docs.core.constant.ConfigType;
+import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.util.ConfigUtil;
+import com.sismics.docs.core.util.OcrExecutor;
 import com.sismics.util.mime.MimeType;
 import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.multipdf.PDFMergerUtility;
@@ -18,6 +19,8 @@ import java.awt.image.BufferedImage;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.List;
 
 /**
  * PDF format handler.
@@ -56,14 +59,20 @@ public class PdfFormatHandler implements FormatHandler {
 
         // No text content, try to OCR it
         if (language != null && content != null && content.trim().isEmpty() && ConfigUtil.getConfigBooleanValue(ConfigType.OCR_ENABLED, true)) {
-            StringBuilder sb = new StringBuilder();
             try (InputStream inputStream = Files.newInputStream(file);
                  PDDocument pdfDocument = PDDocument.load(inputStream)) {
                 PDFRenderer renderer = new PDFRenderer(pdfDocument);
-                for (int pageIndex = 0; pageIndex < pdfDocument.getNumberOfPages(); pageIndex++) {
-                    log.info("OCR page " + (pageIndex + 1) + "/" + pdfDocument.getNumberOfPages() + " of PDF file containing only images");
+                int pageCount = pdfDocument.getNumberOfPages();
+                log.info("OCR " + pageCount + " pages of PDF file containing only images");
+                long startTime = System.currentTimeMillis();
+                List<OcrExecutor.PageResult> pageResultList = AppContext.getInstance().getOcrExecutor().ocrPages(language, pageCount,
+                        pageIndex -> renderer.renderImageWithDPI(pageIndex, 300, ImageType.GRAY));
+                log.info(MessageFormat.format("OCR of {0} pages done in {1}ms", pageCount, System.currentTimeMillis() - startTime));
+
+                StringBuilder sb = new StringBuilder();
+                for (OcrExecutor.PageResult pageResult : pageResultList) {
                     sb.append(" ");
-                    sb.append(FileUtil.ocrFile(language, renderer.renderImageWithDPI(pageIndex, 300, ImageType.GRAY)));
+                    sb.append(pageResult.getContent());
                 }
                 return sb.toString();
             } catch (Exception e) {
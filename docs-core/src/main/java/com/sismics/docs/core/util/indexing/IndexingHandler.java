@@ -36,9 +36,17 @@ public interface IndexingHandler {
     void shutDown();
 
     /**
-     * Clear the index.
+     * Rebuild the index from the database.
+     * Searches use the current index until the new one is complete.
      */
-    void clearIndex();
+    void rebuildIndex();
+
+    /**
+     * Returns the progress of the last index rebuild.
+     *
+     * @return Rebuild status
+     */
+    RebuildIndexStatus getRebuildIndexStatus();
 
     /**
      * Index a list of documents.
@@ -117,4 +125,21 @@ public interface IndexingHandler {
      * @throws Exception e
      */
     void findByCriteria(PaginatedList<DocumentDto> paginatedList, List<String> suggestionList, DocumentCriteria criteria, SortCriteria sortCriteria) throws Exception;
+
+    /**
+     * Suggest search terms according to the user query.
+     *
+     * @param search User search query
+     * @param limit Maximum number of suggestions
+     * @return Suggested search terms
+     * @throws Exception e
+     */
+    List<String> suggest(String search, int limit) throws Exception;
+
+    /**
+     * Returns the metrics of the suggestions lookups.
+     *
+     * @return Suggest metrics
+     */
+    SuggestMetrics getSuggestMetrics();
 }
@@ -6,7 +6,11 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.sismics.docs.core.constant.ConfigType;
 import com.sismics.docs.core.constant.PermType;
+import com.sismics.docs.core.dao.AclDao;
 import com.sismics.docs.core.dao.ConfigDao;
+import com.sismics.docs.core.dao.DocumentDao;
+import com.sismics.docs.core.dao.FileDao;
+import com.sismics.docs.core.dao.TagDao;
 import com.sismics.docs.core.dao.criteria.DocumentCriteria;
 import com.sismics.docs.core.dao.dto.DocumentDto;
 import com.sismics.docs.core.event.RebuildIndexAsyncEvent;
@@ -14,59 +18,109 @@ import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.Config;
 import com.sismics.docs.core.model.jpa.Document;
 import com.sismics.docs.core.model.jpa.File;
+import com.sismics.docs.core.util.ConfigUtil;
 import com.sismics.docs.core.util.DirectoryUtil;
 import com.sismics.docs.core.util.SecurityUtil;
+import com.sismics.docs.core.util.TransactionUtil;
 import com.sismics.docs.core.util.jpa.PaginatedList;
 import com.sismics.docs.core.util.jpa.PaginatedLists;
 import com.sismics.docs.core.util.jpa.QueryParam;
+import com.sismics.docs.core.util.jpa.QueryUtil;
 import com.sismics.docs.core.util.jpa.SortCriteria;
 import com.sismics.util.ClasspathScanner;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.CheckIndex;
 import org.apache.lucene.index.ConcurrentMergeScheduler;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.simple.SimpleQueryParser;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexOrDocValuesQuery;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldCollector;
 import org.apache.lucene.search.highlight.Highlighter;
 import org.apache.lucene.search.highlight.QueryScorer;
 import org.apache.lucene.search.highlight.SimpleHTMLEncoder;
 import org.apache.lucene.search.highlight.SimpleHTMLFormatter;
-import org.apache.lucene.search.spell.LuceneDictionary;
+import org.apache.lucene.search.spell.HighFrequencyDictionary;
 import org.apache.lucene.search.suggest.Lookup;
-import org.apache.lucene.search.suggest.analyzing.FuzzySuggester;
+import org.apache.lucene.search.suggest.analyzing.AnalyzingInfixSuggester;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.NIOFSDirectory;
 import org.apache.lucene.store.NoLockFactory;
 import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.sql.Timestamp;
+import java.text.Collator;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Lucene indexing handler.
- * Documents and files are indexed in Lucene, but only used for fulltext search.
- * Other search criteria are still using the database.
+ * Documents are indexed with their ACLs, tags, files MIME types and shares,
+ * so searches are filtered, sorted, counted and paginated by the index.
+ * Only the requested page is read from the database, searches on active routes still use the database.
+ * Writes are committed in batches, searches see uncommitted writes through near real-time readers.
+ * The index is rebuilt in a separate directory which replaces the current index once complete.
  *
  * @author bgamard
  */
@@ -77,21 +131,132 @@ public class LuceneIndexingHandler implements IndexingHandler {
      */
     private static final Logger log = LoggerFactory.getLogger(LuceneIndexingHandler.class);
 
+    /**
+     * Version of the indexed fields, the index is rebuilt when it changes.
+     */
+    private static final String INDEX_VERSION = "4";
+
+    /**
+     * Collator of the title sort keys, close to the locale aware collation of the database.
+     * Collators are not thread safe, documents are indexed concurrently during a rebuild.
+     */
+    private static final ThreadLocal<Collator> TITLE_COLLATOR = ThreadLocal.withInitial(() -> Collator.getInstance(Locale.ROOT));
+
+    /**
+     * Number of documents or files read from the database at once during a rebuild.
+     */
+    private static final int REBUILD_BATCH_SIZE = 500;
+
+    /**
+     * Number of batches between two rebuild checkpoints.
+     */
+    private static final int REBUILD_CHECKPOINT_BATCHES = 100;
+
+    /**
+     * Maximum number of writes kept in memory during a rebuild, the writes beyond are read again from the database.
+     */
+    private static final int REBUILD_MAX_PENDING_WRITES = 10000;
+
     /**
      * Lucene directory.
      */
     private Directory directory;
 
     /**
-     * Directory reader.
+     * Lucene suggestions directory.
      */
-    private DirectoryReader directoryReader;
+    private Directory suggestDirectory;
+
+    /**
+     * Search terms suggester, updated with the indexed titles.
+     */
+    private AnalyzingInfixSuggester suggester;
+
+    /**
+     * True if the suggester has uncommitted changes.
+     */
+    private final AtomicBoolean suggesterDirty = new AtomicBoolean();
+
+    /**
+     * Metrics of the suggestions lookups.
+     */
+    private final SuggestMetrics suggestMetrics = new SuggestMetrics();
+
+    /**
+     * Near real-time searcher manager.
+     */
+    private SearcherManager searcherManager;
 
     /**
      * Index writer.
      */
     private IndexWriter indexWriter;
 
+    /**
+     * Periodic index commits.
+     */
+    private ScheduledExecutorService commitExecutor;
+
+    /**
+     * Maximum number of operations before a commit.
+     */
+    private int commitMaxOperations;
+
+    /**
+     * Number of operations not yet committed.
+     */
+    private final AtomicInteger pendingOperations = new AtomicInteger();
+
+    /**
+     * Generation of the last index write.
+     */
+    private final AtomicLong writeGeneration = new AtomicLong();
+
+    /**
+     * Generation of the index writes visible to searchers.
+     */
+    private final AtomicLong refreshGeneration = new AtomicLong();
+
+    /**
+     * Guards the index writer and searcher manager, which are replaced at the end of a rebuild.
+     */
+    private final ReentrantReadWriteLock indexLock = new ReentrantReadWriteLock();
+
+    /**
+     * True while the index is rebuilt.
+     */
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    /**
+     * Writes done on the current index during a rebuild, replayed on the new index before it replaces the current one.
+     */
+    private final List<LuceneRunnable> rebuildPendingList = new ArrayList<>();
+
+    /**
+     * True if writes have been dropped from the pending list, guarded by the pending list.
+     */
+    private boolean rebuildPendingOverflow;
+
+    /**
+     * Number of documents and files indexed by the current rebuild.
+     */
+    private final AtomicLong rebuildProcessedCount = new AtomicLong();
+
+    /**
+     * Number of documents and files indexed by the current rebuild before it was resumed.
+     */
+    private volatile long rebuildResumedCount;
+
+    /**
+     * Total number of documents and files to index by the current rebuild.
+     */
+    private volatile long rebuildTotalCount;
+
+    /**
+     * Start date of the last rebuild, or of its last resumption.
+     */
+    private volatile Date rebuildStartDate;
+
     @Override
     public boolean accept() {
         // Embedded Lucene can always start
@@ -105,16 +270,48 @@ public class LuceneIndexingHandler implements IndexingHandler {
         } catch (Exception e) {
             // An error occurred initializing Lucene, the index is out of date or broken, delete everything
             log.info("Unable to initialize Lucene, cleaning up the index: " + e.getMessage());
-            Path luceneDirectory = DirectoryUtil.getLuceneDirectory();
-            Files.walk(luceneDirectory)
-                    .sorted(Comparator.reverseOrder())
-                    .map(Path::toFile)
-                    .forEach(java.io.File::delete);
+            for (Path luceneDirectory : Lists.newArrayList(DirectoryUtil.getLuceneDirectory(), DirectoryUtil.getLuceneSuggestDirectory())) {
+                Files.walk(luceneDirectory)
+                        .sorted(Comparator.reverseOrder())
+                        .map(Path::toFile)
+                        .forEach(java.io.File::delete);
+            }
 
             // Re-initialize and schedule a full reindex
             initLucene();
             RebuildIndexAsyncEvent rebuildIndexAsyncEvent = new RebuildIndexAsyncEvent();
-            AppContext.getInstance().getAsyncEventBus().post(rebuildIndexAsyncEvent);
+            AppContext.getInstance().postAsyncEvent(rebuildIndexAsyncEvent);
+        }
+
+        // Resume an interrupted rebuild
+        if (!(directory instanceof RAMDirectory)) {
+            try (Directory rebuildDirectory = openRebuildDirectory()) {
+                if (readRebuildCheckpoint(rebuildDirectory) != null) {
+                    log.info("Resuming the interrupted index rebuild");
+                    RebuildIndexAsyncEvent rebuildIndexAsyncEvent = new RebuildIndexAsyncEvent();
+                    AppContext.getInstance().postAsyncEvent(rebuildIndexAsyncEvent);
+                }
+            }
+        }
+
+        // Commit pending changes periodically, searches use near real-time readers in between
+        int commitInterval = ConfigUtil.getConfigIntegerValue(ConfigType.LUCENE_COMMIT_INTERVAL, 5);
+        commitMaxOperations = ConfigUtil.getConfigIntegerValue(ConfigType.LUCENE_COMMIT_MAX_OPERATIONS, 1000);
+        commitExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lucene-commit");
+            thread.setDaemon(true);
+            return thread;
+        });
+        commitExecutor.scheduleWithFixedDelay(() -> {
+            commit();
+            refreshSearcher();
+            commitSuggester();
+        }, commitInterval, commitInterval, TimeUnit.SECONDS);
+
+        // Open the suggester, it is built from the index only once
+        suggester = new AnalyzingInfixSuggester(suggestDirectory, new StandardAnalyzer());
+        if (suggester.getCount() == 0) {
+            buildSuggester();
         }
     }
 
@@ -126,22 +323,22 @@ public class LuceneIndexingHandler implements IndexingHandler {
         // RAM directory storage by default
         if (luceneStorage == null || luceneStorage.equals("RAM")) {
             directory = new RAMDirectory();
+            suggestDirectory = new RAMDirectory();
             log.info("Using RAM Lucene storage");
         } else if (luceneStorage.equals("FILE")) {
+            recoverIndexSwap();
             Path luceneDirectory = DirectoryUtil.getLuceneDirectory();
             log.info("Using file Lucene storage: {}", luceneDirectory);
             directory = new NIOFSDirectory(luceneDirectory, NoLockFactory.INSTANCE);
+            suggestDirectory = new NIOFSDirectory(DirectoryUtil.getLuceneSuggestDirectory());
         }
 
-        // Create an index writer
-        IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
-        config.setCommitOnClose(true);
-        config.setMergeScheduler(new ConcurrentMergeScheduler());
-        indexWriter = new IndexWriter(directory, config);
-
         // Check index version and rebuild it if necessary
         if (DirectoryReader.indexExists(directory)) {
             log.info("Checking index health and version");
+            if (!INDEX_VERSION.equals(SegmentInfos.readLatestCommit(directory).getUserData().get("version"))) {
+                throw new Exception("Index version is outdated");
+            }
             try (CheckIndex checkIndex = new CheckIndex(directory)) {
                 CheckIndex.Status status = checkIndex.checkIndex();
                 if (!status.clean) {
@@ -149,15 +346,50 @@ public class LuceneIndexingHandler implements IndexingHandler {
                 }
             }
         }
+
+        openIndexWriter();
+    }
+
+    /**
+     * Open the index writer and its near real-time searcher manager on the index directory.
+     *
+     * @throws IOException e
+     */
+    private void openIndexWriter() throws IOException {
+        IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
+        config.setCommitOnClose(true);
+        config.setMergeScheduler(new ConcurrentMergeScheduler());
+        indexWriter = new IndexWriter(directory, config);
+        indexWriter.setLiveCommitData(Collections.singletonMap("version", INDEX_VERSION).entrySet());
+
+        // Near real-time searches on the index writer, new searchers are warmed up before being used
+        searcherManager = new SearcherManager(indexWriter, new SearcherFactory() {
+            @Override
+            public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) throws IOException {
+                IndexSearcher searcher = super.newSearcher(reader, previousReader);
+                warmUp(searcher);
+                return searcher;
+            }
+        });
     }
 
     @Override
     public void shutDown() {
-        if (directoryReader != null) {
+        if (commitExecutor != null) {
+            commitExecutor.shutdownNow();
+        }
+        if (suggester != null) {
             try {
-                directoryReader.close();
+                suggester.close();
             } catch (IOException e) {
-                log.error("Error closing the index reader", e);
+                log.error("Error closing the suggester", e);
+            }
+        }
+        if (searcherManager != null) {
+            try {
+                searcherManager.close();
+            } catch (IOException e) {
+                log.error("Error closing the searcher manager", e);
             }
         }
         if (indexWriter != null) {
@@ -174,21 +406,443 @@ public class LuceneIndexingHandler implements IndexingHandler {
                 log.error("Error closing Lucene index", e);
             }
         }
+        if (suggestDirectory != null) {
+            try {
+                suggestDirectory.close();
+            } catch (IOException e) {
+                log.error("Error closing Lucene suggestions index", e);
+            }
+        }
     }
 
     @Override
-    public void clearIndex() {
-        handle(IndexWriter::deleteAll);
+    public void rebuildIndex() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            log.info("The index is already being rebuilt");
+            return;
+        }
+
+        Directory rebuildDirectory = null;
+        IndexWriter rebuildWriter = null;
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "lucene-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            // Resume the interrupted rebuild if any, otherwise start from an empty index
+            rebuildDirectory = directory instanceof RAMDirectory ? new RAMDirectory() : openRebuildDirectory();
+            Map<String, String> checkpoint = readRebuildCheckpoint(rebuildDirectory);
+            boolean resumed = checkpoint != null;
+            rebuildStartDate = new Date();
+            if (checkpoint == null) {
+                checkpoint = new HashMap<>();
+                checkpoint.put("version", INDEX_VERSION);
+                checkpoint.put("rebuild_start", Long.toString(rebuildStartDate.getTime()));
+                checkpoint.put("rebuild_phase", "document");
+            }
+            rebuildResumedCount = Long.parseLong(checkpoint.getOrDefault("rebuild_processed", "0"));
+            rebuildProcessedCount.set(rebuildResumedCount);
+            TransactionUtil.handle(() -> rebuildTotalCount = new DocumentDao().getDocumentCount() + new FileDao().getFileCount());
+
+            IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
+            config.setOpenMode(resumed ? IndexWriterConfig.OpenMode.APPEND : IndexWriterConfig.OpenMode.CREATE);
+            config.setRAMBufferSizeMB(64);
+            config.setMergeScheduler(new ConcurrentMergeScheduler());
+            rebuildWriter = new IndexWriter(rebuildDirectory, config);
+
+            // Database pages are read by this thread and indexed in parallel
+            if (checkpoint.get("rebuild_phase").equals("document")) {
+                rebuildBatches(rebuildWriter, executor, threadCount * 2, checkpoint, "document", lastId -> {
+                    RebuildBatch batch = new RebuildBatch();
+                    TransactionUtil.handle(() -> {
+                        List<Document> documentList = new DocumentDao().findAll(lastId, REBUILD_BATCH_SIZE);
+                        DocumentMetadata metadata = getDocumentMetadata(documentList);
+                        for (Document document : documentList) {
+                            batch.luceneDocumentList.add(getDocumentFromDocument(document, metadata));
+                            batch.lastId = document.getId();
+                        }
+                        batch.loaded = true;
+                    });
+                    return batch;
+                });
+                checkpoint.put("rebuild_phase", "file");
+                checkpoint.remove("rebuild_last_id");
+            }
+            rebuildBatches(rebuildWriter, executor, threadCount * 2, checkpoint, "file", lastId -> {
+                RebuildBatch batch = new RebuildBatch();
+                TransactionUtil.handle(() -> {
+                    FileDao fileDao = new FileDao();
+                    List<File> fileList = fileDao.findAll(lastId, REBUILD_BATCH_SIZE);
+                    fileDao.loadContent(fileList);
+                    for (File file : fileList) {
+                        batch.luceneDocumentList.add(getDocumentFromFile(file));
+                        batch.lastId = file.getId();
+                    }
+                    batch.loaded = true;
+                });
+                return batch;
+            });
+
+            // Writes done while a previous rebuild was interrupted are only known from the database
+            if (resumed) {
+                catchUpRebuild(rebuildWriter, new Date(Long.parseLong(checkpoint.get("rebuild_start"))));
+            }
+
+            swapIndex(rebuildWriter, rebuildDirectory);
+            rebuildWriter = null;
+            rebuildDirectory = null;
+            buildSuggester();
+        } catch (Exception e) {
+            log.error("Error rebuilding the index", e);
+        } finally {
+            executor.shutdownNow();
+            if (rebuildWriter != null) {
+                try {
+                    // Keep the last checkpoint to resume the rebuild later
+                    rebuildWriter.rollback();
+                } catch (IOException e) {
+                    log.error("Error closing the rebuild index writer", e);
+                }
+            }
+            if (rebuildDirectory != null) {
+                try {
+                    rebuildDirectory.close();
+                } catch (IOException e) {
+                    log.error("Error closing Lucene rebuild index", e);
+                }
+            }
+            synchronized (rebuildPendingList) {
+                rebuildPendingList.clear();
+                rebuildPendingOverflow = false;
+            }
+            rebuilding.set(false);
+        }
+    }
+
+    @Override
+    public RebuildIndexStatus getRebuildIndexStatus() {
+        Date startDate = rebuildStartDate;
+        long processedCount = rebuildProcessedCount.get();
+        long totalCount = rebuildTotalCount;
+        Long eta = null;
+        if (rebuilding.get() && startDate != null && processedCount > rebuildResumedCount) {
+            // Extrapolate from the indexing rate of the current run
+            long elapsed = System.currentTimeMillis() - startDate.getTime();
+            long remaining = Math.max(totalCount - processedCount, 0);
+            eta = remaining * elapsed / (processedCount - rebuildResumedCount) / 1000;
+        }
+        return new RebuildIndexStatus(rebuilding.get(), processedCount, totalCount,
+                startDate == null ? null : startDate.getTime(), eta);
+    }
+
+    /**
+     * Index all the batches of one kind of entities in the rebuild index.
+     * A checkpoint is committed regularly to be able to resume the rebuild.
+     *
+     * @param rebuildWriter Rebuild index writer
+     * @param executor Indexing executor
+     * @param maxPendingBatches Maximum number of batches waiting to be indexed
+     * @param checkpoint Checkpoint data (updated by side effects)
+     * @param phase Rebuild phase
+     * @param batchLoader Loads the batch following an ID, null for the first batch
+     * @throws Exception e
+     */
+    private void rebuildBatches(IndexWriter rebuildWriter, ExecutorService executor, int maxPendingBatches,
+                                Map<String, String> checkpoint, String phase, Function<String, RebuildBatch> batchLoader) throws Exception {
+        checkpoint.put("rebuild_phase", phase);
+        String lastId = checkpoint.get("rebuild_last_id");
+        LinkedList<Future<?>> futureList = new LinkedList<>();
+        int batchCount = 0;
+        while (true) {
+            RebuildBatch batch = batchLoader.apply(lastId);
+            if (!batch.loaded) {
+                throw new Exception("Error reading the " + phase + "s to index");
+            }
+            if (batch.luceneDocumentList.isEmpty()) {
+                break;
+            }
+
+            futureList.add(executor.submit(() -> {
+                rebuildWriter.addDocuments(batch.luceneDocumentList);
+                rebuildProcessedCount.addAndGet(batch.luceneDocumentList.size());
+                return null;
+            }));
+            lastId = batch.lastId;
+
+            // Don't read the database faster than the index is written
+            while (futureList.size() > maxPendingBatches) {
+                futureList.removeFirst().get();
+            }
+
+            if (++batchCount % REBUILD_CHECKPOINT_BATCHES == 0) {
+                waitAll(futureList);
+                checkpoint.put("rebuild_last_id", lastId);
+                checkpoint.put("rebuild_processed", Long.toString(rebuildProcessedCount.get()));
+                rebuildWriter.setLiveCommitData(checkpoint.entrySet());
+                rebuildWriter.commit();
+            }
+        }
+        waitAll(futureList);
+    }
+
+    /**
+     * Wait for all the indexing tasks to complete.
+     *
+     * @param futureList Indexing tasks (emptied by side effects)
+     * @throws Exception e
+     */
+    private void waitAll(LinkedList<Future<?>> futureList) throws Exception {
+        while (!futureList.isEmpty()) {
+            futureList.removeFirst().get();
+        }
+    }
+
+    /**
+     * Reindex the documents and files written since a rebuild started.
+     * ACL changes are not dated, they are guarded by the ACL check of the search page.
+     *
+     * @param rebuildWriter Rebuild index writer
+     * @param since Start date of the rebuild
+     * @throws Exception e
+     */
+    private void catchUpRebuild(IndexWriter rebuildWriter, Date since) throws Exception {
+        AtomicBoolean done = new AtomicBoolean();
+        TransactionUtil.handle(() -> {
+            try {
+                DocumentDao documentDao = new DocumentDao();
+                List<Document> documentList = documentDao.findUpdatedSince(since);
+                DocumentMetadata metadata = getDocumentMetadata(documentList);
+                for (Document document : documentList) {
+                    rebuildWriter.updateDocument(new Term("id", document.getId()), getDocumentFromDocument(document, metadata));
+                }
+                for (String documentId : documentDao.findIdsDeletedSince(since)) {
+                    rebuildWriter.deleteDocuments(new Term("id", documentId));
+                }
+
+                FileDao fileDao = new FileDao();
+                List<File> fileList = fileDao.findCreatedSince(since);
+                fileDao.loadContent(fileList);
+                for (File file : fileList) {
+                    rebuildWriter.updateDocument(new Term("id", file.getId()), getDocumentFromFile(file));
+                }
+                for (String fileId : fileDao.findIdsDeletedSince(since)) {
+                    rebuildWriter.deleteDocuments(new Term("id", fileId));
+                }
+                done.set(true);
+            } catch (IOException e) {
+                log.error("Error reindexing the writes done during the rebuild", e);
+            }
+        });
+        if (!done.get()) {
+            throw new Exception("Error reindexing the writes done during the rebuild");
+        }
+    }
+
+    /**
+     * Replace the current index with the rebuilt one.
+     * The writes done on the current index during the rebuild are replayed on the new index first.
+     * On disk, the index directories are swapped by renaming them, a swap interrupted by a crash is recovered at startup.
+     *
+     * @param rebuildWriter Rebuild index writer, closed by this method
+     * @param rebuildDirectory Rebuild index directory, closed by this method
+     * @throws Exception e
+     */
+    private void swapIndex(IndexWriter rebuildWriter, Directory rebuildDirectory) throws Exception {
+        // Read again the writes dropped from the pending list
+        boolean pendingOverflow;
+        synchronized (rebuildPendingList) {
+            pendingOverflow = rebuildPendingOverflow;
+            rebuildPendingOverflow = false;
+        }
+        if (pendingOverflow) {
+            catchUpRebuild(rebuildWriter, rebuildStartDate);
+        }
+
+        // Replay most pending writes before blocking the index
+        replayPendingWrites(rebuildWriter);
+
+        indexLock.writeLock().lock();
+        try {
+            replayPendingWrites(rebuildWriter);
+
+            // The only commit of the new index, without checkpoint
+            rebuildWriter.setLiveCommitData(Collections.singletonMap("version", INDEX_VERSION).entrySet());
+            rebuildWriter.close();
+
+            // Close the current index, its writes are in the new index
+            searcherManager.close();
+            indexWriter.rollback();
+            try {
+                if (rebuildDirectory instanceof RAMDirectory) {
+                    directory.close();
+                    directory = rebuildDirectory;
+                } else {
+                    directory.close();
+                    rebuildDirectory.close();
+                    try {
+                        Path lucenePath = DirectoryUtil.getLuceneDirectory();
+                        Path oldPath = getLuceneOldDirectory();
+                        Files.move(lucenePath, oldPath, StandardCopyOption.ATOMIC_MOVE);
+                        Files.move(DirectoryUtil.getLuceneRebuildDirectory(), lucenePath, StandardCopyOption.ATOMIC_MOVE);
+                        IOUtils.fsync(lucenePath.getParent(), true);
+                        deleteDirectory(oldPath);
+                    } finally {
+                        // Complete or roll back a swap failed midway
+                        recoverIndexSwap();
+                        directory = new NIOFSDirectory(DirectoryUtil.getLuceneDirectory(), NoLockFactory.INSTANCE);
+                    }
+                }
+            } finally {
+                openIndexWriter();
+                pendingOperations.set(0);
+                refreshGeneration.set(writeGeneration.get());
+            }
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Complete or roll back a swap of the index directories interrupted by a crash.
+     * The rebuilt index is renamed after its last commit, so it is complete when the current index is missing.
+     *
+     * @throws IOException e
+     */
+    private void recoverIndexSwap() throws IOException {
+        Path oldPath = getLuceneOldDirectory();
+        if (!Files.exists(oldPath)) {
+            return;
+        }
+
+        Path lucenePath = DirectoryUtil.getLuceneDirectory();
+        if (!indexExists(lucenePath)) {
+            deleteDirectory(lucenePath);
+            Path rebuildPath = DirectoryUtil.getLuceneRebuildDirectory();
+            if (indexExists(rebuildPath) && readCommitData(rebuildPath).get("rebuild_phase") == null) {
+                log.info("Completing the interrupted index swap");
+                Files.move(rebuildPath, lucenePath, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                log.info("Rolling back the interrupted index swap");
+                Files.move(oldPath, lucenePath, StandardCopyOption.ATOMIC_MOVE);
+            }
+            IOUtils.fsync(lucenePath.getParent(), true);
+        }
+        deleteDirectory(oldPath);
+    }
+
+    /**
+     * Returns the directory of the replaced index during a swap.
+     * Not created, it only exists while the index directories are swapped.
+     *
+     * @return Replaced index directory
+     */
+    private static Path getLuceneOldDirectory() {
+        return DirectoryUtil.getLuceneDirectory().resolveSibling("lucene-old");
+    }
+
+    /**
+     * Returns true if an index has been committed in a directory.
+     *
+     * @param path Directory
+     * @return True if an index exists
+     * @throws IOException e
+     */
+    private static boolean indexExists(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return false;
+        }
+        try (Directory directory = new NIOFSDirectory(path, NoLockFactory.INSTANCE)) {
+            return DirectoryReader.indexExists(directory);
+        }
+    }
+
+    /**
+     * Read the data of the last commit of an index.
+     *
+     * @param path Index directory
+     * @return Commit data
+     * @throws IOException e
+     */
+    private static Map<String, String> readCommitData(Path path) throws IOException {
+        try (Directory directory = new NIOFSDirectory(path, NoLockFactory.INSTANCE)) {
+            return SegmentInfos.readLatestCommit(directory).getUserData();
+        }
+    }
+
+    /**
+     * Delete a directory and its content, if it exists.
+     *
+     * @param path Directory
+     * @throws IOException e
+     */
+    private static void deleteDirectory(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> pathStream = Files.walk(path)) {
+            for (Path child : pathStream.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(child);
+            }
+        }
+    }
+
+    /**
+     * Replay the writes done on the current index during the rebuild.
+     *
+     * @param rebuildWriter Rebuild index writer
+     * @throws Exception e
+     */
+    private void replayPendingWrites(IndexWriter rebuildWriter) throws Exception {
+        List<LuceneRunnable> runnableList;
+        synchronized (rebuildPendingList) {
+            runnableList = new ArrayList<>(rebuildPendingList);
+            rebuildPendingList.clear();
+        }
+        for (LuceneRunnable runnable : runnableList) {
+            runnable.run(rebuildWriter);
+        }
+    }
+
+    /**
+     * Open the directory of the rebuild index.
+     *
+     * @return Rebuild index directory
+     * @throws IOException e
+     */
+    private Directory openRebuildDirectory() throws IOException {
+        return new NIOFSDirectory(DirectoryUtil.getLuceneRebuildDirectory(), NoLockFactory.INSTANCE);
+    }
+
+    /**
+     * Read the checkpoint of an interrupted rebuild.
+     *
+     * @param rebuildDirectory Rebuild index directory
+     * @return Checkpoint data, or null if there is no rebuild to resume
+     * @throws IOException e
+     */
+    private Map<String, String> readRebuildCheckpoint(Directory rebuildDirectory) throws IOException {
+        if (!DirectoryReader.indexExists(rebuildDirectory)) {
+            return null;
+        }
+        Map<String, String> checkpoint = new HashMap<>(SegmentInfos.readLatestCommit(rebuildDirectory).getUserData());
+        if (!INDEX_VERSION.equals(checkpoint.get("version")) || !checkpoint.containsKey("rebuild_phase")) {
+            return null;
+        }
+        return checkpoint;
     }
 
     @Override
     public void createDocuments(List<Document> documentList) {
+        DocumentMetadata metadata = getDocumentMetadata(documentList);
         handle(indexWriter -> {
             for (Document document : documentList) {
-                org.apache.lucene.document.Document luceneDocument = getDocumentFromDocument(document);
-                indexWriter.addDocument(luceneDocument);
+                org.apache.lucene.document.Document luceneDocument = getDocumentFromDocument(document, metadata);
+                indexWriter.updateDocument(new Term("id", document.getId()), luceneDocument);
             }
         });
+        updateSuggester(documentList);
     }
 
     @Override
@@ -196,24 +850,26 @@ public class LuceneIndexingHandler implements IndexingHandler {
         handle(indexWriter -> {
             for (File file : fileList) {
                 org.apache.lucene.document.Document luceneDocument = getDocumentFromFile(file);
-                indexWriter.addDocument(luceneDocument);
+                indexWriter.updateDocument(new Term("id", file.getId()), luceneDocument);
             }
         });
     }
 
     @Override
     public void createDocument(final Document document) {
+        DocumentMetadata metadata = getDocumentMetadata(Lists.newArrayList(document));
         handle(indexWriter -> {
-            org.apache.lucene.document.Document luceneDocument = getDocumentFromDocument(document);
-            indexWriter.addDocument(luceneDocument);
+            org.apache.lucene.document.Document luceneDocument = getDocumentFromDocument(document, metadata);
+            indexWriter.updateDocument(new Term("id", document.getId()), luceneDocument);
         });
+        updateSuggester(Lists.newArrayList(document));
     }
 
     @Override
     public void createFile(final File file) {
         handle(indexWriter -> {
             org.apache.lucene.document.Document luceneDocument = getDocumentFromFile(file);
-            indexWriter.addDocument(luceneDocument);
+            indexWriter.updateDocument(new Term("id", file.getId()), luceneDocument);
         });
     }
 
@@ -227,10 +883,23 @@ public class LuceneIndexingHandler implements IndexingHandler {
 
     @Override
     public void updateDocument(final Document document) {
+        updateDocuments(Lists.newArrayList(document));
+    }
+
+    /**
+     * Update a list of indexed documents.
+     *
+     * @param documentList Documents
+     */
+    private void updateDocuments(List<Document> documentList) {
+        DocumentMetadata metadata = getDocumentMetadata(documentList);
         handle(indexWriter -> {
-            org.apache.lucene.document.Document luceneDocument = getDocumentFromDocument(document);
-            indexWriter.updateDocument(new Term("id", document.getId()), luceneDocument);
+            for (Document document : documentList) {
+                org.apache.lucene.document.Document luceneDocument = getDocumentFromDocument(document, metadata);
+                indexWriter.updateDocument(new Term("id", document.getId()), luceneDocument);
+            }
         });
+        updateSuggester(documentList);
     }
 
     @Override
@@ -240,42 +909,50 @@ public class LuceneIndexingHandler implements IndexingHandler {
 
     @Override
     public void createAcl(String sourceId, PermType perm, String targetId) {
-        // Lucene does not index ACLs
+        updateAcl(sourceId, perm);
     }
 
     @Override
     public void deleteAcl(String sourceId, PermType perm, String targetId) {
-        // Lucene does not index ACLs
+        updateAcl(sourceId, perm);
+    }
+
+    /**
+     * Reindex the readers of the documents affected by an ACL change.
+     * The ACL source is either a document, or a tag giving access to its documents.
+     *
+     * @param sourceId Source ID
+     * @param perm Permission type
+     */
+    private void updateAcl(String sourceId, PermType perm) {
+        if (perm != PermType.READ) {
+            return;
+        }
+
+        DocumentDao documentDao = new DocumentDao();
+        Document document = documentDao.getById(sourceId);
+        if (document != null) {
+            updateDocument(document);
+        } else {
+            updateDocuments(documentDao.findByTagId(sourceId));
+        }
     }
 
     @Override
     public void findByCriteria(PaginatedList<DocumentDto> paginatedList, List<String> suggestionList, DocumentCriteria criteria, SortCriteria sortCriteria) throws Exception {
+        // The stale documents found by a first search are reindexed before searching again
+        if (isIndexSearch(criteria, sortCriteria)
+                && (findByCriteriaInIndex(paginatedList, criteria, sortCriteria) || findByCriteriaInIndex(paginatedList, criteria, sortCriteria))) {
+            suggestionList.addAll(suggest(criteria.getFullSearch(), 10));
+            return;
+        }
+
         Map<String, Object> parameterMap = new HashMap<>();
         List<String> criteriaList = new ArrayList<>();
         Map<String, String> documentSearchMap = Maps.newHashMap();
 
-        StringBuilder sb = new StringBuilder("select distinct d.DOC_ID_C c0, d.DOC_TITLE_C c1, d.DOC_DESCRIPTION_C c2, d.DOC_CREATEDATE_D c3, d.DOC_LANGUAGE_C c4, d.DOC_IDFILE_C, ");
-        sb.append(" s.count c5, ");
-        sb.append(" rs2.RTP_ID_C c7, rs2.RTP_NAME_C, d.DOC_UPDATEDATE_D c8 ");
-        sb.append(" from T_DOCUMENT d ");
-        sb.append(" left join (SELECT count(s.SHA_ID_C) count, ac.ACL_SOURCEID_C " +
-                "   FROM T_SHARE s, T_ACL ac " +
-                "   WHERE ac.ACL_TARGETID_C = s.SHA_ID_C AND ac.ACL_DELETEDATE_D IS NULL AND " +
-                "         s.SHA_DELETEDATE_D IS NULL group by ac.ACL_SOURCEID_C) s on s.ACL_SOURCEID_C = d.DOC_ID_C ");
-        sb.append(" left join (select rs.*, rs3.idDocument " +
-                "from T_ROUTE_STEP rs " +
-                "join (select r.RTE_IDDOCUMENT_C idDocument, rs.RTP_IDROUTE_C idRoute, min(rs.RTP_ORDER_N) minOrder from T_ROUTE_STEP rs join T_ROUTE r on r.RTE_ID_C = rs.RTP_IDROUTE_C and r.RTE_DELETEDATE_D is null where rs.RTP_DELETEDATE_D is null and rs.RTP_ENDDATE_D is null group by rs.RTP_IDROUTE_C, r.RTE_IDDOCUMENT_C) rs3 on rs.RTP_IDROUTE_C = rs3.idRoute and rs.RTP_ORDER_N = rs3.minOrder " +
-                "where rs.RTP_IDTARGET_C in (:targetIdList)) rs2 on rs2.idDocument = d.DOC_ID_C ");
-
-        // Add search criterias
-        if (!SecurityUtil.skipAclCheck(criteria.getTargetIdList())) {
-            // Read permission is enough for searching
-            sb.append(" left join T_ACL a on a.ACL_TARGETID_C in (:targetIdList) and a.ACL_SOURCEID_C = d.DOC_ID_C and a.ACL_PERM_C = 'READ' and a.ACL_DELETEDATE_D is null ");
-            sb.append(" left join T_DOCUMENT_TAG dta on dta.DOT_IDDOCUMENT_C = d.DOC_ID_C and dta.DOT_DELETEDATE_D is null ");
-            sb.append(" left join T_ACL a2 on a2.ACL_TARGETID_C in (:targetIdList) and a2.ACL_SOURCEID_C = dta.DOT_IDTAG_C and a2.ACL_PERM_C = 'READ' and a2.ACL_DELETEDATE_D is null ");
-            criteriaList.add("(a.ACL_ID_C is not null or a2.ACL_ID_C is not null)");
-        }
-        parameterMap.put("targetIdList", criteria.getTargetIdList());
+        StringBuilder sb = new StringBuilder();
+        buildDocumentQuery(sb, parameterMap, criteriaList, criteria);
         if (!Strings.isNullOrEmpty(criteria.getSimpleSearch()) || !Strings.isNullOrEmpty(criteria.getFullSearch())) {
             documentSearchMap = search(criteria.getSimpleSearch(), criteria.getFullSearch());
             if (documentSearchMap.isEmpty()) {
@@ -285,7 +962,7 @@ public class LuceneIndexingHandler implements IndexingHandler {
             criteriaList.add("d.DOC_ID_C in :documentIdList");
             parameterMap.put("documentIdList", documentSearchMap.keySet());
 
-            suggestSearchTerms(criteria.getFullSearch(), suggestionList);
+            suggestionList.addAll(suggest(criteria.getFullSearch(), 10));
         }
         if (criteria.getCreateDateMin() != null) {
             criteriaList.add("d.DOC_CREATEDATE_D >= :createDateMin");
@@ -346,66 +1023,517 @@ public class LuceneIndexingHandler implements IndexingHandler {
             parameterMap.put("language", criteria.getLanguage());
         }
         if (criteria.getCreatorId() != null) {
-            criteriaList.add("d.DOC_IDUSER_C = :creatorId");
-            parameterMap.put("creatorId", criteria.getCreatorId());
+            criteriaList.add("d.DOC_IDUSER_C = :creatorId");
+            parameterMap.put("creatorId", criteria.getCreatorId());
+        }
+        if (criteria.getActiveRoute() != null && criteria.getActiveRoute()) {
+            criteriaList.add("rs2.RTP_ID_C is not null");
+        }
+
+        criteriaList.add("d.DOC_DELETEDATE_D is null");
+
+        sb.append(" where ");
+        sb.append(Joiner.on(" and ").join(criteriaList));
+
+        // Perform the search
+        QueryParam queryParam = new QueryParam(sb.toString(), parameterMap);
+        List<Object[]> l = PaginatedLists.executePaginatedQuery(paginatedList, queryParam, sortCriteria);
+
+        // Assemble results
+        List<DocumentDto> documentDtoList = new ArrayList<>();
+        for (Object[] o : l) {
+            DocumentDto documentDto = getDocumentDto(o);
+            documentDto.setHighlight(documentSearchMap.get(documentDto.getId()));
+            documentDtoList.add(documentDto);
+        }
+
+        paginatedList.setResultList(documentDtoList);
+    }
+
+    /**
+     * Build the base document search query, with the ACL criteria.
+     *
+     * @param sb Query (updated by side effects)
+     * @param parameterMap Query parameters (updated by side effects)
+     * @param criteriaList Query criteria (updated by side effects)
+     * @param criteria Search criteria
+     */
+    private void buildDocumentQuery(StringBuilder sb, Map<String, Object> parameterMap, List<String> criteriaList, DocumentCriteria criteria) {
+        sb.append("select distinct d.DOC_ID_C c0, d.DOC_TITLE_C c1, d.DOC_DESCRIPTION_C c2, d.DOC_CREATEDATE_D c3, d.DOC_LANGUAGE_C c4, d.DOC_IDFILE_C, ");
+        sb.append(" s.count c5, ");
+        sb.append(" rs2.RTP_ID_C c7, rs2.RTP_NAME_C, d.DOC_UPDATEDATE_D c8 ");
+        sb.append(" from T_DOCUMENT d ");
+        sb.append(" left join (SELECT count(s.SHA_ID_C) count, ac.ACL_SOURCEID_C " +
+                "   FROM T_SHARE s, T_ACL ac " +
+                "   WHERE ac.ACL_TARGETID_C = s.SHA_ID_C AND ac.ACL_DELETEDATE_D IS NULL AND " +
+                "         s.SHA_DELETEDATE_D IS NULL group by ac.ACL_SOURCEID_C) s on s.ACL_SOURCEID_C = d.DOC_ID_C ");
+        sb.append(" left join (select rs.*, rs3.idDocument " +
+                "from T_ROUTE_STEP rs " +
+                "join (select r.RTE_IDDOCUMENT_C idDocument, rs.RTP_IDROUTE_C idRoute, min(rs.RTP_ORDER_N) minOrder from T_ROUTE_STEP rs join T_ROUTE r on r.RTE_ID_C = rs.RTP_IDROUTE_C and r.RTE_DELETEDATE_D is null where rs.RTP_DELETEDATE_D is null and rs.RTP_ENDDATE_D is null group by rs.RTP_IDROUTE_C, r.RTE_IDDOCUMENT_C) rs3 on rs.RTP_IDROUTE_C = rs3.idRoute and rs.RTP_ORDER_N = rs3.minOrder " +
+                "where rs.RTP_IDTARGET_C in (:targetIdList)) rs2 on rs2.idDocument = d.DOC_ID_C ");
+
+        // Add search criterias
+        if (!SecurityUtil.skipAclCheck(criteria.getTargetIdList())) {
+            // Read permission is enough for searching
+            sb.append(" left join T_ACL a on a.ACL_TARGETID_C in (:targetIdList) and a.ACL_SOURCEID_C = d.DOC_ID_C and a.ACL_PERM_C = 'READ' and a.ACL_DELETEDATE_D is null ");
+            sb.append(" left join T_DOCUMENT_TAG dta on dta.DOT_IDDOCUMENT_C = d.DOC_ID_C and dta.DOT_DELETEDATE_D is null ");
+            sb.append(" left join T_ACL a2 on a2.ACL_TARGETID_C in (:targetIdList) and a2.ACL_SOURCEID_C = dta.DOT_IDTAG_C and a2.ACL_PERM_C = 'READ' and a2.ACL_DELETEDATE_D is null ");
+            criteriaList.add("(a.ACL_ID_C is not null or a2.ACL_ID_C is not null)");
+        }
+        parameterMap.put("targetIdList", criteria.getTargetIdList());
+    }
+
+    /**
+     * Build a document DTO from a row of the document search query.
+     *
+     * @param o Row
+     * @return Document DTO
+     */
+    private DocumentDto getDocumentDto(Object[] o) {
+        int i = 0;
+        DocumentDto documentDto = new DocumentDto();
+        documentDto.setId((String) o[i++]);
+        documentDto.setTitle((String) o[i++]);
+        documentDto.setDescription((String) o[i++]);
+        documentDto.setCreateTimestamp(((Timestamp) o[i++]).getTime());
+        documentDto.setLanguage((String) o[i++]);
+        documentDto.setFileId((String) o[i++]);
+        Number shareCount = (Number) o[i++];
+        documentDto.setShared(shareCount != null && shareCount.intValue() > 0);
+        documentDto.setActiveRoute(o[i++] != null);
+        documentDto.setCurrentStepName((String) o[i++]);
+        documentDto.setUpdateTimestamp(((Timestamp) o[i]).getTime());
+        return documentDto;
+    }
+
+    /**
+     * Return true if the search can be answered by the index.
+     * Active routes depend on the route steps of the searching user and are not indexed.
+     *
+     * @param criteria Search criteria
+     * @param sortCriteria Sort criteria
+     * @return True if the index can answer the search
+     */
+    private boolean isIndexSearch(DocumentCriteria criteria, SortCriteria sortCriteria) {
+        return (criteria.getActiveRoute() == null || !criteria.getActiveRoute())
+                && (sortCriteria == null || getSortField(sortCriteria) != null);
+    }
+
+    /**
+     * Returns the index sort field of a sort criteria.
+     *
+     * @param sortCriteria Sort criteria
+     * @return Sort field, or null if the column is not indexed
+     */
+    private SortField getSortField(SortCriteria sortCriteria) {
+        boolean reverse = !sortCriteria.isAsc();
+        switch (sortCriteria.getColumn()) {
+            case 0:
+                return new SortField("id", SortField.Type.STRING, reverse);
+            case 1:
+                return new SortField("title_sort", SortField.Type.STRING, reverse);
+            case 3:
+                return new SortField("create_date", SortField.Type.LONG, reverse);
+            case 4:
+                return new SortField("language", SortField.Type.STRING, reverse);
+            case 5:
+                return new SortField("share_count", SortField.Type.LONG, reverse);
+            case 8:
+                return new SortField("update_date", SortField.Type.LONG, reverse);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns the index sort of a sort criteria, ties are broken by ID.
+     *
+     * @param sortCriteria Sort criteria
+     * @return Sort
+     */
+    private Sort getSort(SortCriteria sortCriteria) {
+        if (sortCriteria == null) {
+            return new Sort(new SortField("id", SortField.Type.STRING));
+        }
+        return new Sort(getSortField(sortCriteria), new SortField("id", SortField.Type.STRING));
+    }
+
+    /**
+     * Searches documents in the index, only the requested page is read from the database.
+     *
+     * @param paginatedList List of documents (updated by side effects)
+     * @param criteria Search criteria
+     * @param sortCriteria Sort criteria
+     * @return False if the index is not up to date with the database, the stale documents are reindexed
+     * @throws Exception e
+     */
+    private boolean findByCriteriaInIndex(PaginatedList<DocumentDto> paginatedList, DocumentCriteria criteria, SortCriteria sortCriteria) throws Exception {
+        Analyzer analyzer = new StandardAnalyzer();
+        Query query = null;
+        if (!Strings.isNullOrEmpty(criteria.getSimpleSearch()) || !Strings.isNullOrEmpty(criteria.getFullSearch())) {
+            query = buildSearchQuery(analyzer, criteria.getSimpleSearch(), criteria.getFullSearch());
+        }
+        List<String> documentIdList = new ArrayList<>();
+        Map<String, String> highlightMap = new HashMap<>();
+
+        IndexSearcher searcher = acquireSearcher();
+        try {
+            BooleanQuery.Builder documentQuery = new BooleanQuery.Builder()
+                    .add(new TermQuery(new Term("doctype", "document")), BooleanClause.Occur.FILTER);
+            if (query != null) {
+                // Documents are matched on their own fields or on their files
+                Set<BytesRef> fileDocumentIdSet = collectFileDocumentIds(searcher, new BooleanQuery.Builder()
+                        .add(query, BooleanClause.Occur.MUST)
+                        .add(new TermQuery(new Term("doctype", "file")), BooleanClause.Occur.FILTER)
+                        .build());
+                documentQuery.add(new BooleanQuery.Builder()
+                        .add(query, BooleanClause.Occur.SHOULD)
+                        .add(new TermInSetQuery("id", fileDocumentIdSet), BooleanClause.Occur.SHOULD)
+                        .build(), BooleanClause.Occur.MUST);
+            }
+            addCriteriaFilters(documentQuery, criteria);
+
+            // Only collect the documents up to the requested page, but count all of them
+            TopFieldCollector collector = TopFieldCollector.create(getSort(sortCriteria),
+                    Math.max(1, paginatedList.getOffset() + paginatedList.getLimit()), Integer.MAX_VALUE);
+            searcher.search(documentQuery.build(), collector);
+            TopDocs topDocs = collector.topDocs(paginatedList.getOffset(), paginatedList.getLimit());
+            paginatedList.setResultCount(Math.toIntExact(topDocs.totalHits.value));
+            for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                documentIdList.add(searcher.doc(scoreDoc.doc, Collections.singleton("id")).get("id"));
+            }
+
+            // Highlight the page only
+            if (query != null) {
+                Highlighter highlighter = buildHighlighter(query);
+                for (String documentId : documentIdList) {
+                    highlightMap.put(documentId, highlight(searcher, analyzer, highlighter, query, documentId));
+                }
+            }
+        } finally {
+            releaseSearcher(searcher);
+        }
+
+        // Read the page from the database, ACLs are checked again in case the index is late
+        List<DocumentDto> documentDtoList = findPage(documentIdList, criteria);
+        if (documentDtoList.size() != documentIdList.size()) {
+            Set<String> foundIdSet = documentDtoList.stream()
+                    .map(DocumentDto::getId)
+                    .collect(Collectors.toSet());
+            List<String> staleIdList = documentIdList.stream()
+                    .filter(documentId -> !foundIdSet.contains(documentId))
+                    .collect(Collectors.toList());
+            log.info("The index is not up to date for {} documents, reindexing them", staleIdList.size());
+            reindexDocuments(staleIdList);
+            return false;
+        }
+        for (DocumentDto documentDto : documentDtoList) {
+            documentDto.setHighlight(highlightMap.get(documentDto.getId()));
+        }
+        paginatedList.setResultList(documentDtoList);
+        return true;
+    }
+
+    /**
+     * Reindex documents from the database, with their current readers.
+     * The documents deleted since they were indexed are removed from the index.
+     *
+     * @param documentIdList Document IDs
+     */
+    private void reindexDocuments(List<String> documentIdList) {
+        DocumentDao documentDao = new DocumentDao();
+        List<Document> documentList = new ArrayList<>();
+        for (String documentId : documentIdList) {
+            Document document = documentDao.getById(documentId);
+            if (document == null) {
+                deleteDocument(documentId);
+            } else {
+                documentList.add(document);
+            }
+        }
+        if (!documentList.isEmpty()) {
+            updateDocuments(documentList);
+        }
+    }
+
+    /**
+     * Add the search criteria as filters on indexed documents.
+     *
+     * @param documentQuery Documents query (updated by side effects)
+     * @param criteria Search criteria
+     */
+    private void addCriteriaFilters(BooleanQuery.Builder documentQuery, DocumentCriteria criteria) {
+        if (!SecurityUtil.skipAclCheck(criteria.getTargetIdList())) {
+            documentQuery.add(new TermInSetQuery("read_target_id", toBytesRefList(criteria.getTargetIdList())), BooleanClause.Occur.FILTER);
+        }
+        if (criteria.getCreateDateMin() != null || criteria.getCreateDateMax() != null) {
+            documentQuery.add(buildDateRangeQuery("create_date", criteria.getCreateDateMin(), criteria.getCreateDateMax()), BooleanClause.Occur.FILTER);
+        }
+        if (criteria.getUpdateDateMin() != null || criteria.getUpdateDateMax() != null) {
+            documentQuery.add(buildDateRangeQuery("update_date", criteria.getUpdateDateMin(), criteria.getUpdateDateMax()), BooleanClause.Occur.FILTER);
+        }
+        if (!criteria.getTitleList().isEmpty()) {
+            documentQuery.add(new TermInSetQuery("title_exact", toBytesRefList(criteria.getTitleList())), BooleanClause.Occur.FILTER);
+        }
+        for (List<String> tagIdList : criteria.getTagIdList()) {
+            // One of the tags of each group
+            documentQuery.add(new TermInSetQuery("tag_id", toBytesRefList(tagIdList)), BooleanClause.Occur.FILTER);
+        }
+        for (List<String> tagIdList : criteria.getExcludedTagIdList()) {
+            // None of the tags of each group
+            for (String tagId : tagIdList) {
+                documentQuery.add(new TermQuery(new Term("tag_id", tagId)), BooleanClause.Occur.MUST_NOT);
+            }
+        }
+        if (criteria.getShared() != null && criteria.getShared()) {
+            documentQuery.add(new TermQuery(new Term("shared", "true")), BooleanClause.Occur.FILTER);
+        }
+        if (criteria.getMimeType() != null) {
+            documentQuery.add(new TermQuery(new Term("mime_type", criteria.getMimeType())), BooleanClause.Occur.FILTER);
+        }
+        if (criteria.getLanguage() != null) {
+            documentQuery.add(new TermQuery(new Term("language", criteria.getLanguage())), BooleanClause.Occur.FILTER);
+        }
+        if (criteria.getCreatorId() != null) {
+            documentQuery.add(new TermQuery(new Term("creator_id", criteria.getCreatorId())), BooleanClause.Occur.FILTER);
         }
-        if (criteria.getActiveRoute() != null && criteria.getActiveRoute()) {
-            criteriaList.add("rs2.RTP_ID_C is not null");
+    }
+
+    /**
+     * Build an inclusive range query on an indexed date.
+     *
+     * @param field Field
+     * @param min Minimum date, or null
+     * @param max Maximum date, or null
+     * @return Query
+     */
+    private Query buildDateRangeQuery(String field, Date min, Date max) {
+        long lowerValue = min == null ? Long.MIN_VALUE : min.getTime();
+        long upperValue = max == null ? Long.MAX_VALUE : max.getTime();
+        return new IndexOrDocValuesQuery(LongPoint.newRangeQuery(field, lowerValue, upperValue),
+                NumericDocValuesField.newSlowRangeQuery(field, lowerValue, upperValue));
+    }
+
+    /**
+     * Convert a list of strings to index terms.
+     *
+     * @param valueList Values
+     * @return Terms
+     */
+    private List<BytesRef> toBytesRefList(List<String> valueList) {
+        return valueList.stream()
+                .map(BytesRef::new)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the IDs of the documents of all files matching a query.
+     *
+     * @param searcher Index searcher
+     * @param query Query on files
+     * @return Document IDs
+     * @throws IOException e
+     */
+    private Set<BytesRef> collectFileDocumentIds(IndexSearcher searcher, Query query) throws IOException {
+        Set<BytesRef> documentIdSet = new HashSet<>();
+        searcher.search(query, new SimpleCollector() {
+            private SortedDocValues documentIdValues;
+
+            @Override
+            protected void doSetNextReader(LeafReaderContext context) throws IOException {
+                documentIdValues = DocValues.getSorted(context.reader(), "document_id");
+            }
+
+            @Override
+            public void collect(int doc) throws IOException {
+                if (documentIdValues.advanceExact(doc)) {
+                    documentIdSet.add(BytesRef.deepCopyOf(documentIdValues.binaryValue()));
+                }
+            }
+
+            @Override
+            public ScoreMode scoreMode() {
+                return ScoreMode.COMPLETE_NO_SCORES;
+            }
+        });
+        return documentIdSet;
+    }
+
+    /**
+     * Highlight the best matching file of a document.
+     *
+     * @param searcher Index searcher
+     * @param analyzer Analyzer
+     * @param highlighter Highlighter
+     * @param query Search query
+     * @param documentId Document ID
+     * @return Highlight, or null if no file content matches
+     * @throws Exception e
+     */
+    private String highlight(IndexSearcher searcher, Analyzer analyzer, Highlighter highlighter, Query query, String documentId) throws Exception {
+        TopDocs topDocs = searcher.search(new BooleanQuery.Builder()
+                .add(query, BooleanClause.Occur.MUST)
+                .add(new TermQuery(new Term("document_id", documentId)), BooleanClause.Occur.FILTER)
+                .build(), 1);
+        if (topDocs.scoreDocs.length == 0) {
+            return null;
         }
+        String content = searcher.doc(topDocs.scoreDocs[0].doc).get("content");
+        return content == null ? null : highlighter.getBestFragment(analyzer, "content", content);
+    }
 
-        criteriaList.add("d.DOC_DELETEDATE_D is null");
+    /**
+     * Read a page of documents from the database.
+     *
+     * @param documentIdList Document IDs, in page order
+     * @param criteria Search criteria
+     * @return Readable documents, in page order
+     */
+    @SuppressWarnings("unchecked")
+    private List<DocumentDto> findPage(List<String> documentIdList, DocumentCriteria criteria) {
+        if (documentIdList.isEmpty()) {
+            return new ArrayList<>();
+        }
 
+        Map<String, Object> parameterMap = new HashMap<>();
+        List<String> criteriaList = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        buildDocumentQuery(sb, parameterMap, criteriaList, criteria);
+        criteriaList.add("d.DOC_ID_C in :documentIdList");
+        parameterMap.put("documentIdList", documentIdList);
+        criteriaList.add("d.DOC_DELETEDATE_D is null");
         sb.append(" where ");
         sb.append(Joiner.on(" and ").join(criteriaList));
 
-        // Perform the search
-        QueryParam queryParam = new QueryParam(sb.toString(), parameterMap);
-        List<Object[]> l = PaginatedLists.executePaginatedQuery(paginatedList, queryParam, sortCriteria);
-
-        // Assemble results
-        List<DocumentDto> documentDtoList = new ArrayList<>();
+        Map<String, DocumentDto> documentDtoMap = new HashMap<>();
+        List<Object[]> l = QueryUtil.getNativeQuery(new QueryParam(sb.toString(), parameterMap)).getResultList();
         for (Object[] o : l) {
-            int i = 0;
-            DocumentDto documentDto = new DocumentDto();
-            documentDto.setId((String) o[i++]);
-            documentDto.setTitle((String) o[i++]);
-            documentDto.setDescription((String) o[i++]);
-            documentDto.setCreateTimestamp(((Timestamp) o[i++]).getTime());
-            documentDto.setLanguage((String) o[i++]);
-            documentDto.setFileId((String) o[i++]);
-            Number shareCount = (Number) o[i++];
-            documentDto.setShared(shareCount != null && shareCount.intValue() > 0);
-            documentDto.setActiveRoute(o[i++] != null);
-            documentDto.setCurrentStepName((String) o[i++]);
-            documentDto.setUpdateTimestamp(((Timestamp) o[i]).getTime());
-            documentDto.setHighlight(documentSearchMap.get(documentDto.getId()));
-            documentDtoList.add(documentDto);
+            DocumentDto documentDto = getDocumentDto(o);
+            documentDtoMap.put(documentDto.getId(), documentDto);
         }
+        return documentIdList.stream()
+                .map(documentDtoMap::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
 
-        paginatedList.setResultList(documentDtoList);
+    @Override
+    public List<String> suggest(String search, int limit) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return lookup(search, limit);
+        } finally {
+            suggestMetrics.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public SuggestMetrics getSuggestMetrics() {
+        return suggestMetrics;
     }
 
     /**
-     * Suggest search terms according to the user query.
+     * Looks up the suggested search terms.
      *
      * @param search User search query
-     * @param suggestionList Suggestion of search query (updated by side effects)
+     * @param limit Maximum number of suggestions
+     * @return Suggested search terms
      * @throws Exception e
      */
-    private void suggestSearchTerms(String search, List<String> suggestionList) throws Exception {
-        DirectoryReader directoryReader = getDirectoryReader();
-        if (directoryReader == null) {
-            return;
+    private List<String> lookup(String search, int limit) throws Exception {
+        List<String> suggestionList = new ArrayList<>();
+        if (Strings.isNullOrEmpty(search)) {
+            return suggestionList;
         }
 
-        FuzzySuggester suggester = new FuzzySuggester(directory, "", new StandardAnalyzer());
-        LuceneDictionary dictionary = new LuceneDictionary(directoryReader, "title");
-        suggester.build(dictionary);
+        // Suggest terms completing the last word of the query
         int lastIndex = search.lastIndexOf(' ');
-        String suggestQuery = search.substring(Math.max(lastIndex, 0));
-        List<Lookup.LookupResult> lookupResultList = suggester.lookup(suggestQuery, false, 10);
-        for (Lookup.LookupResult lookupResult : lookupResultList) {
-            suggestionList.add(lookupResult.key.toString());
+        String suggestQuery = search.substring(Math.max(lastIndex, 0)).trim();
+        if (suggestQuery.isEmpty()) {
+            return suggestionList;
+        }
+        List<Lookup.LookupResult> lookupResultList = suggester.lookup(suggestQuery, limit * 2, true, false);
+
+        // Terms of deleted documents are not removed from the suggester, skip them
+        IndexSearcher searcher = acquireSearcher();
+        try {
+            for (Lookup.LookupResult lookupResult : lookupResultList) {
+                String term = lookupResult.key.toString();
+                if (suggestionList.size() < limit && searcher.getIndexReader().docFreq(new Term("title", term)) > 0) {
+                    suggestionList.add(term);
+                }
+            }
+        } finally {
+            releaseSearcher(searcher);
+        }
+        return suggestionList;
+    }
+
+    /**
+     * Build the suggester from all the indexed titles.
+     */
+    private void buildSuggester() {
+        try {
+            IndexSearcher searcher = acquireSearcher();
+            try {
+                suggester.build(new HighFrequencyDictionary(searcher.getIndexReader(), "title", 0f));
+            } finally {
+                releaseSearcher(searcher);
+            }
+            suggesterDirty.set(true);
+        } catch (IOException e) {
+            log.error("Error building the suggester", e);
+        }
+    }
+
+    /**
+     * Add the terms of documents titles to the suggester, weighted by their frequency.
+     *
+     * @param documentList Documents
+     */
+    private void updateSuggester(List<Document> documentList) {
+        try {
+            Set<String> termSet = new HashSet<>();
+            Analyzer analyzer = new StandardAnalyzer();
+            for (Document document : documentList) {
+                try (TokenStream tokenStream = analyzer.tokenStream("title", document.getTitle())) {
+                    CharTermAttribute termAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+                    tokenStream.reset();
+                    while (tokenStream.incrementToken()) {
+                        termSet.add(termAttribute.toString());
+                    }
+                    tokenStream.end();
+                }
+            }
+
+            IndexSearcher searcher = acquireSearcher();
+            try {
+                for (String term : termSet) {
+                    long weight = searcher.getIndexReader().docFreq(new Term("title", term));
+                    suggester.update(new BytesRef(term), null, weight, null);
+                }
+            } finally {
+                releaseSearcher(searcher);
+            }
+            suggester.refresh();
+            suggesterDirty.set(true);
+        } catch (IOException e) {
+            log.error("Error updating the suggester", e);
+        }
+    }
+
+    /**
+     * Commit the suggester changes.
+     */
+    private void commitSuggester() {
+        if (!suggesterDirty.getAndSet(false)) {
+            return;
+        }
+
+        try {
+            suggester.commit();
+        } catch (IOException e) {
+            log.error("Error committing the suggester", e);
         }
     }
 
@@ -417,43 +1545,37 @@ public class LuceneIndexingHandler implements IndexingHandler {
      * @return Map of document IDs as key and highlight as value
      * @throws Exception e
      */
-    private Map<String, String> search(String simpleSearchQuery, String fullSearchQuery) throws Exception {
-        // The fulltext query searches in all fields
-        String searchQuery = simpleSearchQuery + " " + fullSearchQuery;
-
+    Map<String, String> search(String simpleSearchQuery, String fullSearchQuery) throws Exception {
         // Build search query
         Analyzer analyzer = new StandardAnalyzer();
-
-        // Search on documents and files
-        BooleanQuery query = new BooleanQuery.Builder()
-                .add(buildQueryParser(analyzer, "title").parse(searchQuery), BooleanClause.Occur.SHOULD)
-                .add(buildQueryParser(analyzer, "description").parse(searchQuery), BooleanClause.Occur.SHOULD)
-                .add(buildQueryParser(analyzer, "subject").parse(searchQuery), BooleanClause.Occur.SHOULD)
-                .add(buildQueryParser(analyzer, "identifier").parse(searchQuery), BooleanClause.Occur.SHOULD)
-                .add(buildQueryParser(analyzer, "publisher").parse(searchQuery), BooleanClause.Occur.SHOULD)
-                .add(buildQueryParser(analyzer, "format").parse(searchQuery), BooleanClause.Occur.SHOULD)
-                .add(buildQueryParser(analyzer, "source").parse(searchQuery), BooleanClause.Occur.SHOULD)
-                .add(buildQueryParser(analyzer, "type").parse(searchQuery), BooleanClause.Occur.SHOULD)
-                .add(buildQueryParser(analyzer, "coverage").parse(searchQuery), BooleanClause.Occur.SHOULD)
-                .add(buildQueryParser(analyzer, "rights").parse(searchQuery), BooleanClause.Occur.SHOULD)
-                .add(buildQueryParser(analyzer, "filename").parse(searchQuery), BooleanClause.Occur.SHOULD)
-                .add(buildQueryParser(analyzer, "content").parse(fullSearchQuery), BooleanClause.Occur.SHOULD)
-                .build();
+        Query query = buildSearchQuery(analyzer, simpleSearchQuery, fullSearchQuery);
 
         // Search
-        DirectoryReader directoryReader = getDirectoryReader();
         Map<String, String> documentMap = Maps.newHashMap();
-        if (directoryReader == null) {
-            // The directory reader is not yet initialized (probably because there is nothing indexed)
-            return documentMap;
+        IndexSearcher searcher = acquireSearcher();
+        try {
+            searchDocuments(searcher, analyzer, query, documentMap);
+        } finally {
+            releaseSearcher(searcher);
         }
-        IndexSearcher searcher = new IndexSearcher(directoryReader);
+
+        return documentMap;
+    }
+
+    /**
+     * Collect the documents matching a query.
+     *
+     * @param searcher Index searcher
+     * @param analyzer Analyzer
+     * @param query Query
+     * @param documentMap Map of document IDs as key and highlight as value (updated by side effects)
+     * @throws Exception e
+     */
+    private void searchDocuments(IndexSearcher searcher, Analyzer analyzer, Query query, Map<String, String> documentMap) throws Exception {
         TopDocs topDocs = searcher.search(query, Integer.MAX_VALUE);
         ScoreDoc[] docs = topDocs.scoreDocs;
 
-        SimpleHTMLFormatter simpleHTMLFormatter = new SimpleHTMLFormatter("<strong>", "</strong>");
-        SimpleHTMLEncoder simpleHTMLEncoder = new SimpleHTMLEncoder();
-        Highlighter highlighter = new Highlighter(simpleHTMLFormatter, simpleHTMLEncoder, new QueryScorer(query));
+        Highlighter highlighter = buildHighlighter(query);
 
         // Extract document IDs and highlights
         for (ScoreDoc doc : docs) {
@@ -475,8 +1597,48 @@ public class LuceneIndexingHandler implements IndexingHandler {
                 documentMap.put(documentId, highlight);
             }
         }
+    }
 
-        return documentMap;
+    /**
+     * Build the fulltext search query.
+     *
+     * @param analyzer Analyzer
+     * @param simpleSearchQuery Search query on metadatas
+     * @param fullSearchQuery Search query on all fields
+     * @return Query
+     * @throws Exception e
+     */
+    private Query buildSearchQuery(Analyzer analyzer, String simpleSearchQuery, String fullSearchQuery) throws Exception {
+        // The fulltext query searches in all fields
+        String searchQuery = simpleSearchQuery + " " + fullSearchQuery;
+
+        // Search on documents and files
+        return new BooleanQuery.Builder()
+                .add(buildQueryParser(analyzer, "title").parse(searchQuery), BooleanClause.Occur.SHOULD)
+                .add(buildQueryParser(analyzer, "description").parse(searchQuery), BooleanClause.Occur.SHOULD)
+                .add(buildQueryParser(analyzer, "subject").parse(searchQuery), BooleanClause.Occur.SHOULD)
+                .add(buildQueryParser(analyzer, "identifier").parse(searchQuery), BooleanClause.Occur.SHOULD)
+                .add(buildQueryParser(analyzer, "publisher").parse(searchQuery), BooleanClause.Occur.SHOULD)
+                .add(buildQueryParser(analyzer, "format").parse(searchQuery), BooleanClause.Occur.SHOULD)
+                .add(buildQueryParser(analyzer, "source").parse(searchQuery), BooleanClause.Occur.SHOULD)
+                .add(buildQueryParser(analyzer, "type").parse(searchQuery), BooleanClause.Occur.SHOULD)
+                .add(buildQueryParser(analyzer, "coverage").parse(searchQuery), BooleanClause.Occur.SHOULD)
+                .add(buildQueryParser(analyzer, "rights").parse(searchQuery), BooleanClause.Occur.SHOULD)
+                .add(buildQueryParser(analyzer, "filename").parse(searchQuery), BooleanClause.Occur.SHOULD)
+                .add(buildQueryParser(analyzer, "content").parse(fullSearchQuery), BooleanClause.Occur.SHOULD)
+                .build();
+    }
+
+    /**
+     * Build a highlighter for file contents.
+     *
+     * @param query Search query
+     * @return Highlighter
+     */
+    private Highlighter buildHighlighter(Query query) {
+        SimpleHTMLFormatter simpleHTMLFormatter = new SimpleHTMLFormatter("<strong>", "</strong>");
+        SimpleHTMLEncoder simpleHTMLEncoder = new SimpleHTMLEncoder();
+        return new Highlighter(simpleHTMLFormatter, simpleHTMLEncoder, new QueryScorer(query));
     }
 
     /**
@@ -496,13 +1658,46 @@ public class LuceneIndexingHandler implements IndexingHandler {
      * Build Lucene document from database document.
      *
      * @param document Document
+     * @param metadata Documents metadata
      * @return Document
      */
-    private org.apache.lucene.document.Document getDocumentFromDocument(Document document) {
+    private org.apache.lucene.document.Document getDocumentFromDocument(Document document, DocumentMetadata metadata) {
         org.apache.lucene.document.Document luceneDocument = new org.apache.lucene.document.Document();
         luceneDocument.add(new StringField("id", document.getId(), Field.Store.YES));
+        luceneDocument.add(new SortedDocValuesField("id", new BytesRef(document.getId())));
         luceneDocument.add(new StringField("doctype", "document", Field.Store.YES));
         luceneDocument.add(new TextField("title", document.getTitle(), Field.Store.NO));
+        luceneDocument.add(new SortedDocValuesField("title_sort", new BytesRef(TITLE_COLLATOR.get().getCollationKey(document.getTitle()).toByteArray())));
+        luceneDocument.add(new StringField("title_exact", document.getTitle(), Field.Store.NO));
+        if (document.getCreateDate() != null) {
+            luceneDocument.add(new LongPoint("create_date", document.getCreateDate().getTime()));
+            luceneDocument.add(new NumericDocValuesField("create_date", document.getCreateDate().getTime()));
+        }
+        if (document.getUpdateDate() != null) {
+            luceneDocument.add(new LongPoint("update_date", document.getUpdateDate().getTime()));
+            luceneDocument.add(new NumericDocValuesField("update_date", document.getUpdateDate().getTime()));
+        }
+        if (document.getLanguage() != null) {
+            luceneDocument.add(new StringField("language", document.getLanguage(), Field.Store.NO));
+            luceneDocument.add(new SortedDocValuesField("language", new BytesRef(document.getLanguage())));
+        }
+        if (document.getUserId() != null) {
+            luceneDocument.add(new StringField("creator_id", document.getUserId(), Field.Store.NO));
+        }
+        for (String targetId : metadata.readTargetIdMap.getOrDefault(document.getId(), Collections.emptySet())) {
+            luceneDocument.add(new StringField("read_target_id", targetId, Field.Store.NO));
+        }
+        for (String tagId : metadata.tagIdMap.getOrDefault(document.getId(), Collections.emptySet())) {
+            luceneDocument.add(new StringField("tag_id", tagId, Field.Store.NO));
+        }
+        for (String mimeType : metadata.mimeTypeMap.getOrDefault(document.getId(), Collections.emptySet())) {
+            luceneDocument.add(new StringField("mime_type", mimeType, Field.Store.NO));
+        }
+        long shareCount = metadata.shareCountMap.getOrDefault(document.getId(), 0L);
+        luceneDocument.add(new NumericDocValuesField("share_count", shareCount));
+        if (shareCount > 0) {
+            luceneDocument.add(new StringField("shared", "true", Field.Store.NO));
+        }
         if (document.getDescription() != null) {
             luceneDocument.add(new TextField("description", document.getDescription(), Field.Store.NO));
         }
@@ -534,6 +1729,25 @@ public class LuceneIndexingHandler implements IndexingHandler {
         return luceneDocument;
     }
 
+    /**
+     * Returns the metadata of documents stored outside of T_DOCUMENT.
+     *
+     * @param documentList Documents
+     * @return Documents metadata
+     */
+    private DocumentMetadata getDocumentMetadata(List<Document> documentList) {
+        List<String> documentIdList = documentList.stream()
+                .map(Document::getId)
+                .collect(Collectors.toList());
+        AclDao aclDao = new AclDao();
+        DocumentMetadata metadata = new DocumentMetadata();
+        metadata.readTargetIdMap = aclDao.getReadTargetIdsByDocumentIds(documentIdList);
+        metadata.shareCountMap = aclDao.getShareCountsByDocumentIds(documentIdList);
+        metadata.tagIdMap = new TagDao().getTagIdsByDocumentIds(documentIdList);
+        metadata.mimeTypeMap = new FileDao().getMimeTypesByDocumentsIds(documentIdList);
+        return metadata;
+    }
+
     /**
      * Build Lucene document from file.
      *
@@ -543,12 +1757,15 @@ public class LuceneIndexingHandler implements IndexingHandler {
     private org.apache.lucene.document.Document getDocumentFromFile(File file) {
         org.apache.lucene.document.Document luceneDocument = new org.apache.lucene.document.Document();
         luceneDocument.add(new StringField("id", file.getId(), Field.Store.YES));
+        // Documents are sorted by ID, a segment without any document must have the same doc values
+        luceneDocument.add(new SortedDocValuesField("id", new BytesRef(file.getId())));
         luceneDocument.add(new StringField("doctype", "file", Field.Store.YES));
         if (file.getName() != null) {
             luceneDocument.add(new TextField("filename", file.getName(), Field.Store.NO));
         }
         if (file.getDocumentId() != null) {
             luceneDocument.add(new StringField("document_id", file.getDocumentId(), Field.Store.YES));
+            luceneDocument.add(new SortedDocValuesField("document_id", new BytesRef(file.getDocumentId())));
         }
         if (file.getContent() != null) {
             luceneDocument.add(new TextField("content", file.getContent(), Field.Store.YES));
@@ -558,55 +1775,177 @@ public class LuceneIndexingHandler implements IndexingHandler {
     }
 
     /**
-     * Returns a valid directory reader.
-     * Take care of reopening the reader if the index has changed
-     * and closing the previous one.
+     * Acquire a searcher on the latest index state.
+     * The searcher is refreshed if the index has been written since the last refresh,
+     * so a search always sees the writes done before it.
+     * The searcher must be released after use.
      *
-     * @return the directoryReader
+     * @return Index searcher
+     * @throws IOException e
      */
-    private DirectoryReader getDirectoryReader() {
-        if (directoryReader == null) {
-            try {
-                if (!DirectoryReader.indexExists(directory)) {
-                    return null;
-                }
-                directoryReader = DirectoryReader.open(directory);
-            } catch (IOException e) {
-                log.error("Error creating the directory reader", e);
+    IndexSearcher acquireSearcher() throws IOException {
+        indexLock.readLock().lock();
+        try {
+            long generation = writeGeneration.get();
+            if (refreshGeneration.get() < generation) {
+                searcherManager.maybeRefreshBlocking();
+                refreshGeneration.accumulateAndGet(generation, Math::max);
             }
-        } else {
-            try {
-                DirectoryReader newReader = DirectoryReader.openIfChanged(directoryReader);
-                if (newReader != null) {
-                    directoryReader.close();
-                    directoryReader = newReader;
-                }
-            } catch (IOException e) {
-                log.error("Error while reopening the directory reader", e);
+            return searcherManager.acquire();
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Release a searcher acquired with {@link #acquireSearcher()}.
+     * The searcher stays usable until released, even if the index has been replaced since.
+     *
+     * @param searcher Index searcher
+     */
+    void releaseSearcher(IndexSearcher searcher) {
+        try {
+            searcherManager.release(searcher);
+        } catch (IOException e) {
+            log.error("Error releasing the index searcher", e);
+        }
+    }
+
+    /**
+     * Refresh the searcher in the background, so searches rarely have to wait for a refresh.
+     */
+    private void refreshSearcher() {
+        long generation = writeGeneration.get();
+        if (refreshGeneration.get() >= generation) {
+            return;
+        }
+
+        indexLock.readLock().lock();
+        try {
+            if (searcherManager.maybeRefresh()) {
+                refreshGeneration.accumulateAndGet(generation, Math::max);
             }
+        } catch (IOException e) {
+            log.error("Error refreshing the index searcher", e);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Warm up a new searcher before it is used by searches.
+     * Runs the default document list, sorted by creation date and by title,
+     * to load the postings and the doc values these searches read.
+     *
+     * @param searcher Index searcher
+     */
+    private void warmUp(IndexSearcher searcher) {
+        try {
+            Query query = new TermQuery(new Term("doctype", "document"));
+            searcher.search(query, 10, getSort(new SortCriteria(3, false)));
+            searcher.search(query, 10, getSort(new SortCriteria(1, true)));
+        } catch (IOException e) {
+            log.warn("Error warming up the index searcher", e);
+        }
+    }
+
+    /**
+     * Commit the pending changes to the index.
+     */
+    private synchronized void commit() {
+        if (pendingOperations.getAndSet(0) == 0) {
+            return;
+        }
+
+        indexLock.readLock().lock();
+        try {
+            indexWriter.commit();
+        } catch (IOException e) {
+            log.error("Cannot commit index writer", e);
+        } finally {
+            indexLock.readLock().unlock();
         }
-        return directoryReader;
     }
 
     /**
      * Encapsulate a process into a Lucene context.
+     * Changes are committed when enough operations are pending,
+     * otherwise by the periodic commit.
+     * During a rebuild, the process is also kept to be replayed on the new index.
      *
      * @param runnable Runnable
      */
     private void handle(LuceneRunnable runnable) {
+        indexLock.readLock().lock();
         try {
             runnable.run(indexWriter);
+            if (rebuilding.get()) {
+                synchronized (rebuildPendingList) {
+                    if (rebuildPendingList.size() >= REBUILD_MAX_PENDING_WRITES) {
+                        // The dropped writes are committed in the database, they are read again before the swap
+                        rebuildPendingList.clear();
+                        rebuildPendingOverflow = true;
+                    }
+                    rebuildPendingList.add(runnable);
+                }
+            }
         } catch (Exception e) {
             log.error("Error in running index writing", e);
+        } finally {
+            indexLock.readLock().unlock();
         }
 
-        try {
-            indexWriter.commit();
-        } catch (IOException e) {
-            log.error("Cannot commit index writer", e);
+        writeGeneration.incrementAndGet();
+        if (pendingOperations.incrementAndGet() >= commitMaxOperations) {
+            commit();
         }
     }
 
+    /**
+     * Metadata of documents stored outside of T_DOCUMENT, loaded in bulk for indexing.
+     */
+    private static class DocumentMetadata {
+        /**
+         * Targets allowed to read the documents, indexed by document ID.
+         */
+        private Map<String, Set<String>> readTargetIdMap;
+
+        /**
+         * Tag IDs, indexed by document ID.
+         */
+        private Map<String, Set<String>> tagIdMap;
+
+        /**
+         * Files MIME types, indexed by document ID.
+         */
+        private Map<String, Set<String>> mimeTypeMap;
+
+        /**
+         * Number of active shares, indexed by document ID.
+         */
+        private Map<String, Long> shareCountMap;
+    }
+
+    /**
+     * Batch of Lucene documents read from the database during a rebuild.
+     */
+    private static class RebuildBatch {
+        /**
+         * True if the batch has been read from the database.
+         */
+        private boolean loaded;
+
+        /**
+         * Lucene documents.
+         */
+        private final List<org.apache.lucene.document.Document> luceneDocumentList = new ArrayList<>();
+
+        /**
+         * ID of the last entity of the batch.
+         */
+        private String lastId;
+    }
+
     /**
      * Lucene runnable.
      *
@@ -0,0 +1,70 @@
+package com.sismics.docs.core.util.indexing;
+
+/**
+ * Progress of an index rebuild.
+ *
+ * @author agent
+ */
+public class RebuildIndexStatus {
+    /**
+     * True if a rebuild is running.
+     */
+    private boolean running;
+
+    /**
+     * Number of documents and files indexed.
+     */
+    private long processedCount;
+
+    /**
+     * Total number of documents and files to index.
+     */
+    private long totalCount;
+
+    /**
+     * Start timestamp of the rebuild, null if the index has never been rebuilt.
+     */
+    private Long startTimestamp;
+
+    /**
+     * Estimated remaining time in seconds, null if unknown.
+     */
+    private Long eta;
+
+    /**
+     * Constructor of RebuildIndexStatus.
+     *
+     * @param running True if a rebuild is running
+     * @param processedCount Number of documents and files indexed
+     * @param totalCount Total number of documents and files to index
+     * @param startTimestamp Start timestamp of the rebuild
+     * @param eta Estimated remaining time in seconds
+     */
+    public RebuildIndexStatus(boolean running, long processedCount, long totalCount, Long startTimestamp, Long eta) {
+        this.running = running;
+        this.processedCount = processedCount;
+        this.totalCount = totalCount;
+        this.startTimestamp = startTimestamp;
+        this.eta = eta;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public long getProcessedCount() {
+        return processedCount;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public Long getStartTimestamp() {
+        return startTimestamp;
+    }
+
+    public Long getEta() {
+        return eta;
+    }
+}
@@ -0,0 +1,62 @@
+package com.sismics.docs.core.util.indexing;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the search suggestions lookups, failed lookups included.
+ *
+ * @author agent
+ */
+public class SuggestMetrics {
+    /**
+     * Number of lookups.
+     */
+    private final LongAdder lookupCount = new LongAdder();
+
+    /**
+     * Total lookup time in microseconds.
+     */
+    private final LongAdder totalLatencyUs = new LongAdder();
+
+    /**
+     * Maximum lookup time in microseconds.
+     */
+    private final AtomicLong maxLatencyUs = new AtomicLong();
+
+    /**
+     * Records a lookup.
+     *
+     * @param durationNanos Lookup time in nanoseconds
+     */
+    public void record(long durationNanos) {
+        long latencyUs = TimeUnit.NANOSECONDS.toMicros(durationNanos);
+        lookupCount.increment();
+        totalLatencyUs.add(latencyUs);
+        maxLatencyUs.accumulateAndGet(latencyUs, Math::max);
+    }
+
+    public long getLookupCount() {
+        return lookupCount.sum();
+    }
+
+    /**
+     * Returns the average lookup time.
+     *
+     * @return Average lookup time in milliseconds
+     */
+    public double getAverageLatencyMs() {
+        long count = lookupCount.sum();
+        return count == 0 ? 0 : totalLatencyUs.sum() / 1000d / count;
+    }
+
+    /**
+     * Returns the maximum lookup time.
+     *
+     * @return Maximum lookup time in milliseconds
+     */
+    public double getMaxLatencyMs() {
+        return maxLatencyUs.get() / 1000d;
+    }
+}
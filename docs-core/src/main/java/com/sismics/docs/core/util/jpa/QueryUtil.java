@@ -5,6 +5,8 @@ import java.util.Map.Entry;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.Query;
 
+import org.hibernate.query.NativeQuery;
+
 import com.sismics.util.context.ThreadLocalContext;
 
 /**
@@ -29,6 +31,34 @@ public class QueryUtil {
         return query;
     }
     
+    /**
+     * Executes a bulk update or delete query.
+     * 
+     * @param query Update or delete query
+     * @return Number of rows updated or deleted
+     */
+    public static int executeUpdate(Query query) {
+        int count = query.executeUpdate();
+        ThreadLocalContext.get().afterBulkUpdate();
+        return count;
+    }
+    
+    /**
+     * Declares the tables modified by a native update or delete query.
+     * When executed, only the second-level cache of these tables is evicted instead of the whole cache.
+     * 
+     * @param query Native update or delete query
+     * @param tableNames Modified tables
+     * @return Native query
+     */
+    public static Query synchronizeTables(Query query, String... tableNames) {
+        NativeQuery<?> nativeQuery = query.unwrap(NativeQuery.class);
+        for (String tableName : tableNames) {
+            nativeQuery.addSynchronizedQuerySpace(tableName);
+        }
+        return query;
+    }
+    
     /**
      * Returns sorted query parameters.
      * 
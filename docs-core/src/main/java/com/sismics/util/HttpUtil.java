@@ -24,4 +24,47 @@ public class HttpUtil {
     public static String buildExpiresHeader(long futureTime) {
         return EXPIRES_FORMAT.format(new Date().getTime() + futureTime);
     }
+
+    /**
+     * Parse a Range HTTP header.
+     * Only a single byte range is supported, multiple ranges are served as the full content.
+     *
+     * @param range Range header value
+     * @param length Full content length
+     * @return Inclusive {start, end} range, an empty array if the range is not satisfiable, or null to serve the full content
+     */
+    public static long[] parseRange(String range, long length) {
+        if (range == null || !range.startsWith("bytes=") || range.contains(",")) {
+            return null;
+        }
+
+        String[] bounds = range.substring("bytes=".length()).trim().split("-", -1);
+        if (bounds.length != 2) {
+            return null;
+        }
+
+        long start;
+        long end;
+        try {
+            if (bounds[0].isEmpty()) {
+                // Suffix range: the last N bytes
+                long suffixLength = Long.parseLong(bounds[1]);
+                if (suffixLength <= 0) {
+                    return new long[0];
+                }
+                start = Math.max(0, length - suffixLength);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(bounds[0]);
+                end = bounds[1].isEmpty() ? length - 1 : Math.min(Long.parseLong(bounds[1]), length - 1);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        if (start < 0 || start >= length || end < start) {
+            return new long[0];
+        }
+        return new long[] { start, end };
+    }
 }
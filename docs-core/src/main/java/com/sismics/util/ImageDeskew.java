@@ -1,15 +1,26 @@
 package com.sismics.util;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
+ * Skew angle detection with a Hough transformation.
+ * The lower edges of the dark pixels of the middle half of the image vote for the lines passing through them.
+ * Rows are split in stripes accumulated in parallel, each stripe allocates its own histogram of the size
+ * of the accumulator, the histograms are merged at the end. Grayscale images of type TYPE_BYTE_GRAY are read
+ * from their raw data, convert other images with {@link ImageUtil#toGrayscale(BufferedImage)} first.
  * <a url=http://www.jdeskew.com/>JDeskew</a>
  */
 public class ImageDeskew {
     /**
      * Representation of a line in the image.
      */
-    public class HoughLine {
+    public static class HoughLine {
 
         // count of points in the line
         public int count = 0;
@@ -21,19 +32,37 @@ public class ImageDeskew {
         public double d;
     }
 
+    /**
+     * Luminance under which a pixel is black.
+     */
+    private static final int LUMINANCE_CUTOFF = 140;
+
+    /**
+     * Minimum number of rows of a stripe.
+     */
+    private static final int MIN_STRIPE_ROWS = 64;
+
+    /**
+     * Black pixels of a grayscale image, indexed by the raw gray value.
+     * The raw values of a grayscale image are linear, they are compared to the cutoff once converted to sRGB.
+     */
+    private static final boolean[] BLACK_GRAY_VALUES = computeBlackGrayValues();
+
     // the source image
-    private BufferedImage cImage;
+    private final BufferedImage cImage;
     // the range of angles to search for lines
-    private double cAlphaStart = -20;
-    private double cAlphaStep = 0.2;
-    private int cSteps = 40 * 5;
+    private final double cAlphaStart = -20;
+    private final double cAlphaStep = 0.2;
+    private final int cSteps = 40 * 5;
     // pre-calculation of sin and cos
     private double[] cSinA;
     private double[] cCosA;
     // range of d
     private double cDMin;
-    private double cDStep = 1.0;
     private int cDCount;
+    // rows considered
+    private int cHMin;
+    private int cHMax;
     // count of points that fit in a line
     private int[] cHMatrix;
 
@@ -65,7 +94,7 @@ public class ImageDeskew {
         }
     }
 
-    // calculate the count lines in the image with most points
+    // calculate the count lines in the image with most points, lines without any point are not returned
     private ImageDeskew.HoughLine[] getTop(int count) {
 
         ImageDeskew.HoughLine[] hl = new ImageDeskew.HoughLine[count];
@@ -89,10 +118,16 @@ public class ImageDeskew {
             }
         }
 
+        int found = 0;
+        while (found < count && hl[found].count > 0) {
+            found++;
+        }
+        hl = Arrays.copyOf(hl, found);
+
         int alphaIndex;
         int dIndex;
 
-        for (int i = 0; i < count; i++) {
+        for (int i = 0; i < found; i++) {
             dIndex = hl[i].index / cSteps; // integer division, no
             // remainder
             alphaIndex = hl[i].index - dIndex * cSteps;
@@ -105,38 +140,88 @@ public class ImageDeskew {
 
     // Hough Transformation
     private void calc() {
-        int hMin = (int) ((this.cImage.getHeight()) / 4.0);
-        int hMax = (int) ((this.cImage.getHeight()) * 3.0 / 4.0);
         init();
+        if (this.cHMax - this.cHMin < 1 || this.cImage.getWidth() < 4) {
+            this.cHMatrix = new int[this.cDCount * this.cSteps];
+            return;
+        }
+
+        int parallelism = ForkJoinPool.commonPool().getParallelism();
+        int stripeRows = Math.max(MIN_STRIPE_ROWS, (this.cHMax - this.cHMin + parallelism - 1) / parallelism);
+        this.cHMatrix = ForkJoinPool.commonPool().invoke(new StripeTask(this.cHMin, this.cHMax, stripeRows));
+    }
 
-        for (int y = hMin; y < hMax; y++) {
-            for (int x = 1; x < (this.cImage.getWidth() - 2); x++) {
+    /**
+     * Accumulation of a stripe of rows, split in halves until it is small enough.
+     */
+    private class StripeTask extends RecursiveTask<int[]> {
+        private final int yStart;
+        private final int yEnd;
+        private final int stripeRows;
+
+        StripeTask(int yStart, int yEnd, int stripeRows) {
+            this.yStart = yStart;
+            this.yEnd = yEnd;
+            this.stripeRows = stripeRows;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (yEnd - yStart <= stripeRows) {
+                return accumulate(yStart, yEnd);
+            }
+
+            int yMiddle = (yStart + yEnd) >>> 1;
+            StripeTask bottom = new StripeTask(yMiddle, yEnd, stripeRows);
+            bottom.fork();
+            int[] histogram = new StripeTask(yStart, yMiddle, stripeRows).compute();
+            int[] bottomHistogram = bottom.join();
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] += bottomHistogram[i];
+            }
+            return histogram;
+        }
+    }
+
+    /**
+     * Accumulates the lines through the lower edges of a stripe of rows.
+     *
+     * @param yStart First row (inclusive)
+     * @param yEnd Last row (exclusive)
+     * @return Histogram of the stripe
+     */
+    private int[] accumulate(int yStart, int yEnd) {
+        int[] histogram = new int[this.cDCount * this.cSteps];
+        int width = this.cImage.getWidth();
+        boolean[] row = new boolean[width];
+        boolean[] nextRow = new boolean[width];
+        RowReader rowReader = new RowReader(this.cImage);
+        rowReader.read(yStart, row);
+
+        for (int y = yStart; y < yEnd; y++) {
+            rowReader.read(y + 1, nextRow);
+            for (int x = 1; x < width - 2; x++) {
                 // only lower edges are considered
-                if (ImageUtil.isBlack(this.cImage, x, y)) {
-                    if (!ImageUtil.isBlack(this.cImage, x, y + 1)) {
-                        calc(x, y);
-                    }
+                if (row[x] && !nextRow[x]) {
+                    calc(histogram, x, y);
                 }
             }
+            boolean[] tmp = row;
+            row = nextRow;
+            nextRow = tmp;
         }
-
+        return histogram;
     }
 
     // calculate all lines through the point (x,y)
-    private void calc(int x, int y) {
-        double d;
-        int dIndex;
-        int index;
-
-        for (int alpha = 0; alpha < (this.cSteps - 1); alpha++) {
-            d = y * this.cCosA[alpha] - x * this.cSinA[alpha];
-            dIndex = (int) (d - this.cDMin);
-            index = dIndex * this.cSteps + alpha;
-            try {
-                this.cHMatrix[index] += 1;
-            } catch (Exception ex) {
-                System.out.println(ex.toString());
-            }
+    private void calc(int[] histogram, int x, int y) {
+        double[] cosA = this.cCosA;
+        double[] sinA = this.cSinA;
+        double dMin = this.cDMin;
+        int steps = this.cSteps;
+        for (int alpha = 0; alpha < steps - 1; alpha++) {
+            double d = y * cosA[alpha] - x * sinA[alpha];
+            histogram[(int) (d - dMin) * steps + alpha]++;
         }
     }
 
@@ -154,14 +239,126 @@ public class ImageDeskew {
             this.cCosA[i] = Math.cos(angle);
         }
 
-        // range of d
-        this.cDMin = -this.cImage.getWidth();
-        this.cDCount = (int) (2.0 * ((this.cImage.getWidth() + this.cImage.getHeight())) / this.cDStep);
-        this.cHMatrix = new int[this.cDCount * this.cSteps];
+        // rows considered
+        this.cHMin = (int) ((this.cImage.getHeight()) / 4.0);
+        this.cHMax = (int) ((this.cImage.getHeight()) * 3.0 / 4.0);
 
+        // range of d, bounded by the corners of the area considered
+        double minD = 0;
+        double maxD = 0;
+        int[] xs = { 1, Math.max(1, this.cImage.getWidth() - 3) };
+        int[] ys = { this.cHMin, Math.max(this.cHMin, this.cHMax - 1) };
+        for (int i = 0; i < (this.cSteps - 1); i++) {
+            for (int x : xs) {
+                for (int y : ys) {
+                    double d = y * this.cCosA[i] - x * this.cSinA[i];
+                    minD = Math.min(minD, d);
+                    maxD = Math.max(maxD, d);
+                }
+            }
+        }
+        this.cDMin = Math.floor(minD) - 1;
+        this.cDCount = (int) (maxD - this.cDMin) + 2;
     }
 
     private double getAlpha(int index) {
         return this.cAlphaStart + (index * this.cAlphaStep);
     }
+
+    /**
+     * Computes the black pixels of a grayscale image, indexed by the raw gray value.
+     *
+     * @return Black gray values
+     */
+    private static boolean[] computeBlackGrayValues() {
+        BufferedImage image = new BufferedImage(256, 1, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < 256; i++) {
+            data[i] = (byte) i;
+        }
+        boolean[] blackGrayValues = new boolean[256];
+        for (int i = 0; i < 256; i++) {
+            blackGrayValues[i] = isBlack(image.getRGB(i, 0));
+        }
+        return blackGrayValues;
+    }
+
+    /**
+     * Return true if a RGB pixel is black.
+     *
+     * @param rgb RGB value
+     * @return True if black
+     */
+    private static boolean isBlack(int rgb) {
+        int r = (rgb >> 16) & 0xff;
+        int g = (rgb >> 8) & 0xff;
+        int b = rgb & 0xff;
+        return (r * 0.299) + (g * 0.587) + (b * 0.114) < LUMINANCE_CUTOFF;
+    }
+
+    /**
+     * Reads the black pixels of the rows of an image.
+     * Grayscale images are read from their raw data, other images through their RGB values.
+     */
+    private static class RowReader {
+        private final BufferedImage image;
+        private final int width;
+        private final int height;
+        private byte[] grayData;
+        private int grayOffset;
+        private int grayScanlineStride;
+        private int grayPixelStride;
+        private int[] rgbRow;
+        private int[] binaryRow;
+
+        RowReader(BufferedImage image) {
+            this.image = image;
+            this.width = image.getWidth();
+            this.height = image.getHeight();
+            Raster raster = image.getRaster();
+            if (image.getType() == BufferedImage.TYPE_BYTE_GRAY
+                    && raster.getDataBuffer() instanceof DataBufferByte
+                    && raster.getSampleModel() instanceof ComponentSampleModel) {
+                ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+                DataBufferByte dataBuffer = (DataBufferByte) raster.getDataBuffer();
+                this.grayData = dataBuffer.getData();
+                this.grayOffset = dataBuffer.getOffset() + sampleModel.getOffset(
+                        -raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+                this.grayScanlineStride = sampleModel.getScanlineStride();
+                this.grayPixelStride = sampleModel.getPixelStride();
+            } else if (image.getType() == BufferedImage.TYPE_BYTE_BINARY) {
+                this.binaryRow = new int[width];
+            } else {
+                this.rgbRow = new int[width];
+            }
+        }
+
+        /**
+         * Reads the black pixels of a row.
+         *
+         * @param y Row
+         * @param row Black pixels of the row
+         */
+        void read(int y, boolean[] row) {
+            if (y >= height) {
+                // White outside of the image
+                Arrays.fill(row, false);
+            } else if (grayData != null) {
+                int offset = grayOffset + y * grayScanlineStride;
+                for (int x = 0; x < width; x++) {
+                    row[x] = BLACK_GRAY_VALUES[grayData[offset + x * grayPixelStride] & 0xff];
+                }
+            } else if (binaryRow != null) {
+                image.getRaster().getSamples(0, y, width, 1, 0, binaryRow);
+                for (int x = 0; x < width; x++) {
+                    row[x] = binaryRow[x] == 0;
+                }
+            } else {
+                image.getRGB(0, y, width, 1, rgbRow, 0, width);
+                for (int x = 0; x < width; x++) {
+                    row[x] = isBlack(rgbRow[x]);
+                }
+            }
+        }
+    }
 }
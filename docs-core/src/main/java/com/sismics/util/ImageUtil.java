@@ -4,8 +4,11 @@ import com.google.common.hash.Hashing;
 
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.ImageOutputStream;
 import java.awt.*;
 import java.awt.image.BufferedImage;
@@ -13,6 +16,7 @@ import java.awt.image.WritableRaster;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.Iterator;
 
 /**
@@ -29,6 +33,18 @@ public class ImageUtil {
      * @throws IOException e
      */
     public static void writeJpeg(BufferedImage image, OutputStream outputStream) throws IOException {
+        writeJpeg(image, outputStream, 1.f);
+    }
+
+    /**
+     * Write a JPEG.
+     *
+     * @param image Image
+     * @param outputStream Output stream
+     * @param quality Compression quality, between 0 and 1
+     * @throws IOException e
+     */
+    public static void writeJpeg(BufferedImage image, OutputStream outputStream, float quality) throws IOException {
         Iterator<ImageWriter> iter = ImageIO.getImageWritersByFormatName("jpeg");
         ImageWriter writer = null;
         ImageOutputStream imageOutputStream = null;
@@ -36,7 +52,7 @@ public class ImageUtil {
             writer = iter.next();
             ImageWriteParam iwp = writer.getDefaultWriteParam();
             iwp.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-            iwp.setCompressionQuality(1.f);
+            iwp.setCompressionQuality(quality);
             imageOutputStream = ImageIO.createImageOutputStream(outputStream);
             writer.setOutput(imageOutputStream);
 
@@ -66,6 +82,66 @@ public class ImageUtil {
         }
     }
     
+    /**
+     * Read an image, subsampled while decoding if it is much larger than needed.
+     * The full resolution bitmap of a large image is never materialized.
+     *
+     * @param file Image file
+     * @param targetSize Wanted size of the longest side, the image is decoded to at least twice this size
+     * @return Image, null if the format is not supported
+     * @throws IOException e
+     */
+    public static BufferedImage readImage(Path file, int targetSize) throws IOException {
+        try (ImageInputStream imageInputStream = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> iter = ImageIO.getImageReaders(imageInputStream);
+            if (!iter.hasNext()) {
+                return null;
+            }
+
+            ImageReader reader = iter.next();
+            try {
+                reader.setInput(imageInputStream, true, true);
+                int longestSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = getSubsampling(longestSide, targetSize);
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Returns the largest subsampling keeping the longest side of an image at least twice a target size.
+     *
+     * @param longestSide Size of the longest side of the image
+     * @param targetSize Target size
+     * @return Subsampling factor
+     */
+    static int getSubsampling(int longestSide, int targetSize) {
+        return Math.max(1, longestSide / (targetSize * 2));
+    }
+
+    /**
+     * Convert an image to a grayscale image backed by a byte per pixel.
+     *
+     * @param image Image
+     * @return Grayscale image
+     */
+    public static BufferedImage toGrayscale(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            return image;
+        }
+        BufferedImage grayImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        Graphics graphics = grayImage.getGraphics();
+        graphics.drawImage(image, 0, 0, null);
+        graphics.dispose();
+        return grayImage;
+    }
+
     /**
      * Compute Gravatar hash.
      * See https://en.gravatar.com/site/implement/hash/.
@@ -1,6 +1,7 @@
 package com.sismics.util.context;
 
 import com.google.common.collect.Lists;
+import com.sismics.docs.core.constant.Constants;
 import com.sismics.docs.core.model.context.AppContext;
 
 import jakarta.persistence.EntityManager;
@@ -17,17 +18,33 @@ public class ThreadLocalContext {
      * ThreadLocal to store the context.
      */
     private static final ThreadLocal<ThreadLocalContext> threadLocalContext = new ThreadLocal<>();
+
+    /**
+     * Default value of keepPersistenceContext for new contexts.
+     */
+    private static volatile boolean defaultKeepPersistenceContext = Boolean.parseBoolean(System.getenv(Constants.KEEP_PERSISTENCE_CONTEXT_ENV));
     
     /**
      * Entity manager.
      */
     private EntityManager entityManager;
 
+    /**
+     * True to keep the persistence context (L1 cache) until the end of the transaction.
+     * Otherwise it is flushed and cleared each time the entity manager is requested.
+     */
+    private boolean keepPersistenceContext = defaultKeepPersistenceContext;
+
     /**
      * List of async events posted during this request.
      */
     private List<Object> asyncEventList = Lists.newArrayList();
 
+    /**
+     * List of actions to run after the commit of the current transaction.
+     */
+    private List<Runnable> afterCommitList = Lists.newArrayList();
+
     /**
      * Private constructor.
      */
@@ -62,7 +79,7 @@ public class ThreadLocalContext {
      * @return entityManager
      */
     public EntityManager getEntityManager() {
-        if (entityManager != null && entityManager.isOpen()) {
+        if (entityManager != null && entityManager.isOpen() && !keepPersistenceContext) {
             // This disables the L1 cache
             entityManager.flush();
             entityManager.clear();
@@ -70,6 +87,47 @@ public class ThreadLocalContext {
         return entityManager;
     }
 
+    /**
+     * Synchronize the persistence context after a bulk update or delete statement,
+     * which changes the database without updating the loaded entities.
+     */
+    public void afterBulkUpdate() {
+        if (entityManager != null && entityManager.isOpen() && keepPersistenceContext) {
+            entityManager.flush();
+            entityManager.clear();
+        }
+    }
+
+    /**
+     * Getter of keepPersistenceContext.
+     *
+     * @return keepPersistenceContext
+     */
+    public boolean isKeepPersistenceContext() {
+        return keepPersistenceContext;
+    }
+
+    /**
+     * Setter of keepPersistenceContext.
+     * When kept, loaded entities are reused until the end of the transaction, Hibernate flushes them
+     * before queries and at commit. Entities modified outside a DAO are then persisted too.
+     *
+     * @param keepPersistenceContext keepPersistenceContext
+     */
+    public void setKeepPersistenceContext(boolean keepPersistenceContext) {
+        this.keepPersistenceContext = keepPersistenceContext;
+    }
+
+    /**
+     * Setter of the default keepPersistenceContext of new contexts.
+     * Defaults to the DOCS_KEEP_PERSISTENCE_CONTEXT environment variable.
+     *
+     * @param keepPersistenceContext keepPersistenceContext
+     */
+    public static void setDefaultKeepPersistenceContext(boolean keepPersistenceContext) {
+        defaultKeepPersistenceContext = keepPersistenceContext;
+    }
+
     /**
      * Setter of entityManager.
      *
@@ -96,7 +154,33 @@ public class ThreadLocalContext {
         while (iterator.hasNext()) {
             Object asyncEvent = iterator.next();
             iterator.remove();
-            AppContext.getInstance().getAsyncEventBus().post(asyncEvent);
+            AppContext.getInstance().postAsyncEvent(asyncEvent);
+        }
+    }
+
+    /**
+     * Run an action after the commit of the current transaction.
+     * The action is run immediately outside a transaction, and dropped if the transaction is rolled back.
+     *
+     * @param runnable Action
+     */
+    public void addAfterCommit(Runnable runnable) {
+        if (entityManager == null || !entityManager.isOpen() || !entityManager.getTransaction().isActive()) {
+            runnable.run();
+            return;
+        }
+        afterCommitList.add(runnable);
+    }
+
+    /**
+     * Run all the actions waiting for the commit of the current transaction.
+     */
+    public void fireAllAfterCommit() {
+        Iterator<Runnable> iterator = afterCommitList.iterator();
+        while (iterator.hasNext()) {
+            Runnable runnable = iterator.next();
+            iterator.remove();
+            runnable.run();
         }
     }
 }
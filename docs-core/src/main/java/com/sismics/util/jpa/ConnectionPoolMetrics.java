@@ -0,0 +1,186 @@
+package com.sismics.util.jpa;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the JDBC connection pool.
+ * Connection wait and usage times are recorded in cumulative histograms, timed out waits included.
+ *
+ * @author agent
+ */
+public class ConnectionPoolMetrics implements MetricsTrackerFactory, IMetricsTracker {
+    /**
+     * Upper bounds of the histogram buckets in milliseconds, the last bucket is unbounded.
+     */
+    public static final long[] BUCKET_BOUNDS_MS = { 1, 10, 100, 1000, 10000 };
+
+    /**
+     * Pool statistics.
+     */
+    private volatile PoolStats poolStats;
+
+    /**
+     * Connection wait time histogram.
+     */
+    private final Histogram waitHistogram = new Histogram();
+
+    /**
+     * Connection usage time histogram.
+     */
+    private final Histogram usageHistogram = new Histogram();
+
+    /**
+     * Number of connection requests timed out.
+     */
+    private final LongAdder timeoutCount = new LongAdder();
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        this.poolStats = poolStats;
+        return this;
+    }
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        waitHistogram.record(TimeUnit.NANOSECONDS.toMillis(elapsedAcquiredNanos));
+    }
+
+    @Override
+    public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+        usageHistogram.record(elapsedBorrowedMillis);
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        timeoutCount.increment();
+    }
+
+    /**
+     * Returns the number of connections in use.
+     *
+     * @return Active connections
+     */
+    public int getActiveConnections() {
+        return poolStats == null ? 0 : poolStats.getActiveConnections();
+    }
+
+    /**
+     * Returns the number of connections available in the pool.
+     *
+     * @return Idle connections
+     */
+    public int getIdleConnections() {
+        return poolStats == null ? 0 : poolStats.getIdleConnections();
+    }
+
+    /**
+     * Returns the number of threads waiting for a connection.
+     *
+     * @return Pending threads
+     */
+    public int getPendingThreads() {
+        return poolStats == null ? 0 : poolStats.getPendingThreads();
+    }
+
+    /**
+     * Returns the maximum number of connections.
+     *
+     * @return Maximum connections
+     */
+    public int getMaxConnections() {
+        return poolStats == null ? 0 : poolStats.getMaxConnections();
+    }
+
+    public Histogram getWaitHistogram() {
+        return waitHistogram;
+    }
+
+    public Histogram getUsageHistogram() {
+        return usageHistogram;
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    /**
+     * Histogram of durations in milliseconds.
+     */
+    public static class Histogram {
+        /**
+         * Counts per bucket.
+         */
+        private final LongAdder[] bucketCounts = new LongAdder[BUCKET_BOUNDS_MS.length + 1];
+
+        /**
+         * Sum of the recorded durations.
+         */
+        private final LongAdder totalMs = new LongAdder();
+
+        private Histogram() {
+            for (int i = 0; i < bucketCounts.length; i++) {
+                bucketCounts[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Record a duration.
+         *
+         * @param durationMs Duration in milliseconds
+         */
+        private void record(long durationMs) {
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS_MS.length && durationMs >= BUCKET_BOUNDS_MS[bucket]) {
+                bucket++;
+            }
+            bucketCounts[bucket].increment();
+            totalMs.add(durationMs);
+        }
+
+        /**
+         * Returns the number of durations recorded in a bucket.
+         *
+         * @param bucket Bucket index, the duration is lower than BUCKET_BOUNDS_MS[bucket]
+         * @return Count
+         */
+        public long getCount(int bucket) {
+            return bucketCounts[bucket].sum();
+        }
+
+        /**
+         * Returns the number of buckets.
+         *
+         * @return Number of buckets
+         */
+        public int getBucketCount() {
+            return bucketCounts.length;
+        }
+
+        /**
+         * Returns the number of durations recorded.
+         *
+         * @return Count
+         */
+        public long getCount() {
+            long count = 0;
+            for (LongAdder bucketCount : bucketCounts) {
+                count += bucketCount.sum();
+            }
+            return count;
+        }
+
+        /**
+         * Returns the sum of the recorded durations.
+         *
+         * @return Total in milliseconds
+         */
+        public long getTotalMs() {
+            return totalMs.sum();
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.sismics.util.jpa;
 import com.google.common.base.Strings;
 import com.sismics.docs.core.util.DirectoryUtil;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.internal.util.config.ConfigurationHelper;
 import org.hibernate.service.ServiceRegistry;
 import org.slf4j.Logger;
@@ -83,6 +85,14 @@ public final class EMF {
         if(databasePoolSize == null) {
             databasePoolSize = "10";
         }
+        String databaseConnectionTimeout = System.getenv("DATABASE_CONNECTION_TIMEOUT");
+        if (databaseConnectionTimeout == null) {
+            databaseConnectionTimeout = "30000";
+        }
+        String databaseLeakDetectionThreshold = System.getenv("DATABASE_LEAK_DETECTION_THRESHOLD");
+        if (databaseLeakDetectionThreshold == null) {
+            databaseLeakDetectionThreshold = "0";
+        }
 
         log.info("Configuring EntityManager from environment parameters");
         Properties props = new Properties();
@@ -105,10 +115,17 @@ public final class EMF {
         props.put("hibernate.show_sql", "false");
         props.put("hibernate.format_sql", "false");
         props.put("hibernate.max_fetch_depth", "5");
-        props.put("hibernate.cache.use_second_level_cache", "false");
-        props.put("hibernate.connection.initial_pool_size", "1");
+        props.put("hibernate.cache.use_second_level_cache", "true");
+        props.put("hibernate.cache.use_query_cache", "true");
+        props.put("hibernate.cache.region.factory_class", "jcache");
+        props.put("hibernate.javax.cache.provider", "com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider");
+        props.put("hibernate.javax.cache.missing_cache_strategy", "create");
+        props.put("hibernate.generate_statistics", "true");
+        props.put("hibernate.session.events.log", "false");
+        props.put("hibernate.connection.provider_class", HikariConnectionProvider.class.getName());
         props.put("hibernate.connection.pool_size", databasePoolSize);
-        props.put("hibernate.connection.pool_validation_interval", "5");
+        props.put(HikariConnectionProvider.CONNECTION_TIMEOUT, databaseConnectionTimeout);
+        props.put(HikariConnectionProvider.LEAK_DETECTION_THRESHOLD, databaseLeakDetectionThreshold);
         return props;
     }
     
@@ -127,6 +144,20 @@ public final class EMF {
         return emfInstance;
     }
 
+    /**
+     * Returns the metrics of the connection pool.
+     *
+     * @return Metrics, null if the connections are not provided by {@link HikariConnectionProvider}
+     */
+    public static ConnectionPoolMetrics getConnectionPoolMetrics() {
+        ConnectionProvider connectionProvider = emfInstance.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(ConnectionProvider.class);
+        if (connectionProvider == null || !connectionProvider.isUnwrappableAs(HikariConnectionProvider.class)) {
+            return null;
+        }
+        return connectionProvider.unwrap(HikariConnectionProvider.class).getMetrics();
+    }
+
     public static boolean isDriverH2() {
         String driver = getDriver();
         return driver.contains("h2");
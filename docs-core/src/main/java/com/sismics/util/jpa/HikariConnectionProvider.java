@@ -0,0 +1,125 @@
+package com.sismics.util.jpa;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.UnknownUnwrapTypeException;
+import org.hibernate.service.spi.Configurable;
+import org.hibernate.service.spi.Stoppable;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Hibernate connection provider backed by a HikariCP pool.
+ * Configured from the standard hibernate.connection.* properties, and optionally:
+ * <ul>
+ *     <li>hibernate.hikari.connectionTimeout: maximum time to wait for a connection in milliseconds</li>
+ *     <li>hibernate.hikari.minimumIdle: minimum number of idle connections</li>
+ *     <li>hibernate.hikari.leakDetectionThreshold: time after which a connection not returned
+ *     to the pool is logged as a possible leak in milliseconds, 0 to disable</li>
+ * </ul>
+ * The provider of hibernate-hikaricp is not used: it builds the pool from string properties only,
+ * so the {@link ConnectionPoolMetrics} tracker instance can't be given to it, and it brings a dependency
+ * versioned with Hibernate for a class of a few lines.
+ *
+ * @author agent
+ */
+public class HikariConnectionProvider implements ConnectionProvider, Configurable, Stoppable {
+    /**
+     * Maximum time to wait for a connection in milliseconds.
+     */
+    public static final String CONNECTION_TIMEOUT = "hibernate.hikari.connectionTimeout";
+
+    /**
+     * Minimum number of idle connections.
+     */
+    public static final String MINIMUM_IDLE = "hibernate.hikari.minimumIdle";
+
+    /**
+     * Connection leak detection threshold in milliseconds.
+     */
+    public static final String LEAK_DETECTION_THRESHOLD = "hibernate.hikari.leakDetectionThreshold";
+
+    /**
+     * Data source.
+     */
+    private HikariDataSource dataSource;
+
+    /**
+     * Pool metrics.
+     */
+    private final ConnectionPoolMetrics metrics = new ConnectionPoolMetrics();
+
+    @Override
+    public void configure(Map<String, Object> configurationValues) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("docs");
+        String driverClass = ConfigurationHelper.getString(AvailableSettings.DRIVER, configurationValues);
+        if (driverClass != null) {
+            config.setDriverClassName(driverClass);
+        }
+        config.setJdbcUrl(ConfigurationHelper.getString(AvailableSettings.URL, configurationValues));
+        config.setUsername(ConfigurationHelper.getString(AvailableSettings.USER, configurationValues));
+        config.setPassword(ConfigurationHelper.getString(AvailableSettings.PASS, configurationValues));
+        config.setMaximumPoolSize(ConfigurationHelper.getInt(AvailableSettings.POOL_SIZE, configurationValues, 10));
+        config.setMinimumIdle(ConfigurationHelper.getInt(MINIMUM_IDLE, configurationValues, 1));
+        config.setConnectionTimeout(ConfigurationHelper.getLong(CONNECTION_TIMEOUT, configurationValues, 30000));
+        config.setLeakDetectionThreshold(ConfigurationHelper.getLong(LEAK_DETECTION_THRESHOLD, configurationValues, 0));
+        config.setAutoCommit(false);
+        config.setMetricsTrackerFactory(metrics);
+        dataSource = new HikariDataSource(config);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return dataSource.getConnection();
+    }
+
+    @Override
+    public void closeConnection(Connection conn) throws SQLException {
+        conn.close();
+    }
+
+    @Override
+    public boolean supportsAggressiveRelease() {
+        return false;
+    }
+
+    @Override
+    public boolean isUnwrappableAs(Class<?> unwrapType) {
+        return unwrapType.isAssignableFrom(HikariConnectionProvider.class)
+                || unwrapType.isAssignableFrom(HikariDataSource.class);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> unwrapType) {
+        if (unwrapType.isAssignableFrom(HikariConnectionProvider.class)) {
+            return (T) this;
+        }
+        if (unwrapType.isAssignableFrom(HikariDataSource.class)) {
+            return (T) dataSource;
+        }
+        throw new UnknownUnwrapTypeException(unwrapType);
+    }
+
+    @Override
+    public void stop() {
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+
+    /**
+     * Returns the pool metrics.
+     *
+     * @return Pool metrics
+     */
+    public ConnectionPoolMetrics getMetrics() {
+        return metrics;
+    }
+}
@@ -2,8 +2,10 @@ package com.sismics.util.mime;
 
 import java.io.IOException;
 import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Set;
 
 /**
  * Utility to check MIME types.
@@ -11,6 +13,109 @@ import java.nio.file.Path;
  * @author bgamard
  */
 public class MimeTypeUtil {
+    /**
+     * Number of bytes of the header needed to sniff the MIME type.
+     */
+    public static final int HEADER_SIZE = 12;
+
+    /**
+     * Brands of the ISO base media files which are MP4 videos.
+     */
+    private static final Set<String> MP4_BRANDS = Set.of("isom", "iso2", "mp41", "mp42", "avc1", "dash");
+
+    /**
+     * MIME types of the formats already compressed.
+     */
+    private static final Set<String> COMPRESSED_MIME_TYPES = Set.of(
+            MimeType.IMAGE_JPEG, MimeType.IMAGE_PNG, MimeType.IMAGE_GIF,
+            MimeType.APPLICATION_ZIP, MimeType.APPLICATION_PDF,
+            MimeType.OPEN_DOCUMENT_TEXT, MimeType.OFFICE_DOCUMENT, MimeType.OFFICE_PRESENTATION, MimeType.OFFICE_SHEET,
+            MimeType.VIDEO_WEBM, MimeType.VIDEO_MP4);
+
+    /**
+     * Returns true if a format is already compressed, compressing it again gains nothing.
+     *
+     * @param mimeType MIME type
+     * @return True if already compressed
+     */
+    public static boolean isCompressed(String mimeType) {
+        if (mimeType == null) {
+            return false;
+        }
+        return COMPRESSED_MIME_TYPES.contains(mimeType) || mimeType.startsWith("video/") || mimeType.startsWith("audio/");
+    }
+
+    /**
+     * Try to guess the MIME type of a file from its header, then from the file itself.
+     *
+     * @param header First bytes of the file
+     * @param headerLength Number of bytes available in the header
+     * @param file File to inspect
+     * @param name File name
+     * @return MIME type
+     * @throws IOException e
+     */
+    public static String guessMimeType(byte[] header, int headerLength, Path file, String name) throws IOException {
+        String mimeType = sniffMimeType(header, headerLength);
+        if (mimeType == null) {
+            // ZIP based and text formats are not distinguishable by their header
+            return guessMimeType(file, name);
+        }
+        return mimeType;
+    }
+
+    /**
+     * Guess the MIME type of a file from its magic number.
+     *
+     * @param header First bytes of the file
+     * @param headerLength Number of bytes available in the header
+     * @return MIME type, null if unknown
+     */
+    private static String sniffMimeType(byte[] header, int headerLength) {
+        if (startsWith(header, headerLength, 0, "%PDF-".getBytes(StandardCharsets.US_ASCII))) {
+            return MimeType.APPLICATION_PDF;
+        }
+        if (startsWith(header, headerLength, 0, new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' })) {
+            return MimeType.IMAGE_PNG;
+        }
+        if (startsWith(header, headerLength, 0, new byte[] { (byte) 0xff, (byte) 0xd8, (byte) 0xff })) {
+            return MimeType.IMAGE_JPEG;
+        }
+        if (startsWith(header, headerLength, 0, "GIF87a".getBytes(StandardCharsets.US_ASCII))
+                || startsWith(header, headerLength, 0, "GIF89a".getBytes(StandardCharsets.US_ASCII))) {
+            return MimeType.IMAGE_GIF;
+        }
+        if (startsWith(header, headerLength, 0, new byte[] { 0x1a, 0x45, (byte) 0xdf, (byte) 0xa3 })) {
+            return MimeType.VIDEO_WEBM;
+        }
+        if (startsWith(header, headerLength, 4, "ftyp".getBytes(StandardCharsets.US_ASCII)) && headerLength >= 12
+                && MP4_BRANDS.contains(new String(header, 8, 4, StandardCharsets.US_ASCII))) {
+            return MimeType.VIDEO_MP4;
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if the header contains a signature at an offset.
+     *
+     * @param header Header
+     * @param headerLength Number of bytes available in the header
+     * @param offset Offset of the signature
+     * @param signature Signature
+     * @return True if the signature matches
+     */
+    private static boolean startsWith(byte[] header, int headerLength, int offset, byte[] signature) {
+        if (headerLength < offset + signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (header[offset + i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Try to guess the MIME type of a file.
      * 
@@ -0,0 +1,10 @@
+-- DBUPDATE-033-0.SQL
+
+-- Move the extracted file content out of T_FILE, it is only needed to index files and to return the file content
+create cached table T_FILE_CONTENT ( FCO_IDFILE_C varchar(36) not null, FCO_CONTENT_C longvarchar, primary key (FCO_IDFILE_C) );
+alter table T_FILE_CONTENT add constraint FK_FCO_IDFILE_C foreign key (FCO_IDFILE_C) references T_FILE (FIL_ID_C) on delete cascade on update restrict;
+insert into T_FILE_CONTENT (FCO_IDFILE_C, FCO_CONTENT_C) select FIL_ID_C, FIL_CONTENT_C from T_FILE where FIL_CONTENT_C is not null;
+alter table T_FILE drop column FIL_CONTENT_C;
+
+-- Update the database version
+update T_CONFIG set CFG_VALUE_C = '33' where CFG_ID_C = 'DB_VERSION';
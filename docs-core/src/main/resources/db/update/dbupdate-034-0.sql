@@ -0,0 +1,9 @@
+-- DBUPDATE-034-0.SQL
+
+-- Pending file processing jobs, claimed by the nodes with a lease
+create cached table T_FILE_PROCESSING ( FPR_IDFILE_C varchar(36) not null, FPR_LANGUAGE_C varchar(7), FPR_FILECREATED_B bit not null, FPR_VERSION_N int not null, FPR_ATTEMPT_N int not null, FPR_LEASEOWNER_C varchar(36), FPR_LEASEEXPIRATION_D datetime, FPR_CREATEDATE_D datetime not null, primary key (FPR_IDFILE_C) );
+alter table T_FILE_PROCESSING add constraint FK_FPR_IDFILE_C foreign key (FPR_IDFILE_C) references T_FILE (FIL_ID_C) on delete cascade on update restrict;
+create index IDX_FPR_CREATEDATE_D on T_FILE_PROCESSING (FPR_CREATEDATE_D);
+
+-- Update the database version
+update T_CONFIG set CFG_VALUE_C = '34' where CFG_ID_C = 'DB_VERSION';
@@ -0,0 +1,7 @@
+-- DBUPDATE-036-0.SQL
+
+-- Index of the content of the files of each user, to store identical files once
+create index IDX_FIL_CONTENTHASH_C on T_FILE (FIL_IDUSER_C, FIL_CONTENTHASH_C);
+
+-- Update the database version
+update T_CONFIG set CFG_VALUE_C = '36' where CFG_ID_C = 'DB_VERSION';
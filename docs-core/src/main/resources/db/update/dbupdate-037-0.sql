@@ -0,0 +1,7 @@
+-- DBUPDATE-037-0.SQL
+
+-- True if the content of the file is stored once with a hard link to an identical file
+alter table T_FILE add column FIL_LINKED_B bit not null default 0;
+
+-- Update the database version
+update T_CONFIG set CFG_VALUE_C = '37' where CFG_ID_C = 'DB_VERSION';
@@ -0,0 +1,228 @@
+package com.sismics.docs.core.dao.jpa;
+
+import com.sismics.docs.core.constant.AclType;
+import com.sismics.docs.core.constant.PermType;
+import com.sismics.docs.core.dao.AclDao;
+import com.sismics.docs.core.dao.DocumentDao;
+import com.sismics.docs.core.dao.FileDao;
+import com.sismics.docs.core.dao.TagDao;
+import com.sismics.docs.core.dao.UserDao;
+import com.sismics.docs.core.dao.criteria.TagCriteria;
+import com.sismics.docs.core.dao.dto.TagDto;
+import com.sismics.docs.core.model.jpa.Acl;
+import com.sismics.docs.core.model.jpa.Document;
+import com.sismics.docs.core.model.jpa.File;
+import com.sismics.docs.core.model.jpa.Tag;
+import com.sismics.docs.core.model.jpa.User;
+import com.sismics.docs.core.util.TransactionUtil;
+import com.sismics.docs.core.util.jpa.SortCriteria;
+import com.sismics.util.context.ThreadLocalContext;
+import com.sismics.util.jpa.EMF;
+import com.sismics.util.mime.MimeType;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Benchmark of the loading of the tags and files of a listed page of documents, per page size.
+ * Each document has 2 tags and 2 files, the tags are checked against the ACL of the listing user.
+ * The batched loading of the document listing is compared to one tag query per listed document.
+ * Run with: mvn -pl docs-core test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.sismics.docs.core.dao.jpa.DocumentListBenchmark
+ * The SQL statements are counted by the queries counter, divide it by the pages counter for the statements per page.
+ *
+ * @author agent
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DocumentListBenchmark {
+    /**
+     * Number of listed documents per page.
+     */
+    @Param({ "1", "10", "50" })
+    private int pageSize;
+
+    /**
+     * ID of the listing user.
+     */
+    private String userId;
+
+    /**
+     * IDs of the documents of the page.
+     */
+    private List<String> documentIdList;
+
+    /**
+     * Hibernate statistics.
+     */
+    private Statistics statistics;
+
+    /**
+     * Counters of the SQL statements and the listed pages.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class QueryCounter {
+        /**
+         * Number of SQL statements.
+         */
+        public long queries;
+
+        /**
+         * Number of listed pages.
+         */
+        public long pages;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            queries = 0;
+            pages = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        EntityManager em = EMF.get().createEntityManager();
+        ThreadLocalContext.get().setEntityManager(em);
+        em.getTransaction().begin();
+        statistics = EMF.get().unwrap(SessionFactory.class).getStatistics();
+
+        User user = new User();
+        user.setUsername("benchmark" + UUID.randomUUID().toString().substring(0, 8));
+        user.setPassword("12345678");
+        user.setEmail("benchmark@docs.com");
+        user.setRoleId("user");
+        user.setStorageQuota(100_000L);
+        userId = new UserDao().create(user, "admin");
+
+        TagDao tagDao = new TagDao();
+        List<String> tagIdList = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Tag tag = new Tag();
+            tag.setName("ListTag" + i);
+            tag.setColor("#ff0000");
+            tag.setUserId(userId);
+            String tagId = tagDao.create(tag, userId);
+            Acl acl = new Acl();
+            acl.setPerm(PermType.READ);
+            acl.setType(AclType.USER);
+            acl.setSourceId(tagId);
+            acl.setTargetId(userId);
+            new AclDao().create(acl, userId);
+            tagIdList.add(tagId);
+        }
+
+        DocumentDao documentDao = new DocumentDao();
+        FileDao fileDao = new FileDao();
+        documentIdList = new ArrayList<>();
+        for (int i = 0; i < pageSize; i++) {
+            Document document = new Document();
+            document.setUserId(userId);
+            document.setTitle("Document " + i);
+            document.setLanguage("eng");
+            document.setCreateDate(new Date());
+            String documentId = documentDao.create(document, userId);
+            tagDao.updateTagList(documentId, new HashSet<>(tagIdList));
+            for (int j = 0; j < 2; j++) {
+                File file = new File();
+                file.setDocumentId(documentId);
+                file.setUserId(userId);
+                file.setName("file" + j + ".txt");
+                file.setMimeType(MimeType.TEXT_PLAIN);
+                file.setOrder(j);
+                file.setVersion(0);
+                file.setLatestVersion(true);
+                file.setSize(File.UNKNOWN_SIZE);
+                fileDao.create(file, userId);
+            }
+            documentIdList.add(documentId);
+        }
+        TransactionUtil.commit();
+    }
+
+    @TearDown
+    public void tearDown() {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        em.getTransaction().rollback();
+        em.close();
+        ThreadLocalContext.cleanup();
+    }
+
+    @Benchmark
+    public Map<String, List<TagDto>> listPage(QueryCounter queryCounter) {
+        long queryCount = statistics.getPrepareStatementCount();
+        Map<String, List<File>> filesByDocument = new FileDao().getByDocumentsIds(documentIdList).stream()
+                .collect(Collectors.groupingBy(File::getDocumentId));
+        Map<String, List<TagDto>> tagsByDocument = new TagDao().findByDocumentIds(documentIdList, Collections.singletonList(userId));
+        count(queryCounter, queryCount, filesByDocument);
+        return tagsByDocument;
+    }
+
+    @Benchmark
+    public Map<String, List<TagDto>> listPagePerDocument(QueryCounter queryCounter) {
+        long queryCount = statistics.getPrepareStatementCount();
+        Map<String, List<File>> filesByDocument = new FileDao().getByDocumentsIds(documentIdList).stream()
+                .collect(Collectors.groupingBy(File::getDocumentId));
+        TagDao tagDao = new TagDao();
+        Map<String, List<TagDto>> tagsByDocument = new HashMap<>();
+        for (String documentId : documentIdList) {
+            tagsByDocument.put(documentId, tagDao.findByCriteria(new TagCriteria()
+                    .setTargetIdList(Collections.singletonList(userId))
+                    .setDocumentId(documentId), new SortCriteria(1, true)));
+        }
+        count(queryCounter, queryCount, filesByDocument);
+        return tagsByDocument;
+    }
+
+    /**
+     * Counts the SQL statements of a listed page.
+     *
+     * @param queryCounter Query counter
+     * @param queryCount Statement count before the listing
+     * @param filesByDocument Files of the page, checked to be complete
+     */
+    private void count(QueryCounter queryCounter, long queryCount, Map<String, List<File>> filesByDocument) {
+        if (filesByDocument.size() != pageSize) {
+            throw new IllegalStateException("Incomplete page: " + filesByDocument.size());
+        }
+        queryCounter.queries += statistics.getPrepareStatementCount() - queryCount;
+        queryCounter.pages++;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DocumentListBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,128 @@
+package com.sismics.docs.core.dao.jpa;
+
+import com.google.common.base.Strings;
+import com.sismics.docs.core.dao.DocumentDao;
+import com.sismics.docs.core.dao.FileDao;
+import com.sismics.docs.core.dao.UserDao;
+import com.sismics.docs.core.model.jpa.Document;
+import com.sismics.docs.core.model.jpa.File;
+import com.sismics.docs.core.model.jpa.User;
+import com.sismics.docs.core.util.TransactionUtil;
+import com.sismics.util.context.ThreadLocalContext;
+import com.sismics.util.jpa.EMF;
+import com.sismics.util.mime.MimeType;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the listing of the files of a document, with and without their extracted content.
+ * The document has 200 files of 50k characters of content each.
+ * Run with: mvn -pl docs-core test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.sismics.docs.core.dao.jpa.FileDaoBenchmark
+ * The allocated memory is reported by the GC profiler.
+ *
+ * @author agent
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileDaoBenchmark {
+    /**
+     * Number of files of the document.
+     */
+    private static final int FILE_COUNT = 200;
+
+    /**
+     * Document ID.
+     */
+    private String documentId;
+
+    @Setup
+    public void setUp() throws Exception {
+        EntityManager em = EMF.get().createEntityManager();
+        ThreadLocalContext.get().setEntityManager(em);
+        em.getTransaction().begin();
+
+        User user = new User();
+        user.setUsername("benchmark" + UUID.randomUUID().toString().substring(0, 8));
+        user.setPassword("12345678");
+        user.setEmail("benchmark@docs.com");
+        user.setRoleId("admin");
+        user.setStorageQuota(100_000L);
+        new UserDao().create(user, "admin");
+
+        Document document = new Document();
+        document.setUserId(user.getId());
+        document.setTitle("File content");
+        document.setLanguage("eng");
+        document.setCreateDate(new Date());
+        documentId = new DocumentDao().create(document, user.getId());
+
+        FileDao fileDao = new FileDao();
+        String content = Strings.repeat("Lorem ipsum ", 50000 / 12);
+        for (int i = 0; i < FILE_COUNT; i++) {
+            File file = new File();
+            file.setDocumentId(documentId);
+            file.setUserId(user.getId());
+            file.setName("file" + i + ".txt");
+            file.setMimeType(MimeType.TEXT_PLAIN);
+            file.setOrder(i);
+            file.setVersion(0);
+            file.setLatestVersion(true);
+            file.setSize(File.UNKNOWN_SIZE);
+            String fileId = fileDao.create(file, user.getId());
+            fileDao.updateContent(fileId, content + i);
+        }
+        TransactionUtil.commit();
+    }
+
+    @TearDown
+    public void tearDown() {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        em.getTransaction().rollback();
+        em.close();
+        ThreadLocalContext.cleanup();
+    }
+
+    @Benchmark
+    public List<File> listFiles() {
+        return new FileDao().getByDocumentsIds(Collections.singleton(documentId));
+    }
+
+    @Benchmark
+    public List<File> listFilesWithContent() {
+        FileDao fileDao = new FileDao();
+        List<File> fileList = fileDao.getByDocumentsIds(Collections.singleton(documentId));
+        fileDao.loadContent(fileList);
+        return fileList;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FileDaoBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
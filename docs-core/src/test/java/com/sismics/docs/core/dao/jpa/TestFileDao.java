@@ -0,0 +1,75 @@
+package com.sismics.docs.core.dao.jpa;
+
+import com.google.common.base.Strings;
+import com.sismics.docs.BaseTransactionalTest;
+import com.sismics.docs.core.dao.DocumentDao;
+import com.sismics.docs.core.dao.FileDao;
+import com.sismics.docs.core.model.jpa.Document;
+import com.sismics.docs.core.model.jpa.File;
+import com.sismics.docs.core.model.jpa.User;
+import com.sismics.docs.core.util.TransactionUtil;
+import com.sismics.util.context.ThreadLocalContext;
+import com.sismics.util.mime.MimeType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Tests the file DAO.
+ *
+ * @author agent
+ */
+public class TestFileDao extends BaseTransactionalTest {
+    @Test
+    public void testFileContent() throws Exception {
+        // Create a document with 200 files of 50k characters of extracted content each
+        User user = createUser("testFileContent");
+        Document document = new Document();
+        document.setUserId(user.getId());
+        document.setTitle("File content");
+        document.setLanguage("eng");
+        document.setCreateDate(new Date());
+        String documentId = new DocumentDao().create(document, user.getId());
+
+        FileDao fileDao = new FileDao();
+        String content = Strings.repeat("Lorem ipsum ", 50000 / 12);
+        int fileCount = 200;
+        for (int i = 0; i < fileCount; i++) {
+            File file = new File();
+            file.setDocumentId(documentId);
+            file.setUserId(user.getId());
+            file.setName("file" + i + ".txt");
+            file.setMimeType(MimeType.TEXT_PLAIN);
+            file.setOrder(i);
+            file.setVersion(0);
+            file.setLatestVersion(true);
+            file.setSize(File.UNKNOWN_SIZE);
+            String fileId = fileDao.create(file, user.getId());
+            fileDao.updateContent(fileId, content + i);
+        }
+        TransactionUtil.commit();
+        ThreadLocalContext.get().getEntityManager().clear();
+
+        // Listing the files doesn't load their content
+        List<File> fileList = fileDao.getByDocumentsIds(Collections.singleton(documentId));
+        Assert.assertEquals(fileCount, fileList.size());
+        for (File file : fileList) {
+            Assert.assertNull(file.getContent());
+        }
+
+        // The content is loaded on demand
+        fileDao.loadContent(fileList);
+        for (File file : fileList) {
+            Assert.assertEquals(content + file.getOrder(), file.getContent());
+        }
+
+        // Update and get the content of a single file
+        String fileId = fileList.get(0).getId();
+        fileDao.updateContent(fileId, "Updated content");
+        Assert.assertEquals("Updated content", fileDao.getContent(fileId));
+        Assert.assertNull(fileDao.getContent("unknown"));
+    }
+}
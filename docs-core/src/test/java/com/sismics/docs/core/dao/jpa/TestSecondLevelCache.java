@@ -0,0 +1,104 @@
+package com.sismics.docs.core.dao.jpa;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.sismics.docs.BaseTransactionalTest;
+import com.sismics.docs.core.constant.ConfigType;
+import com.sismics.docs.core.dao.AuthenticationTokenDao;
+import com.sismics.docs.core.dao.ConfigDao;
+import com.sismics.docs.core.dao.RoleBaseFunctionDao;
+import com.sismics.docs.core.dao.VocabularyDao;
+import com.sismics.docs.core.model.jpa.Vocabulary;
+import com.sismics.docs.core.util.ConfigUtil;
+import com.sismics.docs.core.util.TransactionUtil;
+import com.sismics.util.jpa.EMF;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Date;
+
+/**
+ * Tests the second-level cache of the read-mostly entities.
+ *
+ * @author agent
+ */
+public class TestSecondLevelCache extends BaseTransactionalTest {
+    @Test
+    public void testConfigCache() {
+        Statistics statistics = EMF.get().unwrap(SessionFactory.class).getStatistics();
+        ConfigDao configDao = new ConfigDao();
+        configDao.update(ConfigType.DEFAULT_LANGUAGE, "fra");
+        TransactionUtil.commit();
+
+        try {
+            // Configuration parameters are read from the cache
+            Assert.assertEquals("fra", ConfigUtil.getConfigStringValue(ConfigType.DEFAULT_LANGUAGE));
+            long statementCount = statistics.getPrepareStatementCount();
+            long hitCount = statistics.getSecondLevelCacheHitCount();
+            for (int i = 0; i < 10; i++) {
+                Assert.assertEquals("fra", ConfigUtil.getConfigStringValue(ConfigType.DEFAULT_LANGUAGE));
+            }
+            Assert.assertEquals(statementCount, statistics.getPrepareStatementCount());
+            Assert.assertTrue(statistics.getSecondLevelCacheHitCount() >= hitCount + 10);
+
+            // Native updates of other tables don't evict them
+            new AuthenticationTokenDao().updateLastConnectionDate(Lists.newArrayList("unknown"), new Date());
+            TransactionUtil.commit();
+            statementCount = statistics.getPrepareStatementCount();
+            Assert.assertEquals("fra", ConfigUtil.getConfigStringValue(ConfigType.DEFAULT_LANGUAGE));
+            Assert.assertEquals(statementCount, statistics.getPrepareStatementCount());
+        } finally {
+            // Updates are seen immediately
+            configDao.update(ConfigType.DEFAULT_LANGUAGE, "eng");
+            TransactionUtil.commit();
+            Assert.assertEquals("eng", ConfigUtil.getConfigStringValue(ConfigType.DEFAULT_LANGUAGE));
+        }
+    }
+
+    @Test
+    public void testQueryCache() {
+        Statistics statistics = EMF.get().unwrap(SessionFactory.class).getStatistics();
+
+        // Base functions of a role are read from the query cache
+        RoleBaseFunctionDao roleBaseFunctionDao = new RoleBaseFunctionDao();
+        Assert.assertTrue(roleBaseFunctionDao.findByRoleId(Sets.newHashSet("admin")).contains("ADMIN"));
+        long statementCount = statistics.getPrepareStatementCount();
+        Assert.assertTrue(roleBaseFunctionDao.findByRoleId(Sets.newHashSet("admin")).contains("ADMIN"));
+        Assert.assertEquals(statementCount, statistics.getPrepareStatementCount());
+
+        // Vocabulary entries too
+        VocabularyDao vocabularyDao = new VocabularyDao();
+        String vocabularyId1 = createVocabulary("value1", 0);
+        TransactionUtil.commit();
+        Assert.assertEquals(1, vocabularyDao.getByName("test-cache").size());
+        statementCount = statistics.getPrepareStatementCount();
+        Assert.assertEquals(1, vocabularyDao.getByName("test-cache").size());
+        Assert.assertEquals(statementCount, statistics.getPrepareStatementCount());
+
+        // And invalidated when the entries change
+        String vocabularyId2 = createVocabulary("value2", 1);
+        TransactionUtil.commit();
+        Assert.assertEquals(2, vocabularyDao.getByName("test-cache").size());
+        vocabularyDao.delete(vocabularyId1);
+        vocabularyDao.delete(vocabularyId2);
+        TransactionUtil.commit();
+        Assert.assertEquals(0, vocabularyDao.getByName("test-cache").size());
+    }
+
+    /**
+     * Creates a vocabulary entry in the test-cache vocabulary.
+     *
+     * @param value Value
+     * @param order Order
+     * @return Vocabulary entry ID
+     */
+    private String createVocabulary(String value, int order) {
+        Vocabulary vocabulary = new Vocabulary();
+        vocabulary.setName("test-cache");
+        vocabulary.setValue(value);
+        vocabulary.setOrder(order);
+        return new VocabularyDao().create(vocabulary);
+    }
+}
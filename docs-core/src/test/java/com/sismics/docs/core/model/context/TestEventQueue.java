@@ -0,0 +1,117 @@
+package com.sismics.docs.core.model.context;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test of the asynchronous event queues.
+ *
+ * @author agent
+ */
+public class TestEventQueue {
+    @Test
+    public void testIsolationAndBackpressure() throws Exception {
+        CountDownLatch heavyLatch = new CountDownLatch(1);
+        HeavyListener heavyListener = new HeavyListener(heavyLatch);
+        EventQueue heavyQueue = new EventQueue("heavy", 1, 2, EventQueue.RejectionPolicy.BLOCK);
+        heavyQueue.register(heavyListener);
+        LightListener lightListener = new LightListener();
+        EventQueue lightQueue = new EventQueue("light", 1, 10, EventQueue.RejectionPolicy.BLOCK);
+        lightQueue.register(lightListener);
+
+        try {
+            // Fill the heavy queue: 1 event processing, 2 waiting
+            for (int i = 0; i < 3; i++) {
+                heavyQueue.post(i);
+            }
+            Assert.assertTrue(heavyListener.started.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(2, heavyQueue.getDepth());
+            Assert.assertEquals(1, heavyQueue.getActiveCount());
+
+            // Light events don't wait behind heavy ones
+            lightQueue.post("light");
+            Assert.assertTrue(lightListener.processed.await(5, TimeUnit.SECONDS));
+
+            // The heavy queue is full, posting blocks until there is room
+            Thread poster = new Thread(() -> heavyQueue.post(3));
+            poster.start();
+            poster.join(500);
+            Assert.assertTrue(poster.isAlive());
+            heavyLatch.countDown();
+            poster.join(5000);
+            Assert.assertFalse(poster.isAlive());
+        } finally {
+            heavyLatch.countDown();
+            heavyQueue.shutDown(5, TimeUnit.SECONDS);
+            lightQueue.shutDown(5, TimeUnit.SECONDS);
+        }
+
+        // Nothing has been lost, and the wait times are recorded
+        Assert.assertEquals(4, heavyListener.processedCount.get());
+        Assert.assertEquals(4, heavyQueue.getProcessedCount());
+        Assert.assertEquals(0, heavyQueue.getRejectedCount());
+        Assert.assertTrue(heavyQueue.getMaxWaitMs() >= 500);
+        Assert.assertEquals(1, lightQueue.getProcessedCount());
+    }
+
+    @Test
+    public void testDiscard() throws Exception {
+        CountDownLatch heavyLatch = new CountDownLatch(1);
+        HeavyListener heavyListener = new HeavyListener(heavyLatch);
+        EventQueue eventQueue = new EventQueue("discard", 1, 1, EventQueue.RejectionPolicy.DISCARD);
+        eventQueue.register(heavyListener);
+
+        try {
+            // 1 event processing, 1 waiting, 1 discarded
+            eventQueue.post(0);
+            Assert.assertTrue(heavyListener.started.await(5, TimeUnit.SECONDS));
+            eventQueue.post(1);
+            eventQueue.post(2);
+            Assert.assertEquals(1, eventQueue.getRejectedCount());
+        } finally {
+            heavyLatch.countDown();
+            eventQueue.shutDown(5, TimeUnit.SECONDS);
+        }
+        Assert.assertEquals(2, heavyListener.processedCount.get());
+    }
+
+    /**
+     * Listener blocking until a latch is released.
+     */
+    public static class HeavyListener {
+        private final CountDownLatch latch;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final AtomicInteger processedCount = new AtomicInteger();
+
+        HeavyListener(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Subscribe
+        @AllowConcurrentEvents
+        public void on(Integer event) throws InterruptedException {
+            started.countDown();
+            latch.await();
+            processedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Listener processing events immediately.
+     */
+    public static class LightListener {
+        private final CountDownLatch processed = new CountDownLatch(1);
+
+        @Subscribe
+        @AllowConcurrentEvents
+        public void on(String event) {
+            processed.countDown();
+        }
+    }
+}
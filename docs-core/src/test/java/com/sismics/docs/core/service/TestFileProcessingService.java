@@ -0,0 +1,94 @@
+package com.sismics.docs.core.service;
+
+import com.google.common.collect.Lists;
+import com.sismics.docs.BaseTransactionalTest;
+import com.sismics.docs.core.dao.FileProcessingDao;
+import com.sismics.docs.core.event.FileProcessingAsyncEvent;
+import com.sismics.docs.core.listener.async.FileProcessingAsyncListener;
+import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.model.jpa.File;
+import com.sismics.docs.core.model.jpa.FileProcessing;
+import com.sismics.docs.core.model.jpa.User;
+import com.sismics.docs.core.util.DirectoryUtil;
+import com.sismics.docs.core.util.FileUtil;
+import com.sismics.docs.core.util.TransactionUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.util.Date;
+
+/**
+ * Test of the durable file processing queue.
+ *
+ * @author agent
+ */
+public class TestFileProcessingService extends BaseTransactionalTest {
+    @Test
+    public void testClaimAndLease() throws Exception {
+        User user = createUser("fileProcessingLease");
+        File file = createFile(user, FILE_JPG_SIZE);
+        FileProcessingDao fileProcessingDao = new FileProcessingDao();
+        fileProcessingDao.enqueue(file.getId(), "eng", true);
+        TransactionUtil.commit();
+        Date future = new Date(System.currentTimeMillis() + 60000);
+        Assert.assertTrue(FileUtil.isProcessingFile(file.getId()));
+        Assert.assertEquals(1, fileProcessingDao.findClaimable(future, 10).size());
+
+        // A job is processed by a single node at a time
+        FileProcessing fileProcessing = fileProcessingDao.claim(file.getId(), "node1", future);
+        Assert.assertNotNull(fileProcessing);
+        Assert.assertEquals(1, fileProcessing.getAttemptCount());
+        Assert.assertNull(fileProcessingDao.claim(file.getId(), "node2", future));
+        Assert.assertTrue(fileProcessingDao.findClaimable(future, 10).isEmpty());
+        TransactionUtil.commit();
+
+        // The processing is requested again while in progress: the job is released instead of removed
+        fileProcessingDao.enqueue(file.getId(), "fra", false);
+        TransactionUtil.commit();
+        fileProcessingDao.complete(fileProcessing, "node1");
+        TransactionUtil.commit();
+        Assert.assertTrue(FileUtil.isProcessingFile(file.getId()));
+        Assert.assertEquals(1, fileProcessingDao.findClaimable(future, 10).size());
+
+        // The job of a crashed node is claimed by another node once its lease has expired
+        Assert.assertNotNull(fileProcessingDao.claim(file.getId(), "node1", new Date(System.currentTimeMillis() - 1000)));
+        TransactionUtil.commit();
+        Assert.assertEquals(1, fileProcessingDao.findClaimable(new Date(0), 10).size());
+        fileProcessing = fileProcessingDao.claim(file.getId(), "node2", future);
+        Assert.assertNotNull(fileProcessing);
+        Assert.assertEquals("fra", fileProcessing.getLanguage());
+        Assert.assertTrue(fileProcessing.isFileCreated());
+        TransactionUtil.commit();
+
+        // The expired node cannot complete or renew it anymore
+        fileProcessingDao.renew(Lists.newArrayList(file.getId()), "node1", future);
+        fileProcessingDao.complete(fileProcessing, "node1");
+        TransactionUtil.commit();
+        Assert.assertTrue(FileUtil.isProcessingFile(file.getId()));
+
+        // Completed by its owner
+        fileProcessingDao.complete(fileProcessing, "node2");
+        TransactionUtil.commit();
+        Assert.assertFalse(FileUtil.isProcessingFile(file.getId()));
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        User user = createUser("fileProcessingResume");
+        File file = createFile(user, FILE_JPG_SIZE);
+        new FileProcessingDao().enqueue(file.getId(), null, true);
+        TransactionUtil.commit();
+
+        // A job resumed after a restart doesn't have the unencrypted file anymore
+        FileProcessingAsyncEvent event = new FileProcessingAsyncEvent();
+        event.setFileId(file.getId());
+        new FileProcessingAsyncListener().on(event);
+        // The listener ran in the transaction of the test, commit the completed job so the rollback does not restore it
+        TransactionUtil.commit();
+
+        Assert.assertFalse(FileUtil.isProcessingFile(file.getId()));
+        Assert.assertTrue(Files.exists(DirectoryUtil.getStorageDirectory().resolve(file.getId() + "_thumb")));
+        Assert.assertEquals(0, AppContext.getInstance().getFileProcessingService().getClaimedCount());
+    }
+}
@@ -1,5 +1,6 @@
 package com.sismics.docs.core.service;
 
+import com.google.common.collect.Lists;
 import com.sismics.docs.BaseTransactionalTest;
 import com.sismics.docs.core.dao.FileDao;
 import com.sismics.docs.core.model.jpa.File;
@@ -16,7 +17,8 @@ public class TestFileSizeService extends BaseTransactionalTest {
         FileDao fileDao = new FileDao();
         File file = createFile(user, File.UNKNOWN_SIZE);
         FileSizeService fileSizeService = new FileSizeService();
-        fileSizeService.processFile(file);
+        fileSizeService.processFiles(Lists.newArrayList(file.getId(), "unknown"));
         Assert.assertEquals(fileDao.getFile(file.getId()).getSize(), Long.valueOf(FILE_JPG_SIZE));
+        Assert.assertEquals(2, fileSizeService.getProcessedCount());
     }
 }
@@ -0,0 +1,71 @@
+package com.sismics.docs.core.service;
+
+import com.sismics.docs.BaseTransactionalTest;
+import com.sismics.docs.core.dao.AuthenticationTokenDao;
+import com.sismics.docs.core.model.jpa.AuthenticationToken;
+import com.sismics.docs.core.model.jpa.User;
+import com.sismics.docs.core.util.TransactionUtil;
+import com.sismics.util.context.ThreadLocalContext;
+import jakarta.persistence.EntityManager;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Date;
+
+/**
+ * Test of the last connection service.
+ *
+ * @author agent
+ */
+public class TestLastConnectionService extends BaseTransactionalTest {
+
+    @Test
+    public void flushTest() throws Exception {
+        User user = createUser("lastConnectionTest");
+
+        // Create 2 session tokens
+        AuthenticationTokenDao authenticationTokenDao = new AuthenticationTokenDao();
+        String token1 = authenticationTokenDao.create(new AuthenticationToken()
+                .setUserId(user.getId())
+                .setLongLasted(false));
+        String token2 = authenticationTokenDao.create(new AuthenticationToken()
+                .setUserId(user.getId())
+                .setLongLasted(false));
+        TransactionUtil.commit();
+
+        // Connections are buffered in memory
+        Date before = new Date();
+        LastConnectionService lastConnectionService = new LastConnectionService();
+        lastConnectionService.touch(token1);
+        lastConnectionService.touch(token2);
+        lastConnectionService.touch(token1);
+        Assert.assertEquals(2, lastConnectionService.getPendingCount());
+        Assert.assertNotNull(lastConnectionService.getPendingLastConnectionDate(token1));
+        Assert.assertNull(authenticationTokenDao.get(token1).getLastConnectionDate());
+
+        // A rolled back flush keeps the dates pending
+        lastConnectionService.flush();
+        Assert.assertEquals(2, lastConnectionService.getPendingCount());
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        em.getTransaction().rollback();
+        em.close();
+        ThreadLocalContext.cleanup();
+        setUp();
+        Assert.assertEquals(2, lastConnectionService.getPendingCount());
+        Assert.assertNull(authenticationTokenDao.get(token1).getLastConnectionDate());
+
+        // And written in a single flush, removed once committed
+        lastConnectionService.flush();
+        TransactionUtil.commit();
+        Assert.assertEquals(0, lastConnectionService.getPendingCount());
+        Assert.assertNull(lastConnectionService.getPendingLastConnectionDate(token1));
+        for (String token : new String[] { token1, token2 }) {
+            Date lastConnectionDate = authenticationTokenDao.get(token).getLastConnectionDate();
+            Assert.assertNotNull(lastConnectionDate);
+            Assert.assertFalse(lastConnectionDate.before(new Date(before.getTime() - 1000)));
+        }
+
+        // Nothing to flush
+        lastConnectionService.flush();
+    }
+}
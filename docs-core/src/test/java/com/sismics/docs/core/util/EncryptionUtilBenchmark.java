@@ -0,0 +1,66 @@
+package com.sismics.docs.core.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Cipher;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the cipher setup, with a cached derived key against a key derived on each setup.
+ * Run with: mvn -pl docs-core test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.sismics.docs.core.util.EncryptionUtilBenchmark
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EncryptionUtilBenchmark {
+    /**
+     * Private key.
+     */
+    private String privateKey;
+
+    @Setup
+    public void setUp() {
+        privateKey = EncryptionUtil.generatePrivateKey();
+    }
+
+    @TearDown
+    public void tearDown() {
+        EncryptionUtil.invalidateSecretKey(privateKey);
+    }
+
+    @Benchmark
+    public Cipher derivedKey() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/CTR/NOPADDING");
+        cipher.init(Cipher.ENCRYPT_MODE, EncryptionUtil.deriveSecretKey(privateKey));
+        return cipher;
+    }
+
+    @Benchmark
+    public Cipher cachedKey() throws Exception {
+        return EncryptionUtil.getEncryptionCipher(privateKey);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EncryptionUtilBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,95 @@
+package com.sismics.docs.core.util;
+
+import com.sismics.util.ImageUtil;
+import com.sismics.util.Scalr;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the cascading renditions of 20 MP and 50 MP scans, against independent full resolution resizes at quality 1.
+ * The 50 MP scan needs a 2 GB heap.
+ * Run with: mvn -pl docs-core test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.sismics.docs.core.util.RenditionUtilBenchmark
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RenditionUtilBenchmark {
+    /**
+     * Scan dimensions.
+     */
+    @Param({ "5472x3648", "8660x5773" })
+    public String dimensions;
+
+    /**
+     * Scan file.
+     */
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] size = dimensions.split("x");
+        file = Files.createTempFile("rendition", ".jpg");
+        ImageIO.write(TestRenditionUtil.createScan(Integer.parseInt(size[0]), Integer.parseInt(size[1])), "jpeg", file.toFile());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public int previous() throws IOException {
+        BufferedImage image = ImageIO.read(file.toFile());
+        BufferedImage web = Scalr.resize(image, Scalr.Method.ULTRA_QUALITY, Scalr.Mode.AUTOMATIC, 1280);
+        BufferedImage thumbnail = Scalr.resize(image, Scalr.Method.ULTRA_QUALITY, Scalr.Mode.AUTOMATIC, 256);
+        image.flush();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageUtil.writeJpeg(web, outputStream);
+        ImageUtil.writeJpeg(thumbnail, outputStream);
+        return outputStream.size();
+    }
+
+    @Benchmark
+    public int cascading() throws Exception {
+        BufferedImage image = ImageUtil.readImage(file, RenditionUtil.getLargestSize());
+        BufferedImage web = Scalr.resize(image, Scalr.Method.ULTRA_QUALITY, Scalr.Mode.AUTOMATIC, RenditionUtil.Rendition.WEB.getSize());
+        image.flush();
+        BufferedImage thumbnail = Scalr.resize(web, Scalr.Method.ULTRA_QUALITY, Scalr.Mode.AUTOMATIC, RenditionUtil.Rendition.THUMB.getSize());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        RenditionUtil.writeRendition(web, RenditionUtil.Rendition.WEB, outputStream);
+        RenditionUtil.writeRendition(thumbnail, RenditionUtil.Rendition.THUMB, outputStream);
+        return outputStream.size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RenditionUtilBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -8,6 +8,8 @@ import org.junit.Test;
 
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
+import javax.crypto.SecretKey;
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 
 /**
@@ -48,4 +50,32 @@ public class TestEncryptUtil extends BaseTest {
         
         Assert.assertEquals(encryptedData.length, assertData.length);
     }
+
+    @Test
+    public void cipherCacheTest() throws Exception {
+        // The derived key is cached and reused by every cipher of the same private key
+        String privateKey = EncryptionUtil.generatePrivateKey();
+        SecretKey secretKey = EncryptionUtil.getSecretKey(privateKey);
+        Assert.assertSame(secretKey, EncryptionUtil.getSecretKey(privateKey));
+        Assert.assertNotSame(secretKey, EncryptionUtil.getSecretKey(EncryptionUtil.generatePrivateKey()));
+
+        // Ciphers built from a cached key or a fresh key produce the same output
+        byte[] cachedData = ByteStreams.toByteArray(new CipherInputStream(
+                getSystemResourceAsStream(FILE_PDF), EncryptionUtil.getEncryptionCipher(privateKey)));
+        Cipher cipher = Cipher.getInstance("AES/CTR/NOPADDING");
+        cipher.init(Cipher.ENCRYPT_MODE, EncryptionUtil.deriveSecretKey(privateKey));
+        byte[] derivedData = ByteStreams.toByteArray(new CipherInputStream(getSystemResourceAsStream(FILE_PDF), cipher));
+        Assert.assertArrayEquals(derivedData, cachedData);
+
+        // The encrypted data is decrypted with the cached key
+        byte[] decryptedData = ByteStreams.toByteArray(EncryptionUtil.decryptInputStream(new ByteArrayInputStream(cachedData), privateKey));
+        Assert.assertArrayEquals(ByteStreams.toByteArray(getSystemResourceAsStream(FILE_PDF)), decryptedData);
+
+        // An invalidated key is derived again
+        EncryptionUtil.invalidateSecretKey(privateKey);
+        SecretKey newSecretKey = EncryptionUtil.getSecretKey(privateKey);
+        Assert.assertNotSame(secretKey, newSecretKey);
+        Assert.assertArrayEquals(secretKey.getEncoded(), newSecretKey.getEncoded());
+        EncryptionUtil.invalidateSecretKey(privateKey);
+    }
 }
@@ -0,0 +1,201 @@
+package com.sismics.docs.core.util;
+
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteStreams;
+import com.sismics.docs.BaseTransactionalTest;
+import com.sismics.docs.core.dao.FileDao;
+import com.sismics.docs.core.dao.UserDao;
+import com.sismics.docs.core.model.jpa.File;
+import com.sismics.docs.core.model.jpa.User;
+import com.sismics.util.mime.MimeType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * Test of the single pass file upload.
+ *
+ * @author agent
+ */
+public class TestFileUpload extends BaseTransactionalTest {
+    @Test
+    public void testReceive() throws Exception {
+        User user = createUser("fileUploadReceive");
+        user.setStorageQuota(1_000_000L);
+        new UserDao().update(user, user.getId());
+        assertMimeType(user, FILE_JPG, MimeType.IMAGE_JPEG);
+        assertMimeType(user, FILE_PNG, MimeType.IMAGE_PNG);
+        assertMimeType(user, FILE_GIF, MimeType.IMAGE_GIF);
+        assertMimeType(user, FILE_PDF, MimeType.APPLICATION_PDF);
+        assertMimeType(user, FILE_MP4, MimeType.VIDEO_MP4);
+        assertMimeType(user, FILE_WEBM, MimeType.VIDEO_WEBM);
+
+        // The file is stored already encrypted, with its size and hash
+        byte[] content;
+        try (InputStream inputStream = getSystemResourceAsStream(FILE_JPG)) {
+            content = ByteStreams.toByteArray(inputStream);
+        }
+        String fileId;
+        try (InputStream inputStream = getSystemResourceAsStream(FILE_JPG);
+             FileUpload fileUpload = FileUpload.receive(inputStream, FILE_JPG, user.getId())) {
+            Assert.assertEquals(content.length, fileUpload.getSize());
+            Assert.assertArrayEquals(content, Files.readAllBytes(fileUpload.getUnencryptedFile()));
+            fileId = FileUtil.createFile(FILE_JPG, null, fileUpload, null, user.getId(), null);
+        }
+        File file = new FileDao().getActiveById(fileId);
+        Assert.assertEquals(content.length, file.getSize().longValue());
+        Assert.assertEquals(BaseEncoding.base16().lowerCase().encode(MessageDigest.getInstance("SHA-256").digest(content)), file.getContentHash());
+        try (InputStream inputStream = EncryptionUtil.decryptInputStream(
+                Files.newInputStream(DirectoryUtil.getStorageDirectory().resolve(fileId)), user.getPrivateKey())) {
+            Assert.assertArrayEquals(content, ByteStreams.toByteArray(inputStream));
+        }
+        Assert.assertEquals(0, countPendingUploads());
+    }
+
+    @Test
+    public void testDeduplication() throws Exception {
+        User user = createUser("fileUploadDeduplication");
+        User otherUser = createUser("fileUploadDeduplicationOther");
+        String file1Id = createFile(user, FILE_PNG);
+        String file2Id = createFile(user, FILE_PNG);
+        String file3Id = createFile(otherUser, FILE_PNG);
+        Path storedFile1 = DirectoryUtil.getStorageDirectory().resolve(file1Id);
+        Path storedFile2 = DirectoryUtil.getStorageDirectory().resolve(file2Id);
+        Path storedFile3 = DirectoryUtil.getStorageDirectory().resolve(file3Id);
+        long size = Files.size(storedFile1);
+
+        // Identical files of a user share their content, not with the files of another user encrypted with another key
+        Assert.assertTrue(Files.isSameFile(storedFile1, storedFile2));
+        Assert.assertFalse(Files.isSameFile(storedFile1, storedFile3));
+        FileDao fileDao = new FileDao();
+        Assert.assertFalse(fileDao.getActiveById(file1Id).isLinked());
+        Assert.assertTrue(fileDao.getActiveById(file2Id).isLinked());
+        Assert.assertEquals(fileDao.getActiveById(file1Id).getSize().longValue(), fileDao.getStorageSaved(user.getId()));
+        Assert.assertEquals(0, fileDao.getStorageSaved(otherUser.getId()));
+
+        // The shared content is kept until its last file is deleted
+        fileDao.delete(file1Id, user.getId());
+        FileUtil.delete(file1Id);
+        Assert.assertEquals(0, fileDao.getStorageSaved(user.getId()));
+        Assert.assertFalse(Files.exists(storedFile1));
+        Assert.assertEquals(size, Files.size(storedFile2));
+        try (InputStream inputStream = EncryptionUtil.decryptInputStream(Files.newInputStream(storedFile2), user.getPrivateKey());
+             InputStream expectedInputStream = getSystemResourceAsStream(FILE_PNG)) {
+            Assert.assertArrayEquals(ByteStreams.toByteArray(expectedInputStream), ByteStreams.toByteArray(inputStream));
+        }
+        FileUtil.delete(file2Id);
+        FileUtil.delete(file3Id);
+    }
+
+    @Test
+    public void testDeduplicationFallback() throws Exception {
+        User user = createUser("fileUploadDeduplicationFallback");
+        String file1Id = createFile(user, FILE_PNG);
+
+        // The content of the identical file is missing, the new file is stored again and doesn't save any storage
+        FileUtil.delete(file1Id);
+        String file2Id = createFile(user, FILE_PNG);
+        FileDao fileDao = new FileDao();
+        Assert.assertFalse(fileDao.getActiveById(file2Id).isLinked());
+        Assert.assertTrue(Files.exists(DirectoryUtil.getStorageDirectory().resolve(file2Id)));
+        Assert.assertEquals(0, fileDao.getStorageSaved(user.getId()));
+        FileUtil.delete(file2Id);
+    }
+
+    @Test
+    public void testQuotaReached() throws Exception {
+        User user = createUser("fileUploadQuota");
+
+        // An oversized upload is aborted as soon as it exceeds the quota
+        CountingInputStream inputStream = new CountingInputStream(100L * 1024 * 1024);
+        try {
+            FileUpload.receive(inputStream, "large.bin", user.getId());
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertEquals("QuotaReached", e.getMessage());
+        }
+        Assert.assertTrue(inputStream.count < 1024 * 1024);
+        Assert.assertEquals(0, countPendingUploads());
+    }
+
+    /**
+     * Creates a file from a test file.
+     *
+     * @param user User
+     * @param fileName Test file name
+     * @return File ID
+     * @throws Exception e
+     */
+    private String createFile(User user, String fileName) throws Exception {
+        try (InputStream inputStream = getSystemResourceAsStream(fileName);
+             FileUpload fileUpload = FileUpload.receive(inputStream, fileName, user.getId())) {
+            return FileUtil.createFile(fileName, null, fileUpload, null, user.getId(), null);
+        }
+    }
+
+    /**
+     * Asserts the MIME type guessed from the content of a file received without a meaningful name.
+     *
+     * @param user User
+     * @param fileName Test file name
+     * @param expectedMimeType Expected MIME type
+     * @throws Exception e
+     */
+    private void assertMimeType(User user, String fileName, String expectedMimeType) throws Exception {
+        try (InputStream inputStream = getSystemResourceAsStream(fileName);
+             FileUpload fileUpload = FileUpload.receive(inputStream, "upload", user.getId())) {
+            Assert.assertEquals(expectedMimeType, fileUpload.getMimeType());
+        }
+    }
+
+    /**
+     * Returns the number of encrypted uploads left in the storage directory.
+     *
+     * @return Number of pending uploads
+     * @throws IOException e
+     */
+    private long countPendingUploads() throws IOException {
+        try (Stream<Path> stream = Files.list(DirectoryUtil.getStorageDirectory())) {
+            return stream.filter(path -> path.getFileName().toString().endsWith(".upload")).count();
+        }
+    }
+
+    /**
+     * Stream of zeros counting the bytes read.
+     */
+    private static class CountingInputStream extends InputStream {
+        private final long length;
+        private long count;
+
+        CountingInputStream(long length) {
+            this.length = length;
+        }
+
+        @Override
+        public int read() {
+            if (count >= length) {
+                return -1;
+            }
+            count++;
+            return 0;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (count >= length) {
+                return -1;
+            }
+            int read = (int) Math.min(len, length - count);
+            Arrays.fill(b, off, off + read, (byte) 0);
+            count += read;
+            return read;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.sismics.docs.core.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test of the OCR executor.
+ *
+ * @author agent
+ */
+public class TestOcrExecutor {
+    @Test
+    public void testOcrPages() throws Exception {
+        // Recognition of a page takes 100ms
+        AtomicInteger concurrentCount = new AtomicInteger();
+        AtomicInteger maxConcurrentCount = new AtomicInteger();
+        OcrExecutor ocrExecutor = new OcrExecutor(4, (language, image) -> {
+            maxConcurrentCount.accumulateAndGet(concurrentCount.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(100);
+                return language + "-" + image.getWidth();
+            } finally {
+                concurrentCount.decrementAndGet();
+            }
+        });
+
+        try {
+            // 20 pages recognized concurrently, in the page order
+            long startTime = System.currentTimeMillis();
+            List<OcrExecutor.PageResult> pageResultList = ocrExecutor.ocrPages("eng", 20,
+                    pageIndex -> new BufferedImage(pageIndex + 1, 1, BufferedImage.TYPE_BYTE_GRAY));
+            long duration = System.currentTimeMillis() - startTime;
+            Assert.assertEquals(20, pageResultList.size());
+            for (int i = 0; i < pageResultList.size(); i++) {
+                OcrExecutor.PageResult pageResult = pageResultList.get(i);
+                Assert.assertEquals(i, pageResult.getPageIndex());
+                Assert.assertEquals("eng-" + (i + 1), pageResult.getContent());
+                Assert.assertTrue(pageResult.getOcrMs() >= 90);
+            }
+            Assert.assertTrue(duration < 20 * 100);
+
+            // The number of concurrent recognitions is capped
+            Assert.assertEquals(4, maxConcurrentCount.get());
+
+            // Errors are reported
+            try {
+                ocrExecutor.ocrPages("eng", 5, pageIndex -> {
+                    if (pageIndex == 3) {
+                        throw new IllegalStateException("Broken page");
+                    }
+                    return new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY);
+                });
+                Assert.fail();
+            } catch (IllegalStateException e) {
+                Assert.assertEquals("Broken page", e.getMessage());
+            }
+
+            Assert.assertEquals("eng-3", ocrExecutor.ocr("eng", new BufferedImage(3, 1, BufferedImage.TYPE_BYTE_GRAY)));
+        } finally {
+            ocrExecutor.shutDown();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.sismics.docs.core.util;
+
+import com.sismics.docs.BaseTransactionalTest;
+import com.sismics.docs.core.dao.GroupDao;
+import com.sismics.docs.core.model.jpa.Group;
+import com.sismics.docs.core.model.jpa.User;
+import com.sismics.docs.core.model.jpa.UserGroup;
+import com.sismics.docs.core.util.PrincipalCacheUtil.CachedPrincipal;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.UUID;
+
+/**
+ * Test of the principal cache.
+ *
+ * @author agent
+ */
+public class TestPrincipalCacheUtil extends BaseTransactionalTest {
+    @Test
+    public void invalidateAfterCommitTest() throws Exception {
+        User user = createUser("principal_cache_commit");
+        GroupDao groupDao = new GroupDao();
+        String groupId = groupDao.create(new Group().setName("principalcachecommit"), "admin");
+        TransactionUtil.commit();
+
+        String authTokenId = UUID.randomUUID().toString();
+        cache(authTokenId, user);
+
+        // The cached principal is kept until the membership is committed,
+        // a principal loaded meanwhile would miss the new group
+        UserGroup userGroup = new UserGroup();
+        userGroup.setUserId(user.getId());
+        userGroup.setGroupId(groupId);
+        groupDao.addMember(userGroup);
+        Assert.assertNotNull(PrincipalCacheUtil.get(authTokenId));
+
+        TransactionUtil.commit();
+        Assert.assertNull(PrincipalCacheUtil.get(authTokenId));
+    }
+
+    @Test
+    public void invalidateDuringLoadTest() throws Exception {
+        User user = createUser("principal_cache_load");
+        String authTokenId = UUID.randomUUID().toString();
+
+        // A principal loaded before an invalidation is not cached
+        long generation = PrincipalCacheUtil.getGeneration();
+        PrincipalCacheUtil.invalidateUser(user.getId());
+        PrincipalCacheUtil.put(authTokenId, principal(user), generation);
+        Assert.assertNull(PrincipalCacheUtil.get(authTokenId));
+
+        cache(authTokenId, user);
+        Assert.assertNotNull(PrincipalCacheUtil.get(authTokenId));
+    }
+
+    /**
+     * Cache the principal of a user.
+     *
+     * @param authTokenId Authentication token ID
+     * @param user User
+     */
+    private void cache(String authTokenId, User user) {
+        PrincipalCacheUtil.put(authTokenId, principal(user), PrincipalCacheUtil.getGeneration());
+    }
+
+    /**
+     * Returns a principal without groups.
+     *
+     * @param user User
+     * @return Principal
+     */
+    private CachedPrincipal principal(User user) {
+        return new CachedPrincipal(user.getId(), user.getUsername(), user.getEmail(),
+                Collections.emptySet(), Collections.emptySet(), Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,123 @@
+package com.sismics.docs.core.util;
+
+import com.sismics.BaseTest;
+import com.sismics.util.ImageUtil;
+import com.sismics.util.Scalr;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Test of the image renditions.
+ *
+ * @author agent
+ */
+public class TestRenditionUtil extends BaseTest {
+    @Test
+    public void testRenditions() throws Exception {
+        Path file = Files.createTempFile("rendition", ".jpg");
+        try {
+            ImageIO.write(createScan(3000, 2000), "jpeg", file.toFile());
+
+            // The image is subsampled while decoding
+            BufferedImage image = ImageUtil.readImage(file, RenditionUtil.getLargestSize());
+            Assert.assertEquals(3000, image.getWidth());
+            image = ImageUtil.readImage(file, 256);
+            Assert.assertEquals(600, image.getWidth());
+            Assert.assertEquals(400, image.getHeight());
+
+            // Renditions are written encrypted
+            String fileId = UUID.randomUUID().toString();
+            String privateKey = EncryptionUtil.generatePrivateKey();
+            RenditionUtil.writeRenditions(ImageUtil.readImage(file, RenditionUtil.getLargestSize()), fileId,
+                    EncryptionUtil.getEncryptionCipher(privateKey));
+            for (RenditionUtil.Rendition rendition : RenditionUtil.Rendition.values()) {
+                Path renditionFile = DirectoryUtil.getStorageDirectory().resolve(fileId + rendition.getSuffix());
+                try (InputStream inputStream = EncryptionUtil.decryptInputStream(Files.newInputStream(renditionFile), privateKey)) {
+                    Assert.assertEquals(rendition.getSize(), ImageIO.read(inputStream).getWidth());
+                } finally {
+                    Files.deleteIfExists(renditionFile);
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Test the renditions of a large scan, compared to independent full resolution resizes at quality 1.
+     */
+    @Test
+    public void testLargeScan() throws Exception {
+        int width = 5472;
+        int height = 3648;
+        Path file = Files.createTempFile("rendition", ".jpg");
+        try {
+            ImageIO.write(createScan(width, height), "jpeg", file.toFile());
+
+            // Previous pipeline
+            BufferedImage image = ImageIO.read(file.toFile());
+            BufferedImage web = Scalr.resize(image, Scalr.Method.ULTRA_QUALITY, Scalr.Mode.AUTOMATIC, 1280);
+            BufferedImage thumbnail = Scalr.resize(image, Scalr.Method.ULTRA_QUALITY, Scalr.Mode.AUTOMATIC, 256);
+            image.flush();
+            ByteArrayOutputStream oldWeb = new ByteArrayOutputStream();
+            ImageUtil.writeJpeg(web, oldWeb);
+            ByteArrayOutputStream oldThumb = new ByteArrayOutputStream();
+            ImageUtil.writeJpeg(thumbnail, oldThumb);
+
+            // Cascading pipeline, the scan is subsampled while decoding
+            image = ImageUtil.readImage(file, RenditionUtil.getLargestSize());
+            Assert.assertTrue(Math.max(image.getWidth(), image.getHeight()) < width);
+            Assert.assertTrue(Math.max(image.getWidth(), image.getHeight()) >= RenditionUtil.getLargestSize() * 2);
+            web = Scalr.resize(image, Scalr.Method.ULTRA_QUALITY, Scalr.Mode.AUTOMATIC, RenditionUtil.Rendition.WEB.getSize());
+            image.flush();
+            thumbnail = Scalr.resize(web, Scalr.Method.ULTRA_QUALITY, Scalr.Mode.AUTOMATIC, RenditionUtil.Rendition.THUMB.getSize());
+            ByteArrayOutputStream newWeb = new ByteArrayOutputStream();
+            RenditionUtil.writeRendition(web, RenditionUtil.Rendition.WEB, newWeb);
+            ByteArrayOutputStream newThumb = new ByteArrayOutputStream();
+            RenditionUtil.writeRendition(thumbnail, RenditionUtil.Rendition.THUMB, newThumb);
+
+            // The renditions are smaller
+            Assert.assertTrue(newWeb.size() < oldWeb.size());
+            Assert.assertTrue(newThumb.size() < oldThumb.size());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Creates an image looking like a scanned text page.
+     *
+     * @param width Width
+     * @param height Height
+     * @return Image
+     */
+    static BufferedImage createScan(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(new Color(235, 235, 230));
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(Color.DARK_GRAY);
+        graphics.setFont(new Font(Font.SERIF, Font.PLAIN, height / 80));
+        Random random = new Random(42);
+        int lineHeight = height / 60;
+        for (int y = lineHeight * 3; y < height - lineHeight * 3; y += lineHeight) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 120; i++) {
+                sb.append(random.nextInt(8) == 0 ? ' ' : (char) ('a' + random.nextInt(26)));
+            }
+            graphics.drawString(sb.toString(), width / 12, y);
+        }
+        graphics.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,134 @@
+package com.sismics.docs.core.util;
+
+import com.google.common.io.ByteStreams;
+import com.sismics.BaseTest;
+import com.sismics.docs.core.model.jpa.File;
+import com.sismics.util.mime.MimeType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.crypto.CipherOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Test of the ZIP export.
+ *
+ * @author agent
+ */
+public class TestZipExporter extends BaseTest {
+    @Test
+    public void testExport() throws Exception {
+        String privateKey = EncryptionUtil.generatePrivateKey();
+        byte[] largeVideo = new byte[5 * 1024 * 1024];
+        new Random(42).nextBytes(largeVideo);
+        byte[] largeText = "Lorem ipsum dolor sit amet\n".repeat(200_000).getBytes(StandardCharsets.UTF_8);
+        byte[] jpg;
+        byte[] txt;
+        try (InputStream inputStream = getSystemResourceAsStream(FILE_JPG)) {
+            jpg = ByteStreams.toByteArray(inputStream);
+        }
+        try (InputStream inputStream = getSystemResourceAsStream(FILE_TXT)) {
+            txt = ByteStreams.toByteArray(inputStream);
+        }
+
+        List<File> fileList = new ArrayList<>();
+        List<byte[]> contentList = List.of(jpg, txt, largeVideo, largeText);
+        fileList.add(createFile("apollo.jpg", MimeType.IMAGE_JPEG, jpg, privateKey));
+        fileList.add(createFile("document.txt", MimeType.TEXT_PLAIN, txt, privateKey));
+        fileList.add(createFile("video.mp4", MimeType.VIDEO_MP4, largeVideo, privateKey));
+        fileList.add(createFile("lorem.txt", MimeType.TEXT_PLAIN, largeText, privateKey));
+        ZipExporter zipExporter = new ZipExporter(2);
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            zipExporter.export(fileList, outputStream);
+
+            // Small compressed formats are stored, large ones deflated without compression, the others deflated
+            int[] methods = { ZipEntry.STORED, ZipEntry.DEFLATED, ZipEntry.DEFLATED, ZipEntry.DEFLATED };
+            assertArchive(outputStream.toByteArray(), methods, contentList);
+            Assert.assertTrue(outputStream.size() < jpg.length + txt.length + largeVideo.length + largeText.length / 10);
+
+            // A single worker busy with the other entries, the exporting thread prepares them
+            ZipExporter singleZipExporter = new ZipExporter(1);
+            try {
+                outputStream = new ByteArrayOutputStream();
+                singleZipExporter.export(fileList, outputStream);
+                assertArchive(outputStream.toByteArray(), methods, contentList);
+            } finally {
+                singleZipExporter.shutDown();
+            }
+
+            // A missing file aborts the export
+            Files.delete(DirectoryUtil.getStorageDirectory().resolve(fileList.get(3).getId()));
+            try {
+                zipExporter.export(fileList, OutputStream.nullOutputStream());
+                Assert.fail();
+            } catch (NoSuchFileException e) {
+                // NOP
+            }
+        } finally {
+            zipExporter.shutDown();
+            for (File file : fileList) {
+                Files.deleteIfExists(DirectoryUtil.getStorageDirectory().resolve(file.getId()));
+            }
+        }
+    }
+
+    /**
+     * Asserts the entries of the exported archive.
+     *
+     * @param archive Archive
+     * @param methods Expected compression methods
+     * @param contentList Expected contents
+     * @throws Exception e
+     */
+    private void assertArchive(byte[] archive, int[] methods, List<byte[]> contentList) throws Exception {
+        String[] names = { "0-apollo.jpg", "1-document.txt", "2-video.mp4", "3-lorem.txt" };
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            for (int i = 0; i < names.length; i++) {
+                ZipEntry zipEntry = zipInputStream.getNextEntry();
+                Assert.assertNotNull(zipEntry);
+                Assert.assertEquals(names[i], zipEntry.getName());
+                Assert.assertEquals(methods[i], zipEntry.getMethod());
+                Assert.assertArrayEquals(contentList.get(i), ByteStreams.toByteArray(zipInputStream));
+            }
+            Assert.assertNull(zipInputStream.getNextEntry());
+        }
+    }
+
+    /**
+     * Creates an encrypted file in the storage.
+     *
+     * @param name File name
+     * @param mimeType MIME type
+     * @param content Content
+     * @param privateKey Private key
+     * @return File
+     * @throws Exception e
+     */
+    static File createFile(String name, String mimeType, byte[] content, String privateKey) throws Exception {
+        File file = new File();
+        file.setId(UUID.randomUUID().toString());
+        file.setName(name);
+        file.setMimeType(mimeType);
+        file.setSize((long) content.length);
+        file.setPrivateKey(privateKey);
+        try (OutputStream outputStream = new CipherOutputStream(
+                Files.newOutputStream(DirectoryUtil.getStorageDirectory().resolve(file.getId())),
+                EncryptionUtil.getEncryptionCipher(privateKey))) {
+            outputStream.write(content);
+        }
+        return file;
+    }
+}
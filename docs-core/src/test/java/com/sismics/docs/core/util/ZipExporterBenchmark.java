@@ -0,0 +1,200 @@
+package com.sismics.docs.core.util;
+
+import com.google.common.io.ByteStreams;
+import com.sismics.docs.core.model.jpa.File;
+import com.sismics.util.mime.MimeType;
+import com.sismics.util.mime.MimeTypeUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.CipherOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Benchmark of the ZIP export of a 5 GB document, against the sequential export deflating every file
+ * and against the export decrypting each file while it is written.
+ * The document holds videos, PDF, photos and text files, written in a temporary directory.
+ * The large files only, over the 4 MB decrypted in memory, are exported with the files parameter set to large.
+ * The throughput is the document size divided by the time.
+ * Run with: mvn -pl docs-core test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.sismics.docs.core.util.ZipExporterBenchmark
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ZipExporterBenchmark {
+    /**
+     * Size of the document in bytes.
+     */
+    @Param({ "5368709120" })
+    public long documentSize;
+
+    /**
+     * Exported files: all the files of the document, or the large files only.
+     */
+    @Param({ "all", "large" })
+    public String files;
+
+    /**
+     * Temporary directory of the stored files.
+     */
+    private Path storageDirectory;
+
+    /**
+     * Files of the document.
+     */
+    private List<File> fileList;
+
+    @Setup
+    public void setUp() throws Exception {
+        storageDirectory = Files.createTempDirectory("zip-export");
+        String privateKey = EncryptionUtil.generatePrivateKey();
+        fileList = new ArrayList<>();
+        long size = 0;
+        while (size < documentSize) {
+            // Around 1 GB of each kind of file in turn
+            size += addFiles(privateKey, "video.mp4", MimeType.VIDEO_MP4, 1, 512);
+            size += addFiles(privateKey, "scan.pdf", MimeType.APPLICATION_PDF, 4, 64);
+            size += addFiles(privateKey, "photo.jpg", MimeType.IMAGE_JPEG, 32, 3);
+            size += addFiles(privateKey, "notes.txt", MimeType.TEXT_PLAIN, 8, 16);
+        }
+        if ("large".equals(files)) {
+            for (File file : new ArrayList<>(fileList)) {
+                if (file.getSize() <= 4 * 1024 * 1024) {
+                    Files.delete(storageDirectory.resolve(file.getId()));
+                    fileList.remove(file);
+                }
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        for (File file : fileList) {
+            Files.deleteIfExists(storageDirectory.resolve(file.getId()));
+        }
+        Files.delete(storageDirectory);
+    }
+
+    @Benchmark
+    public void sequentialDeflate() throws Exception {
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(OutputStream.nullOutputStream())) {
+            int index = 0;
+            for (File file : fileList) {
+                try (InputStream decryptedStream = EncryptionUtil.decryptInputStream(
+                        Files.newInputStream(storageDirectory.resolve(file.getId())), file.getPrivateKey())) {
+                    zipOutputStream.putNextEntry(new ZipEntry(index + "-" + file.getFullName(Integer.toString(index))));
+                    ByteStreams.copy(decryptedStream, zipOutputStream);
+                    zipOutputStream.closeEntry();
+                }
+                index++;
+            }
+        }
+    }
+
+    @Benchmark
+    public void inlineDecryption() throws Exception {
+        // Same compression as the exporter, each file decrypted by the streaming thread
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(OutputStream.nullOutputStream())) {
+            int index = 0;
+            for (File file : fileList) {
+                try (InputStream decryptedStream = EncryptionUtil.decryptInputStream(
+                        Files.newInputStream(storageDirectory.resolve(file.getId())), file.getPrivateKey())) {
+                    zipOutputStream.setLevel(MimeTypeUtil.isCompressed(file.getMimeType()) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+                    zipOutputStream.putNextEntry(new ZipEntry(index + "-" + file.getFullName(Integer.toString(index))));
+                    ByteStreams.copy(decryptedStream, zipOutputStream);
+                    zipOutputStream.closeEntry();
+                }
+                index++;
+            }
+        }
+    }
+
+    @Benchmark
+    public void zipExporter() throws Exception {
+        ZipExporter zipExporter = new ZipExporter(4, storageDirectory);
+        try {
+            zipExporter.export(fileList, OutputStream.nullOutputStream());
+        } finally {
+            zipExporter.shutDown();
+        }
+    }
+
+    /**
+     * Adds encrypted files to the document.
+     *
+     * @param privateKey Private key
+     * @param name File name
+     * @param mimeType MIME type
+     * @param count Number of files
+     * @param megabytes Size of each file in megabytes
+     * @return Size added in bytes
+     * @throws Exception e
+     */
+    private long addFiles(String privateKey, String name, String mimeType, int count, int megabytes) throws Exception {
+        // Compressed formats look random, text is repetitive
+        byte[] block = new byte[1024 * 1024];
+        if (MimeType.TEXT_PLAIN.equals(mimeType)) {
+            byte[] line = "The quick brown fox jumps over the lazy dog 0123456789\n".getBytes(StandardCharsets.US_ASCII);
+            for (int i = 0; i < block.length; i++) {
+                block[i] = line[i % line.length];
+            }
+        } else {
+            new Random(fileList.size()).nextBytes(block);
+        }
+
+        for (int i = 0; i < count; i++) {
+            File file = new File();
+            file.setId(UUID.randomUUID().toString());
+            file.setName(name);
+            file.setMimeType(mimeType);
+            file.setSize((long) megabytes * block.length);
+            file.setPrivateKey(privateKey);
+            try (OutputStream outputStream = new CipherOutputStream(
+                    Files.newOutputStream(storageDirectory.resolve(file.getId())),
+                    EncryptionUtil.getEncryptionCipher(privateKey))) {
+                for (int j = 0; j < megabytes; j++) {
+                    outputStream.write(block);
+                }
+            }
+            fileList.add(file);
+        }
+        return (long) count * megabytes * block.length;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ZipExporterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,127 @@
+package com.sismics.docs.core.util.indexing;
+
+import com.google.common.collect.Lists;
+import com.sismics.docs.core.constant.ConfigType;
+import com.sismics.docs.core.dao.ConfigDao;
+import com.sismics.docs.core.dao.UserDao;
+import com.sismics.docs.core.dao.criteria.DocumentCriteria;
+import com.sismics.docs.core.dao.dto.DocumentDto;
+import com.sismics.docs.core.model.jpa.Document;
+import com.sismics.docs.core.model.jpa.User;
+import com.sismics.docs.core.util.DocumentUtil;
+import com.sismics.docs.core.util.TransactionUtil;
+import com.sismics.docs.core.util.jpa.PaginatedList;
+import com.sismics.docs.core.util.jpa.PaginatedLists;
+import com.sismics.docs.core.util.jpa.SortCriteria;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of concurrent paginated document searches of the Lucene indexing handler, on 5000 documents.
+ * The throughput is measured from one searching thread up to the number of cores.
+ * Run with: mvn -pl docs-core test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.sismics.docs.core.util.indexing.LuceneIndexingHandlerBenchmark
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LuceneIndexingHandlerBenchmark {
+    /**
+     * Indexing handler.
+     */
+    private LuceneIndexingHandler indexingHandler;
+
+    /**
+     * ID of the searching user.
+     */
+    private String userId;
+
+    @Setup
+    public void setUp() throws Exception {
+        TransactionUtil.handle(() -> {
+            try {
+                new ConfigDao().update(ConfigType.LUCENE_DIRECTORY_STORAGE, "RAM");
+                indexingHandler = new LuceneIndexingHandler();
+                indexingHandler.startUp();
+
+                User user = new User();
+                user.setUsername("benchmark" + UUID.randomUUID().toString().substring(0, 8));
+                user.setPassword("12345678");
+                user.setEmail("benchmark@docs.com");
+                user.setRoleId("admin");
+                user.setStorageQuota(100_000L);
+                userId = new UserDao().create(user, "admin");
+
+                List<Document> documentList = new ArrayList<>();
+                for (int i = 0; i < 5000; i++) {
+                    Document document = new Document();
+                    document.setId(UUID.randomUUID().toString());
+                    document.setTitle("Document " + i + " mission " + (i % 100));
+                    document.setUserId(userId);
+                    document.setLanguage("eng");
+                    document.setCreateDate(new Date(i * 1000L));
+                    DocumentUtil.createDocument(document, userId);
+                    documentList.add(document);
+                }
+                indexingHandler.createDocuments(documentList);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        indexingHandler.shutDown();
+    }
+
+    @Benchmark
+    public PaginatedList<DocumentDto> search() {
+        String query = "mission " + ThreadLocalRandom.current().nextInt(100);
+        DocumentCriteria criteria = new DocumentCriteria();
+        criteria.setTargetIdList(Lists.newArrayList(userId));
+        criteria.setSimpleSearch(query);
+        criteria.setFullSearch(query);
+        PaginatedList<DocumentDto> paginatedList = PaginatedLists.create(10, 0);
+        TransactionUtil.handle(() -> {
+            try {
+                indexingHandler.findByCriteria(paginatedList, new ArrayList<>(), criteria, new SortCriteria(3, false));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        return paginatedList;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads++) {
+            new Runner(new OptionsBuilder()
+                    .include(LuceneIndexingHandlerBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run();
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package com.sismics.docs.core.util.indexing;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.sismics.docs.BaseTransactionalTest;
+import com.sismics.docs.core.constant.AclType;
+import com.sismics.docs.core.constant.ConfigType;
+import com.sismics.docs.core.constant.PermType;
+import com.sismics.docs.core.dao.AclDao;
+import com.sismics.docs.core.dao.ConfigDao;
+import com.sismics.docs.core.dao.TagDao;
+import com.sismics.docs.core.dao.criteria.DocumentCriteria;
+import com.sismics.docs.core.dao.dto.DocumentDto;
+import com.sismics.docs.core.model.jpa.Document;
+import com.sismics.docs.core.model.jpa.File;
+import com.sismics.docs.core.model.jpa.Tag;
+import com.sismics.docs.core.model.jpa.User;
+import com.sismics.docs.core.util.DirectoryUtil;
+import com.sismics.docs.core.util.DocumentUtil;
+import com.sismics.docs.core.util.TransactionUtil;
+import com.sismics.docs.core.util.jpa.PaginatedList;
+import com.sismics.docs.core.util.jpa.PaginatedLists;
+import com.sismics.docs.core.util.jpa.SortCriteria;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Test of the Lucene indexing handler.
+ *
+ * @author agent
+ */
+public class TestLuceneIndexingHandler extends BaseTransactionalTest {
+    @Test
+    public void searchTest() throws Exception {
+        LuceneIndexingHandler indexingHandler = startIndexingHandler();
+        try {
+            // A new document is searchable right away
+            Document document = buildDocument("Apollo mission report");
+            indexingHandler.createDocument(document);
+            Assert.assertTrue(indexingHandler.search("apollo", "apollo").containsKey(document.getId()));
+
+            // An updated document is searchable with its new title right away
+            document.setTitle("Gemini mission report");
+            indexingHandler.updateDocument(document);
+            Assert.assertFalse(indexingHandler.search("apollo", "apollo").containsKey(document.getId()));
+            Assert.assertTrue(indexingHandler.search("gemini", "gemini").containsKey(document.getId()));
+
+            // A deleted document is not searchable anymore
+            indexingHandler.deleteDocument(document.getId());
+            Assert.assertTrue(indexingHandler.search("gemini", "gemini").isEmpty());
+        } finally {
+            indexingHandler.shutDown();
+        }
+    }
+
+    @Test
+    public void paginatedSearchTest() throws Exception {
+        LuceneIndexingHandler indexingHandler = startIndexingHandler();
+        try {
+            User user = createUser("paginatedSearchTest");
+            for (int i = 0; i < 3; i++) {
+                Document document = buildDocument("Apollo " + i);
+                document.setUserId(user.getId());
+                document.setLanguage("eng");
+                document.setCreateDate(new Date(i * 1000L));
+                DocumentUtil.createDocument(document, user.getId());
+                indexingHandler.createDocument(document);
+            }
+
+            // The page is read from the index, sorted by create date
+            DocumentCriteria criteria = new DocumentCriteria();
+            criteria.setTargetIdList(Lists.newArrayList(user.getId()));
+            criteria.setSimpleSearch("apollo");
+            criteria.setFullSearch("apollo");
+            PaginatedList<DocumentDto> paginatedList = PaginatedLists.create(2, 0);
+            indexingHandler.findByCriteria(paginatedList, new ArrayList<>(), criteria, new SortCriteria(3, false));
+            Assert.assertEquals(3, paginatedList.getResultCount());
+            Assert.assertEquals(2, paginatedList.getResultList().size());
+            Assert.assertEquals("Apollo 2", paginatedList.getResultList().get(0).getTitle());
+            Assert.assertEquals("Apollo 1", paginatedList.getResultList().get(1).getTitle());
+
+            // Documents not readable by the user are filtered by the index
+            criteria.setTargetIdList(Lists.newArrayList("other_user"));
+            paginatedList = PaginatedLists.create(2, 0);
+            indexingHandler.findByCriteria(paginatedList, new ArrayList<>(), criteria, new SortCriteria(3, false));
+            Assert.assertEquals(0, paginatedList.getResultCount());
+            Assert.assertTrue(paginatedList.getResultList().isEmpty());
+        } finally {
+            indexingHandler.shutDown();
+        }
+    }
+
+    @Test
+    public void criteriaSearchTest() throws Exception {
+        LuceneIndexingHandler indexingHandler = startIndexingHandler();
+        try {
+            User user = createUser("criteriaSearchTest");
+            Tag tag = new Tag();
+            tag.setName("Space");
+            tag.setColor("#ff0000");
+            tag.setUserId(user.getId());
+            String tagId = new TagDao().create(tag, user.getId());
+
+            List<Document> documentList = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                Document document = buildDocument("Mission " + i);
+                document.setUserId(user.getId());
+                document.setLanguage(i == 0 ? "fra" : "eng");
+                document.setCreateDate(new Date(i * 1000L));
+                DocumentUtil.createDocument(document, user.getId());
+                documentList.add(document);
+            }
+            new TagDao().updateTagList(documentList.get(1).getId(), Sets.newHashSet(tagId));
+            new TagDao().updateTagList(documentList.get(2).getId(), Sets.newHashSet(tagId));
+            indexingHandler.createDocuments(documentList);
+
+            // Searches without fulltext are answered by the index
+            DocumentCriteria criteria = new DocumentCriteria();
+            criteria.setTargetIdList(Lists.newArrayList(user.getId()));
+            Assert.assertEquals(Lists.newArrayList("Mission 0", "Mission 1", "Mission 2"), findTitles(indexingHandler, criteria));
+
+            criteria.getTagIdList().add(Lists.newArrayList(tagId));
+            Assert.assertEquals(Lists.newArrayList("Mission 1", "Mission 2"), findTitles(indexingHandler, criteria));
+
+            criteria.setCreateDateMax(new Date(1000L));
+            Assert.assertEquals(Lists.newArrayList("Mission 1"), findTitles(indexingHandler, criteria));
+
+            criteria = new DocumentCriteria();
+            criteria.setTargetIdList(Lists.newArrayList(user.getId()));
+            criteria.getExcludedTagIdList().add(Lists.newArrayList(tagId));
+            Assert.assertEquals(Lists.newArrayList("Mission 0"), findTitles(indexingHandler, criteria));
+
+            criteria = new DocumentCriteria();
+            criteria.setTargetIdList(Lists.newArrayList(user.getId()));
+            criteria.setLanguage("eng");
+            criteria.setCreatorId(user.getId());
+            criteria.getTitleList().add("Mission 2");
+            Assert.assertEquals(Lists.newArrayList("Mission 2"), findTitles(indexingHandler, criteria));
+
+            criteria.setCreatorId("other_user");
+            Assert.assertTrue(findTitles(indexingHandler, criteria).isEmpty());
+        } finally {
+            indexingHandler.shutDown();
+        }
+    }
+
+    @Test
+    public void titleSortTest() throws Exception {
+        LuceneIndexingHandler indexingHandler = startIndexingHandler();
+        try {
+            User user = createUser("titleSortTest");
+            List<Document> documentList = new ArrayList<>();
+            for (String title : new String[] { "Zeppelin", "apollo", "\u00c9clair" }) {
+                Document document = buildDocument(title);
+                document.setUserId(user.getId());
+                document.setLanguage("eng");
+                document.setCreateDate(new Date());
+                DocumentUtil.createDocument(document, user.getId());
+                documentList.add(document);
+            }
+            indexingHandler.createDocuments(documentList);
+
+            // Titles are sorted by a collation, not by their bytes
+            DocumentCriteria criteria = new DocumentCriteria();
+            criteria.setTargetIdList(Lists.newArrayList(user.getId()));
+            Assert.assertEquals(Lists.newArrayList("apollo", "\u00c9clair", "Zeppelin"), findTitles(indexingHandler, criteria));
+        } finally {
+            indexingHandler.shutDown();
+        }
+    }
+
+    @Test
+    public void staleAclSearchTest() throws Exception {
+        LuceneIndexingHandler indexingHandler = startIndexingHandler();
+        try {
+            User user = createUser("staleAclSearchTest");
+            List<Document> documentList = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                Document document = buildDocument("Gemini " + i);
+                document.setUserId(user.getId());
+                document.setLanguage("eng");
+                document.setCreateDate(new Date(i * 1000L));
+                DocumentUtil.createDocument(document, user.getId());
+                documentList.add(document);
+            }
+            indexingHandler.createDocuments(documentList);
+
+            // The read ACL is removed without updating the index
+            new AclDao().delete(documentList.get(0).getId(), PermType.READ, user.getId(), user.getId(), AclType.USER);
+
+            // The stale document is reindexed and neither listed nor counted
+            DocumentCriteria criteria = new DocumentCriteria();
+            criteria.setTargetIdList(Lists.newArrayList(user.getId()));
+            Assert.assertEquals(Lists.newArrayList("Gemini 1", "Gemini 2"), findTitles(indexingHandler, criteria));
+            PaginatedList<DocumentDto> paginatedList = PaginatedLists.create(1, 0);
+            indexingHandler.findByCriteria(paginatedList, new ArrayList<>(), criteria, new SortCriteria(3, true));
+            Assert.assertEquals(2, paginatedList.getResultCount());
+            Assert.assertEquals("Gemini 1", paginatedList.getResultList().get(0).getTitle());
+        } finally {
+            indexingHandler.shutDown();
+        }
+    }
+
+    @Test
+    public void rebuildTest() throws Exception {
+        LuceneIndexingHandler indexingHandler = startIndexingHandler();
+        try {
+            User user = createUser("rebuildTest");
+            Document document = buildDocument("Voyager probe");
+            document.setUserId(user.getId());
+            document.setLanguage("eng");
+            document.setCreateDate(new Date());
+            DocumentUtil.createDocument(document, user.getId());
+
+            // Only indexed, not in the database
+            Document staleDocument = buildDocument("Voyager stale");
+            indexingHandler.createDocument(staleDocument);
+
+            // The rebuilt index replaces the current one
+            indexingHandler.rebuildIndex();
+            Map<String, String> searchMap = indexingHandler.search("voyager", "voyager");
+            Assert.assertTrue(searchMap.containsKey(document.getId()));
+            Assert.assertFalse(searchMap.containsKey(staleDocument.getId()));
+            Assert.assertEquals(Lists.newArrayList("voyager"), indexingHandler.suggest("voy", 10));
+
+            RebuildIndexStatus status = indexingHandler.getRebuildIndexStatus();
+            Assert.assertFalse(status.isRunning());
+            Assert.assertEquals(status.getTotalCount(), status.getProcessedCount());
+            Assert.assertNotNull(status.getStartTimestamp());
+
+            // The index is still writable after the swap
+            document.setTitle("Pioneer probe");
+            indexingHandler.updateDocument(document);
+            Assert.assertTrue(indexingHandler.search("pioneer", "pioneer").containsKey(document.getId()));
+        } finally {
+            indexingHandler.shutDown();
+        }
+    }
+
+    @Test
+    public void swapRecoveryTest() throws Exception {
+        // Start from empty index directories
+        Path lucenePath = DirectoryUtil.getLuceneDirectory();
+        Path oldPath = lucenePath.resolveSibling("lucene-old");
+        for (Path path : Lists.newArrayList(lucenePath, oldPath, DirectoryUtil.getLuceneRebuildDirectory())) {
+            if (Files.exists(path)) {
+                try (Stream<Path> pathStream = Files.walk(path)) {
+                    pathStream.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(java.io.File::delete);
+                }
+            }
+        }
+
+        User user = createUser("swapRecoveryTest");
+        Document document = buildDocument("Skylab station");
+        document.setUserId(user.getId());
+        document.setLanguage("eng");
+        document.setCreateDate(new Date());
+        DocumentUtil.createDocument(document, user.getId());
+
+        // Rebuild a file index, the rebuilt index directory replaces the current one
+        new ConfigDao().update(ConfigType.LUCENE_DIRECTORY_STORAGE, "FILE");
+        LuceneIndexingHandler indexingHandler = new LuceneIndexingHandler();
+        indexingHandler.startUp();
+        try {
+            indexingHandler.rebuildIndex();
+            Assert.assertTrue(indexingHandler.search("skylab", "skylab").containsKey(document.getId()));
+            Assert.assertFalse(Files.exists(oldPath));
+        } finally {
+            indexingHandler.shutDown();
+        }
+
+        // A crash in the middle of a swap leaves the index directory missing, the swap is recovered at startup
+        Files.move(lucenePath, oldPath);
+        indexingHandler = new LuceneIndexingHandler();
+        indexingHandler.startUp();
+        try {
+            Assert.assertTrue(indexingHandler.search("skylab", "skylab").containsKey(document.getId()));
+            Assert.assertFalse(Files.exists(oldPath));
+        } finally {
+            indexingHandler.shutDown();
+        }
+    }
+
+    @Test
+    public void fileSegmentTest() throws Exception {
+        LuceneIndexingHandler indexingHandler = startIndexingHandler();
+        try {
+            // A file is indexed alone in a segment
+            File file = new File();
+            file.setId(UUID.randomUUID().toString());
+            file.setDocumentId(UUID.randomUUID().toString());
+            file.setName("transcript.pdf");
+            file.setContent("Apollo mission transcript");
+            indexingHandler.createFile(file);
+            Assert.assertTrue(indexingHandler.search("apollo", "apollo").containsKey(file.getDocumentId()));
+
+            // The searchers sorting the documents by ID are warmed up on the segment of the file
+            Document document = buildDocument("Apollo mission report");
+            indexingHandler.createDocument(document);
+            Assert.assertTrue(indexingHandler.search("mission", "mission").containsKey(document.getId()));
+        } finally {
+            indexingHandler.shutDown();
+        }
+    }
+
+    @Test
+    public void suggestTest() throws Exception {
+        LuceneIndexingHandler indexingHandler = startIndexingHandler();
+        try {
+            // Suggestions are updated with the indexed titles
+            indexingHandler.createDocument(buildDocument("Apollo mission report"));
+            indexingHandler.createDocument(buildDocument("Apollo landing site"));
+            Assert.assertEquals(Lists.newArrayList("apollo"), indexingHandler.suggest("apo", 10));
+            Assert.assertEquals(Lists.newArrayList("landing"), indexingHandler.suggest("apollo lan", 10));
+
+            // Terms of deleted documents are not suggested
+            Document document = buildDocument("Gemini");
+            indexingHandler.createDocument(document);
+            Assert.assertEquals(Lists.newArrayList("gemini"), indexingHandler.suggest("gem", 10));
+            indexingHandler.deleteDocument(document.getId());
+            Assert.assertTrue(indexingHandler.suggest("gem", 10).isEmpty());
+
+            // Every lookup is recorded
+            SuggestMetrics suggestMetrics = indexingHandler.getSuggestMetrics();
+            Assert.assertEquals(4, suggestMetrics.getLookupCount());
+            Assert.assertTrue(suggestMetrics.getMaxLatencyMs() >= suggestMetrics.getAverageLatencyMs());
+        } finally {
+            indexingHandler.shutDown();
+        }
+    }
+
+    @Test
+    public void concurrentSearchTest() throws Exception {
+        LuceneIndexingHandler indexingHandler = startIndexingHandler();
+        try {
+            User user = createUser("concurrentSearchTest");
+            List<Document> documentList = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                Document document = buildDocument("Document " + i + " mission " + (i % 10));
+                document.setUserId(user.getId());
+                document.setLanguage("eng");
+                document.setCreateDate(new Date(i * 1000L));
+                DocumentUtil.createDocument(document, user.getId());
+                documentList.add(document);
+            }
+            indexingHandler.createDocuments(documentList);
+            TransactionUtil.commit();
+
+            // Concurrent paginated searches, each in its own transaction
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            List<Future<PaginatedList<DocumentDto>>> futureList = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                String query = "mission " + (i % 10);
+                futureList.add(executor.submit(() -> {
+                    DocumentCriteria criteria = new DocumentCriteria();
+                    criteria.setTargetIdList(Lists.newArrayList(user.getId()));
+                    criteria.setSimpleSearch(query);
+                    criteria.setFullSearch(query);
+                    PaginatedList<DocumentDto> paginatedList = PaginatedLists.create(10, 0);
+                    TransactionUtil.handle(() -> {
+                        try {
+                            indexingHandler.findByCriteria(paginatedList, new ArrayList<>(), criteria, new SortCriteria(3, false));
+                        } catch (Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    });
+                    return paginatedList;
+                }));
+            }
+            for (int i = 0; i < futureList.size(); i++) {
+                PaginatedList<DocumentDto> paginatedList = futureList.get(i).get();
+                Assert.assertEquals(20, paginatedList.getResultCount());
+                Assert.assertEquals(10, paginatedList.getResultList().size());
+                Assert.assertEquals("Document " + (190 + i % 10) + " mission " + i % 10, paginatedList.getResultList().get(0).getTitle());
+            }
+            executor.shutdown();
+            Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        } finally {
+            indexingHandler.shutDown();
+        }
+    }
+
+    /**
+     * Start a Lucene indexing handler on a RAM directory.
+     *
+     * @return Indexing handler
+     * @throws Exception e
+     */
+    private LuceneIndexingHandler startIndexingHandler() throws Exception {
+        new ConfigDao().update(ConfigType.LUCENE_DIRECTORY_STORAGE, "RAM");
+        LuceneIndexingHandler indexingHandler = new LuceneIndexingHandler();
+        indexingHandler.startUp();
+        return indexingHandler;
+    }
+
+    /**
+     * Search documents sorted by title.
+     *
+     * @param indexingHandler Indexing handler
+     * @param criteria Search criteria
+     * @return Titles of the documents found
+     * @throws Exception e
+     */
+    private List<String> findTitles(LuceneIndexingHandler indexingHandler, DocumentCriteria criteria) throws Exception {
+        PaginatedList<DocumentDto> paginatedList = PaginatedLists.create(10, 0);
+        indexingHandler.findByCriteria(paginatedList, new ArrayList<>(), criteria, new SortCriteria(1, true));
+        Assert.assertEquals(paginatedList.getResultList().size(), paginatedList.getResultCount());
+        return paginatedList.getResultList().stream()
+                .map(DocumentDto::getTitle)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Build a document to index.
+     *
+     * @param title Title
+     * @return Document
+     */
+    private Document buildDocument(String title) {
+        Document document = new Document();
+        document.setId(UUID.randomUUID().toString());
+        document.setTitle(title);
+        return document;
+    }
+}
@@ -0,0 +1,72 @@
+package com.sismics.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the skew detection on a page upscaled for OCR, against the pixel by pixel implementation.
+ * Run with: mvn -pl docs-core test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.sismics.util.ImageDeskewBenchmark
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImageDeskewBenchmark {
+    /**
+     * Image type of the page.
+     */
+    @Param({ "RGB", "GRAY" })
+    public String imageType;
+
+    /**
+     * Page of 2500x3500 pixels, as upscaled before the OCR.
+     */
+    private BufferedImage image;
+
+    @Setup
+    public void setUp() {
+        image = TestImageDeskew.createSkewedPage(2500, 3500, 2.4,
+                "GRAY".equals(imageType) ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Benchmark
+    public double legacy() {
+        return new LegacyImageDeskew(image).getSkewAngle();
+    }
+
+    @Benchmark
+    public double parallel() {
+        return new ImageDeskew(image).getSkewAngle();
+    }
+
+    @Benchmark
+    public double grayscaleParallel() {
+        // As done before the OCR
+        return new ImageDeskew(ImageUtil.toGrayscale(image)).getSkewAngle();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ImageDeskewBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,83 @@
+package com.sismics.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Accuracy regression test of the skew detection.
+ *
+ * @author agent
+ */
+public class TestImageDeskew {
+    @Test
+    public void testSkewAngle() {
+        for (double angle : new double[] { -10, -3.4, 0, 2, 7.6 }) {
+            for (int imageType : new int[] { BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_BYTE_BINARY }) {
+                BufferedImage image = createSkewedPage(1700, 2200, angle, imageType);
+
+                // The skew angle is detected
+                double skewAngle = new ImageDeskew(image).getSkewAngle();
+                Assert.assertEquals("Skew angle of a page rotated by " + angle + " (type " + imageType + ")", angle, skewAngle, 0.5);
+
+                // Same result as the pixel by pixel implementation
+                Assert.assertEquals(new LegacyImageDeskew(image).getSkewAngle(), skewAngle, 0.001);
+            }
+        }
+    }
+
+    @Test
+    public void testGrayscaleConversion() {
+        // An RGB page converted to grayscale, as done before the OCR, has the same skew angle
+        BufferedImage image = createSkewedPage(1700, 2200, 4.2, BufferedImage.TYPE_INT_RGB);
+        BufferedImage grayImage = ImageUtil.toGrayscale(image);
+        Assert.assertEquals(BufferedImage.TYPE_BYTE_GRAY, grayImage.getType());
+        Assert.assertEquals(new ImageDeskew(image).getSkewAngle(), new ImageDeskew(grayImage).getSkewAngle(), 0.001);
+        Assert.assertSame(grayImage, ImageUtil.toGrayscale(grayImage));
+    }
+
+    @Test
+    public void testBlankImage() {
+        BufferedImage image = new BufferedImage(300, 200, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, 300, 200);
+        graphics.dispose();
+        Assert.assertEquals(0, new ImageDeskew(image).getSkewAngle(), 0);
+
+        // Too small to find any line
+        Assert.assertEquals(0, new ImageDeskew(new BufferedImage(3, 3, BufferedImage.TYPE_INT_RGB)).getSkewAngle(), 0);
+    }
+
+    /**
+     * Creates a page of text rotated clockwise by an angle.
+     *
+     * @param width Width
+     * @param height Height
+     * @param angle Angle in degrees
+     * @param imageType Image type
+     * @return Image
+     */
+    static BufferedImage createSkewedPage(int width, int height, double angle, int imageType) {
+        BufferedImage image = new BufferedImage(width, height, imageType);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, width, height);
+        graphics.rotate(Math.toRadians(angle), width / 2.0, height / 2.0);
+        graphics.setColor(Color.BLACK);
+        graphics.setFont(new Font(Font.SERIF, Font.PLAIN, 24));
+        Random random = new Random(42);
+        for (int y = -height / 4; y < height * 5 / 4; y += 40) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 150; i++) {
+                sb.append(random.nextInt(6) == 0 ? ' ' : (char) ('a' + random.nextInt(26)));
+            }
+            graphics.drawString(sb.toString(), -width / 4, y);
+        }
+        graphics.dispose();
+        return image;
+    }
+}
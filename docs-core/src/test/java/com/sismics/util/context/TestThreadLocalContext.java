@@ -0,0 +1,92 @@
+package com.sismics.util.context;
+
+import com.google.common.collect.Lists;
+import com.sismics.docs.BaseTransactionalTest;
+import com.sismics.docs.core.dao.AuthenticationTokenDao;
+import com.sismics.docs.core.dao.UserDao;
+import com.sismics.docs.core.model.jpa.AuthenticationToken;
+import com.sismics.docs.core.model.jpa.User;
+import com.sismics.docs.core.util.jpa.QueryParam;
+import com.sismics.docs.core.util.jpa.QueryUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Test of the persistence context handling of the thread local context.
+ *
+ * @author agent
+ */
+public class TestThreadLocalContext extends BaseTransactionalTest {
+    @After
+    public void resetPersistenceContext() {
+        ThreadLocalContext.get().setKeepPersistenceContext(false);
+    }
+
+    @Test
+    public void persistenceContextTest() throws Exception {
+        User user = createUser("persistenceContext");
+        UserDao userDao = new UserDao();
+
+        // By default, entities are loaded again each time the entity manager is requested
+        Assert.assertNotSame(userDao.getById(user.getId()), userDao.getById(user.getId()));
+
+        // When the persistence context is kept, loaded entities are reused
+        ThreadLocalContext.get().setKeepPersistenceContext(true);
+        Assert.assertSame(userDao.getById(user.getId()), userDao.getById(user.getId()));
+    }
+
+    @Test
+    public void nativeQueryVisibilityTest() throws Exception {
+        ThreadLocalContext.get().setKeepPersistenceContext(true);
+
+        // A new entity is visible to native queries
+        User user = createUser("nativeQueryVisibility");
+        Assert.assertEquals("toto@docs.com", getEmail(user.getId()));
+
+        // A modified entity is visible to native queries
+        User userDb = new UserDao().getById(user.getId());
+        userDb.setEmail("native@docs.com");
+        Assert.assertEquals("native@docs.com", getEmail(user.getId()));
+    }
+
+    @Test
+    public void bulkUpdateVisibilityTest() throws Exception {
+        ThreadLocalContext.get().setKeepPersistenceContext(true);
+        User user = createUser("bulkUpdateVisibility");
+
+        // Load a token in the persistence context
+        AuthenticationTokenDao authenticationTokenDao = new AuthenticationTokenDao();
+        String tokenId = authenticationTokenDao.create(new AuthenticationToken()
+                .setUserId(user.getId())
+                .setLongLasted(false));
+        Assert.assertNull(authenticationTokenDao.get(tokenId).getLastConnectionDate());
+
+        // Entities loaded after a bulk update see its changes
+        authenticationTokenDao.updateLastConnectionDate(Lists.newArrayList(tokenId), new Date());
+        Assert.assertNotNull(authenticationTokenDao.get(tokenId).getLastConnectionDate());
+
+        // Entities modified before a bulk update are not lost
+        User userDb = new UserDao().getById(user.getId());
+        userDb.setEmail("bulk@docs.com");
+        authenticationTokenDao.updateLastConnectionDate(Lists.newArrayList(tokenId), new Date());
+        Assert.assertEquals("bulk@docs.com", new UserDao().getById(user.getId()).getEmail());
+    }
+
+    /**
+     * Returns the email of a user with a native query.
+     *
+     * @param userId User ID
+     * @return Email
+     */
+    private String getEmail(String userId) {
+        Map<String, Object> parameterMap = new HashMap<>();
+        parameterMap.put("id", userId);
+        return (String) QueryUtil.getNativeQuery(new QueryParam("select USE_EMAIL_C from T_USER where USE_ID_C = :id", parameterMap))
+                .getSingleResult();
+    }
+}
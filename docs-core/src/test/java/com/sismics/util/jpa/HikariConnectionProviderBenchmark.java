@@ -0,0 +1,83 @@
+package com.sismics.util.jpa;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of a saturated HikariCP connection pool, 16 threads sharing 4 connections held 1ms each.
+ * The time includes the wait for a connection, the wait histogram of the pool is logged at the end.
+ * Run with: mvn -pl docs-core test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.sismics.util.jpa.HikariConnectionProviderBenchmark
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(16)
+public class HikariConnectionProviderBenchmark {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(HikariConnectionProviderBenchmark.class);
+
+    /**
+     * Connection provider.
+     */
+    private HikariConnectionProvider connectionProvider;
+
+    @Setup
+    public void setUp() {
+        connectionProvider = TestHikariConnectionProvider.createConnectionProvider(4, 30000);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ConnectionPoolMetrics.Histogram waitHistogram = connectionProvider.getMetrics().getWaitHistogram();
+        StringBuilder histogram = new StringBuilder();
+        for (int i = 0; i < waitHistogram.getBucketCount(); i++) {
+            histogram.append(i < ConnectionPoolMetrics.BUCKET_BOUNDS_MS.length ? "<" + ConnectionPoolMetrics.BUCKET_BOUNDS_MS[i] + "ms" : "more")
+                    .append(": ").append(waitHistogram.getCount(i)).append(" ");
+        }
+        log.info("Wait histogram: " + histogram);
+        connectionProvider.stop();
+    }
+
+    @Benchmark
+    public void query() throws Exception {
+        Connection connection = connectionProvider.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("select 1");
+            Thread.sleep(1);
+        } finally {
+            connectionProvider.closeConnection(connection);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(HikariConnectionProviderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
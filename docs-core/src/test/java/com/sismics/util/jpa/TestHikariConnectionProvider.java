@@ -0,0 +1,135 @@
+package com.sismics.util.jpa;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test of the HikariCP connection provider.
+ *
+ * @author agent
+ */
+public class TestHikariConnectionProvider {
+    @Test
+    public void saturationTest() throws Exception {
+        int poolSize = 4;
+        int threadCount = 16;
+        HikariConnectionProvider connectionProvider = createConnectionProvider(poolSize, 30000);
+        HikariDataSource dataSource = connectionProvider.unwrap(HikariDataSource.class);
+        ConnectionPoolMetrics metrics = connectionProvider.getMetrics();
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        try {
+            // All connections are held
+            List<Connection> connectionList = new ArrayList<>();
+            for (int i = 0; i < poolSize; i++) {
+                connectionList.add(connectionProvider.getConnection());
+            }
+
+            // 16 threads queue for them
+            List<Future<?>> futureList = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                futureList.add(executorService.submit(() -> {
+                    Connection connection = connectionProvider.getConnection();
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute("select 1");
+                    } finally {
+                        connectionProvider.closeConnection(connection);
+                    }
+                    return null;
+                }));
+            }
+            while (dataSource.getHikariPoolMXBean().getThreadsAwaitingConnection() < threadCount) {
+                Thread.sleep(5);
+            }
+            Assert.assertEquals(poolSize, dataSource.getHikariPoolMXBean().getActiveConnections());
+
+            // And are all served once the connections are released
+            for (Connection connection : connectionList) {
+                connectionProvider.closeConnection(connection);
+            }
+            for (Future<?> future : futureList) {
+                future.get();
+            }
+            Assert.assertEquals(0, dataSource.getHikariPoolMXBean().getThreadsAwaitingConnection());
+            Assert.assertEquals(poolSize + threadCount, metrics.getWaitHistogram().getCount());
+            Assert.assertEquals(poolSize + threadCount, metrics.getUsageHistogram().getCount());
+            Assert.assertEquals(0, metrics.getTimeoutCount());
+
+            // The gauges are refreshed at most every second
+            Thread.sleep(1100);
+            Assert.assertEquals(0, metrics.getActiveConnections());
+            Assert.assertEquals(0, metrics.getPendingThreads());
+            Assert.assertEquals(poolSize, metrics.getMaxConnections());
+        } finally {
+            executorService.shutdownNow();
+            executorService.awaitTermination(10, TimeUnit.SECONDS);
+            connectionProvider.stop();
+        }
+    }
+
+    @Test
+    public void timeoutTest() throws Exception {
+        int poolSize = 2;
+        HikariConnectionProvider connectionProvider = createConnectionProvider(poolSize, 250);
+        ConnectionPoolMetrics metrics = connectionProvider.getMetrics();
+        try {
+            // When all connections are held, the next request times out
+            List<Connection> connectionList = new ArrayList<>();
+            for (int i = 0; i < poolSize; i++) {
+                connectionList.add(connectionProvider.getConnection());
+            }
+            try {
+                connectionProvider.getConnection();
+                Assert.fail();
+            } catch (SQLException e) {
+                // Timed out
+            }
+            Assert.assertEquals(1, metrics.getTimeoutCount());
+            for (Connection connection : connectionList) {
+                connectionProvider.closeConnection(connection);
+            }
+
+            // The pool recovers, the timed out wait is recorded too
+            connectionProvider.closeConnection(connectionProvider.getConnection());
+            Assert.assertEquals(1, metrics.getTimeoutCount());
+            Assert.assertEquals(poolSize + 2, metrics.getWaitHistogram().getCount());
+            Assert.assertEquals(poolSize + 1, metrics.getUsageHistogram().getCount());
+        } finally {
+            connectionProvider.stop();
+        }
+    }
+
+    /**
+     * Creates a connection provider to an in-memory database.
+     *
+     * @param poolSize Pool size
+     * @param connectionTimeout Maximum time to wait for a connection in milliseconds
+     * @return Connection provider
+     */
+    static HikariConnectionProvider createConnectionProvider(int poolSize, long connectionTimeout) {
+        Map<String, Object> configurationValues = new HashMap<>();
+        configurationValues.put(AvailableSettings.DRIVER, "org.h2.Driver");
+        configurationValues.put(AvailableSettings.URL, "jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1");
+        configurationValues.put(AvailableSettings.USER, "sa");
+        configurationValues.put(AvailableSettings.PASS, "");
+        configurationValues.put(AvailableSettings.POOL_SIZE, String.valueOf(poolSize));
+        configurationValues.put(HikariConnectionProvider.CONNECTION_TIMEOUT, String.valueOf(connectionTimeout));
+        HikariConnectionProvider connectionProvider = new HikariConnectionProvider();
+        connectionProvider.configure(configurationValues);
+        return connectionProvider;
+    }
+}
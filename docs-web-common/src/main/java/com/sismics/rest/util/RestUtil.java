@@ -26,11 +26,21 @@ public class RestUtil {
      * @return the JSON
      */
     public static JsonObjectBuilder fileToJsonObjectBuilder(File fileDb) {
+        return fileToJsonObjectBuilder(fileDb, FileUtil.isProcessingFile(fileDb.getId()));
+    }
+
+    /**
+     * Transform a File into its JSON representation.
+     * @param fileDb a file
+     * @param processing True if the file is processing
+     * @return the JSON
+     */
+    public static JsonObjectBuilder fileToJsonObjectBuilder(File fileDb, boolean processing) {
         try {
             long fileSize = fileDb.getSize().equals(File.UNKNOWN_SIZE) ? Files.size(DirectoryUtil.getStorageDirectory().resolve(fileDb.getId())) : fileDb.getSize();
             return Json.createObjectBuilder()
                     .add("id", fileDb.getId())
-                    .add("processing", FileUtil.isProcessingFile(fileDb.getId()))
+                    .add("processing", processing)
                     .add("name", JsonUtil.nullable(fileDb.getName()))
                     .add("version", fileDb.getVersion())
                     .add("mimetype", fileDb.getMimeType())
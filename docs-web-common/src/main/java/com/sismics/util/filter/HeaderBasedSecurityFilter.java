@@ -2,7 +2,7 @@ package com.sismics.util.filter;
 
 import com.google.common.base.Strings;
 import com.sismics.docs.core.dao.UserDao;
-import com.sismics.docs.core.model.jpa.User;
+import com.sismics.docs.core.util.PrincipalCacheUtil.CachedPrincipal;
 
 import jakarta.servlet.FilterConfig;
 import jakarta.servlet.http.HttpServletRequest;
@@ -31,7 +31,7 @@ public class HeaderBasedSecurityFilter extends SecurityFilter {
     }
 
     @Override
-    protected User authenticate(HttpServletRequest request) {
+    protected CachedPrincipal authenticate(HttpServletRequest request) {
         if (!enabled) {
             return null;
         }
@@ -40,6 +40,6 @@ public class HeaderBasedSecurityFilter extends SecurityFilter {
         if (Strings.isNullOrEmpty(username)) {
             return null;
         }
-        return new UserDao().getActiveByUsername(username);
+        return loadPrincipal(new UserDao().getActiveByUsername(username));
     }
 }
\ No newline at end of file
@@ -13,6 +13,7 @@ import java.util.Base64;
 import com.sismics.docs.core.constant.Constants;
 import com.sismics.docs.core.dao.UserDao;
 import com.sismics.docs.core.model.jpa.User;
+import com.sismics.docs.core.util.PrincipalCacheUtil.CachedPrincipal;
 import jakarta.json.Json;
 import jakarta.json.JsonArray;
 import jakarta.json.JsonObject;
@@ -60,7 +61,7 @@ public class JwtBasedSecurityFilter extends SecurityFilter {
     }
 
     @Override
-    protected User authenticate(final HttpServletRequest request) {
+    protected CachedPrincipal authenticate(final HttpServletRequest request) {
         if (!enabled) {
             return null;
         }
@@ -89,7 +90,7 @@ public class JwtBasedSecurityFilter extends SecurityFilter {
                 }
             }
         }
-        return user;
+        return loadPrincipal(user);
     }
 
     private boolean verifyJwt(final DecodedJWT jwt, final String token) {
@@ -111,6 +111,7 @@ public class RequestContextFilter implements Filter {
         }
 
         // No error processing the request : commit / rollback the current transaction depending on the HTTP code
+        // Streaming resources may have already committed and closed it (see TransactionUtil.commitAndClose)
         if (em.isOpen()) {
             if (em.getTransaction() != null && em.getTransaction().isActive()) {
                 HttpServletResponse r = (HttpServletResponse) response;
@@ -118,6 +119,7 @@ public class RequestContextFilter implements Filter {
                 if (statusClass == 2 || statusClass == 3) {
                     try {
                         em.getTransaction().commit();
+                        context.fireAllAfterCommit();
                     } catch (Exception e) {
                         log.error("Error during commit", e);
                         r.sendError(500);
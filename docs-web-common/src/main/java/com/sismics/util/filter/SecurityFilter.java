@@ -7,6 +7,7 @@ import com.sismics.docs.core.dao.RoleBaseFunctionDao;
 import com.sismics.docs.core.dao.criteria.GroupCriteria;
 import com.sismics.docs.core.dao.dto.GroupDto;
 import com.sismics.docs.core.model.jpa.User;
+import com.sismics.docs.core.util.PrincipalCacheUtil.CachedPrincipal;
 import com.sismics.security.AnonymousPrincipal;
 import com.sismics.security.UserPrincipal;
 import org.joda.time.DateTimeZone;
@@ -45,34 +46,42 @@ public abstract class SecurityFilter implements Filter {
      * @param request HTTP request
      * @return True if the supplied request has an UserPrincipal
      */
-    private boolean hasIdentifiedUser(HttpServletRequest request) {
+    protected boolean hasIdentifiedUser(HttpServletRequest request) {
         return request.getAttribute(PRINCIPAL_ATTRIBUTE) instanceof UserPrincipal;
     }
 
     /**
-     * Injects the given user into the request, with the appropriate authentication state.
+     * Returns true if the user is allowed to log in.
      *
-     * @param request HTTP request
-     * @param user nullable User to inject
+     * @param user nullable User
+     * @return True if the user is not deleted nor disabled
      */
-    private void injectUser(HttpServletRequest request, User user) {
+    protected boolean isUserValid(User user) {
+        return user != null && user.getDeleteDate() == null && user.getDisableDate() == null;
+    }
+
+    /**
+     * Load the principal of a user authenticated by the request itself.
+     *
+     * @param user nullable User
+     * @return nullable Principal data, null if the user is not allowed to log in
+     */
+    protected CachedPrincipal loadPrincipal(User user) {
         // Check if the user is still valid
-        if (user != null && user.getDeleteDate() == null && user.getDisableDate() == null) {
-            injectAuthenticatedUser(request, user);
-        } else {
-            injectAnonymousUser(request);
+        if (!isUserValid(user)) {
+            return null;
         }
+        return loadPrincipal(user, Long.MAX_VALUE);
     }
 
     /**
-     * Inject an authenticated user into the request attributes.
+     * Load the groups and base functions of a user.
      *
-     * @param request HTTP request
-     * @param user User to inject
+     * @param user User
+     * @param expirationTimestamp Expiration timestamp of the authentication
+     * @return Principal data
      */
-    private void injectAuthenticatedUser(HttpServletRequest request, User user) {
-        UserPrincipal userPrincipal = new UserPrincipal(user.getId(), user.getUsername());
-
+    protected CachedPrincipal loadPrincipal(User user, long expirationTimestamp) {
         // Add groups
         GroupDao groupDao = new GroupDao();
         Set<String> groupRoleIdSet = new HashSet<>();
@@ -86,16 +95,26 @@ public abstract class SecurityFilter implements Filter {
                 groupRoleIdSet.add(groupDto.getRoleId());
             }
         }
-        userPrincipal.setGroupIdSet(groupIdSet);
 
         // Add base functions
         groupRoleIdSet.add(user.getRoleId());
         RoleBaseFunctionDao userBaseFunction = new RoleBaseFunctionDao();
         Set<String> baseFunctionSet = userBaseFunction.findByRoleId(groupRoleIdSet);
-        userPrincipal.setBaseFunctionSet(baseFunctionSet);
 
-        // Add email
-        userPrincipal.setEmail(user.getEmail());
+        return new CachedPrincipal(user.getId(), user.getUsername(), user.getEmail(), groupIdSet, baseFunctionSet, expirationTimestamp);
+    }
+
+    /**
+     * Inject an authenticated user into the request attributes.
+     *
+     * @param request HTTP request
+     * @param cachedPrincipal Principal data of the user to inject
+     */
+    private void injectPrincipal(HttpServletRequest request, CachedPrincipal cachedPrincipal) {
+        UserPrincipal userPrincipal = new UserPrincipal(cachedPrincipal.getUserId(), cachedPrincipal.getUsername());
+        userPrincipal.setGroupIdSet(cachedPrincipal.getGroupIdSet());
+        userPrincipal.setBaseFunctionSet(cachedPrincipal.getBaseFunctionSet());
+        userPrincipal.setEmail(cachedPrincipal.getEmail());
 
         request.setAttribute(PRINCIPAL_ATTRIBUTE, userPrincipal);
     }
@@ -127,8 +146,12 @@ public abstract class SecurityFilter implements Filter {
         HttpServletRequest request = (HttpServletRequest) req;
 
         if (!hasIdentifiedUser(request)) {
-            User user = authenticate(request);
-            injectUser(request, user);
+            CachedPrincipal cachedPrincipal = authenticate(request);
+            if (cachedPrincipal != null) {
+                injectPrincipal(request, cachedPrincipal);
+            } else {
+                injectAnonymousUser(request);
+            }
         }
 
         filterChain.doFilter(request, response);
@@ -138,8 +161,8 @@ public abstract class SecurityFilter implements Filter {
      * Authenticates an user from the given request parameters.
      *
      * @param request HTTP request
-     * @return nullable User
+     * @return nullable Principal data of the user
      */
-    protected abstract User authenticate(HttpServletRequest request);
+    protected abstract CachedPrincipal authenticate(HttpServletRequest request);
 
 }
\ No newline at end of file
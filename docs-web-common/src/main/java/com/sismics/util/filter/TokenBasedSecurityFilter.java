@@ -2,8 +2,11 @@ package com.sismics.util.filter;
 
 import com.sismics.docs.core.dao.AuthenticationTokenDao;
 import com.sismics.docs.core.dao.UserDao;
+import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.AuthenticationToken;
 import com.sismics.docs.core.model.jpa.User;
+import com.sismics.docs.core.util.PrincipalCacheUtil;
+import com.sismics.docs.core.util.PrincipalCacheUtil.CachedPrincipal;
 
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
@@ -14,6 +17,7 @@ import java.util.Date;
  * This filter is used to authenticate the user having an active session via an authentication token stored in database.
  * The filter extracts the authentication token stored in a cookie.
  * If the cookie exists and the token is valid, the filter injects a UserPrincipal into a request attribute.
+ * Principals are cached by token for a short time, see {@link PrincipalCacheUtil}.
  * If not, the user is anonymous, and the filter injects a AnonymousPrincipal into the request attribute.
  *
  * @author jtremeaux
@@ -31,6 +35,7 @@ public class TokenBasedSecurityFilter extends SecurityFilter {
     
     /**
      * Lifetime of the authentication token in seconds, since last connection.
+     * Last connection dates are written behind, see {@link com.sismics.docs.core.service.LastConnectionService}.
      */
     private static final int TOKEN_SESSION_LIFETIME = 3600 * 24;
 
@@ -67,30 +72,35 @@ public class TokenBasedSecurityFilter extends SecurityFilter {
     }
 
     /**
-     * Returns true if the token is expired.
+     * Returns the expiration timestamp of a token.
      * 
      * @param authenticationToken Authentication token
-     * @return Token expired
+     * @return Expiration timestamp
      */
-    private boolean isTokenExpired(AuthenticationToken authenticationToken) {
-        final long now = new Date().getTime();
+    private long getExpirationTimestamp(AuthenticationToken authenticationToken) {
         final long creationDate = authenticationToken.getCreationDate().getTime();
         if (authenticationToken.isLongLasted()) {
-            return now >= creationDate + ((long) TOKEN_LONG_LIFETIME) * 1000L;
+            return creationDate + ((long) TOKEN_LONG_LIFETIME) * 1000L;
         } else {
-            long date = authenticationToken.getLastConnectionDate() != null ?
-                    authenticationToken.getLastConnectionDate().getTime() : creationDate;
-            return now >= date + ((long) TOKEN_SESSION_LIFETIME) * 1000L;
+            // The last connection date may not be flushed to the database yet
+            Date lastConnectionDate = AppContext.getInstance().getLastConnectionService()
+                    .getPendingLastConnectionDate(authenticationToken.getId());
+            if (lastConnectionDate == null) {
+                lastConnectionDate = authenticationToken.getLastConnectionDate();
+            }
+            long date = lastConnectionDate != null ? lastConnectionDate.getTime() : creationDate;
+            return date + ((long) TOKEN_SESSION_LIFETIME) * 1000L;
         }
     }
 
-    @Override
-    protected User authenticate(HttpServletRequest request) {
-        // Get the value of the client authentication token
-        String authTokenId = extractAuthToken(request.getCookies());
-        if (authTokenId == null) {
-            return null;
-        }
+    /**
+     * Loads the principal of a token from the database, and caches it.
+     *
+     * @param authTokenId Authentication token ID
+     * @return nullable Principal data
+     */
+    private CachedPrincipal loadPrincipal(String authTokenId) {
+        long generation = PrincipalCacheUtil.getGeneration();
 
         // Get the corresponding server token
         AuthenticationTokenDao authTokenDao = new AuthenticationTokenDao();
@@ -99,11 +109,34 @@ public class TokenBasedSecurityFilter extends SecurityFilter {
             return null;
         }
 
-        if (isTokenExpired(authToken)) {
+        long expirationTimestamp = getExpirationTimestamp(authToken);
+        if (new Date().getTime() >= expirationTimestamp) {
             handleExpiredToken(authTokenDao, authTokenId);
             return null;
         }
 
-        return new UserDao().getById(authToken.getUserId());
+        User user = new UserDao().getById(authToken.getUserId());
+        if (!isUserValid(user)) {
+            return null;
+        }
+
+        CachedPrincipal cachedPrincipal = loadPrincipal(user, expirationTimestamp);
+        PrincipalCacheUtil.put(authTokenId, cachedPrincipal, generation);
+        return cachedPrincipal;
+    }
+
+    @Override
+    protected CachedPrincipal authenticate(HttpServletRequest request) {
+        // Get the value of the client authentication token
+        String authTokenId = extractAuthToken(request.getCookies());
+        if (authTokenId == null) {
+            return null;
+        }
+
+        CachedPrincipal cachedPrincipal = PrincipalCacheUtil.get(authTokenId);
+        if (cachedPrincipal == null) {
+            cachedPrincipal = loadPrincipal(authTokenId);
+        }
+        return cachedPrincipal;
     }
 }
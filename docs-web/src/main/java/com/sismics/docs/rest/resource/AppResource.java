@@ -1,21 +1,32 @@
 package com.sismics.docs.rest.resource;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.CacheStats;
 import com.sismics.docs.core.constant.ConfigType;
 import com.sismics.docs.core.constant.Constants;
 import com.sismics.docs.core.dao.ConfigDao;
 import com.sismics.docs.core.dao.DocumentDao;
 import com.sismics.docs.core.dao.FileDao;
+import com.sismics.docs.core.dao.FileProcessingDao;
 import com.sismics.docs.core.dao.UserDao;
 import com.sismics.docs.core.event.RebuildIndexAsyncEvent;
 import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.model.context.EventQueue;
 import com.sismics.docs.core.model.jpa.Config;
 import com.sismics.docs.core.model.jpa.File;
+import com.sismics.docs.core.service.FileSizeService;
 import com.sismics.docs.core.service.InboxService;
 import com.sismics.docs.core.util.ConfigUtil;
 import com.sismics.docs.core.util.DirectoryUtil;
+import com.sismics.docs.core.util.FileUpload;
+import com.sismics.docs.core.util.OcrExecutor;
+import com.sismics.docs.core.util.PrincipalCacheUtil;
+import com.sismics.docs.core.util.RenditionUtil;
+import com.sismics.docs.core.util.indexing.RebuildIndexStatus;
+import com.sismics.docs.core.util.indexing.SuggestMetrics;
 import com.sismics.docs.core.util.jpa.PaginatedList;
 import com.sismics.docs.core.util.jpa.PaginatedLists;
+import com.sismics.docs.core.util.jpa.QueryUtil;
 import com.sismics.docs.rest.constant.BaseFunction;
 import com.sismics.rest.exception.ClientException;
 import com.sismics.rest.exception.ForbiddenClientException;
@@ -23,6 +34,8 @@ import com.sismics.rest.exception.ServerException;
 import com.sismics.rest.util.ValidationUtil;
 import com.sismics.util.JsonUtil;
 import com.sismics.util.context.ThreadLocalContext;
+import com.sismics.util.jpa.ConnectionPoolMetrics;
+import com.sismics.util.jpa.EMF;
 import com.sismics.util.log4j.LogCriteria;
 import com.sismics.util.log4j.LogEntry;
 import com.sismics.util.log4j.MemoryAppender;
@@ -36,6 +49,9 @@ import jakarta.ws.rs.core.Response;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Appender;
 import org.apache.log4j.Level;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,6 +60,7 @@ import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 /**
  * General app REST resource.
@@ -68,6 +85,52 @@ public class AppResource extends BaseResource {
      * @apiSuccess {Boolean} guest_login True if guest login is enabled
      * @apiSuccess {String} default_language Default platform language
      * @apiSuccess {Number} queued_tasks Number of queued tasks waiting to be processed
+     * @apiSuccess {Object[]} event_queues Asynchronous event queues
+     * @apiSuccess {String} event_queues.name Queue name
+     * @apiSuccess {Number} event_queues.depth Number of events waiting to be processed
+     * @apiSuccess {Number} event_queues.capacity Maximum number of events waiting to be processed
+     * @apiSuccess {Number} event_queues.active Number of events being processed
+     * @apiSuccess {Number} event_queues.processed_count Number of events processed
+     * @apiSuccess {Number} event_queues.rejected_count Number of events discarded because the queue was full
+     * @apiSuccess {Number} event_queues.average_wait_ms Average time spent in the queue (in milliseconds)
+     * @apiSuccess {Number} event_queues.max_wait_ms Maximum time spent in the queue (in milliseconds)
+     * @apiSuccess {Number} event_queues.average_processing_ms Average processing time (in milliseconds)
+     * @apiSuccess {Object} file_processing Durable file processing queue
+     * @apiSuccess {Number} file_processing.pending Number of files waiting to be processed, on all nodes
+     * @apiSuccess {Number} file_processing.claimed Number of files being processed by this node
+     * @apiSuccess {Object} ocr OCR executor
+     * @apiSuccess {Number} ocr.thread_count Maximum number of concurrent OCR processes
+     * @apiSuccess {Number} ocr.active Number of pages being recognized
+     * @apiSuccess {Number} ocr.depth Number of pages waiting to be recognized
+     * @apiSuccess {Object} file_size_backfill Progress of the file size backfill
+     * @apiSuccess {Number} file_size_backfill.processed Number of files processed
+     * @apiSuccess {Number} file_size_backfill.total Number of files with an unknown size
+     * @apiSuccess {Object} principal_cache Statistics of the authenticated principals cache
+     * @apiSuccess {Number} principal_cache.hit_count Number of requests authenticated from the cache
+     * @apiSuccess {Number} principal_cache.miss_count Number of requests authenticated from the database
+     * @apiSuccess {Number} principal_cache.hit_rate Ratio of requests authenticated from the cache
+     * @apiSuccess {Object} suggest Metrics of the search suggestions lookups
+     * @apiSuccess {Number} suggest.lookup_count Number of lookups
+     * @apiSuccess {Number} suggest.average_ms Average lookup time (in milliseconds)
+     * @apiSuccess {Number} suggest.max_ms Maximum lookup time (in milliseconds)
+     * @apiSuccess {Object} connection_pool Metrics of the database connection pool (if pooled)
+     * @apiSuccess {Number} connection_pool.active Connections in use
+     * @apiSuccess {Number} connection_pool.idle Connections available
+     * @apiSuccess {Number} connection_pool.pending Threads waiting for a connection
+     * @apiSuccess {Number} connection_pool.max Maximum connections
+     * @apiSuccess {Number} connection_pool.timeout_count Number of connection requests timed out
+     * @apiSuccess {Object} connection_pool.wait Histogram of the connection wait times
+     * @apiSuccess {Number} connection_pool.wait.count Number of connections obtained
+     * @apiSuccess {Number} connection_pool.wait.total_ms Total wait time (in milliseconds)
+     * @apiSuccess {Object[]} connection_pool.wait.buckets Counts of wait times lower than max_ms, the last bucket is unbounded
+     * @apiSuccess {Object} connection_pool.usage Histogram of the connection usage times, same format as wait
+     * @apiSuccess {Object} second_level_cache Statistics of the second-level cache (if statistics are enabled)
+     * @apiSuccess {Number} second_level_cache.hit_count Number of entities read from the cache
+     * @apiSuccess {Number} second_level_cache.miss_count Number of entities not found in the cache
+     * @apiSuccess {Number} second_level_cache.put_count Number of entities put in the cache
+     * @apiSuccess {Number} second_level_cache.query_hit_count Number of query results read from the cache
+     * @apiSuccess {Number} second_level_cache.query_miss_count Number of query results not found in the cache
+     * @apiSuccess {Object[]} second_level_cache.regions Hit, miss and put counts per cache region
      * @apiSuccess {String} total_memory Allocated JVM memory (in bytes)
      * @apiSuccess {String} free_memory Free JVM memory (in bytes)
      * @apiSuccess {String} document_count Number of documents
@@ -89,6 +152,8 @@ public class AppResource extends BaseResource {
         String defaultLanguage = ConfigUtil.getConfigStringValue(ConfigType.DEFAULT_LANGUAGE);
         UserDao userDao = new UserDao();
         DocumentDao documentDao = new DocumentDao();
+        FileSizeService fileSizeService = AppContext.getInstance().getFileSizeService();
+        CacheStats principalCacheStats = PrincipalCacheUtil.getStats();
         String globalQuotaStr = System.getenv(Constants.GLOBAL_QUOTA_ENV);
         long globalQuota = 0;
         if (!Strings.isNullOrEmpty(globalQuotaStr)) {
@@ -102,6 +167,13 @@ public class AppResource extends BaseResource {
                 .add("ocr_enabled", ocrEnabled)
                 .add("default_language", defaultLanguage)
                 .add("queued_tasks", AppContext.getInstance().getQueuedTaskCount())
+                .add("file_size_backfill", Json.createObjectBuilder()
+                        .add("processed", fileSizeService.getProcessedCount())
+                        .add("total", fileSizeService.getTotalCount()))
+                .add("principal_cache", Json.createObjectBuilder()
+                        .add("hit_count", principalCacheStats.hitCount())
+                        .add("miss_count", principalCacheStats.missCount())
+                        .add("hit_rate", principalCacheStats.hitRate()))
                 .add("total_memory", Runtime.getRuntime().totalMemory())
                 .add("free_memory", Runtime.getRuntime().freeMemory())
                 .add("document_count", documentDao.getDocumentCount())
@@ -110,6 +182,65 @@ public class AppResource extends BaseResource {
         if (globalQuota > 0) {
             response.add("global_storage_quota", globalQuota);
         }
+        JsonArrayBuilder eventQueues = Json.createArrayBuilder();
+        for (EventQueue eventQueue : AppContext.getInstance().getEventQueueList()) {
+            eventQueues.add(Json.createObjectBuilder()
+                    .add("name", eventQueue.getName())
+                    .add("depth", eventQueue.getDepth())
+                    .add("capacity", eventQueue.getCapacity())
+                    .add("active", eventQueue.getActiveCount())
+                    .add("processed_count", eventQueue.getProcessedCount())
+                    .add("rejected_count", eventQueue.getRejectedCount())
+                    .add("average_wait_ms", eventQueue.getAverageWaitMs())
+                    .add("max_wait_ms", eventQueue.getMaxWaitMs())
+                    .add("average_processing_ms", eventQueue.getAverageProcessingMs()));
+        }
+        response.add("event_queues", eventQueues);
+        response.add("file_processing", Json.createObjectBuilder()
+                .add("pending", new FileProcessingDao().count())
+                .add("claimed", AppContext.getInstance().getFileProcessingService().getClaimedCount()));
+        OcrExecutor ocrExecutor = AppContext.getInstance().getOcrExecutor();
+        response.add("ocr", Json.createObjectBuilder()
+                .add("thread_count", ocrExecutor.getThreadCount())
+                .add("active", ocrExecutor.getActiveCount())
+                .add("depth", ocrExecutor.getDepth()));
+        SuggestMetrics suggestMetrics = AppContext.getInstance().getIndexingHandler().getSuggestMetrics();
+        response.add("suggest", Json.createObjectBuilder()
+                .add("lookup_count", suggestMetrics.getLookupCount())
+                .add("average_ms", suggestMetrics.getAverageLatencyMs())
+                .add("max_ms", suggestMetrics.getMaxLatencyMs()));
+        ConnectionPoolMetrics connectionPoolMetrics = EMF.getConnectionPoolMetrics();
+        if (connectionPoolMetrics != null) {
+            response.add("connection_pool", Json.createObjectBuilder()
+                    .add("active", connectionPoolMetrics.getActiveConnections())
+                    .add("idle", connectionPoolMetrics.getIdleConnections())
+                    .add("pending", connectionPoolMetrics.getPendingThreads())
+                    .add("max", connectionPoolMetrics.getMaxConnections())
+                    .add("timeout_count", connectionPoolMetrics.getTimeoutCount())
+                    .add("wait", toJson(connectionPoolMetrics.getWaitHistogram()))
+                    .add("usage", toJson(connectionPoolMetrics.getUsageHistogram())));
+        }
+        Statistics statistics = EMF.get().unwrap(SessionFactory.class).getStatistics();
+        if (statistics.isStatisticsEnabled()) {
+            JsonArrayBuilder regions = Json.createArrayBuilder();
+            for (String regionName : statistics.getSecondLevelCacheRegionNames()) {
+                CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(regionName);
+                if (regionStatistics != null) {
+                    regions.add(Json.createObjectBuilder()
+                            .add("name", regionName)
+                            .add("hit_count", regionStatistics.getHitCount())
+                            .add("miss_count", regionStatistics.getMissCount())
+                            .add("put_count", regionStatistics.getPutCount()));
+                }
+            }
+            response.add("second_level_cache", Json.createObjectBuilder()
+                    .add("hit_count", statistics.getSecondLevelCacheHitCount())
+                    .add("miss_count", statistics.getSecondLevelCacheMissCount())
+                    .add("put_count", statistics.getSecondLevelCachePutCount())
+                    .add("query_hit_count", statistics.getQueryCacheHitCount())
+                    .add("query_miss_count", statistics.getQueryCacheMissCount())
+                    .add("regions", regions));
+        }
 
         return Response.ok().entity(response.build()).build();
     }
@@ -602,7 +733,43 @@ public class AppResource extends BaseResource {
     }
 
     /**
-     * Destroy and rebuild the search index.
+     * Returns the progress of the search index rebuild.
+     *
+     * @api {get} /app/batch/reindex Get the search index rebuild progress
+     * @apiName GetAppBatchReindex
+     * @apiGroup App
+     * @apiSuccess {Boolean} running True if the index is being rebuilt
+     * @apiSuccess {Number} processed Number of documents and files indexed
+     * @apiSuccess {Number} total Number of documents and files to index
+     * @apiSuccess {Number} start_date Start date of the last rebuild (timestamp)
+     * @apiSuccess {Number} eta Estimated remaining time (in seconds)
+     * @apiError (client) ForbiddenError Access denied
+     * @apiPermission admin
+     * @apiVersion 1.12.0
+     *
+     * @return Response
+     */
+    @GET
+    @Path("batch/reindex")
+    public Response batchReindexStatus() {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
+        }
+        checkBaseFunction(BaseFunction.ADMIN);
+
+        RebuildIndexStatus status = AppContext.getInstance().getIndexingHandler().getRebuildIndexStatus();
+        JsonObjectBuilder response = Json.createObjectBuilder()
+                .add("running", status.isRunning())
+                .add("processed", status.getProcessedCount())
+                .add("total", status.getTotalCount())
+                .add("start_date", JsonUtil.nullable(status.getStartTimestamp()))
+                .add("eta", JsonUtil.nullable(status.getEta()));
+        return Response.ok().entity(response.build()).build();
+    }
+
+    /**
+     * Rebuild the search index.
+     * The current index is used until the new one is complete.
      *
      * @api {post} /app/batch/reindex Rebuild the search index
      * @apiName PostAppBatchReindex
@@ -654,28 +821,43 @@ public class AppResource extends BaseResource {
         }
         checkBaseFunction(BaseFunction.ADMIN);
 
-        // Get all files
+        // Get all files, with the names of their stored content and renditions
         FileDao fileDao = new FileDao();
         List<File> fileList = fileDao.findAll(0, Integer.MAX_VALUE);
-        Map<String, File> fileMap = new HashMap<>();
+        Set<String> storedNameSet = new HashSet<>();
         for (File file : fileList) {
-            fileMap.put(file.getId(), file);
+            storedNameSet.add(file.getId());
+            for (RenditionUtil.Rendition rendition : RenditionUtil.Rendition.values()) {
+                storedNameSet.add(file.getId() + rendition.getSuffix());
+            }
         }
-        log.info("Checking {} files", fileMap.size());
+        log.info("Checking {} files", fileList.size());
 
         // Check if each stored file is valid
+        long uploadExpiration = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1);
+        long freedSize = 0;
         try (DirectoryStream<java.nio.file.Path> storedFileList = Files.newDirectoryStream(DirectoryUtil.getStorageDirectory())) {
             for (java.nio.file.Path storedFile : storedFileList) {
                 String fileName = storedFile.getFileName().toString();
-                String[] fileNameArray = fileName.split("_");
-                if (!fileMap.containsKey(fileNameArray[0])) {
-                    log.info("Deleting orphan files at this location: {}", storedFile);
-                    Files.delete(storedFile);
+                if (fileName.endsWith(FileUpload.UPLOAD_SUFFIX)) {
+                    // Keep the uploads in progress, only those abandoned for a day are orphans
+                    if (Files.getLastModifiedTime(storedFile).toMillis() > uploadExpiration) {
+                        continue;
+                    }
+                } else if (storedNameSet.contains(fileName)) {
+                    continue;
                 }
+
+                // The content of identical files is shared with hard links, it is freed with its last link
+                long size = getLinkCount(storedFile) == 1 ? Files.size(storedFile) : 0;
+                log.info("Deleting orphan files at this location: {}", storedFile);
+                Files.delete(storedFile);
+                freedSize += size;
             }
         } catch (IOException e) {
             throw new ServerException("FileError", "Error deleting orphan files", e);
         }
+        log.info("{} bytes freed in the storage", freedSize);
 
         // Hard delete orphan audit logs
         EntityManager em = ThreadLocalContext.get().getEntityManager();
@@ -688,8 +870,8 @@ public class AppResource extends BaseResource {
         sb.append(" left join T_USER u on u.USE_ID_C = al.LOG_IDENTITY_C and u.USE_DELETEDATE_D is null ");
         sb.append(" left join T_GROUP g on g.GRP_ID_C = al.LOG_IDENTITY_C and g.GRP_DELETEDATE_D is null ");
         sb.append(" where d.DOC_ID_C is null and a.ACL_ID_C is null and c.COM_ID_C is null and f.FIL_ID_C is null and t.TAG_ID_C is null and u.USE_ID_C is null and g.GRP_ID_C is null)");
-        Query q = em.createNativeQuery(sb.toString());
-        log.info("Deleting {} orphan audit logs", q.executeUpdate());
+        Query q = QueryUtil.synchronizeTables(em.createNativeQuery(sb.toString()), "T_AUDIT_LOG");
+        log.info("Deleting {} orphan audit logs", QueryUtil.executeUpdate(q));
 
         // Soft delete orphan ACLs
         sb = new StringBuilder("update T_ACL a set ACL_DELETEDATE_D = :dateNow where a.ACL_ID_C in (select a.ACL_ID_C from T_ACL a ");
@@ -699,50 +881,50 @@ public class AppResource extends BaseResource {
         sb.append(" left join T_DOCUMENT d on d.DOC_ID_C = a.ACL_SOURCEID_C ");
         sb.append(" left join T_TAG t on t.TAG_ID_C = a.ACL_SOURCEID_C ");
         sb.append(" where s.SHA_ID_C is null and u.USE_ID_C is null and g.GRP_ID_C is null or d.DOC_ID_C is null and t.TAG_ID_C is null)");
-        q = em.createNativeQuery(sb.toString());
+        q = QueryUtil.synchronizeTables(em.createNativeQuery(sb.toString()), "T_ACL");
         q.setParameter("dateNow", new Date());
-        log.info("Deleting {} orphan ACLs", q.executeUpdate());
+        log.info("Deleting {} orphan ACLs", QueryUtil.executeUpdate(q));
 
         // Soft delete orphan comments
-        q = em.createNativeQuery("update T_COMMENT set COM_DELETEDATE_D = :dateNow where COM_ID_C in (select c.COM_ID_C from T_COMMENT c left join T_DOCUMENT d on d.DOC_ID_C = c.COM_IDDOC_C and d.DOC_DELETEDATE_D is null where d.DOC_ID_C is null)");
+        q = QueryUtil.synchronizeTables(em.createNativeQuery("update T_COMMENT set COM_DELETEDATE_D = :dateNow where COM_ID_C in (select c.COM_ID_C from T_COMMENT c left join T_DOCUMENT d on d.DOC_ID_C = c.COM_IDDOC_C and d.DOC_DELETEDATE_D is null where d.DOC_ID_C is null)"), "T_COMMENT");
         q.setParameter("dateNow", new Date());
-        log.info("Deleting {} orphan comments", q.executeUpdate());
+        log.info("Deleting {} orphan comments", QueryUtil.executeUpdate(q));
 
         // Soft delete orphan document tag links
-        q = em.createNativeQuery("update T_DOCUMENT_TAG set DOT_DELETEDATE_D = :dateNow where DOT_ID_C in (select dt.DOT_ID_C from T_DOCUMENT_TAG dt left join T_DOCUMENT d on dt.DOT_IDDOCUMENT_C = d.DOC_ID_C and d.DOC_DELETEDATE_D is null left join T_TAG t on t.TAG_ID_C = dt.DOT_IDTAG_C and t.TAG_DELETEDATE_D is null where d.DOC_ID_C is null or t.TAG_ID_C is null)");
+        q = QueryUtil.synchronizeTables(em.createNativeQuery("update T_DOCUMENT_TAG set DOT_DELETEDATE_D = :dateNow where DOT_ID_C in (select dt.DOT_ID_C from T_DOCUMENT_TAG dt left join T_DOCUMENT d on dt.DOT_IDDOCUMENT_C = d.DOC_ID_C and d.DOC_DELETEDATE_D is null left join T_TAG t on t.TAG_ID_C = dt.DOT_IDTAG_C and t.TAG_DELETEDATE_D is null where d.DOC_ID_C is null or t.TAG_ID_C is null)"), "T_DOCUMENT_TAG");
         q.setParameter("dateNow", new Date());
-        log.info("Deleting {} orphan document tag links", q.executeUpdate());
+        log.info("Deleting {} orphan document tag links", QueryUtil.executeUpdate(q));
 
         // Soft delete orphan shares
-        q = em.createNativeQuery("update T_SHARE set SHA_DELETEDATE_D = :dateNow where SHA_ID_C in (select s.SHA_ID_C from T_SHARE s left join T_ACL a on a.ACL_TARGETID_C = s.SHA_ID_C and a.ACL_DELETEDATE_D is null where a.ACL_ID_C is null)");
+        q = QueryUtil.synchronizeTables(em.createNativeQuery("update T_SHARE set SHA_DELETEDATE_D = :dateNow where SHA_ID_C in (select s.SHA_ID_C from T_SHARE s left join T_ACL a on a.ACL_TARGETID_C = s.SHA_ID_C and a.ACL_DELETEDATE_D is null where a.ACL_ID_C is null)"), "T_SHARE");
         q.setParameter("dateNow", new Date());
-        log.info("Deleting {} orphan shares", q.executeUpdate());
+        log.info("Deleting {} orphan shares", QueryUtil.executeUpdate(q));
 
         // Soft delete orphan tags
-        q = em.createNativeQuery("update T_TAG set TAG_DELETEDATE_D = :dateNow where TAG_ID_C in (select t.TAG_ID_C from T_TAG t left join T_USER u on u.USE_ID_C = t.TAG_IDUSER_C and u.USE_DELETEDATE_D is null where u.USE_ID_C is null)");
+        q = QueryUtil.synchronizeTables(em.createNativeQuery("update T_TAG set TAG_DELETEDATE_D = :dateNow where TAG_ID_C in (select t.TAG_ID_C from T_TAG t left join T_USER u on u.USE_ID_C = t.TAG_IDUSER_C and u.USE_DELETEDATE_D is null where u.USE_ID_C is null)"), "T_TAG");
         q.setParameter("dateNow", new Date());
-        log.info("Deleting {} orphan tags", q.executeUpdate());
+        log.info("Deleting {} orphan tags", QueryUtil.executeUpdate(q));
 
         // Soft delete orphan documents
-        q = em.createNativeQuery("update T_DOCUMENT set DOC_DELETEDATE_D = :dateNow where DOC_ID_C in (select d.DOC_ID_C from T_DOCUMENT d left join T_USER u on u.USE_ID_C = d.DOC_IDUSER_C and u.USE_DELETEDATE_D is null where u.USE_ID_C is null)");
+        q = QueryUtil.synchronizeTables(em.createNativeQuery("update T_DOCUMENT set DOC_DELETEDATE_D = :dateNow where DOC_ID_C in (select d.DOC_ID_C from T_DOCUMENT d left join T_USER u on u.USE_ID_C = d.DOC_IDUSER_C and u.USE_DELETEDATE_D is null where u.USE_ID_C is null)"), "T_DOCUMENT");
         q.setParameter("dateNow", new Date());
-        log.info("Deleting {} orphan documents", q.executeUpdate());
+        log.info("Deleting {} orphan documents", QueryUtil.executeUpdate(q));
 
         // Soft delete orphan files
-        q = em.createNativeQuery("update T_FILE set FIL_DELETEDATE_D = :dateNow where FIL_ID_C in (select f.FIL_ID_C from T_FILE f left join T_USER u on u.USE_ID_C = f.FIL_IDUSER_C and u.USE_DELETEDATE_D is null where u.USE_ID_C is null)");
+        q = QueryUtil.synchronizeTables(em.createNativeQuery("update T_FILE set FIL_DELETEDATE_D = :dateNow where FIL_ID_C in (select f.FIL_ID_C from T_FILE f left join T_USER u on u.USE_ID_C = f.FIL_IDUSER_C and u.USE_DELETEDATE_D is null where u.USE_ID_C is null)"), "T_FILE");
         q.setParameter("dateNow", new Date());
-        log.info("Deleting {} orphan files", q.executeUpdate());
+        log.info("Deleting {} orphan files", QueryUtil.executeUpdate(q));
 
         // Hard delete softly deleted data
-        log.info("Deleting {} soft deleted document tag links", em.createQuery("delete DocumentTag where deleteDate is not null").executeUpdate());
-        log.info("Deleting {} soft deleted ACLs", em.createQuery("delete Acl where deleteDate is not null").executeUpdate());
-        log.info("Deleting {} soft deleted shares", em.createQuery("delete Share where deleteDate is not null").executeUpdate());
-        log.info("Deleting {} soft deleted tags", em.createQuery("delete Tag where deleteDate is not null").executeUpdate());
-        log.info("Deleting {} soft deleted comments", em.createQuery("delete Comment where deleteDate is not null").executeUpdate());
-        log.info("Deleting {} soft deleted files", em.createQuery("delete File where deleteDate is not null").executeUpdate());
-        log.info("Deleting {} soft deleted documents", em.createQuery("delete Document where deleteDate is not null").executeUpdate());
-        log.info("Deleting {} soft deleted users", em.createQuery("delete User where deleteDate is not null").executeUpdate());
-        log.info("Deleting {} soft deleted groups", em.createQuery("delete Group where deleteDate is not null").executeUpdate());
+        log.info("Deleting {} soft deleted document tag links", QueryUtil.executeUpdate(em.createQuery("delete DocumentTag where deleteDate is not null")));
+        log.info("Deleting {} soft deleted ACLs", QueryUtil.executeUpdate(em.createQuery("delete Acl where deleteDate is not null")));
+        log.info("Deleting {} soft deleted shares", QueryUtil.executeUpdate(em.createQuery("delete Share where deleteDate is not null")));
+        log.info("Deleting {} soft deleted tags", QueryUtil.executeUpdate(em.createQuery("delete Tag where deleteDate is not null")));
+        log.info("Deleting {} soft deleted comments", QueryUtil.executeUpdate(em.createQuery("delete Comment where deleteDate is not null")));
+        log.info("Deleting {} soft deleted files", QueryUtil.executeUpdate(em.createQuery("delete File where deleteDate is not null")));
+        log.info("Deleting {} soft deleted documents", QueryUtil.executeUpdate(em.createQuery("delete Document where deleteDate is not null")));
+        log.info("Deleting {} soft deleted users", QueryUtil.executeUpdate(em.createQuery("delete User where deleteDate is not null")));
+        log.info("Deleting {} soft deleted groups", QueryUtil.executeUpdate(em.createQuery("delete Group where deleteDate is not null")));
 
         // Always return OK
         JsonObjectBuilder response = Json.createObjectBuilder()
@@ -885,4 +1067,41 @@ public class AppResource extends BaseResource {
 
         return Response.ok().build();
     }
+
+    /**
+     * Returns a JSON representation of a connection pool histogram.
+     *
+     * @param histogram Histogram
+     * @return JSON object with the count, the total time and the buckets
+     */
+    private JsonObjectBuilder toJson(ConnectionPoolMetrics.Histogram histogram) {
+        JsonArrayBuilder buckets = Json.createArrayBuilder();
+        for (int i = 0; i < histogram.getBucketCount(); i++) {
+            JsonObjectBuilder bucket = Json.createObjectBuilder()
+                    .add("count", histogram.getCount(i));
+            if (i < ConnectionPoolMetrics.BUCKET_BOUNDS_MS.length) {
+                bucket.add("max_ms", ConnectionPoolMetrics.BUCKET_BOUNDS_MS[i]);
+            }
+            buckets.add(bucket);
+        }
+        return Json.createObjectBuilder()
+                .add("count", histogram.getCount())
+                .add("total_ms", histogram.getTotalMs())
+                .add("buckets", buckets);
+    }
+
+    /**
+     * Returns the number of hard links to the content of a stored file.
+     *
+     * @param storedFile Stored file
+     * @return Number of links, 1 if the storage doesn't count them
+     * @throws IOException e
+     */
+    private int getLinkCount(java.nio.file.Path storedFile) throws IOException {
+        try {
+            return (Integer) Files.getAttribute(storedFile, "unix:nlink");
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            return 1;
+        }
+    }
 }
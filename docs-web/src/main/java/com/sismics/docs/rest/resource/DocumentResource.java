@@ -34,6 +34,7 @@ import com.sismics.docs.core.util.DocumentUtil;
 import com.sismics.docs.core.util.FileUtil;
 import com.sismics.docs.core.util.MetadataUtil;
 import com.sismics.docs.core.util.PdfUtil;
+import com.sismics.docs.core.util.TransactionUtil;
 import com.sismics.docs.core.util.jpa.PaginatedList;
 import com.sismics.docs.core.util.jpa.PaginatedLists;
 import com.sismics.docs.core.util.jpa.SortCriteria;
@@ -63,7 +64,6 @@ import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.StreamingOutput;
-import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.glassfish.jersey.media.multipart.FormDataBodyPart;
 import org.glassfish.jersey.media.multipart.FormDataParam;
@@ -77,14 +77,16 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.text.MessageFormat;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Document REST resources.
@@ -271,10 +273,11 @@ public class DocumentResource extends BaseResource {
         if (Boolean.TRUE == files) {
             FileDao fileDao = new FileDao();
             List<File> fileList = fileDao.getByDocumentsIds(Collections.singleton(documentId));
+            Set<String> processingFileIdSet = FileUtil.getProcessingFileIdSet(fileList.stream().map(File::getId).collect(Collectors.toList()));
 
             JsonArrayBuilder filesArrayBuilder = Json.createArrayBuilder();
             for (File fileDb : fileList) {
-                filesArrayBuilder.add(RestUtil.fileToJsonObjectBuilder(fileDb));
+                filesArrayBuilder.add(RestUtil.fileToJsonObjectBuilder(fileDb, processingFileIdSet.contains(fileDb.getId())));
             }
 
             document.add("files", filesArrayBuilder);
@@ -338,6 +341,9 @@ public class DocumentResource extends BaseResource {
             file.setPrivateKey(user.getPrivateKey());
         }
 
+        // The database is not needed to convert the files, release it for slow clients
+        TransactionUtil.commitAndClose();
+
         // Convert to PDF
         StreamingOutput stream = outputStream -> {
             try {
@@ -486,28 +492,36 @@ public class DocumentResource extends BaseResource {
             throw new ServerException("SearchError", "Error searching in documents", e);
         }
 
-        // Find the files of the documents
-        Iterable<String> documentsIds = CollectionUtils.collect(paginatedList.getResultList(), DocumentDto::getId);
+        // Find the files and the tags accessible by the current user of the documents
+        List<String> documentsIds = paginatedList.getResultList().stream().map(DocumentDto::getId).collect(Collectors.toList());
         FileDao fileDao = new FileDao();
-        List<File> filesList = null;
+        Map<String, List<File>> filesByDocument = null;
         Map<String, Long> filesCountByDocument = null;
-        if (Boolean.TRUE == files) {
-            filesList = fileDao.getByDocumentsIds(documentsIds);
+        if (documentsIds.isEmpty()) {
+            filesByDocument = new HashMap<>();
+            filesCountByDocument = new HashMap<>();
+        } else if (Boolean.TRUE == files) {
+            filesByDocument = fileDao.getByDocumentsIds(documentsIds).stream()
+                    .collect(Collectors.groupingBy(File::getDocumentId));
         } else {
             filesCountByDocument = fileDao.countByDocumentsIds(documentsIds);
         }
+        Set<String> processingFileIdSet = new HashSet<>();
+        if (filesByDocument != null) {
+            processingFileIdSet = FileUtil.getProcessingFileIdSet(filesByDocument.values().stream()
+                    .flatMap(List::stream)
+                    .map(File::getId)
+                    .collect(Collectors.toList()));
+        }
+        Map<String, List<TagDto>> tagsByDocument = tagDao.findByDocumentIds(documentsIds, getTargetIdList(null));
 
         for (DocumentDto documentDto : paginatedList.getResultList()) {
-            // Get tags accessible by the current user on this document
-            List<TagDto> tagDtoList = tagDao.findByCriteria(new TagCriteria()
-                    .setTargetIdList(getTargetIdList(null))
-                    .setDocumentId(documentDto.getId()), new SortCriteria(1, true));
+            List<TagDto> tagDtoList = tagsByDocument.getOrDefault(documentDto.getId(), Collections.emptyList());
 
             Long filesCount;
-            Collection<File> filesOfDocument = null;
+            List<File> filesOfDocument = null;
             if (Boolean.TRUE == files) {
-                // Find files matching the document
-                filesOfDocument = CollectionUtils.select(filesList, file -> file.getDocumentId().equals(documentDto.getId()));
+                filesOfDocument = filesByDocument.getOrDefault(documentDto.getId(), Collections.emptyList());
                 filesCount = (long) filesOfDocument.size();
             } else {
                 filesCount = filesCountByDocument.getOrDefault(documentDto.getId(), 0L);
@@ -523,7 +537,7 @@ public class DocumentResource extends BaseResource {
             if (Boolean.TRUE == files) {
                 JsonArrayBuilder filesArrayBuilder = Json.createArrayBuilder();
                 for (File fileDb : filesOfDocument) {
-                    filesArrayBuilder.add(RestUtil.fileToJsonObjectBuilder(fileDb));
+                    filesArrayBuilder.add(RestUtil.fileToJsonObjectBuilder(fileDb, processingFileIdSet.contains(fileDb.getId())));
                 }
                 documentObjectBuilder.add("files", filesArrayBuilder);
             }
@@ -607,6 +621,65 @@ public class DocumentResource extends BaseResource {
         );
     }
 
+    /**
+     * Suggest search terms.
+     *
+     * @api {get} /document/suggest Suggest search terms
+     * @apiDescription The lookup duration is returned in the Server-Timing header, the lookups metrics in GET /app
+     * @apiName GetDocumentSuggest
+     * @apiGroup Document
+     * @apiParam {String} search Search query
+     * @apiParam {Number} [limit] Maximum number of suggestions, between 1 and 100
+     * @apiSuccess {String[]} suggestions List of search suggestions
+     * @apiError (client) ForbiddenError Access denied
+     * @apiError (client) ValidationError Validation error
+     * @apiError (server) SearchError Error suggesting search terms
+     * @apiPermission user
+     * @apiVersion 1.12.0
+     *
+     * @param search Search query
+     * @param limitStr Maximum number of suggestions
+     * @return Response
+     */
+    @GET
+    @Path("suggest")
+    public Response suggest(
+            @QueryParam("search") String search,
+            @QueryParam("limit") String limitStr) {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
+        }
+
+        // Validate input data, the limit is capped like a page size
+        int limit = 10;
+        if (limitStr != null) {
+            limit = ValidationUtil.validateInteger(limitStr, "limit");
+            if (limit < 1) {
+                throw new ClientException("ValidationError", "limit must be positive");
+            }
+            limit = Math.min(limit, 100);
+        }
+
+        long start = System.nanoTime();
+        List<String> suggestionList;
+        try {
+            suggestionList = AppContext.getInstance().getIndexingHandler().suggest(search, limit);
+        } catch (Exception e) {
+            throw new ServerException("SearchError", "Error suggesting search terms", e);
+        }
+        double duration = (System.nanoTime() - start) / 1_000_000d;
+
+        JsonArrayBuilder suggestions = Json.createArrayBuilder();
+        for (String suggestion : suggestionList) {
+            suggestions.add(suggestion);
+        }
+        JsonObjectBuilder response = Json.createObjectBuilder()
+                .add("suggestions", suggestions);
+        return Response.ok().entity(response.build())
+                .header("Server-Timing", String.format(Locale.ENGLISH, "suggest;dur=%.2f", duration))
+                .build();
+    }
+
     /**
      * Creates a new document.
      *
@@ -954,7 +1027,7 @@ public class DocumentResource extends BaseResource {
         // Add files to the document
         try {
             for (EmailUtil.FileContent fileContent : mailContent.getFileContentList()) {
-                FileUtil.createFile(fileContent.getName(), null, fileContent.getFile(), fileContent.getSize(),
+                FileUtil.createFile(fileContent.getName(), null, fileContent.getFile(),
                         document.getLanguage(), principal.getId(), document.getId());
             }
         } catch (IOException e) {
@@ -17,7 +17,9 @@ import com.sismics.docs.core.model.jpa.File;
 import com.sismics.docs.core.model.jpa.User;
 import com.sismics.docs.core.util.DirectoryUtil;
 import com.sismics.docs.core.util.EncryptionUtil;
+import com.sismics.docs.core.util.FileUpload;
 import com.sismics.docs.core.util.FileUtil;
+import com.sismics.docs.core.util.TransactionUtil;
 import com.sismics.rest.exception.ClientException;
 import com.sismics.rest.exception.ForbiddenClientException;
 import com.sismics.rest.exception.ServerException;
@@ -46,11 +48,11 @@ import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.text.MessageFormat;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * File REST resources.
@@ -112,28 +114,30 @@ public class FileResource extends BaseResource {
             }
         }
         
-        // Keep unencrypted data temporary on disk
+        // Receive the file in a single pass, encrypted to the storage and kept unencrypted temporary on disk
         String name = fileBodyPart.getContentDisposition() != null ?
                 URLDecoder.decode(fileBodyPart.getContentDisposition().getFileName(), StandardCharsets.UTF_8) : null;
-        java.nio.file.Path unencryptedFile;
-        long fileSize;
+        FileUpload fileUpload;
         try {
-            unencryptedFile = AppContext.getInstance().getFileService().createTemporaryFile(name);
-            Files.copy(fileBodyPart.getValueAs(InputStream.class), unencryptedFile, StandardCopyOption.REPLACE_EXISTING);
-            fileSize = Files.size(unencryptedFile);
+            fileUpload = FileUpload.receive(fileBodyPart.getValueAs(InputStream.class), name, principal.getId());
         } catch (IOException e) {
+            if ("QuotaReached".equals(e.getMessage())) {
+                throw new ClientException(e.getMessage(), e.getMessage(), e);
+            }
             throw new ServerException("StreamError", "Error reading the input file", e);
+        } catch (Exception e) {
+            throw new ServerException("FileError", "Error adding a file", e);
         }
 
-        try {
-            String fileId = FileUtil.createFile(name, previousFileId, unencryptedFile, fileSize, documentDto == null ?
+        try (fileUpload) {
+            String fileId = FileUtil.createFile(name, previousFileId, fileUpload, documentDto == null ?
                     null : documentDto.getLanguage(), principal.getId(), documentId);
 
             // Always return OK
             JsonObjectBuilder response = Json.createObjectBuilder()
                     .add("status", "ok")
                     .add("id", fileId)
-                    .add("size", fileSize);
+                    .add("size", fileUpload.getSize());
             return Response.ok().entity(response.build()).build();
         } catch (IOException e) {
             throw new ClientException(e.getMessage(), e.getMessage(), e);
@@ -200,7 +204,7 @@ public class FileResource extends BaseResource {
         try {
             java.nio.file.Path storedFile = DirectoryUtil.getStorageDirectory().resolve(id);
             java.nio.file.Path unencryptedFile = EncryptionUtil.decryptFile(storedFile, user.getPrivateKey());
-            FileUtil.startProcessingFile(id);
+            FileUtil.startProcessingFile(id, documentDto.getLanguage(), false);
             FileUpdatedAsyncEvent fileUpdatedAsyncEvent = new FileUpdatedAsyncEvent();
             fileUpdatedAsyncEvent.setUserId(principal.getId());
             fileUpdatedAsyncEvent.setLanguage(documentDto.getLanguage());
@@ -308,7 +312,7 @@ public class FileResource extends BaseResource {
         try {
             java.nio.file.Path storedFile = DirectoryUtil.getStorageDirectory().resolve(id);
             java.nio.file.Path unencryptedFile = EncryptionUtil.decryptFile(storedFile, user.getPrivateKey());
-            FileUtil.startProcessingFile(id);
+            FileUtil.startProcessingFile(id, documentDto.getLanguage(), false);
             FileUpdatedAsyncEvent event = new FileUpdatedAsyncEvent();
             event.setUserId(principal.getId());
             event.setLanguage(documentDto.getLanguage());
@@ -430,8 +434,10 @@ public class FileResource extends BaseResource {
 
         FileDao fileDao = new FileDao();
         JsonArrayBuilder files = Json.createArrayBuilder();
-        for (File fileDb : fileDao.getByDocumentId(principal.getId(), documentId)) {
-            files.add(RestUtil.fileToJsonObjectBuilder(fileDb));
+        List<File> fileList = fileDao.getByDocumentId(principal.getId(), documentId);
+        Set<String> processingFileIdSet = FileUtil.getProcessingFileIdSet(fileList.stream().map(File::getId).collect(Collectors.toList()));
+        for (File fileDb : fileList) {
+            files.add(RestUtil.fileToJsonObjectBuilder(fileDb, processingFileIdSet.contains(fileDb.getId())));
         }
         JsonObjectBuilder response = Json.createObjectBuilder()
                 .add("files", files);
@@ -551,8 +557,11 @@ public class FileResource extends BaseResource {
      * @apiParam {String} id File ID
      * @apiParam {String} share Share ID
      * @apiParam {String="web","thumb","content"} [size] Size variation
+     * @apiHeader {String} [Range] Single byte range to return
+     * @apiHeader {String} [If-Range] Only honor the range if the entity tag matches
      * @apiSuccess {Object} file The file data is the whole response
      * @apiError (client) SizeError Size must be web or thumb
+     * @apiError (client) RangeNotSatisfiable The requested range is not satisfiable
      * @apiError (client) ForbiddenError Access denied or document not visible
      * @apiError (client) NotFound File not found
      * @apiError (server) ServiceUnavailable Error reading the file
@@ -560,6 +569,10 @@ public class FileResource extends BaseResource {
      * @apiVersion 1.5.0
      *
      * @param fileId File ID
+     * @param shareId Share ID
+     * @param size Size variation
+     * @param range Range header
+     * @param ifRange If-Range header
      * @return Response
      */
     @GET
@@ -568,7 +581,9 @@ public class FileResource extends BaseResource {
     public Response data(
             @PathParam("id") final String fileId,
             @QueryParam("share") String shareId,
-            @QueryParam("size") String size) {
+            @QueryParam("size") String size,
+            @HeaderParam("Range") String range,
+            @HeaderParam("If-Range") String ifRange) {
         authenticate();
         
         if (size != null && !Lists.newArrayList("web", "thumb", "content").contains(size)) {
@@ -585,7 +600,7 @@ public class FileResource extends BaseResource {
         boolean decrypt;
         if (size != null) {
             if (size.equals("content")) {
-                return Response.ok(Strings.nullToEmpty(file.getContent()))
+                return Response.ok(Strings.nullToEmpty(new FileDao().getContent(fileId)))
                         .header(HttpHeaders.CONTENT_TYPE, "text/plain; charset=utf-8")
                         .build();
             }
@@ -614,15 +629,44 @@ public class FileResource extends BaseResource {
         // A file is always encrypted by the creator of it
         User user = userDao.getById(file.getUserId());
         
+        // Resolve the requested byte range, the CTR cipher keeps the plaintext length
+        long length;
+        String entityTag;
+        try {
+            length = Files.size(storedFile);
+            entityTag = "\"" + fileId + (size == null ? "" : "_" + size) + "-" + Files.getLastModifiedTime(storedFile).toMillis() + "\"";
+        } catch (IOException e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).build();
+        }
+        long[] byteRange = null;
+        if (ifRange == null || ifRange.equals(entityTag)) {
+            byteRange = HttpUtil.parseRange(range, length);
+        }
+        if (byteRange != null && byteRange.length == 0) {
+            return Response.status(Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header("Content-Range", "bytes */" + length)
+                    .build();
+        }
+        final long start = byteRange == null ? 0 : byteRange[0];
+        final long contentLength = byteRange == null ? length : byteRange[1] - byteRange[0] + 1;
+
+        // The database is not needed to stream the file, release it for slow clients
+        TransactionUtil.commitAndClose();
+
         // Write the decrypted file to the output
         try {
             InputStream fileInputStream = Files.newInputStream(storedFile);
-            final InputStream responseInputStream = decrypt ?
-                    EncryptionUtil.decryptInputStream(fileInputStream, user.getPrivateKey()) : fileInputStream;
-                    
+            final InputStream responseInputStream;
+            if (decrypt) {
+                responseInputStream = EncryptionUtil.decryptInputStream(fileInputStream, user.getPrivateKey(), start);
+            } else {
+                ByteStreams.skipFully(fileInputStream, start);
+                responseInputStream = fileInputStream;
+            }
+
             stream = outputStream -> {
                 try {
-                    ByteStreams.copy(responseInputStream, outputStream);
+                    ByteStreams.copy(ByteStreams.limit(responseInputStream, contentLength), outputStream);
                 } finally {
                     try {
                         responseInputStream.close();
@@ -638,7 +682,14 @@ public class FileResource extends BaseResource {
 
         Response.ResponseBuilder builder = Response.ok(stream)
                 .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + file.getFullName("data") + "\"")
-                .header(HttpHeaders.CONTENT_TYPE, mimeType);
+                .header(HttpHeaders.CONTENT_TYPE, mimeType)
+                .header(HttpHeaders.CONTENT_LENGTH, contentLength)
+                .header(HttpHeaders.ETAG, entityTag)
+                .header("Accept-Ranges", "bytes");
+        if (byteRange != null) {
+            builder.status(Status.PARTIAL_CONTENT)
+                    .header("Content-Range", "bytes " + byteRange[0] + "-" + byteRange[1] + "/" + length);
+        }
         if (decrypt) {
             // Cache real files
             builder.header(HttpHeaders.CACHE_CONTROL, "private")
@@ -721,33 +772,19 @@ public class FileResource extends BaseResource {
      * Sent the content of a list of files.
      */
     private Response sendZippedFiles(String zipFileName, List<File> fileList) {
-        final UserDao userDao = new UserDao();
+        // Files are encrypted by the creator of them, store their private key to decrypt them
+        Map<String, String> privateKeyMap = new UserDao().getPrivateKeys(fileList.stream()
+                .map(File::getUserId)
+                .collect(Collectors.toSet()));
+        for (File file : fileList) {
+            file.setPrivateKey(privateKeyMap.get(file.getUserId()));
+        }
+
+        // The database is not needed to stream the files, release it for slow clients
+        TransactionUtil.commitAndClose();
 
         // Create the ZIP stream
-        StreamingOutput stream = outputStream -> {
-            try (ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
-                // Add each file to the ZIP stream
-                int index = 0;
-                for (File file : fileList) {
-                    java.nio.file.Path storedfile = DirectoryUtil.getStorageDirectory().resolve(file.getId());
-                    InputStream fileInputStream = Files.newInputStream(storedfile);
-
-                    // Add the decrypted file to the ZIP stream
-                    // Files are encrypted by the creator of them
-                    User user = userDao.getById(file.getUserId());
-                    try (InputStream decryptedStream = EncryptionUtil.decryptInputStream(fileInputStream, user.getPrivateKey())) {
-                        ZipEntry zipEntry = new ZipEntry(index + "-" + file.getFullName(Integer.toString(index)));
-                        zipOutputStream.putNextEntry(zipEntry);
-                        ByteStreams.copy(decryptedStream, zipOutputStream);
-                        zipOutputStream.closeEntry();
-                    } catch (Exception e) {
-                        throw new WebApplicationException(e);
-                    }
-                    index++;
-                }
-            }
-            outputStream.close();
-        };
+        StreamingOutput stream = outputStream -> AppContext.getInstance().getZipExporter().export(fileList, outputStream);
         
         // Write to the output
         return Response.ok(stream)
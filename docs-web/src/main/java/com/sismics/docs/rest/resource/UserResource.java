@@ -15,6 +15,7 @@ import com.sismics.docs.core.event.FileDeletedAsyncEvent;
 import com.sismics.docs.core.event.PasswordLostEvent;
 import com.sismics.docs.core.model.context.AppContext;
 import com.sismics.docs.core.model.jpa.*;
+import com.sismics.docs.core.service.LastConnectionService;
 import com.sismics.docs.core.util.ConfigUtil;
 import com.sismics.docs.core.util.RoutingUtil;
 import com.sismics.docs.core.util.authentication.AuthenticationUtil;
@@ -567,6 +568,7 @@ public class UserResource extends BaseResource {
      * @apiSuccess {String} email E-mail
      * @apiSuccess {Number} storage_quota Storage quota (in bytes)
      * @apiSuccess {Number} storage_current Quota used (in bytes)
+     * @apiSuccess {Number} storage_saved Storage saved by storing identical files once (in bytes)
      * @apiSuccess {Boolean} totp_enabled True if TOTP authentication is enabled
      * @apiSuccess {String[]} base_functions Base functions
      * @apiSuccess {String[]} groups Groups
@@ -589,9 +591,7 @@ public class UserResource extends BaseResource {
             }
         } else {
             // Update the last connection date
-            String authToken = getAuthToken();
-            AuthenticationTokenDao authenticationTokenDao = new AuthenticationTokenDao();
-            authenticationTokenDao.updateLastConnectionDate(authToken);
+            AppContext.getInstance().getLastConnectionService().touch(getAuthToken());
             
             // Build the response
             response.add("anonymous", false);
@@ -606,6 +606,7 @@ public class UserResource extends BaseResource {
                     .add("email", user.getEmail())
                     .add("storage_quota", user.getStorageQuota())
                     .add("storage_current", user.getStorageCurrent())
+                    .add("storage_saved", new FileDao().getStorageSaved(user.getId()))
                     .add("totp_enabled", user.getTotpKey() != null)
                     .add("onboarding", user.isOnboarding());
 
@@ -641,6 +642,7 @@ public class UserResource extends BaseResource {
      * @apiSuccess {Boolean} totp_enabled True if TOTP authentication is enabled
      * @apiSuccess {Number} storage_quota Storage quota (in bytes)
      * @apiSuccess {Number} storage_current Quota used (in bytes)
+     * @apiSuccess {Number} storage_saved Storage saved by storing identical files once (in bytes)
      * @apiSuccess {String[]} groups Groups
      * @apiSuccess {Boolean} disabled True if the user is disabled
      * @apiError (client) ForbiddenError Access denied
@@ -682,6 +684,7 @@ public class UserResource extends BaseResource {
                 .add("totp_enabled", user.getTotpKey() != null)
                 .add("storage_quota", user.getStorageQuota())
                 .add("storage_current", user.getStorageCurrent())
+                .add("storage_saved", new FileDao().getStorageSaved(user.getId()))
                 .add("disabled", user.getDisableDate() != null);
         return Response.ok().entity(response.build()).build();
     }
@@ -789,13 +792,18 @@ public class UserResource extends BaseResource {
         // The guest user cannot see other sessions
         if (!principal.isGuest()) {
             AuthenticationTokenDao authenticationTokenDao = new AuthenticationTokenDao();
+            LastConnectionService lastConnectionService = AppContext.getInstance().getLastConnectionService();
             for (AuthenticationToken authenticationToken : authenticationTokenDao.getByUserId(principal.getId())) {
                 JsonObjectBuilder session = Json.createObjectBuilder()
                         .add("create_date", authenticationToken.getCreationDate().getTime())
                         .add("ip", JsonUtil.nullable(authenticationToken.getIp()))
                         .add("user_agent", JsonUtil.nullable(authenticationToken.getUserAgent()));
-                if (authenticationToken.getLastConnectionDate() != null) {
-                    session.add("last_connection_date", authenticationToken.getLastConnectionDate().getTime());
+                Date lastConnectionDate = lastConnectionService.getPendingLastConnectionDate(authenticationToken.getId());
+                if (lastConnectionDate == null) {
+                    lastConnectionDate = authenticationToken.getLastConnectionDate();
+                }
+                if (lastConnectionDate != null) {
+                    session.add("last_connection_date", lastConnectionDate.getTime());
                 }
                 session.add("current", authenticationToken.getId().equals(authToken));
                 sessions.add(session);
@@ -1042,7 +1050,7 @@ public class UserResource extends BaseResource {
         PasswordLostEvent passwordLostEvent = new PasswordLostEvent();
         passwordLostEvent.setUser(user);
         passwordLostEvent.setPasswordRecovery(passwordRecovery);
-        AppContext.getInstance().getMailEventBus().post(passwordLostEvent);
+        AppContext.getInstance().postAsyncEvent(passwordLostEvent);
 
         // Always return OK
         return response;
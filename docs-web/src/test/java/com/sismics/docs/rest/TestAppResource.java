@@ -1,12 +1,18 @@
 package com.sismics.docs.rest;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.io.Resources;
 import com.icegreen.greenmail.util.GreenMail;
 import com.icegreen.greenmail.util.GreenMailUtil;
 import com.icegreen.greenmail.util.ServerSetup;
 import com.sismics.docs.core.model.context.AppContext;
+import com.sismics.docs.core.util.DirectoryUtil;
+import com.sismics.docs.core.util.FileUpload;
 import com.sismics.util.filter.TokenBasedSecurityFilter;
 import jakarta.json.JsonArray;
 import jakarta.json.JsonObject;
@@ -43,10 +49,17 @@ public class TestAppResource extends BaseJerseyTest {
     private static boolean configLdapChanged = false;
 
     @Test
-    public void testAppResource() {
+    public void testAppResource() throws Exception {
         // Login admin
         String adminToken = adminToken();
 
+        // Suggest search terms, the lookup is counted in the application info
+        target().path("/document/suggest")
+                .queryParam("search", "docu")
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .get(JsonObject.class);
+
         // Check the application info
         JsonObject json = target().path("/app").request()
                 .get(JsonObject.class);
@@ -57,6 +70,9 @@ public class TestAppResource extends BaseJerseyTest {
         Long totalMemory = json.getJsonNumber("total_memory").longValue();
         Assert.assertTrue(totalMemory > 0 && totalMemory > freeMemory);
         Assert.assertEquals(0, json.getJsonNumber("queued_tasks").intValue());
+        Assert.assertEquals(5, json.getJsonArray("event_queues").size());
+        Assert.assertTrue(json.getJsonObject("file_processing").getJsonNumber("pending").longValue() >= 0);
+        Assert.assertTrue(json.getJsonObject("suggest").getJsonNumber("lookup_count").longValue() >= 1);
         Assert.assertFalse(json.getBoolean("guest_login"));
         Assert.assertFalse(json.getBoolean("ocr_enabled"));
         Assert.assertEquals("eng", json.getString("default_language"));
@@ -69,11 +85,44 @@ public class TestAppResource extends BaseJerseyTest {
                 .post(Entity.form(new Form()));
         Assert.assertEquals(Status.OK, Status.fromStatusCode(response.getStatus()));
 
-        // Clean storage
+        // Check the rebuild progress, the rebuild is synchronous in tests
+        json = target().path("/app/batch/reindex").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .get(JsonObject.class);
+        Assert.assertFalse(json.getBoolean("running"));
+        Assert.assertEquals(json.getJsonNumber("total").longValue(), json.getJsonNumber("processed").longValue());
+        Assert.assertFalse(json.isNull("start_date"));
+
+        // Add a file with an extracted content, then delete it
+        String documentId = clientUtil.createDocument(adminToken);
+        String fileId = clientUtil.addFileToDocument(FILE_DOCUMENT_TXT, adminToken, documentId);
+        response = target().path("/file/" + fileId + "/data")
+                .queryParam("size", "content")
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .get();
+        Assert.assertEquals(Status.OK, Status.fromStatusCode(response.getStatus()));
+        response = target().path("/file/" + fileId).request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .delete();
+        Assert.assertEquals(Status.OK, Status.fromStatusCode(response.getStatus()));
+
+        // Add an upload in progress and an upload abandoned for 2 days
+        java.nio.file.Path pendingUpload = DirectoryUtil.getStorageDirectory().resolve(UUID.randomUUID() + FileUpload.UPLOAD_SUFFIX);
+        java.nio.file.Path abandonedUpload = DirectoryUtil.getStorageDirectory().resolve(UUID.randomUUID() + FileUpload.UPLOAD_SUFFIX);
+        Files.write(pendingUpload, new byte[10]);
+        Files.write(abandonedUpload, new byte[10]);
+        Files.setLastModifiedTime(abandonedUpload, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2)));
+
+        // Clean storage, the deleted file is removed with its content
         response = target().path("/app/batch/clean_storage").request()
                 .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
                 .post(Entity.form(new Form()));
         Assert.assertEquals(Status.OK, Status.fromStatusCode(response.getStatus()));
+        Assert.assertFalse(Files.exists(DirectoryUtil.getStorageDirectory().resolve(fileId)));
+        Assert.assertTrue(Files.exists(pendingUpload));
+        Assert.assertFalse(Files.exists(abandonedUpload));
+        Files.delete(pendingUpload);
 
         // Change the default language
         response = target().path("/app/config").request()
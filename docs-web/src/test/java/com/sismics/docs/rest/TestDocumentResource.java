@@ -3,10 +3,14 @@ package com.sismics.docs.rest;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Resources;
 import com.sismics.docs.core.util.DirectoryUtil;
+import com.sismics.util.context.ThreadLocalContext;
 import com.sismics.util.filter.TokenBasedSecurityFilter;
+import com.sismics.util.jpa.EMF;
 import org.glassfish.jersey.media.multipart.FormDataMultiPart;
 import org.glassfish.jersey.media.multipart.MultiPartFeature;
 import org.glassfish.jersey.media.multipart.file.StreamDataBodyPart;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.joda.time.format.DateTimeFormat;
 import org.junit.Assert;
 import org.junit.Test;
@@ -20,6 +24,8 @@ import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
 import java.io.InputStream;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Exhaustive test of the document resource.
@@ -189,6 +195,32 @@ public class TestDocumentResource extends BaseJerseyTest {
         String suggestion = json.getJsonArray("suggestions").getString(0);
         Assert.assertEquals("document", suggestion);
 
+        // Suggest search terms
+        json = target().path("/document/suggest")
+                .queryParam("search", "docu")
+                .queryParam("limit", 1)
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, document1Token)
+                .get(JsonObject.class);
+        Assert.assertEquals(1, json.getJsonArray("suggestions").size());
+        Assert.assertEquals("document", json.getJsonArray("suggestions").getString(0));
+
+        // The lookups are counted in the application metrics
+        json = target().path("/app").request()
+                .get(JsonObject.class);
+        Assert.assertTrue(json.getJsonObject("suggest").getJsonNumber("lookup_count").longValue() >= 2);
+
+        // The suggestion limit must be a positive number
+        for (String limit : new String[] { "0", "-1", "ten" }) {
+            Response suggestResponse = target().path("/document/suggest")
+                    .queryParam("search", "docu")
+                    .queryParam("limit", limit)
+                    .request()
+                    .cookie(TokenBasedSecurityFilter.COOKIE_NAME, document1Token)
+                    .get();
+            Assert.assertEquals(Status.BAD_REQUEST, Status.fromStatusCode(suggestResponse.getStatus()));
+        }
+
         // Search documents
         Assert.assertEquals(1, searchDocuments("full:uranium full:einstein", document1Token));
         Assert.assertEquals(2, searchDocuments("tit*", document1Token));
@@ -758,6 +790,125 @@ public class TestDocumentResource extends BaseJerseyTest {
         Assert.assertTrue(pdfBytes.length > 0);
     }
 
+    /**
+     * Test the number of queries of a document listing.
+     */
+    @Test
+    public void testListQueryCount() {
+        // Login document_list
+        clientUtil.createUser("document_list");
+        String documentListToken = clientUtil.login("document_list");
+
+        // Create 2 tags
+        String[] tagIds = new String[2];
+        for (int i = 0; i < tagIds.length; i++) {
+            JsonObject json = target().path("/tag").request()
+                    .cookie(TokenBasedSecurityFilter.COOKIE_NAME, documentListToken)
+                    .put(Entity.form(new Form()
+                            .param("name", "ListTag" + i)
+                            .param("color", "#ff0000")), JsonObject.class);
+            tagIds[i] = json.getString("id");
+        }
+
+        // Create 30 tagged documents
+        int documentCount = 30;
+        for (int i = 0; i < documentCount; i++) {
+            target().path("/document").request()
+                    .cookie(TokenBasedSecurityFilter.COOKIE_NAME, documentListToken)
+                    .put(Entity.form(new Form()
+                            .param("title", "List document " + i)
+                            .param("tags", tagIds[0])
+                            .param("tags", tagIds[1])
+                            .param("language", "eng")), JsonObject.class);
+        }
+
+        // Warm up the caches with a first listing
+        target().path("/document/list")
+                .queryParam("files", "true")
+                .request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, documentListToken)
+                .get(JsonObject.class);
+
+        // List pages of growing size, the number of queries must not depend on the page size
+        Statistics statistics = EMF.get().unwrap(SessionFactory.class).getStatistics();
+        for (String files : new String[] { "false", "true" }) {
+            Long firstQueryCount = null;
+            for (int limit : new int[] { 1, 10, documentCount }) {
+                long queryCount = statistics.getPrepareStatementCount();
+                JsonObject json = target().path("/document/list")
+                        .queryParam("limit", limit)
+                        .queryParam("files", files)
+                        .request()
+                        .cookie(TokenBasedSecurityFilter.COOKIE_NAME, documentListToken)
+                        .get(JsonObject.class);
+                queryCount = statistics.getPrepareStatementCount() - queryCount;
+
+                JsonArray documents = json.getJsonArray("documents");
+                Assert.assertEquals(limit, documents.size());
+                for (int i = 0; i < documents.size(); i++) {
+                    JsonArray tags = documents.getJsonObject(i).getJsonArray("tags");
+                    Assert.assertEquals(2, tags.size());
+                    Assert.assertEquals("ListTag0", tags.getJsonObject(0).getString("name"));
+                    Assert.assertEquals("ListTag1", tags.getJsonObject(1).getString("name"));
+                }
+                if (firstQueryCount == null) {
+                    firstQueryCount = queryCount;
+                }
+                Assert.assertEquals(firstQueryCount.longValue(), queryCount);
+            }
+        }
+    }
+
+    /**
+     * Test the number of queries of requests when the persistence context is kept.
+     */
+    @Test
+    public void testKeepPersistenceContextQueryCount() {
+        // Login document_context
+        clientUtil.createUser("document_context");
+        String documentContextToken = clientUtil.login("document_context");
+        String documentId = clientUtil.createDocument(documentContextToken);
+
+        // Compare the queries of the same requests with and without the persistence context,
+        // each mode is run once to warm up the caches then measured twice
+        Statistics statistics = EMF.get().unwrap(SessionFactory.class).getStatistics();
+        Map<Boolean, Long> queryCountByMode = new HashMap<>();
+        try {
+            for (int run = 0; run < 3; run++) {
+                for (boolean keepPersistenceContext : new boolean[] { false, true }) {
+                    ThreadLocalContext.setDefaultKeepPersistenceContext(keepPersistenceContext);
+                    long queryCount = statistics.getPrepareStatementCount();
+                    target().path("/document/" + documentId).request()
+                            .cookie(TokenBasedSecurityFilter.COOKIE_NAME, documentContextToken)
+                            .get(JsonObject.class);
+                    target().path("/document/list").request()
+                            .cookie(TokenBasedSecurityFilter.COOKIE_NAME, documentContextToken)
+                            .get(JsonObject.class);
+                    target().path("/document/" + documentId).request()
+                            .cookie(TokenBasedSecurityFilter.COOKIE_NAME, documentContextToken)
+                            .post(Entity.form(new Form()
+                                    .param("title", "Persistence context " + keepPersistenceContext)
+                                    .param("language", "eng")), JsonObject.class);
+                    queryCount = statistics.getPrepareStatementCount() - queryCount;
+                    if (run == 1) {
+                        queryCountByMode.put(keepPersistenceContext, queryCount);
+                    } else if (run == 2) {
+                        Assert.assertEquals(queryCountByMode.get(keepPersistenceContext).longValue(), queryCount);
+                    }
+                }
+            }
+        } finally {
+            ThreadLocalContext.setDefaultKeepPersistenceContext(false);
+        }
+
+        // The document is updated in both modes, with no more queries when the persistence context is kept
+        JsonObject json = target().path("/document/" + documentId).request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, documentContextToken)
+                .get(JsonObject.class);
+        Assert.assertEquals("Persistence context true", json.getString("title"));
+        Assert.assertTrue(queryCountByMode.get(true) <= queryCountByMode.get(false));
+    }
+
     /**
      * Test EML import.
      *
@@ -3,12 +3,15 @@ package com.sismics.docs.rest;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Resources;
 import com.sismics.docs.core.util.DirectoryUtil;
+import com.sismics.util.jpa.EMF;
 import com.sismics.util.filter.TokenBasedSecurityFilter;
 import com.sismics.util.mime.MimeType;
 import com.sismics.util.mime.MimeTypeUtil;
 import org.glassfish.jersey.media.multipart.FormDataMultiPart;
 import org.glassfish.jersey.media.multipart.MultiPartFeature;
 import org.glassfish.jersey.media.multipart.file.StreamDataBodyPart;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -16,13 +19,20 @@ import jakarta.json.JsonArray;
 import jakarta.json.JsonObject;
 import jakarta.ws.rs.client.Entity;
 import jakarta.ws.rs.core.Form;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import java.util.Random;
 import java.util.zip.ZipInputStream;
 
 /**
@@ -58,6 +68,44 @@ public class TestFileResource extends BaseJerseyTest {
         InputStream is = (InputStream) response.getEntity();
         byte[] fileBytes = ByteStreams.toByteArray(is);
         Assert.assertTrue(fileBytes.length > 0);
+        String entityTag = response.getHeaderString(HttpHeaders.ETAG);
+        Assert.assertNotNull(entityTag);
+
+        // Get a range of the file data
+        response = target().path("/file/" + file1Id + "/data").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, file1Token)
+                .header("Range", "bytes=1000-1099")
+                .get();
+        Assert.assertEquals(Status.PARTIAL_CONTENT, Status.fromStatusCode(response.getStatus()));
+        Assert.assertEquals("bytes 1000-1099/" + fileBytes.length, response.getHeaderString("Content-Range"));
+        byte[] rangeBytes = ByteStreams.toByteArray((InputStream) response.getEntity());
+        Assert.assertArrayEquals(Arrays.copyOfRange(fileBytes, 1000, 1100), rangeBytes);
+
+        // Get the end of the file data with a matching If-Range
+        response = target().path("/file/" + file1Id + "/data").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, file1Token)
+                .header("Range", "bytes=-10")
+                .header("If-Range", entityTag)
+                .get();
+        Assert.assertEquals(Status.PARTIAL_CONTENT, Status.fromStatusCode(response.getStatus()));
+        rangeBytes = ByteStreams.toByteArray((InputStream) response.getEntity());
+        Assert.assertArrayEquals(Arrays.copyOfRange(fileBytes, fileBytes.length - 10, fileBytes.length), rangeBytes);
+
+        // A stale If-Range returns the whole file
+        response = target().path("/file/" + file1Id + "/data").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, file1Token)
+                .header("Range", "bytes=1000-1099")
+                .header("If-Range", "\"stale\"")
+                .get();
+        Assert.assertEquals(Status.OK, Status.fromStatusCode(response.getStatus()));
+        Assert.assertEquals(fileBytes.length, ByteStreams.toByteArray((InputStream) response.getEntity()).length);
+
+        // An unsatisfiable range is rejected
+        response = target().path("/file/" + file1Id + "/data").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, file1Token)
+                .header("Range", "bytes=" + fileBytes.length + "-")
+                .get();
+        Assert.assertEquals(Status.REQUESTED_RANGE_NOT_SATISFIABLE, Status.fromStatusCode(response.getStatus()));
         
         // Get the thumbnail data
         response = target().path("/file/" + file1Id + "/data")
@@ -400,6 +448,58 @@ public class TestFileResource extends BaseJerseyTest {
         Assert.assertEquals("ok", json.getString("status"));
     }
     
+    /**
+     * Test that concurrent downloads don't hold database connections.
+     *
+     * @throws Exception e
+     */
+    @Test
+    public void testConcurrentDownloads() throws Exception {
+        String adminToken = adminToken();
+
+        // Add a file large enough to block the server while the clients don't read
+        byte[] content = new byte[16 * 1024 * 1024];
+        new Random().nextBytes(content);
+        String fileId;
+        try (FormDataMultiPart multiPart = new FormDataMultiPart()) {
+            multiPart.bodyPart(new StreamDataBodyPart("file", new ByteArrayInputStream(content), "large.bin"));
+            JsonObject json = target()
+                    .register(MultiPartFeature.class)
+                    .path("/file").request()
+                    .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                    .put(Entity.entity(multiPart, MediaType.MULTIPART_FORM_DATA_TYPE), JsonObject.class);
+            fileId = json.getString("id");
+        }
+
+        // Start downloads and stop reading them, like slow clients
+        Statistics statistics = EMF.get().unwrap(SessionFactory.class).getStatistics();
+        int downloadCount = Math.max(2, Runtime.getRuntime().availableProcessors());
+        List<HttpURLConnection> connectionList = new ArrayList<>();
+        try {
+            for (int i = 0; i < downloadCount; i++) {
+                HttpURLConnection connection = (HttpURLConnection) target().path("/file/" + fileId + "/data")
+                        .getUri().toURL().openConnection();
+                connection.setRequestProperty("Cookie", TokenBasedSecurityFilter.COOKIE_NAME + "=" + adminToken);
+                connectionList.add(connection);
+                Assert.assertEquals(Status.OK.getStatusCode(), connection.getResponseCode());
+                Assert.assertEquals(content[0], (byte) connection.getInputStream().read());
+            }
+
+            // The database sessions are released while the files are streamed
+            long openSessionCount = statistics.getSessionOpenCount() - statistics.getSessionCloseCount();
+            Assert.assertTrue(openSessionCount < downloadCount);
+
+            // The downloads complete
+            for (HttpURLConnection connection : connectionList) {
+                Assert.assertEquals(content.length - 1, ByteStreams.exhaust(connection.getInputStream()));
+            }
+        } finally {
+            for (HttpURLConnection connection : connectionList) {
+                connection.disconnect();
+            }
+        }
+    }
+
     /**
      * Test user quota.
      * 
@@ -428,6 +528,9 @@ public class TestFileResource extends BaseJerseyTest {
         
         // Check current quota
         Assert.assertEquals(FILE_EINSTEIN_ROOSEVELT_LETTER_PNG_SIZE * 3, getUserQuota(fileQuotaToken));
+
+        // Identical files are stored once
+        Assert.assertEquals(FILE_EINSTEIN_ROOSEVELT_LETTER_PNG_SIZE * 2, getUserStorageSaved(fileQuotaToken));
         
         // Add a file (292641 bytes large)
         try {
@@ -444,6 +547,7 @@ public class TestFileResource extends BaseJerseyTest {
         
         // Check current quota
         Assert.assertEquals(FILE_EINSTEIN_ROOSEVELT_LETTER_PNG_SIZE * 2, getUserQuota(fileQuotaToken));
+        Assert.assertEquals(FILE_EINSTEIN_ROOSEVELT_LETTER_PNG_SIZE, getUserStorageSaved(fileQuotaToken));
 
         // Create a document
         long create1Date = new Date().getTime();
@@ -477,4 +581,10 @@ public class TestFileResource extends BaseJerseyTest {
                 .cookie(TokenBasedSecurityFilter.COOKIE_NAME, userToken)
                 .get(JsonObject.class).getJsonNumber("storage_current").longValue();
     }
+
+    private long getUserStorageSaved(String userToken) {
+        return target().path("/user").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, userToken)
+                .get(JsonObject.class).getJsonNumber("storage_saved").longValue();
+    }
 }
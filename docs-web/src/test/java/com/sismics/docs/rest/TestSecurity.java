@@ -81,6 +81,130 @@ public class TestSecurity extends BaseJerseyTest {
                 .delete();
     }
 
+    /**
+     * Test of the principal cache.
+     */
+    @Test
+    public void testPrincipalCache() {
+        // Login principal_cache
+        clientUtil.createUser("principal_cache");
+        String principalCacheToken = clientUtil.login("principal_cache");
+
+        // The principal is served from the cache after the first request
+        long hitCount = target().path("/app").request()
+                .get(JsonObject.class).getJsonObject("principal_cache").getJsonNumber("hit_count").longValue();
+        for (int i = 0; i < 3; i++) {
+            JsonObject json = target().path("/user").request()
+                    .cookie(TokenBasedSecurityFilter.COOKIE_NAME, principalCacheToken)
+                    .get(JsonObject.class);
+            Assert.assertFalse(json.getBoolean("anonymous"));
+        }
+        JsonObject json = target().path("/app").request()
+                .get(JsonObject.class).getJsonObject("principal_cache");
+        Assert.assertTrue(json.getJsonNumber("hit_count").longValue() >= hitCount + 2);
+        Assert.assertTrue(json.getJsonNumber("hit_rate").doubleValue() > 0);
+    }
+
+    /**
+     * Test of the principal cache invalidation on group membership change.
+     */
+    @Test
+    public void testPrincipalCacheGroupMembership() {
+        // Login principal_cache_group
+        clientUtil.createUser("principal_cache_group");
+        String principalCacheToken = clientUtil.login("principal_cache_group");
+        String adminToken = adminToken();
+
+        // Share a document with a group
+        clientUtil.createGroup("principalcachegroup");
+        String documentId = clientUtil.createDocument(adminToken);
+        target().path("/acl").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .put(Entity.form(new Form()
+                        .param("source", documentId)
+                        .param("perm", "READ")
+                        .param("target", "principalcachegroup")
+                        .param("type", "GROUP")), JsonObject.class);
+
+        // The principal is cached without the group
+        Response response = target().path("/document/" + documentId).request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, principalCacheToken)
+                .get();
+        Assert.assertEquals(Status.NOT_FOUND, Status.fromStatusCode(response.getStatus()));
+        response = target().path("/document/" + documentId).request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, principalCacheToken)
+                .get();
+        Assert.assertEquals(Status.NOT_FOUND, Status.fromStatusCode(response.getStatus()));
+
+        // Group membership changes are seen on the next request
+        target().path("/group/principalcachegroup").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .put(Entity.form(new Form()
+                        .param("username", "principal_cache_group")), JsonObject.class);
+        response = target().path("/document/" + documentId).request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, principalCacheToken)
+                .get();
+        Assert.assertEquals(Status.OK, Status.fromStatusCode(response.getStatus()));
+
+        // Group membership removals are seen on the next request
+        target().path("/group/principalcachegroup/principal_cache_group").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .delete(JsonObject.class);
+        response = target().path("/document/" + documentId).request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, principalCacheToken)
+                .get();
+        Assert.assertEquals(Status.NOT_FOUND, Status.fromStatusCode(response.getStatus()));
+    }
+
+    /**
+     * Test of the principal cache invalidation on user disable.
+     */
+    @Test
+    public void testPrincipalCacheDisabledUser() {
+        // Login principal_cache_disabled
+        clientUtil.createUser("principal_cache_disabled");
+        String principalCacheToken = clientUtil.login("principal_cache_disabled");
+        String adminToken = adminToken();
+
+        // The principal is cached
+        JsonObject json = target().path("/user").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, principalCacheToken)
+                .get(JsonObject.class);
+        Assert.assertFalse(json.getBoolean("anonymous"));
+        json = target().path("/user").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, principalCacheToken)
+                .get(JsonObject.class);
+        Assert.assertFalse(json.getBoolean("anonymous"));
+
+        // A disabled user is logged out on the next request
+        target().path("/user/principal_cache_disabled").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .post(Entity.form(new Form()
+                        .param("disabled", "true")), JsonObject.class);
+        json = target().path("/user").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, principalCacheToken)
+                .get(JsonObject.class);
+        Assert.assertTrue(json.getBoolean("anonymous"));
+
+        // A deleted user is logged out on the next request
+        target().path("/user/principal_cache_disabled").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .post(Entity.form(new Form()
+                        .param("disabled", "false")), JsonObject.class);
+        principalCacheToken = clientUtil.login("principal_cache_disabled");
+        json = target().path("/user").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, principalCacheToken)
+                .get(JsonObject.class);
+        Assert.assertFalse(json.getBoolean("anonymous"));
+        target().path("/user/principal_cache_disabled").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, adminToken)
+                .delete(JsonObject.class);
+        json = target().path("/user").request()
+                .cookie(TokenBasedSecurityFilter.COOKIE_NAME, principalCacheToken)
+                .get(JsonObject.class);
+        Assert.assertTrue(json.getBoolean("anonymous"));
+    }
+
     @Test
     public void testHeaderBasedAuthentication() {
         clientUtil.createUser("header_auth_test");